@@ -0,0 +1,120 @@
+package raytracer.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import raytracer.Ray;
+import raytracer.accel.IntersectKernel;
+import raytracer.accel.PrimitiveBatch;
+import raytracer.math.Point;
+import raytracer.math.Vector;
+import raytracer.shape.Shape;
+import raytracer.shape.Sphere;
+import raytracer.shape.Triangle;
+
+/**
+ * Compares one ray against a batch of spheres or triangles:
+ * {@link Shape#intersect}, {@link Shape#intersectDistance}, the scalar kernel and
+ * the best available kernel (SIMD when run with -Psimd).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class IntersectKernelBenchmark {
+    private static final int RAYS = 1024;
+
+    @Param({"sphere", "triangle"})
+    public String kind;
+
+    @Param({"4", "8", "64"})
+    public int batchSize;
+
+    private Shape[] shapes;
+    private PrimitiveBatch batch;
+    private Ray[] rays;
+    private double[] distances;
+    private IntersectKernel scalar;
+    private IntersectKernel best;
+    private int next;
+
+    @Setup
+    public void setup() {
+        Random rnd = new Random(1);
+        shapes = new Shape[batchSize];
+        for (int i = 0; i < batchSize; i++) {
+            Point c = new Point(rnd.nextDouble() * 2 - 1, rnd.nextDouble() * 2 - 1, -5 - rnd.nextDouble());
+            if (kind.equals("sphere")) {
+                shapes[i] = new Sphere(c, 0.2 + 0.3 * rnd.nextDouble());
+            } else {
+                shapes[i] = new Triangle(c, c.add(new Vector(0.5, 0.1, 0)), c.add(new Vector(0.1, 0.5, 0.1)));
+            }
+        }
+        batch = new PrimitiveBatch(shapes);
+        rays = new Ray[RAYS];
+        for (int i = 0; i < RAYS; i++) {
+            rays[i] = new Ray(new Point(0, 0, 0),
+                new Vector(rnd.nextDouble() * 0.4 - 0.2, rnd.nextDouble() * 0.4 - 0.2, -1).normalized());
+        }
+        distances = new double[batchSize];
+        scalar = IntersectKernel.scalar();
+        best = IntersectKernel.best();
+    }
+
+    private Ray nextRay() {
+        next = (next + 1) & (RAYS - 1);
+        return rays[next];
+    }
+
+    @Benchmark
+    public void shapeIntersect(Blackhole bh) {
+        Ray ray = nextRay();
+        for (Shape shape : shapes) {
+            bh.consume(shape.intersect(ray));
+        }
+    }
+
+    @Benchmark
+    public void shapeIntersectDistance(Blackhole bh) {
+        Ray ray = nextRay();
+        for (Shape shape : shapes) {
+            bh.consume(shape.intersectDistance(ray));
+        }
+    }
+
+    @Benchmark
+    public double[] scalarKernel() {
+        return run(scalar, nextRay());
+    }
+
+    @Benchmark
+    public double[] bestKernel() {
+        return run(best, nextRay());
+    }
+
+    private double[] run(IntersectKernel kernel, Ray ray) {
+        double ox = ray.origin().x(), oy = ray.origin().y(), oz = ray.origin().z();
+        double dx = ray.direction().x(), dy = ray.direction().y(), dz = ray.direction().z();
+        if (kind.equals("sphere")) {
+            kernel.sphereDistances(batch, 0, batchSize, ox, oy, oz, dx, dy, dz, distances);
+        } else {
+            kernel.triangleDistances(batch, 0, batchSize, ox, oy, oz, dx, dy, dz, distances);
+        }
+        return distances;
+    }
+}
@@ -0,0 +1,57 @@
+package raytracer.bench;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import raytracer.Scene;
+import raytracer.parsing.SceneFileParser;
+
+/**
+ * {@link SceneFileParser#parse(java.io.InputStream, String)} on the bundled scenes,
+ * read from memory so that disk access is not measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ParseBenchmark {
+
+    // jalon2/test1..4 fail validation (ambient + diffuse > 1)
+    @Param({
+        "/final/final.scene",
+        "/jalon2/test5.scene", "/jalon2/test6.scene", "/jalon2/test7.scene",
+        "/jalon3/tp31.test", "/jalon3/tp32.test", "/jalon3/tp33.test", "/jalon3/tp34.test", "/jalon3/tp35.test",
+        "/jalon4/tp41-dir.test", "/jalon4/tp41-point.test", "/jalon4/tp42-dir.test", "/jalon4/tp42-point.test",
+        "/jalon4/tp43.test", "/jalon4/tp44.test", "/jalon4/tp45.test",
+        "/jalon5/tp51-diffuse.test", "/jalon5/tp51-specular.test", "/jalon5/tp52.test", "/jalon5/tp53.test",
+        "/jalon5/tp54.test", "/jalon5/tp55.test",
+        "/jalon6/tp61.test", "/jalon6/tp62-5.test", "/jalon6/tp63.test", "/jalon6/tp64.test"
+    })
+    public String scene;
+
+    private byte[] content;
+
+    @Setup
+    public void setup() {
+        content = Scenes.read(scene);
+    }
+
+    @Benchmark
+    public Scene parse() {
+        return new SceneFileParser().parse(new ByteArrayInputStream(content), scene);
+    }
+}
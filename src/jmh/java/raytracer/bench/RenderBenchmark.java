@@ -0,0 +1,59 @@
+package raytracer.bench;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import raytracer.RayTracer;
+import raytracer.Renderer;
+import raytracer.Scene;
+
+/**
+ * Full {@link Renderer#render} of final.scene at several resolutions, on one
+ * thread and on all available processors.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+public class RenderBenchmark {
+
+    @Param({"480x270", "960x540", "1920x1080"})
+    public String resolution;
+
+    /** Render threads, 0 for the number of available processors. */
+    @Param({"1", "0"})
+    public int threads;
+
+    private Scene scene;
+    private int threadCount;
+
+    @Setup
+    public void setup() {
+        scene = Scenes.load("/final/final.scene");
+        String[] size = resolution.split("x");
+        scene.setWidth(Integer.parseInt(size[0]));
+        scene.setHeight(Integer.parseInt(size[1]));
+        threadCount = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    }
+
+    @Benchmark
+    public BufferedImage render() {
+        Renderer renderer = new Renderer(new RayTracer(scene), threadCount, Renderer.DEFAULT_TILE_SIZE,
+            Renderer.DEFAULT_PACKET_SIZE);
+        return renderer.render();
+    }
+}
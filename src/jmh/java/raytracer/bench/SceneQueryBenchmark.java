@@ -0,0 +1,86 @@
+package raytracer.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import raytracer.Intersection;
+import raytracer.PrimaryRayGenerator;
+import raytracer.Ray;
+import raytracer.Scene;
+import raytracer.math.Color;
+
+/**
+ * {@link Scene#findClosestIntersection} and {@link Scene#shade} on primary rays
+ * of a bundled scene, sampled on a regular grid over the image.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SceneQueryBenchmark {
+    private static final int GRID = 64;
+
+    @Param({"/final/final.scene", "/jalon5/tp55.test"})
+    public String scene;
+
+    private Scene loaded;
+    private Ray[] rays;
+    private Intersection[] hits;
+    private Ray[] hitRays;
+    private int nextRay;
+    private int nextHit;
+
+    @Setup
+    public void setup() {
+        loaded = Scenes.load(scene);
+        PrimaryRayGenerator generator = new PrimaryRayGenerator(loaded);
+
+        rays = new Ray[GRID * GRID];
+        List<Intersection> hitList = new ArrayList<>();
+        List<Ray> hitRayList = new ArrayList<>();
+        for (int j = 0; j < GRID; j++) {
+            for (int i = 0; i < GRID; i++) {
+                Ray ray = generator.ray(i * generator.width() / GRID, j * generator.height() / GRID);
+                rays[j * GRID + i] = ray;
+                Optional<Intersection> hit = loaded.findClosestIntersection(ray);
+                if (hit.isPresent()) {
+                    hitList.add(hit.get());
+                    hitRayList.add(ray);
+                }
+            }
+        }
+        if (hitList.isEmpty()) {
+            throw new IllegalStateException("Aucune intersection dans " + scene);
+        }
+        hits = hitList.toArray(new Intersection[0]);
+        hitRays = hitRayList.toArray(new Ray[0]);
+    }
+
+    @Benchmark
+    public Optional<Intersection> findClosestIntersection() {
+        nextRay = nextRay + 1 == rays.length ? 0 : nextRay + 1;
+        return loaded.findClosestIntersection(rays[nextRay]);
+    }
+
+    @Benchmark
+    public Color shade() {
+        nextHit = nextHit + 1 == hits.length ? 0 : nextHit + 1;
+        return loaded.shade(hits[nextHit], hitRays[nextHit]);
+    }
+}
@@ -0,0 +1,39 @@
+package raytracer.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+import raytracer.Scene;
+import raytracer.parsing.SceneFileParser;
+
+/**
+ * Loads the scenes bundled in src/main/resources for the benchmarks.
+ */
+final class Scenes {
+    private Scenes() {}
+
+    /**
+     * @param resource class path resource, e.g. /final/final.scene
+     * @return file content
+     */
+    static byte[] read(String resource) {
+        try (InputStream in = Scenes.class.getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IllegalArgumentException("Ressource introuvable: " + resource);
+            }
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @param resource class path resource
+     * @return parsed scene
+     */
+    static Scene load(String resource) {
+        return new SceneFileParser().parse(new ByteArrayInputStream(read(resource)), resource);
+    }
+}
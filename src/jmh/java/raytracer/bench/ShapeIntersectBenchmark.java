@@ -0,0 +1,68 @@
+package raytracer.bench;
+
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import raytracer.Intersection;
+import raytracer.Ray;
+import raytracer.math.Point;
+import raytracer.math.Vector;
+import raytracer.shape.Plane;
+import raytracer.shape.Shape;
+import raytracer.shape.Sphere;
+import raytracer.shape.Triangle;
+
+/**
+ * One ray against one shape through {@link Shape#intersect}, for each shape type.
+ * Rays are spread around the shape so that roughly half of them hit.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ShapeIntersectBenchmark {
+    private static final int RAYS = 1024;
+
+    @Param({"sphere", "plane", "triangle"})
+    public String shape;
+
+    private Shape target;
+    private Ray[] rays;
+    private int next;
+
+    @Setup
+    public void setup() {
+        target = switch (shape) {
+            case "sphere" -> new Sphere(new Point(0, 0, -5), 1.0);
+            case "plane" -> new Plane(new Point(0, -1, 0), new Vector(0, 1, 0));
+            default -> new Triangle(new Point(-1, -1, -5), new Point(1, -1, -5), new Point(0, 1, -5));
+        };
+        Random rnd = new Random(1);
+        rays = new Ray[RAYS];
+        for (int i = 0; i < RAYS; i++) {
+            rays[i] = new Ray(new Point(0, 0, 0),
+                new Vector(rnd.nextDouble() * 0.6 - 0.3, rnd.nextDouble() * 0.6 - 0.3, -1).normalized());
+        }
+    }
+
+    @Benchmark
+    public Optional<Intersection> intersect() {
+        next = (next + 1) & (RAYS - 1);
+        return target.intersect(rays[next]);
+    }
+}
@@ -0,0 +1,145 @@
+package raytracer;
+
+import java.util.Optional;
+
+import raytracer.math.Color;
+import raytracer.shape.Shape;
+import raytracer.stats.CostProfile;
+
+/**
+ * Adaptive anti-aliasing of a block of pixels.
+ * Every pixel is first traced once through its center, exactly like
+ * {@link RayTracer#getPixelColor}. A pixel then gets more samples, up to the
+ * scene's {@link Scene#getAaSamples() budget}, only if one of its four neighbours
+ * has a different primary hit shape or primitive, or a colour component that differs by more
+ * than the scene's {@link Scene#getAaThreshold() threshold}. Flat areas thus cost
+ * one ray per pixel and only edges and shading discontinuities are supersampled.
+ * <p>
+ * Neighbours across the block border are traced too (a one-pixel apron), so the
+ * result does not depend on the tile layout. Subpixel positions follow the R2
+ * low-discrepancy sequence, whose first point is the pixel center.
+ * <p>
+ * With a {@link CostProfile}, the center and extra samples of every pixel of the
+ * block are measured; apron pixels are traced unmeasured, as their own block
+ * measures them.
+ */
+final class AdaptiveSampler {
+    /** R2 sequence steps: inverses of the plastic number and of its square. */
+    private static final double R2_X = 0.7548776662466927;
+    private static final double R2_Y = 0.5698402909980532;
+
+    private final RayTracer rayTracer;
+    private final CostProfile profile;
+    private final int samples;
+    private final double threshold;
+    private final double[] offsetX;
+    private final double[] offsetY;
+
+    /**
+     * @param rayTracer ray tracer of the scene; the budget and threshold are read from its scene
+     * @param profile   profile recording the cost of every pixel, see {@link RayTracer#profiled},
+     *                  or null
+     */
+    AdaptiveSampler(RayTracer rayTracer, CostProfile profile) {
+        Scene scene = rayTracer.getScene();
+        this.rayTracer = rayTracer;
+        this.profile = profile;
+        this.samples = scene.getAaSamples();
+        this.threshold = scene.getAaThreshold();
+        offsetX = new double[samples];
+        offsetY = new double[samples];
+        for (int i = 1; i < samples; i++) {
+            offsetX[i] = fraction(0.5 + i * R2_X) - 0.5;
+            offsetY[i] = fraction(0.5 + i * R2_Y) - 0.5;
+        }
+    }
+
+    /**
+     * Renders the pixels [x0, x1) x [y0, y1) into a buffer whose rows are in image
+     * order (flipped Y): pixel (x, y) goes to out[offset + (y1 - 1 - y) * stride + (x - x0)].
+     */
+    void renderBlock(int x0, int y0, int x1, int y1, int[] out, int offset, int stride) {
+        Scene scene = rayTracer.getScene();
+        PrimaryRayGenerator primaryRays = rayTracer.getPrimaryRays();
+
+        // centers of the block and of its apron, clipped to the image
+        int ax0 = Math.max(0, x0 - 1), ay0 = Math.max(0, y0 - 1);
+        int ax1 = Math.min(scene.getWidth(), x1 + 1), ay1 = Math.min(scene.getHeight(), y1 + 1);
+        int aw = ax1 - ax0;
+        Color[] colors = new Color[aw * (ay1 - ay0)];
+        Shape[] shapes = new Shape[colors.length];
+        int[] primitives = new int[colors.length];
+        for (int pixelY = ay0; pixelY < ay1; pixelY++) {
+            for (int pixelX = ax0; pixelX < ax1; pixelX++) {
+                int i = (pixelY - ay0) * aw + (pixelX - ax0);
+                boolean measured = profile != null
+                    && pixelX >= x0 && pixelX < x1 && pixelY >= y0 && pixelY < y1;
+                if (measured) profile.beginPixel();
+                long start = measured ? System.nanoTime() : 0;
+                Ray ray = primaryRays.ray(pixelX, pixelY);
+                Optional<Intersection> hit = scene.findClosestIntersection(ray);
+                long found = measured ? System.nanoTime() : 0;
+                if (hit.isPresent()) {
+                    colors[i] = scene.shade(hit.get(), ray);
+                    shapes[i] = hit.get().shape();
+                    primitives[i] = hit.get().primitive();
+                } else {
+                    colors[i] = new Color();
+                }
+                if (measured) profile.endPixel(pixelX, pixelY, found - start, System.nanoTime() - found, shapes[i]);
+            }
+        }
+
+        for (int pixelY = y0; pixelY < y1; pixelY++) {
+            int row = offset + (y1 - 1 - pixelY) * stride - x0;
+            for (int pixelX = x0; pixelX < x1; pixelX++) {
+                int i = (pixelY - ay0) * aw + (pixelX - ax0);
+                boolean edge = (pixelX > ax0 && differs(colors, shapes, primitives, i, i - 1))
+                    || (pixelX < ax1 - 1 && differs(colors, shapes, primitives, i, i + 1))
+                    || (pixelY > ay0 && differs(colors, shapes, primitives, i, i - aw))
+                    || (pixelY < ay1 - 1 && differs(colors, shapes, primitives, i, i + aw));
+                Color color = edge ? supersample(pixelX, pixelY, colors[i]) : colors[i];
+                out[row + pixelX] = color.toRGB();
+            }
+        }
+    }
+
+    private boolean differs(Color[] colors, Shape[] shapes, int[] primitives, int a, int b) {
+        Color ca = colors[a], cb = colors[b];
+        return shapes[a] != shapes[b] || primitives[a] != primitives[b]
+            || Math.abs(ca.r() - cb.r()) > threshold
+            || Math.abs(ca.g() - cb.g()) > threshold
+            || Math.abs(ca.b() - cb.b()) > threshold;
+    }
+
+    /**
+     * Averages the center color with the remaining samples of the pixel.
+     */
+    private Color supersample(int pixelX, int pixelY, Color center) {
+        Scene scene = rayTracer.getScene();
+        PrimaryRayGenerator primaryRays = rayTracer.getPrimaryRays();
+        double r = center.r(), g = center.g(), b = center.b();
+        for (int s = 1; s < samples; s++) {
+            if (profile != null) profile.beginPixel();
+            long start = profile != null ? System.nanoTime() : 0;
+            Ray ray = primaryRays.ray(pixelX, pixelY, offsetX[s], offsetY[s]);
+            Optional<Intersection> hit = scene.findClosestIntersection(ray);
+            long found = profile != null ? System.nanoTime() : 0;
+            if (hit.isPresent()) {
+                Color c = scene.shade(hit.get(), ray);
+                r += c.r();
+                g += c.g();
+                b += c.b();
+            }
+            if (profile != null) {
+                profile.addSample(pixelX, pixelY, found - start, System.nanoTime() - found,
+                    hit.map(Intersection::shape).orElse(null));
+            }
+        }
+        return new Color(r / samples, g / samples, b / samples);
+    }
+
+    private static double fraction(double v) {
+        return v - Math.floor(v);
+    }
+}
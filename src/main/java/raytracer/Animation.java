@@ -0,0 +1,135 @@
+package raytracer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import raytracer.math.Point;
+import raytracer.math.Vector;
+import raytracer.shape.Shape;
+
+/**
+ * Frame sequence of an animated scene: a camera path given by key cameras at some
+ * frames, and shapes moving by a constant offset per frame.
+ * <p>
+ * Between two keys, the camera position, target, up vector and field of view are
+ * interpolated linearly; before the first key and after the last one the camera
+ * stays on that key. A moving shape is translated from its declared position by
+ * its velocity times the frame number, so frame 0 shows the scene as declared and
+ * each frame can be computed independently of the others.
+ */
+public final class Animation {
+    private final int frames;
+    private final int[] keyFrames;
+    private final Camera[] keys;
+    private final int[] movingShapes;
+    private final Vector[] velocities;
+
+    /**
+     * Constructs an animation.
+     *
+     * @param frames       number of frames, at least 1
+     * @param keyFrames    frame of each key camera, strictly increasing
+     * @param keys         key cameras, at least one
+     * @param movingShapes scene index of each moving shape, strictly increasing
+     * @param velocities   offset per frame of each moving shape
+     * @throws IllegalArgumentException if the arrays are inconsistent
+     */
+    public Animation(int frames, int[] keyFrames, Camera[] keys, int[] movingShapes, Vector[] velocities) {
+        if (frames < 1 || keys.length == 0 || keyFrames.length != keys.length
+                || movingShapes.length != velocities.length) {
+            throw new IllegalArgumentException("Animation incohérente");
+        }
+        for (int k = 1; k < keyFrames.length; k++) {
+            if (keyFrames[k] <= keyFrames[k - 1]) {
+                throw new IllegalArgumentException("Images clés non croissantes: " + keyFrames[k]);
+            }
+        }
+        for (int m = 1; m < movingShapes.length; m++) {
+            if (movingShapes[m] <= movingShapes[m - 1]) {
+                throw new IllegalArgumentException("Formes animées non croissantes: " + movingShapes[m]);
+            }
+        }
+        this.frames = frames;
+        this.keyFrames = keyFrames.clone();
+        this.keys = keys.clone();
+        this.movingShapes = movingShapes.clone();
+        this.velocities = velocities.clone();
+    }
+
+    /** @return number of frames */
+    public int frames() { return frames; }
+
+    /** @return number of key cameras */
+    public int keyCount() { return keys.length; }
+    /** @return frame of key camera k */
+    public int keyFrame(int k) { return keyFrames[k]; }
+    /** @return key camera k */
+    public Camera key(int k) { return keys[k]; }
+
+    /** @return number of moving shapes */
+    public int movingCount() { return movingShapes.length; }
+    /** @return scene index of moving shape m */
+    public int movingShape(int m) { return movingShapes[m]; }
+    /** @return offset per frame of moving shape m */
+    public Vector velocity(int m) { return velocities[m]; }
+
+    /**
+     * Returns the camera of a frame, interpolated between the surrounding keys.
+     *
+     * @param frame frame number
+     * @return camera of the frame
+     */
+    public Camera cameraAt(int frame) {
+        if (frame <= keyFrames[0]) return keys[0];
+        int last = keys.length - 1;
+        if (frame >= keyFrames[last]) return keys[last];
+        int k = 1;
+        while (keyFrames[k] < frame) k++;
+        Camera a = keys[k - 1];
+        Camera b = keys[k];
+        double t = (double) (frame - keyFrames[k - 1]) / (keyFrames[k] - keyFrames[k - 1]);
+        return new Camera(lerp(a.lookFrom, b.lookFrom, t), lerp(a.lookAt, b.lookAt, t),
+            a.up.add(b.up.sub(a.up).scale(t)), a.fovDeg + (b.fovDeg - a.fovDeg) * t);
+    }
+
+    /**
+     * Returns the shapes of a frame: moving shapes are replaced by translated copies,
+     * the others are shared.
+     *
+     * @param shapes shapes as declared, in declaration order
+     * @param frame  frame number
+     * @return shapes of the frame, the given list itself if nothing moves
+     * @throws UnsupportedOperationException if a moving shape cannot be translated
+     */
+    public List<Shape> shapesAt(List<Shape> shapes, int frame) {
+        if (frame == 0 || movingShapes.length == 0) return shapes;
+        List<Shape> moved = new ArrayList<>(shapes);
+        for (int m = 0; m < movingShapes.length; m++) {
+            int index = movingShapes[m];
+            moved.set(index, shapes.get(index).translated(velocities[m].scale(frame)));
+        }
+        return moved;
+    }
+
+    /** @return true if some shape moves from frame to frame */
+    public boolean movesShapes() { return movingShapes.length > 0; }
+
+    /**
+     * Numbers an output file name for a frame: "out/img.png" becomes "out/img_0007.png".
+     *
+     * @param output output file name of the scene
+     * @param frame  frame number
+     * @return output file name of the frame
+     */
+    public static String frameOutput(String output, int frame) {
+        int slash = Math.max(output.lastIndexOf('/'), output.lastIndexOf('\\'));
+        int dot = output.lastIndexOf('.');
+        if (dot <= slash) dot = output.length();
+        return output.substring(0, dot) + String.format(Locale.ROOT, "_%04d", frame) + output.substring(dot);
+    }
+
+    private static Point lerp(Point a, Point b, double t) {
+        return a.add(b.sub(a).scale(t));
+    }
+}
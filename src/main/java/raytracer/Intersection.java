@@ -9,7 +9,8 @@ import raytracer.math.Vector;
 import raytracer.shape.Shape;
 
 /**
- * Intersection record holding distance t, position, surface normal, and hit shape.
+ * Intersection record holding distance t, position, surface normal, hit shape and
+ * primitive, and the material at the hit (the shape's own, or the triangle's for a mesh).
  * Provides Lambert and Blinn-Phong contributions for a given light.
  */
 public final class Intersection {
@@ -17,13 +18,38 @@ public final class Intersection {
     private final Point position;
     private final Vector normal;
     private final Shape shape;
+    private final int primitive;
+    private final Color diffuse;
+    private final Color specular;
+    private final double shininess;
 
-    /** Constructs an intersection record. */
+    /** Constructs an intersection record with the material of the shape. */
     public Intersection(double t, Point position, Vector normal, Shape shape) {
+        this(t, position, normal, shape, 0, shape.getDiffuse(), shape.getSpecular(), shape.getShininess());
+    }
+
+    /**
+     * Constructs an intersection record for one primitive of a shape, with its own material.
+     *
+     * @param t         ray parameter at the hit
+     * @param position  hit position
+     * @param normal    unit surface normal
+     * @param shape     hit shape
+     * @param primitive index of the hit primitive in the shape
+     * @param diffuse   diffuse color at the hit
+     * @param specular  specular color at the hit
+     * @param shininess specular exponent at the hit
+     */
+    public Intersection(double t, Point position, Vector normal, Shape shape, int primitive,
+                        Color diffuse, Color specular, double shininess) {
         this.t = t;
         this.position = position;
         this.normal = normal;
         this.shape = shape;
+        this.primitive = primitive;
+        this.diffuse = diffuse;
+        this.specular = specular;
+        this.shininess = shininess;
     }
 
     /** @return ray parameter t at intersection */
@@ -34,32 +60,56 @@ public final class Intersection {
     public Vector normal() { return normal; }
     /** @return hit shape */
     public Shape shape() { return shape; }
+    /** @return index of the hit primitive in the shape (0 for single-primitive shapes) */
+    public int primitive() { return primitive; }
+    /** @return diffuse color at the hit */
+    public Color diffuse() { return diffuse; }
+    /** @return specular color at the hit */
+    public Color specular() { return specular; }
+    /** @return specular exponent at the hit */
+    public double shininess() { return shininess; }
 
     /**
-     * Lambertian diffuse term: lightColor ⊙ diffuse * max(0, N·L).
+     * Returns the unit direction from the hit towards a light. For a directional
+     * light it is precomputed by the light; for a point light it depends on the hit.
      *
      * @param light light source
-     * @return diffuse color contribution
+     * @return unit direction towards the light, or null for an unsupported light
      */
-    public Color lambert(AbstractLight light) {
-        Vector lightDir;
-
+    public Vector directionTo(AbstractLight light) {
         if (light instanceof DirectionalLight dirLight) {
-            lightDir = dirLight.direction().scale(-1.0).normalized();
+            return dirLight.towardLight();
         } else if (light instanceof PointLight pointLight) {
-            lightDir = Vector.fromPoints(position, pointLight.origin()).normalized();
-        } else {
-            return new Color();
+            return Vector.fromPoints(position, pointLight.origin()).normalized();
         }
+        return null;
+    }
+
+    /**
+     * Lambertian diffuse term: lightColor ⊙ diffuse * max(0, N·L).
+     *
+     * @param light light source
+     * @return diffuse color contribution
+     */
+    public Color lambert(AbstractLight light) {
+        Vector lightDir = directionTo(light);
+        return lightDir == null ? new Color() : lambert(light, lightDir);
+    }
 
+    /**
+     * Same as {@link #lambert(AbstractLight)} with the light direction already known.
+     *
+     * @param light    light source
+     * @param lightDir unit direction towards the light, as given by {@link #directionTo}
+     * @return diffuse color contribution
+     */
+    public Color lambert(AbstractLight light, Vector lightDir) {
         double cos = lightDir.dot(normal);
         if (cos <= 0.0) {
             return new Color();
         }
 
         Color lightColor = light.color();
-        Color diffuse = shape.getDiffuse();
-
         return lightColor.schur(diffuse).scale(cos);
     }
 
@@ -72,16 +122,19 @@ public final class Intersection {
      * @return specular color contribution
      */
     public Color blinnPhong(AbstractLight light, Vector eyeDir) {
-        Vector lightDir;
-
-        if (light instanceof DirectionalLight dirLight) {
-            lightDir = dirLight.direction().scale(-1.0).normalized();
-        } else if (light instanceof PointLight pointLight) {
-            lightDir = Vector.fromPoints(position, pointLight.origin()).normalized();
-        } else {
-            return new Color();
-        }
+        Vector lightDir = directionTo(light);
+        return lightDir == null ? new Color() : blinnPhong(light, lightDir, eyeDir);
+    }
 
+    /**
+     * Same as {@link #blinnPhong(AbstractLight, Vector)} with the light direction already known.
+     *
+     * @param light    light source
+     * @param lightDir unit direction towards the light, as given by {@link #directionTo}
+     * @param eyeDir   direction from hit towards eye (normalized)
+     * @return specular color contribution
+     */
+    public Color blinnPhong(AbstractLight light, Vector lightDir, Vector eyeDir) {
         double cosNL = lightDir.dot(normal);
         if (cosNL <= 0.0) {
             return new Color();
@@ -90,7 +143,6 @@ public final class Intersection {
         Vector halfwayVector = lightDir.add(eyeDir).normalized();
         double cosNH = Math.max(0.0, halfwayVector.dot(normal));
 
-        double shininess = shape.getShininess();
         if (shininess <= 0.0) {
             return new Color();
         }
@@ -98,8 +150,6 @@ public final class Intersection {
         double specFactor = Math.pow(cosNH, shininess);
 
         Color lightColor = light.color();
-        Color specColor = shape.getSpecular();
-
-        return lightColor.schur(specColor).scale(specFactor);
+        return lightColor.schur(specular).scale(specFactor);
     }
 }
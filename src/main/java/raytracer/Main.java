@@ -1,27 +1,84 @@
 package raytracer;
 
-import java.awt.image.BufferedImage;
+import java.io.IOException;
 import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
 
+import raytracer.batch.BatchRenderer;
+import raytracer.cache.ImageCache;
+import raytracer.cache.SceneHash;
+import raytracer.distributed.Coordinator;
+import raytracer.distributed.LocalWorkers;
+import raytracer.distributed.Worker;
+
+import raytracer.image.Framebuffer;
 import raytracer.parsing.SceneFileParser;
+import raytracer.parsing.SceneSnapshot;
+import raytracer.server.RenderServer;
+import raytracer.stats.CostProfile;
+import raytracer.stats.RenderStats;
 
 /**
  * Entry point for the raytracer executable.
- * Parses a scene file (from CLI path or bundled resource), renders, and saves the PNG.
+ * Parses a scene file (from CLI path or bundled resource), renders, and saves the image
+ * (PNG, QOI or PPM depending on the output extension), then prints timings and
+ * ray counters. The pipeline also emits Flight Recorder events (category "Raytracer").
+ * With --heatmap, the render is profiled: cost heatmaps are written next to the
+ * image and the most tested shapes are listed with their scene file line.
+ * With --compile, the scene and its BVH are saved as a binary snapshot instead of
+ * being rendered; snapshots are accepted wherever a scene file is.
+ * With --workers or --spawn, the frame is rendered by worker processes (started
+ * with --worker, or spawned on this machine) driven by a {@link Coordinator}.
+ * A scene declaring several frames is rendered as a numbered image sequence by a
+ * {@link SequenceRenderer}.
+ * With --batch, every scene of a directory or manifest is rendered in this process by
+ * a {@link BatchRenderer}, and the timings of each scene are printed at the end.
+ * With --serve, scenes are received and images returned over HTTP by a {@link RenderServer}.
+ * With --image-cache, the image of a scene whose {@link SceneHash} is already in the
+ * {@link ImageCache} is copied instead of rendered, and new images are stored there.
+ * Usage: java raytracer.Main [--threads N] [--tile N] [--packet N] [--stream] [--heatmap] [--compile FILE]
+ *        [--workers HOST:PORT,...] [--spawn N] [--worker-timeout S] [--image-cache DIR [--image-cache-mb N]] [scene]
+ * or:    java raytracer.Main --worker PORT [--bind ADDRESS] [--threads N]
+ * or:    java raytracer.Main --batch DIR|MANIFEST [--parsers N] [--renderers N] [--encoders N] [--threads N]
+ * or:    java raytracer.Main --serve PORT [--renderers N] [--cache-mb N] [--max-scene-mb N] [--max-build-mb N] [--threads N]
  */
 public class Main {
     /**
      * Main application entry. If no argument is provided, loads a default resource scene.
      *
-     * @param args CLI arguments: [0] optional path to scene file
+     * @param args CLI arguments: render options (see {@link Options}) and an optional path to scene file
      */
     public static void main(String[] args) {
         try {
+            Options options = Options.parse(args);
+            if (options.getWorkerPort() >= 0) {
+                serveWorker(options);
+                return;
+            }
+            if (options.getServePort() >= 0) {
+                RenderServer server = new RenderServer(options.getServePort(), options.getRenderers(),
+                    options.getThreads(), options.getTileSize(), options.getPacketSize(),
+                    (long) options.getCacheMegabytes() << 20, options.getMaxSceneMegabytes() << 20,
+                    (long) options.getMaxBuildMegabytes() << 20);
+                System.out.println("Service de rendu : http://localhost:" + server.port() + "/render");
+                return;
+            }
+            if (options.getBatchPath() != null) {
+                if (!renderBatch(options)) {
+                    System.exit(1);
+                }
+                return;
+            }
             Scene scene;
+            long parseStart = System.nanoTime();
 
-            if (args.length > 0) {
-                java.nio.file.Path p = java.nio.file.Path.of(args[0]);
-                scene = new SceneFileParser().parse(p);
+            if (options.getScenePath() != null) {
+                java.nio.file.Path p = java.nio.file.Path.of(options.getScenePath());
+                scene = SceneSnapshot.isSnapshot(p) ? SceneSnapshot.read(p) : new SceneFileParser().parse(p);
             } else {
                 String resourcePath = "/final/final_avec_bonus.scene";
                 System.out.println("Lecture de la ressource: " + resourcePath);
@@ -33,15 +90,208 @@ public class Main {
                 }
             }
 
+            long parseNanos = System.nanoTime() - parseStart;
+
+            if (options.getCompilePath() != null) {
+                long buildStart = System.nanoTime();
+                scene.getAccelerator();
+                long buildNanos = System.nanoTime() - buildStart;
+                java.nio.file.Path target = java.nio.file.Path.of(options.getCompilePath());
+                SceneSnapshot.write(scene, target);
+                System.out.printf("Scène compilée : %s (analyse : %d ms, BVH : %d ms)%n",
+                    target, parseNanos / 1_000_000, buildNanos / 1_000_000);
+                return;
+            }
+
+            // a cache hit skips the render, so the heatmap would never be written
+            ImageCache imageCache = null;
+            String hash = null;
+            if (options.getImageCachePath() != null && !options.isHeatmap()) {
+                long hashStart = System.nanoTime();
+                hash = SceneHash.of(scene).orElse(null);
+                if (hash != null) {
+                    imageCache = openImageCache(options);
+                }
+                if (imageCache != null && copyFromCache(imageCache, hash, scene.getOutput())) {
+                    System.out.printf("Image reprise du cache : %s (analyse : %d ms, empreinte : %d ms)%n",
+                        java.nio.file.Path.of(scene.getOutput()).toAbsolutePath(), parseNanos / 1_000_000,
+                        (System.nanoTime() - hashStart) / 1_000_000);
+                    return;
+                }
+            }
+
+            if (scene.getAnimation() != null) {
+                if (options.isDistributed() || options.isStream() || options.isHeatmap()) {
+                    throw new IllegalArgumentException(
+                        "Une séquence animée ne peut pas être rendue avec --workers, --spawn, --stream ou --heatmap");
+                }
+                renderSequence(scene, options, parseNanos);
+                return;
+            }
+
+            if (options.isDistributed()) {
+                renderDistributed(scene, options, parseNanos);
+                if (imageCache != null) storeInCache(imageCache, hash, scene.getOutput());
+                return;
+            }
+
             RayTracer rayTracer = new RayTracer(scene);
-            Renderer renderer = new Renderer(rayTracer);
+            Renderer renderer = new Renderer(rayTracer, options.getThreads(), options.getTileSize(),
+                options.getPacketSize());
 
-            BufferedImage img = renderer.render();
-            renderer.save(img, scene.getOutput());
+            RenderStats.reset();
+            long renderStart = System.nanoTime();
+            long renderNanos;
+            if (options.isStream()) {
+                renderer.renderToFile(scene.getOutput());
+                renderNanos = System.nanoTime() - renderStart;
+                System.out.printf("Analyse : %d ms, rendu et encodage : %d ms%n",
+                    parseNanos / 1_000_000, renderNanos / 1_000_000);
+            } else {
+                CostProfile profile = options.isHeatmap()
+                    ? new CostProfile(scene.getWidth(), scene.getHeight(), scene.getShapes())
+                    : null;
+                Framebuffer frame = renderer.renderFrame(profile);
+                renderNanos = System.nanoTime() - renderStart;
+                long encodeStart = System.nanoTime();
+                renderer.save(frame, scene.getOutput());
+                System.out.printf("Analyse : %d ms, rendu : %d ms, encodage : %d ms%n",
+                    parseNanos / 1_000_000, renderNanos / 1_000_000, (System.nanoTime() - encodeStart) / 1_000_000);
+                if (profile != null) {
+                    renderer.save(profile.timeHeatmap(), siblingPath(scene.getOutput(), "heatmap-time.png"));
+                    renderer.save(profile.testsHeatmap(), siblingPath(scene.getOutput(), "heatmap-tests.png"));
+                    System.out.println(profile.report(CostProfile.DEFAULT_TOP_SHAPES));
+                }
+            }
+            System.out.println(RenderStats.summary(renderNanos));
+            if (imageCache != null) storeInCache(imageCache, hash, scene.getOutput());
 
         } catch (Exception e) {
             e.printStackTrace();
             System.exit(1);
         }
     }
+
+    /**
+     * Opens the option's image cache. The cache only saves renders, so errors are
+     * reported as warnings here and in the two methods below, and the scene is rendered.
+     *
+     * @return cache, or null if its directory cannot be created
+     */
+    private static ImageCache openImageCache(Options options) {
+        try {
+            return new ImageCache(java.nio.file.Path.of(options.getImageCachePath()),
+                (long) options.getImageCacheMegabytes() << 20);
+        } catch (IOException e) {
+            System.err.println("Cache d'images ignoré : " + e);
+            return null;
+        }
+    }
+
+    /** @return true if the scene's image was copied from the cache to its output */
+    private static boolean copyFromCache(ImageCache imageCache, String hash, String output) {
+        try {
+            Optional<java.nio.file.Path> cached = imageCache.lookup(hash, output);
+            return cached.isPresent() && ImageCache.copyTo(cached.get(), output);
+        } catch (IOException e) {
+            System.err.println("Lecture du cache d'images impossible, rendu de la scène : " + e);
+            return false;
+        }
+    }
+
+    /** Adds a rendered image to the cache, warning if it cannot be stored. */
+    private static void storeInCache(ImageCache imageCache, String hash, String output) {
+        try {
+            imageCache.store(hash, output);
+        } catch (IOException e) {
+            System.err.println("Image non ajoutée au cache : " + e);
+        }
+    }
+
+    /**
+     * Serves coordinators on the option's port until the process is stopped. The
+     * first line printed gives the port, which {@link LocalWorkers} reads.
+     */
+    private static void serveWorker(Options options) throws IOException {
+        try (ServerSocket server = new ServerSocket(options.getWorkerPort(), 0, options.getBindAddress())) {
+            System.out.println(LocalWorkers.LISTENING + server.getLocalPort());
+            System.out.flush();
+            new Worker(options.getThreads()).serve(server);
+        }
+    }
+
+    /**
+     * Renders the scene on the option's workers and on local worker processes,
+     * which share the render threads, then saves the image.
+     */
+    private static void renderDistributed(Scene scene, Options options, long parseNanos) throws IOException {
+        List<InetSocketAddress> workers = new ArrayList<>(options.getWorkers());
+        int spawn = options.getSpawn();
+        try (LocalWorkers local = spawn > 0 ? LocalWorkers.start(spawn, Math.max(1, options.getThreads() / spawn)) : null) {
+            if (local != null) {
+                workers.addAll(local.addresses());
+            }
+            long renderStart = System.nanoTime();
+            Framebuffer frame = new Coordinator(scene, options.getTileSize(), options.getPacketSize(),
+                Math.multiplyExact(options.getWorkerTimeoutSeconds(), 1000)).render(workers);
+            long renderNanos = System.nanoTime() - renderStart;
+            long encodeStart = System.nanoTime();
+            Renderer.save(frame, scene.getOutput(), options.getThreads());
+            System.out.printf("Analyse : %d ms, rendu distribué (%d workers) : %d ms, encodage : %d ms%n",
+                parseNanos / 1_000_000, workers.size(), renderNanos / 1_000_000,
+                (System.nanoTime() - encodeStart) / 1_000_000);
+        }
+    }
+
+    /**
+     * Renders the scenes of the option's batch and prints their timings.
+     *
+     * @return true if every image was written
+     */
+    private static boolean renderBatch(Options options) throws IOException, InterruptedException {
+        List<java.nio.file.Path> scenes = BatchRenderer.scenes(java.nio.file.Path.of(options.getBatchPath()));
+        if (scenes.isEmpty()) {
+            throw new IllegalArgumentException("Aucune scène dans " + options.getBatchPath());
+        }
+        BatchRenderer batch = new BatchRenderer(options.getParsers(), options.getRenderers(), options.getEncoders(),
+            options.getThreads(), options.getTileSize(), options.getPacketSize());
+        RenderStats.reset();
+        long start = System.nanoTime();
+        List<BatchRenderer.Result> results = batch.render(scenes);
+        long wallNanos = System.nanoTime() - start;
+        System.out.println(BatchRenderer.report(results, wallNanos));
+        System.out.println(RenderStats.summary(wallNanos));
+        return results.stream().allMatch(r -> r.error() == null);
+    }
+
+    /**
+     * Renders every frame of an animated scene, writing each one while the next renders.
+     */
+    private static void renderSequence(Scene scene, Options options, long parseNanos) throws IOException {
+        SequenceRenderer sequence = new SequenceRenderer(scene, options.getThreads(), options.getTileSize(),
+            options.getPacketSize());
+        RenderStats.reset();
+        long start = System.nanoTime();
+        long[] renderNanos = sequence.render();
+        long totalNanos = System.nanoTime() - start;
+        long slowest = 0;
+        for (long nanos : renderNanos) {
+            slowest = Math.max(slowest, nanos);
+        }
+        System.out.printf("Analyse : %d ms, séquence de %d images : %d ms (%d ms par image, la plus lente %d ms)%n",
+            parseNanos / 1_000_000, renderNanos.length, totalNanos / 1_000_000,
+            totalNanos / renderNanos.length / 1_000_000, slowest / 1_000_000);
+        System.out.println(RenderStats.summary(totalNanos));
+    }
+
+    /**
+     * Replaces the extension of the output file name: "out/img.png" becomes
+     * "out/img.{suffix}".
+     */
+    private static String siblingPath(String output, String suffix) {
+        int slash = Math.max(output.lastIndexOf('/'), output.lastIndexOf('\\'));
+        int dot = output.lastIndexOf('.');
+        String base = dot > slash ? output.substring(0, dot) : output;
+        return base + "." + suffix;
+    }
 }
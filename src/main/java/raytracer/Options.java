@@ -0,0 +1,240 @@
+package raytracer;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+
+import raytracer.distributed.Coordinator;
+import raytracer.server.RenderServer;
+
+/**
+ * Command-line options of the raytracer executable.
+ * Usage: java raytracer.Main [--threads N] [--tile N] [--packet N] [--stream] [--heatmap] [--compile FILE]
+ *        [--workers HOST:PORT,...] [--spawn N] [--worker-timeout S] [--image-cache DIR [--image-cache-mb N]] [scene]
+ * or:    java raytracer.Main --worker PORT [--bind ADDRESS] [--threads N]
+ * or:    java raytracer.Main --batch DIR|MANIFEST [--parsers N] [--renderers N] [--encoders N]
+ *        [--threads N] [--tile N] [--packet N]
+ * or:    java raytracer.Main --serve PORT [--renderers N] [--cache-mb N] [--max-scene-mb N] [--max-build-mb N] [--threads N]
+ *        [--tile N] [--packet N]
+ */
+public final class Options {
+    private String scenePath;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int tileSize = Renderer.DEFAULT_TILE_SIZE;
+    private int packetSize = Renderer.DEFAULT_PACKET_SIZE;
+    private boolean stream;
+    private boolean heatmap;
+    private String compilePath;
+    private int workerPort = -1;
+    private InetAddress bindAddress;
+    private final List<InetSocketAddress> workers = new ArrayList<>();
+    private int spawn;
+    private int workerTimeoutSeconds = Coordinator.DEFAULT_ROW_TIMEOUT_MS / 1000;
+    private String batchPath;
+    private int parsers = 1;
+    private int renderers = 1;
+    private int encoders = 1;
+    private int servePort = -1;
+    private int cacheMegabytes = 512;
+    private int maxSceneMegabytes = RenderServer.DEFAULT_MAX_SCENE_BYTES >> 20;
+    private int maxBuildMegabytes = (int) (RenderServer.DEFAULT_MAX_BUILD_BYTES >> 20);
+    private String imageCachePath;
+    private int imageCacheMegabytes = 1024;
+
+    /**
+     * Parses the command-line arguments.
+     *
+     * @param args CLI arguments
+     * @return parsed options
+     * @throws IllegalArgumentException on unknown option or invalid value
+     */
+    public static Options parse(String[] args) {
+        Options options = new Options();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "--threads" -> options.threads = positiveInt(arg, value(args, ++i, arg));
+                case "--tile" -> options.tileSize = positiveInt(arg, value(args, ++i, arg));
+                case "--packet" -> options.packetSize = positiveInt(arg, value(args, ++i, arg));
+                case "--stream" -> options.stream = true;
+                case "--heatmap" -> options.heatmap = true;
+                case "--compile" -> options.compilePath = value(args, ++i, arg);
+                case "--worker" -> options.workerPort = port(arg, value(args, ++i, arg));
+                case "--bind" -> options.bindAddress = address(arg, value(args, ++i, arg));
+                case "--workers" -> {
+                    for (String endpoint : value(args, ++i, arg).split(",")) {
+                        options.workers.add(endpoint(arg, endpoint.trim()));
+                    }
+                }
+                case "--spawn" -> options.spawn = positiveInt(arg, value(args, ++i, arg));
+                case "--worker-timeout" -> options.workerTimeoutSeconds = positiveInt(arg, value(args, ++i, arg));
+                case "--batch" -> options.batchPath = value(args, ++i, arg);
+                case "--parsers" -> options.parsers = positiveInt(arg, value(args, ++i, arg));
+                case "--renderers" -> options.renderers = positiveInt(arg, value(args, ++i, arg));
+                case "--encoders" -> options.encoders = positiveInt(arg, value(args, ++i, arg));
+                case "--serve" -> options.servePort = port(arg, value(args, ++i, arg));
+                case "--cache-mb" -> options.cacheMegabytes = positiveInt(arg, value(args, ++i, arg));
+                case "--max-scene-mb" -> {
+                    options.maxSceneMegabytes = positiveInt(arg, value(args, ++i, arg));
+                    if (options.maxSceneMegabytes >= 2048) {
+                        throw new IllegalArgumentException(arg + " doit être < 2048");
+                    }
+                }
+                case "--max-build-mb" -> options.maxBuildMegabytes = positiveInt(arg, value(args, ++i, arg));
+                case "--image-cache" -> options.imageCachePath = value(args, ++i, arg);
+                case "--image-cache-mb" -> options.imageCacheMegabytes = positiveInt(arg, value(args, ++i, arg));
+                default -> {
+                    if (arg.startsWith("--")) {
+                        throw new IllegalArgumentException("Option inconnue: " + arg);
+                    }
+                    if (options.scenePath != null) {
+                        throw new IllegalArgumentException("Un seul fichier de scène attendu: " + arg);
+                    }
+                    options.scenePath = arg;
+                }
+            }
+        }
+        if (options.stream && options.heatmap) {
+            throw new IllegalArgumentException("--heatmap ne peut pas être combiné avec --stream");
+        }
+        if (options.isDistributed() && (options.stream || options.heatmap || options.compilePath != null)) {
+            throw new IllegalArgumentException("--workers et --spawn ne peuvent pas être combinés avec --stream, --heatmap ou --compile");
+        }
+        if (options.batchPath != null && (options.scenePath != null || options.stream || options.heatmap
+                || options.compilePath != null || options.isDistributed() || options.workerPort >= 0)) {
+            throw new IllegalArgumentException("--batch remplace le fichier de scène et ne peut pas être combiné "
+                + "avec --stream, --heatmap, --compile, --worker, --workers ou --spawn");
+        }
+        if (options.servePort >= 0 && (options.scenePath != null || options.batchPath != null || options.stream
+                || options.heatmap || options.compilePath != null || options.isDistributed() || options.workerPort >= 0)) {
+            throw new IllegalArgumentException("--serve reçoit les scènes par HTTP et ne peut pas être combiné "
+                + "avec un fichier de scène ni avec les autres modes");
+        }
+        if (options.imageCachePath != null && (options.heatmap || options.compilePath != null
+                || options.batchPath != null || options.servePort >= 0 || options.workerPort >= 0)) {
+            throw new IllegalArgumentException("--image-cache ne s'applique qu'au rendu d'une scène, "
+                + "sans --heatmap, --compile, --batch, --serve ni --worker");
+        }
+        if (options.bindAddress != null && options.workerPort < 0) {
+            throw new IllegalArgumentException("--bind ne s'applique qu'à --worker");
+        }
+        return options;
+    }
+
+    /** @return scene file path, or null to use the bundled resource */
+    public String getScenePath() { return scenePath; }
+    /** @return number of render threads */
+    public int getThreads() { return threads; }
+    /** @return tile edge length in pixels */
+    public int getTileSize() { return tileSize; }
+    /** @return primary ray packet edge length (1 disables packets) */
+    public int getPacketSize() { return packetSize; }
+    /** @return true to encode the image band by band instead of holding the whole frame */
+    public boolean isStream() { return stream; }
+    /** @return true to profile the render and write cost heatmaps next to the image */
+    public boolean isHeatmap() { return heatmap; }
+    /** @return path of the binary snapshot to write instead of rendering, or null to render */
+    public String getCompilePath() { return compilePath; }
+    /** @return port to serve as a distributed worker on (0 for any free port), or -1 */
+    public int getWorkerPort() { return workerPort; }
+    /** @return local address the worker listens on, or null for every interface */
+    public InetAddress getBindAddress() { return bindAddress; }
+    /** @return addresses of already running workers to render on */
+    public List<InetSocketAddress> getWorkers() { return workers; }
+    /** @return number of local worker processes to start for the render */
+    public int getSpawn() { return spawn; }
+    /** @return seconds a worker may take to load the scene or render a row of tiles before its row is reassigned */
+    public int getWorkerTimeoutSeconds() { return workerTimeoutSeconds; }
+    /** @return directory or manifest of the scenes to render in one process, or null */
+    public String getBatchPath() { return batchPath; }
+    /** @return threads parsing the scenes of a batch */
+    public int getParsers() { return parsers; }
+    /** @return scenes of a batch, or requests of the render service, rendered at once, each on {@link #getThreads()} threads */
+    public int getRenderers() { return renderers; }
+    /** @return threads encoding the images of a batch */
+    public int getEncoders() { return encoders; }
+    /** @return port to serve HTTP render requests on (0 for any free port), or -1 */
+    public int getServePort() { return servePort; }
+    /** @return estimated memory in megabytes the render service may keep cached scenes in */
+    public int getCacheMegabytes() { return cacheMegabytes; }
+    /** @return longest scene text in megabytes the render service accepts */
+    public int getMaxSceneMegabytes() { return maxSceneMegabytes; }
+    /** @return largest estimated memory in megabytes the render service spends compiling one scene */
+    public int getMaxBuildMegabytes() { return maxBuildMegabytes; }
+    /** @return directory of the rendered image cache, or null to always render */
+    public String getImageCachePath() { return imageCachePath; }
+    /** @return size in megabytes beyond which the least recently used cached images are deleted */
+    public int getImageCacheMegabytes() { return imageCacheMegabytes; }
+    /** @return true if the frame is rendered by worker processes */
+    public boolean isDistributed() { return spawn > 0 || !workers.isEmpty(); }
+
+    /**
+     * Returns the value following an option.
+     */
+    private static String value(String[] args, int i, String option) {
+        if (i >= args.length) {
+            throw new IllegalArgumentException("Valeur manquante pour " + option);
+        }
+        return args[i];
+    }
+
+    /**
+     * Parses a TCP port number; 0 lets the system choose one.
+     */
+    private static int port(String option, String value) {
+        int port;
+        try {
+            port = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Port invalide pour " + option + ": " + value, e);
+        }
+        if (port < 0 || port > 65535) {
+            throw new IllegalArgumentException(option + " doit être entre 0 et 65535");
+        }
+        return port;
+    }
+
+    /**
+     * Resolves a host name or IP address.
+     */
+    private static InetAddress address(String option, String value) {
+        try {
+            return InetAddress.getByName(value);
+        } catch (UnknownHostException e) {
+            throw new IllegalArgumentException("Adresse inconnue pour " + option + ": " + value, e);
+        }
+    }
+
+    /**
+     * Parses a HOST:PORT worker address.
+     */
+    private static InetSocketAddress endpoint(String option, String value) {
+        int colon = value.lastIndexOf(':');
+        if (colon <= 0) {
+            throw new IllegalArgumentException("Adresse HOST:PORT attendue pour " + option + ": " + value);
+        }
+        int port = port(option, value.substring(colon + 1));
+        if (port == 0) {
+            throw new IllegalArgumentException(option + " : port 0 invalide dans " + value);
+        }
+        return new InetSocketAddress(value.substring(0, colon), port);
+    }
+
+    /**
+     * Parses a strictly positive integer option value.
+     */
+    private static int positiveInt(String option, String value) {
+        int n;
+        try {
+            n = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Entier invalide pour " + option + ": " + value, e);
+        }
+        if (n <= 0) {
+            throw new IllegalArgumentException(option + " doit être > 0");
+        }
+        return n;
+    }
+}
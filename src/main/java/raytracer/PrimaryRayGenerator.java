@@ -0,0 +1,128 @@
+package raytracer;
+
+import raytracer.math.Point;
+import raytracer.math.Vector;
+
+/**
+ * Generates primary ray directions without intermediate vectors.
+ * The camera basis is read once; the right-vector offset of every column and the
+ * up-vector offset of every row are precomputed, so a direction is one addition
+ * per component followed by a normalization. Results are bit-identical to
+ * {@code u.scale(sx).add(v.scale(sy)).sub(w).normalized()}.
+ */
+public final class PrimaryRayGenerator {
+    private final int width;
+    private final int height;
+    private final Point origin;
+
+    /** u * screenX for each column. */
+    private final double[] columnX, columnY, columnZ;
+    /** v * screenY for each row. */
+    private final double[] rowX, rowY, rowZ;
+    /** Forward vector w (the camera looks along -w). */
+    private final double wx, wy, wz;
+    /** Right and up vectors scaled to one pixel, for subpixel offsets. */
+    private final double pixelUx, pixelUy, pixelUz, pixelVx, pixelVy, pixelVz;
+
+    /**
+     * Precomputes per-column and per-row offsets for the scene camera and image size.
+     *
+     * @param scene scene providing the camera and image dimensions
+     */
+    public PrimaryRayGenerator(Scene scene) {
+        Camera camera = scene.getCamera();
+        Orthonormal basis = new Orthonormal(camera);
+        this.width = scene.getWidth();
+        this.height = scene.getHeight();
+        this.origin = camera.getLookFrom();
+
+        double fieldOfViewRadians = Math.toRadians(camera.getFovDeg());
+        double pixelHeight = 2.0 * Math.tan(fieldOfViewRadians / 2.0) / height;
+        double pixelWidth = pixelHeight * height / width;
+
+        Vector u = basis.u();
+        Vector v = basis.v();
+        Vector w = basis.w();
+
+        columnX = new double[width];
+        columnY = new double[width];
+        columnZ = new double[width];
+        for (int x = 0; x < width; x++) {
+            double screenX = pixelWidth * (x - width / 2.0 + 0.5);
+            columnX[x] = screenX * u.x();
+            columnY[x] = screenX * u.y();
+            columnZ[x] = screenX * u.z();
+        }
+
+        rowX = new double[height];
+        rowY = new double[height];
+        rowZ = new double[height];
+        for (int y = 0; y < height; y++) {
+            double screenY = pixelHeight * (y - height / 2.0 + 0.5);
+            rowX[y] = screenY * v.x();
+            rowY[y] = screenY * v.y();
+            rowZ[y] = screenY * v.z();
+        }
+
+        wx = w.x();
+        wy = w.y();
+        wz = w.z();
+
+        pixelUx = pixelWidth * u.x();
+        pixelUy = pixelWidth * u.y();
+        pixelUz = pixelWidth * u.z();
+        pixelVx = pixelHeight * v.x();
+        pixelVy = pixelHeight * v.y();
+        pixelVz = pixelHeight * v.z();
+    }
+
+    /** @return common origin of all primary rays (the camera position) */
+    public Point origin() { return origin; }
+
+    /**
+     * Builds the primary ray through a pixel center.
+     *
+     * @param pixelX pixel column
+     * @param pixelY pixel row
+     * @return ray in world space
+     */
+    public Ray ray(int pixelX, int pixelY) {
+        double x = (columnX[pixelX] + rowX[pixelY]) - wx;
+        double y = (columnY[pixelX] + rowY[pixelY]) - wy;
+        double z = (columnZ[pixelX] + rowZ[pixelY]) - wz;
+
+        double len = Math.sqrt(x * x + y * y + z * z);
+        if (len == 0.0) {
+            return new Ray(origin, new Vector());
+        }
+        double inverseLength = 1.0 / len;
+        return new Ray(origin, new Vector(inverseLength * x, inverseLength * y, inverseLength * z));
+    }
+
+    /**
+     * Builds a primary ray through a point of a pixel, for supersampling.
+     *
+     * @param pixelX pixel column
+     * @param pixelY pixel row
+     * @param dx     horizontal offset from the pixel center, in pixels (-0.5..0.5)
+     * @param dy     vertical offset from the pixel center, in pixels (-0.5..0.5)
+     * @return ray in world space
+     */
+    public Ray ray(int pixelX, int pixelY, double dx, double dy) {
+        double x = (columnX[pixelX] + rowX[pixelY]) + (dx * pixelUx + dy * pixelVx) - wx;
+        double y = (columnY[pixelX] + rowY[pixelY]) + (dx * pixelUy + dy * pixelVy) - wy;
+        double z = (columnZ[pixelX] + rowZ[pixelY]) + (dx * pixelUz + dy * pixelVz) - wz;
+
+        double len = Math.sqrt(x * x + y * y + z * z);
+        if (len == 0.0) {
+            return new Ray(origin, new Vector());
+        }
+        double inverseLength = 1.0 / len;
+        return new Ray(origin, new Vector(inverseLength * x, inverseLength * y, inverseLength * z));
+    }
+
+    /** @return image width in pixels */
+    public int width() { return width; }
+    /** @return image height in pixels */
+    public int height() { return height; }
+}
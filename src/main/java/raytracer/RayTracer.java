@@ -2,39 +2,51 @@ package raytracer;
 
 import java.util.Optional;
 
+import raytracer.accel.RayPacket;
 import raytracer.math.Color;
-import raytracer.math.Point;
-import raytracer.math.Vector;
+import raytracer.stats.CostProfile;
 
 /**
  * Core ray tracing engine responsible for generating camera rays and shading pixels.
+ * Renders from a {@link Scene#compile() compiled} scene, so later changes to the
+ * scene it was created with are not seen and it is safe to use from several threads.
  */
 public final class RayTracer {
     private final Scene scene;
-    private final Orthonormal cameraBasis;
-    private final double pixelWidth;
-    private final double pixelHeight;
+    private final PrimaryRayGenerator primaryRays;
 
     /**
-     * Initializes camera basis and pixel size from the scene's camera and image dimensions.
+     * Compiles the scene and precomputes primary ray offsets from its camera and
+     * image dimensions.
      *
      * @param scene scene to render
      */
     public RayTracer(Scene scene) {
-        this.scene = scene;
-        this.cameraBasis = new Orthonormal(scene.getCamera());
+        this.scene = scene.compile();
+        this.primaryRays = new PrimaryRayGenerator(this.scene);
+    }
 
-        int imageWidth = scene.getWidth();
-        int imageHeight = scene.getHeight();
-        double fieldOfViewRadians = Math.toRadians(scene.getCamera().getFovDeg());
+    private RayTracer(Scene compiled, PrimaryRayGenerator primaryRays) {
+        this.scene = compiled;
+        this.primaryRays = primaryRays;
+    }
 
-        this.pixelHeight = 2.0 * Math.tan(fieldOfViewRadians / 2.0) / imageHeight;
-        this.pixelWidth = pixelHeight * imageHeight / imageWidth;
+    /**
+     * Returns a ray tracer over the same scene whose queries are recorded by the profile.
+     *
+     * @param profile profile built over the scene's shapes
+     * @return profiled ray tracer
+     */
+    public RayTracer profiled(CostProfile profile) {
+        return new RayTracer(scene.compile(profile), primaryRays);
     }
 
-    /** @return bound scene */
+    /** @return compiled scene being rendered */
     public Scene getScene() { return scene; }
 
+    /** @return primary ray generator for the scene camera */
+    public PrimaryRayGenerator getPrimaryRays() { return primaryRays; }
+
     /**
      * Computes the color for a given pixel by tracing a ray and shading the closest hit.
      *
@@ -54,29 +66,68 @@ public final class RayTracer {
     }
 
     /**
-     * Builds a primary ray through the pixel center using the camera basis and FOV.
+     * Same as {@link #getPixelColor(int, int)}, recording in the profile the time
+     * spent finding the closest hit and shading it.
      *
-     * @param pixelX pixel column
-     * @param pixelY pixel row
-     * @return ray in world space
+     * @param pixelX  pixel column (0..width-1)
+     * @param pixelY  pixel row (0..height-1)
+     * @param profile profile of the scene, see {@link #profiled}
+     * @return pixel color
      */
-    private Ray computeRayForPixel(int pixelX, int pixelY) {
-        int imageWidth = scene.getWidth();
-        int imageHeight = scene.getHeight();
+    public Color getPixelColor(int pixelX, int pixelY, CostProfile profile) {
+        Ray rayThroughPixel = computeRayForPixel(pixelX, pixelY);
+        profile.beginPixel();
+        long start = System.nanoTime();
+        Optional<Intersection> closestIntersectionOpt = scene.findClosestIntersection(rayThroughPixel);
+        long found = System.nanoTime();
+
+        Color color = closestIntersectionOpt.isPresent()
+            ? scene.shade(closestIntersectionOpt.get(), rayThroughPixel)
+            : new Color();
+        long shaded = System.nanoTime();
 
-        double screenX = pixelWidth  * (pixelX - imageWidth  / 2.0 + 0.5);
-        double screenY = pixelHeight * (pixelY - imageHeight / 2.0 + 0.5);
+        profile.endPixel(pixelX, pixelY, found - start, shaded - found,
+            closestIntersectionOpt.map(Intersection::shape).orElse(null));
+        return color;
+    }
 
-        Vector cameraRight  = cameraBasis.u();
-        Vector cameraUp     = cameraBasis.v();
-        Vector cameraForward = cameraBasis.w();
+    /**
+     * Computes the colors of a block of pixels, tracing their primary rays as one packet.
+     * Colors are identical to those of {@link #getPixelColor}.
+     *
+     * @param x0     first pixel column
+     * @param y0     first pixel row
+     * @param w      block width
+     * @param h      block height
+     * @param packet reusable packet with room for w * h rays
+     * @param out    receives the color of pixel (x, y) at index (y - y0) * w + (x - x0)
+     */
+    public void getPixelColors(int x0, int y0, int w, int h, RayPacket packet, Color[] out) {
+        packet.clear();
+        for (int pixelY = y0; pixelY < y0 + h; pixelY++) {
+            for (int pixelX = x0; pixelX < x0 + w; pixelX++) {
+                packet.add(computeRayForPixel(pixelX, pixelY));
+            }
+        }
+        scene.findClosestIntersections(packet);
 
-        Vector rayDirection = cameraRight.scale(screenX)
-                                         .add(cameraUp.scale(screenY))
-                                         .sub(cameraForward)
-                                         .normalized();
+        for (int i = 0; i < packet.size(); i++) {
+            Ray ray = packet.ray(i);
+            Optional<Intersection> closestIntersectionOpt = packet.hit(i).toIntersection(ray);
+            out[i] = closestIntersectionOpt.isPresent()
+                ? scene.shade(closestIntersectionOpt.get(), ray)
+                : new Color();
+        }
+    }
 
-        Point rayOrigin = scene.getCamera().getLookFrom();
-        return new Ray(rayOrigin, rayDirection);
+    /**
+     * Builds a primary ray through the pixel center using the precomputed camera offsets.
+     *
+     * @param pixelX pixel column
+     * @param pixelY pixel row
+     * @return ray in world space
+     */
+    private Ray computeRayForPixel(int pixelX, int pixelY) {
+        return primaryRays.ray(pixelX, pixelY);
     }
 }
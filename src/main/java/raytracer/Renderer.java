@@ -1,50 +1,335 @@
 package raytracer;
 
 import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
 
 import javax.imageio.ImageIO;
 
+import raytracer.accel.RayPacket;
+import raytracer.image.Framebuffer;
+import raytracer.image.ImageSink;
+import raytracer.image.RowSink;
 import raytracer.math.Color;
+import raytracer.stats.CostProfile;
+import raytracer.stats.ImageEncodeEvent;
+import raytracer.stats.TileRenderEvent;
 
 /**
- * Renders a Scene via a RayTracer into a BufferedImage and saves it to disk.
+ * Renders a Scene via a RayTracer into a framebuffer and saves it to disk.
+ * The frame is split into square tiles; with more than one thread the tiles are
+ * rendered on a work-stealing ForkJoinPool. Every pixel is computed independently,
+ * so the image is identical whatever the thread count or tile size.
+ * With a packet size above 1, each tile is traced in square blocks of primary
+ * rays ({@link RayTracer#getPixelColors}), which gives the same image faster.
+ * Scenes with an anti-aliasing budget are traced by an {@link AdaptiveSampler}.
+ * Large frames can be streamed to a {@link RowSink} one band of tiles at a time
+ * instead of being held in a BufferedImage.
+ * Tile rendering and image encoding are reported as Flight Recorder events
+ * ({@link TileRenderEvent}, {@link ImageEncodeEvent}). A diagnostic render
+ * ({@link #renderFrame(CostProfile)}) also records the cost of every pixel.
  */
 public final class Renderer {
+    /** Default tile edge length in pixels. */
+    public static final int DEFAULT_TILE_SIZE = 32;
+    /** Default edge length of primary ray packets (4x4 rays). */
+    public static final int DEFAULT_PACKET_SIZE = 4;
+
     private final RayTracer rayTracer;
+    private final int threads;
+    private final int tileSize;
+    private final int packetSize;
 
-    /** Constructs a renderer bound to a ray tracer. */
+    /** Constructs a single-threaded renderer bound to a ray tracer, tracing rays one by one. */
     public Renderer(RayTracer rayTracer) {
+        this(rayTracer, 1, DEFAULT_TILE_SIZE);
+    }
+
+    /**
+     * Constructs a renderer tracing rays one by one.
+     *
+     * @param rayTracer ray tracer used to compute pixel colors
+     * @param threads   number of worker threads (1 renders on the calling thread)
+     * @param tileSize  tile edge length in pixels
+     * @throws IllegalArgumentException if threads or tileSize is not positive
+     */
+    public Renderer(RayTracer rayTracer, int threads, int tileSize) {
+        this(rayTracer, threads, tileSize, 1);
+    }
+
+    /**
+     * Constructs a renderer bound to a ray tracer.
+     *
+     * @param rayTracer ray tracer used to compute pixel colors
+     * @param threads   number of worker threads (1 renders on the calling thread)
+     * @param tileSize   tile edge length in pixels
+     * @param packetSize edge length of primary ray packets (1 traces rays one by one)
+     * @throws IllegalArgumentException if threads, tileSize or packetSize is not positive
+     */
+    public Renderer(RayTracer rayTracer, int threads, int tileSize, int packetSize) {
+        if (threads <= 0) throw new IllegalArgumentException("threads doit être > 0");
+        if (tileSize <= 0) throw new IllegalArgumentException("tileSize doit être > 0");
+        if (packetSize <= 0) throw new IllegalArgumentException("packetSize doit être > 0");
         this.rayTracer = rayTracer;
+        this.threads = threads;
+        this.tileSize = tileSize;
+        this.packetSize = packetSize;
     }
 
+    /** @return number of worker threads */
+    public int getThreads() { return threads; }
+    /** @return tile edge length in pixels */
+    public int getTileSize() { return tileSize; }
+    /** @return edge length of primary ray packets */
+    public int getPacketSize() { return packetSize; }
+
     /**
      * Renders the current scene to an RGB image.
      * Y axis is flipped for conventional image coordinates.
      *
-     * @return rendered image
+     * @return rendered image, backed by the pixels of {@link #renderFrame()}
      */
     public BufferedImage render() {
+        return renderFrame().toImage();
+    }
+
+    /**
+     * Renders the current scene into a raw framebuffer. Tiles write their pixels
+     * straight into the frame's int array, in image row order.
+     *
+     * @return rendered frame
+     */
+    public Framebuffer renderFrame() {
+        return renderFrame(null);
+    }
+
+    /**
+     * Renders the current scene into a raw framebuffer while recording, for each
+     * pixel, its intersection tests and the time spent in the closest-hit query,
+     * shadow rays and shading. Rays are traced one by one whatever the packet size;
+     * anti-aliased scenes go through the {@link AdaptiveSampler}, which adds the cost
+     * of the extra samples to their pixel. The render goes through a copy of the
+     * scene compiled with the profile.
+     *
+     * @param profile profile built over the scene's shapes and image size, or null
+     *                for a normal render
+     * @return rendered frame, identical to the one of {@link #renderFrame()}
+     */
+    public Framebuffer renderFrame(CostProfile profile) {
+        RayTracer tracer = profile == null ? rayTracer : rayTracer.profiled(profile);
+        Scene scene = tracer.getScene();
+        int imageWidth = scene.getWidth();
+        int imageHeight = scene.getHeight();
+
+        Framebuffer frame = new Framebuffer(imageWidth, imageHeight);
+        int[] pixels = frame.pixels();
+
+        int tilesX = (imageWidth + tileSize - 1) / tileSize;
+        int tilesY = (imageHeight + tileSize - 1) / tileSize;
+
+        ForkJoinPool pool = threads == 1 ? null : new ForkJoinPool(threads);
+        try {
+            forEachTile(pool, tilesX * tilesY, tile -> {
+                int x0 = (tile % tilesX) * tileSize;
+                int y0 = (tile / tilesX) * tileSize;
+                int x1 = Math.min(x0 + tileSize, imageWidth);
+                int y1 = Math.min(y0 + tileSize, imageHeight);
+                // the top row of the tile (pixelY = y1 - 1) is image row height - y1
+                renderBlock(tracer, x0, y0, x1, y1, pixels, (imageHeight - y1) * imageWidth + x0, imageWidth, profile);
+            });
+        } finally {
+            if (pool != null) pool.shutdown();
+        }
+
+        return frame;
+    }
+
+    /**
+     * Renders a range of tiles of the {@link TileGrid} of this renderer's tile size,
+     * on the renderer's threads. Used by distributed workers.
+     *
+     * @param from first tile
+     * @param to   tile after the last one
+     * @param out  receives the blocks of the tiles one after the other, see
+     *             {@link TileGrid#copy}; at least {@code grid.pixels(from, to)} long
+     */
+    public void renderTiles(int from, int to, int[] out) {
+        Scene scene = rayTracer.getScene();
+        TileGrid grid = new TileGrid(scene.getWidth(), scene.getHeight(), tileSize);
+        int[] offsets = new int[to - from];
+        for (int tile = from + 1; tile < to; tile++) {
+            offsets[tile - from] = offsets[tile - from - 1] + grid.pixels(tile - 1);
+        }
+
+        ForkJoinPool pool = threads == 1 ? null : new ForkJoinPool(threads);
+        try {
+            forEachTile(pool, to - from, i -> {
+                int tile = from + i;
+                int x0 = grid.x0(tile), x1 = grid.x1(tile);
+                renderBlock(rayTracer, x0, grid.y0(tile), x1, grid.y1(tile), out, offsets[i], x1 - x0, null);
+            });
+        } finally {
+            if (pool != null) pool.shutdown();
+        }
+    }
+
+    /**
+     * Renders the current scene band by band, from the top of the image down, and
+     * hands each finished band to the sink. A band is one row of tiles, so memory
+     * use is proportional to tileSize x width whatever the image height.
+     * The sink receives the same pixels as {@link #render()} produces; it is not closed.
+     *
+     * @param sink destination of the image rows
+     * @throws IOException if the sink fails
+     */
+    public void render(RowSink sink) throws IOException {
         Scene scene = rayTracer.getScene();
         int imageWidth = scene.getWidth();
         int imageHeight = scene.getHeight();
 
-        BufferedImage image = new BufferedImage(imageWidth, imageHeight, BufferedImage.TYPE_INT_RGB);
+        int tilesX = (imageWidth + tileSize - 1) / tileSize;
+        int[] band = new int[imageWidth * Math.min(tileSize, imageHeight)];
 
-        for (int pixelY = 0; pixelY < imageHeight; pixelY++) {
-            for (int pixelX = 0; pixelX < imageWidth; pixelX++) {
-                Color pixelColor = rayTracer.getPixelColor(pixelX, pixelY);
-                int rgb = pixelColor.toRGB();
+        ForkJoinPool pool = threads == 1 ? null : new ForkJoinPool(threads);
+        try {
+            // the top image row is pixelY = height - 1, so bands go down from there
+            for (int y1 = imageHeight; y1 > 0; y1 -= tileSize) {
+                int y0 = Math.max(0, y1 - tileSize);
+                int bandTop = y1;
+                forEachTile(pool, tilesX, tile -> {
+                    int x0 = tile * tileSize;
+                    int x1 = Math.min(x0 + tileSize, imageWidth);
+                    renderBlock(rayTracer, x0, y0, x1, bandTop, band, x0, imageWidth, null);
+                });
+                sink.writeRows(band, y1 - y0);
+            }
+        } finally {
+            if (pool != null) pool.shutdown();
+        }
+    }
 
-                int flippedY = imageHeight - 1 - pixelY;
-                image.setRGB(pixelX, flippedY, rgb);
+    /**
+     * Renders the current scene straight into an image file, without keeping the
+     * whole frame in memory (see {@link #render(RowSink)}). The format follows the
+     * file extension, see {@link ImageSink#forFile}.
+     *
+     * @param filename output path; parent directories are created if needed
+     * @throws IOException if write fails
+     */
+    public void renderToFile(String filename) throws IOException {
+        Scene scene = rayTracer.getScene();
+        Path outputPath = createParentDirectories(filename);
+        ImageSink sink = ImageSink.forFile(filename, threads);
+        try (RowSink rows = sink.open(new BufferedOutputStream(Files.newOutputStream(outputPath)),
+                scene.getWidth(), scene.getHeight())) {
+            render(rows);
+        }
+        System.out.println("Image écrite : " + outputPath.toAbsolutePath());
+    }
+
+    /**
+     * Runs the action for every tile index in [0, count), on the pool if there is one.
+     */
+    private static void forEachTile(ForkJoinPool pool, int count, IntConsumer action) {
+        if (pool == null) {
+            for (int tile = 0; tile < count; tile++) {
+                action.accept(tile);
+            }
+        } else {
+            pool.invoke(new TileRangeTask(action, 0, count));
+        }
+    }
+
+    /**
+     * Renders the pixels [x0, x1) x [y0, y1) into a buffer whose rows are in image
+     * order (flipped Y): pixel (x, y) goes to out[offset + (y1 - 1 - y) * stride + (x - x0)],
+     * with the given ray tracer. With a cost profile, pixels are traced one by one and measured.
+     */
+    private void renderBlock(RayTracer tracer, int x0, int y0, int x1, int y1, int[] out, int offset, int stride,
+                             CostProfile profile) {
+        TileRenderEvent event = new TileRenderEvent(x0, y0, x1 - x0, y1 - y0);
+        event.begin();
+        if (tracer.getScene().getAaSamples() > 1) {
+            new AdaptiveSampler(tracer, profile).renderBlock(x0, y0, x1, y1, out, offset, stride);
+        } else if (profile != null) {
+            for (int pixelY = y0; pixelY < y1; pixelY++) {
+                int row = offset + (y1 - 1 - pixelY) * stride - x0;
+                for (int pixelX = x0; pixelX < x1; pixelX++) {
+                    out[row + pixelX] = tracer.getPixelColor(pixelX, pixelY, profile).toRGB();
+                }
+            }
+        } else if (packetSize > 1) {
+            renderPackets(tracer, x0, y0, x1, y1, out, offset, stride);
+        } else {
+            for (int pixelY = y0; pixelY < y1; pixelY++) {
+                int row = offset + (y1 - 1 - pixelY) * stride - x0;
+                for (int pixelX = x0; pixelX < x1; pixelX++) {
+                    Color pixelColor = tracer.getPixelColor(pixelX, pixelY);
+                    out[row + pixelX] = pixelColor.toRGB();
+                }
             }
         }
+        event.commit();
+    }
+
+    /**
+     * Block counterpart of {@link #renderBlock} tracing packetSize x packetSize rays at a time
+     * with the given ray tracer.
+     */
+    private void renderPackets(RayTracer tracer, int x0, int y0, int x1, int y1, int[] out, int offset, int stride) {
+        RayPacket packet = new RayPacket(packetSize * packetSize);
+        Color[] colors = new Color[packetSize * packetSize];
+        for (int by = y0; by < y1; by += packetSize) {
+            int bh = Math.min(packetSize, y1 - by);
+            for (int bx = x0; bx < x1; bx += packetSize) {
+                int bw = Math.min(packetSize, x1 - bx);
+                tracer.getPixelColors(bx, by, bw, bh, packet, colors);
+                for (int j = 0; j < bh; j++) {
+                    int row = offset + (y1 - 1 - (by + j)) * stride - x0;
+                    for (int i = 0; i < bw; i++) {
+                        out[row + bx + i] = colors[j * bw + i].toRGB();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Fork/join task running a tile action over a contiguous range of tiles, split
+     * in halves until a single tile remains so idle workers can steal the other half.
+     */
+    private static final class TileRangeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final IntConsumer action;
+        private final int from;
+        private final int to;
+
+        TileRangeTask(IntConsumer action, int from, int to) {
+            this.action = action;
+            this.from = from;
+            this.to = to;
+        }
 
-        return image;
+        @Override
+        protected void compute() {
+            if (to - from <= 1) {
+                if (from < to) {
+                    action.accept(from);
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new TileRangeTask(action, from, mid),
+                      new TileRangeTask(action, mid, to));
+        }
     }
 
     /**
@@ -55,12 +340,52 @@ public final class Renderer {
      * @throws IOException if write fails
      */
     public void save(BufferedImage image, String filename) throws IOException {
+        Path outputPath = createParentDirectories(filename);
+        ImageEncodeEvent event = new ImageEncodeEvent(filename, image.getWidth(), image.getHeight());
+        event.begin();
+        ImageIO.write(image, "png", outputPath.toFile());
+        event.commit();
+        System.out.println("Image écrite : " + outputPath.toAbsolutePath());
+    }
+
+    /**
+     * Encodes a frame to the given filename, in the format given by its extension
+     * (PNG, QOI or PPM, see {@link ImageSink#forFile}); PNG strips are compressed
+     * on the renderer's threads. Parent directories are created if needed.
+     *
+     * @param frame    frame to save
+     * @param filename output path
+     * @throws IOException if write fails
+     */
+    public void save(Framebuffer frame, String filename) throws IOException {
+        save(frame, filename, threads);
+    }
+
+    /**
+     * Same as {@link #save(Framebuffer, String)} for a frame rendered elsewhere.
+     *
+     * @param frame    frame to save
+     * @param filename output path
+     * @param threads  threads compressing PNG strips
+     * @throws IOException if write fails
+     */
+    public static void save(Framebuffer frame, String filename, int threads) throws IOException {
+        Path outputPath = createParentDirectories(filename);
+        ImageEncodeEvent event = new ImageEncodeEvent(filename, frame.width(), frame.height());
+        event.begin();
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(outputPath))) {
+            ImageSink.forFile(filename, threads).write(frame, out);
+        }
+        event.commit();
+        System.out.println("Image écrite : " + outputPath.toAbsolutePath());
+    }
+
+    private static Path createParentDirectories(String filename) throws IOException {
         Path outputPath = Paths.get(filename);
         Path parentDirectory = outputPath.getParent();
         if (parentDirectory != null) {
             Files.createDirectories(parentDirectory);
         }
-        ImageIO.write(image, "png", outputPath.toFile());
-        System.out.println("Image écrite : " + outputPath.toAbsolutePath());
+        return outputPath;
     }
 }
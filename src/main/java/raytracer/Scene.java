@@ -4,48 +4,334 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
+import raytracer.accel.Accelerator;
+import raytracer.accel.Occluder;
+import raytracer.accel.RayPacket;
+import raytracer.accel.ShadowMap;
 import raytracer.light.AbstractLight;
 import raytracer.light.DirectionalLight;
+import raytracer.light.LightTree;
 import raytracer.light.PointLight;
 import raytracer.math.Color;
 import raytracer.math.Point;
 import raytracer.math.Vector;
 import raytracer.shape.Shape;
+import raytracer.stats.CostProfile;
+import raytracer.stats.RenderStats;
 
 /**
  * Scene container holding camera, output settings, ambient light, lights, and shapes.
  * Provides closest-hit intersection search and shading routines.
+ * <p>
+ * A scene is filled through its setters, then {@link #compile() compiled} into an
+ * immutable copy that {@link RayTracer} renders from: the shape and light lists are
+ * frozen, the {@link Accelerator} is built once, and every setter throws. A compiled
+ * scene can be shared by any number of render threads.
+ * Until then, ray queries go through an accelerator built lazily on first use and
+ * discarded whenever a shape is added. Shadow queries first test, per render
+ * thread, the primitive that last blocked the same light.
+ * A scene compiled with a {@link CostProfile} queries its instrumented shapes and
+ * times shadow rays.
+ * <p>
+ * With {@link #setLightSamples light sampling} on and more point lights than samples,
+ * point lights are not all evaluated at each hit: a {@link LightTree} picks the given
+ * number of them in proportion to their possible contribution, and their shading is
+ * divided by the probability of the pick. The estimate is unbiased and costs
+ * O(samples · log lights) per hit; the pick is seeded by the hit position, so images
+ * are reproducible. Directional lights are always all evaluated.
+ * <p>
+ * With {@link #setShadowMapResolution shadow maps} on, compiling the scene also builds
+ * a {@link ShadowMap} for each directional light, and shadow rays towards that light
+ * only test the primitives the map lists under their origin.
+ * <p>
+ * An {@link Animation animated} scene is rendered {@link #frame frame} by frame: each
+ * frame is a compiled copy with the camera of the frame and the moving shapes
+ * translated, whose acceleration structure is refitted from the compiled scene's
+ * instead of being rebuilt.
  */
 public final class Scene {
+    /** Offset of shadow ray origins along the normal, and lower bound of occluder distances. */
+    private static final double SHADOW_EPS = 1e-4;
+    /** Default colour difference above which neighbouring pixels are supersampled. */
+    public static final double DEFAULT_AA_THRESHOLD = 0.1;
+    /** Half an 8-bit quantization step: contributions below it never change a pixel. */
+    private static final double VISIBLE_CONTRIBUTION = 0.5 / 255.0;
+
     private int width;
     private int height;
     private Camera camera;
     private String output = "output.png";
     private Color ambient = new Color();
-    private final List<AbstractLight> lights = new ArrayList<>();
-    private final List<Shape> shapes = new ArrayList<>();
+    private int maxDepth = 1;
+    private int aaSamples = 1;
+    private double aaThreshold = DEFAULT_AA_THRESHOLD;
+    private int lightSamples;
+    private int shadowMapResolution;
+    private Animation animation;
+    private final List<AbstractLight> lights;
+    private final List<Shape> shapes;
+    private volatile Accelerator accelerator;
+    private volatile LightTree lightTree;
+    /** Shadow map of each light index (null for point lights), or null if disabled. */
+    private final ShadowMap[] shadowMaps;
+    private final CostProfile costProfile;
+    private final boolean compiled;
+    /** Last occluder found for each light index, per render thread. */
+    private final ThreadLocal<Occluder[]> lastOccluders = ThreadLocal.withInitial(() -> new Occluder[0]);
+
+    /** Creates an empty, mutable scene. */
+    public Scene() {
+        lights = new ArrayList<>();
+        shapes = new ArrayList<>();
+        costProfile = null;
+        compiled = false;
+        shadowMaps = null;
+    }
+
+    /**
+     * Compiled copy of a scene, sharing its camera, lights and shapes.
+     */
+    private Scene(Scene source, CostProfile costProfile) {
+        this(source, costProfile, source.camera, source.shapes,
+            source.costProfile == null ? source.accelerator : null, source.shadowMaps);
+    }
+
+    /**
+     * Compiled copy of a scene with the given camera and shapes, reusing the given
+     * acceleration structure and shadow maps if present.
+     */
+    private Scene(Scene source, CostProfile costProfile, Camera camera, List<Shape> shapes,
+                  Accelerator prebuilt, ShadowMap[] prebuiltShadowMaps) {
+        width = source.width;
+        height = source.height;
+        this.camera = camera;
+        output = source.output;
+        ambient = source.ambient;
+        maxDepth = source.maxDepth;
+        aaSamples = source.aaSamples;
+        aaThreshold = source.aaThreshold;
+        lightSamples = source.lightSamples;
+        shadowMapResolution = source.shadowMapResolution;
+        animation = source.animation;
+        lights = List.copyOf(source.lights);
+        this.shapes = List.copyOf(shapes);
+        this.costProfile = costProfile;
+        compiled = true;
+
+        if (costProfile == null && prebuilt != null) {
+            accelerator = prebuilt;
+        } else {
+            accelerator = new Accelerator(costProfile == null ? this.shapes : costProfile.instrumentedShapes());
+        }
+        if (lightSamples > 0) {
+            lightTree = new LightTree(lights);
+        }
+        if (shadowMapResolution == 0) {
+            shadowMaps = null;
+        } else if (prebuiltShadowMaps != null) {
+            shadowMaps = prebuiltShadowMaps;
+        } else {
+            // built over the plain shapes, which are those intersection records name
+            Accelerator plain = costProfile == null ? accelerator : source.getAccelerator();
+            shadowMaps = new ShadowMap[lights.size()];
+            for (int i = 0; i < lights.size(); i++) {
+                if (lights.get(i) instanceof DirectionalLight dirLight) {
+                    shadowMaps[i] = new ShadowMap(plain, dirLight.towardLight(), shadowMapResolution);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns an immutable, render-ready copy of this scene: lights and shapes are
+     * frozen and the acceleration structure is built (or reused if already built).
+     * The shapes themselves are shared and must not be modified afterwards.
+     *
+     * @return compiled scene, this scene if it is already compiled without profile
+     */
+    public Scene compile() {
+        return compiled && costProfile == null ? this : new Scene(this, null);
+    }
+
+    /**
+     * Returns a compiled copy of this scene whose queries are recorded by the profile.
+     *
+     * @param costProfile profile built over this scene's shapes
+     * @return compiled, profiled scene
+     */
+    public Scene compile(CostProfile costProfile) {
+        return new Scene(this, costProfile);
+    }
+
+    /**
+     * Returns the compiled scene of one frame of the animation: the camera is the
+     * frame's, moving shapes are translated and the acceleration structure is
+     * refitted from this scene's. Shadow maps are built again only if shapes move.
+     *
+     * @param frame frame number, from 0 to {@link Animation#frames()} - 1
+     * @return compiled scene of the frame, without animation
+     * @throws IllegalArgumentException if the frame is out of the animation
+     */
+    public Scene frame(int frame) {
+        int frames = animation == null ? 1 : animation.frames();
+        if (frame < 0 || frame >= frames) {
+            throw new IllegalArgumentException("Image " + frame + " hors de l'animation (" + frames + " images)");
+        }
+        Scene base = compile();
+        if (animation == null) {
+            return base;
+        }
+        List<Shape> moved = animation.shapesAt(base.shapes, frame);
+        Accelerator refitted = moved == base.shapes ? base.accelerator : base.accelerator.refit(moved);
+        Scene copy = new Scene(base, null, animation.cameraAt(frame), moved, refitted,
+            moved == base.shapes ? base.shadowMaps : null);
+        copy.animation = null;
+        return copy;
+    }
+
+    /**
+     * Returns this scene seen through another view: the image size, camera, output
+     * and sampling settings (reflection depth, anti-aliasing) come from the view,
+     * while the lights, shapes, acceleration structure and shadow maps are shared.
+     * Used to render cached geometry from a new camera without building anything.
+     *
+     * @param view scene holding the view settings; its lights and shapes are ignored
+     * @return compiled copy of this scene with the view's settings
+     */
+    public Scene withView(Scene view) {
+        Scene base = compile();
+        Scene copy = new Scene(base, null, view.camera, base.shapes, base.accelerator, base.shadowMaps);
+        copy.width = view.width;
+        copy.height = view.height;
+        copy.output = view.output;
+        copy.maxDepth = view.maxDepth;
+        copy.aaSamples = view.aaSamples;
+        copy.aaThreshold = view.aaThreshold;
+        return copy;
+    }
+
+    /** @return true if this scene was produced by {@link #compile()} and cannot change */
+    public boolean isCompiled() { return compiled; }
+
+    private void checkMutable() {
+        if (compiled) {
+            throw new IllegalStateException("Scène compilée : modification impossible");
+        }
+    }
 
     public int getWidth() { return width; }
-    public void setWidth(int width) { this.width = width; }
+    public void setWidth(int width) { checkMutable(); this.width = width; }
     public int getHeight() { return height; }
-    public void setHeight(int height) { this.height = height; }
+    public void setHeight(int height) { checkMutable(); this.height = height; }
 
     public Camera getCamera() { return camera; }
-    public void setCamera(Camera camera) { this.camera = camera; }
+    public void setCamera(Camera camera) { checkMutable(); this.camera = camera; }
 
     public String getOutput() { return output; }
-    public void setOutput(String output) { this.output = output; }
+    public void setOutput(String output) { checkMutable(); this.output = output; }
 
     public Color getAmbient() { return ambient; }
-    public void setAmbient(Color ambient) { this.ambient = ambient; }
+    public void setAmbient(Color ambient) { checkMutable(); this.ambient = ambient; }
+
+    /** @return maximum number of surfaces along a path, 1 for no reflection */
+    public int getMaxDepth() { return maxDepth; }
+    public void setMaxDepth(int maxDepth) { checkMutable(); this.maxDepth = maxDepth; }
+    /** @return maximum samples per pixel of adaptive anti-aliasing (1 disables it) */
+    public int getAaSamples() { return aaSamples; }
+    public void setAaSamples(int aaSamples) { checkMutable(); this.aaSamples = aaSamples; }
+    /** @return largest colour component difference tolerated between neighbouring pixels */
+    public double getAaThreshold() { return aaThreshold; }
+    public void setAaThreshold(double aaThreshold) { checkMutable(); this.aaThreshold = aaThreshold; }
+    /** @return point lights sampled per hit, 0 to evaluate every light */
+    public int getLightSamples() { return lightSamples; }
+    public void setLightSamples(int lightSamples) { checkMutable(); this.lightSamples = lightSamples; }
+    /** @return texels per side of the directional lights' shadow maps, 0 if disabled */
+    public int getShadowMapResolution() { return shadowMapResolution; }
+    public void setShadowMapResolution(int shadowMapResolution) {
+        checkMutable();
+        this.shadowMapResolution = shadowMapResolution;
+    }
+
+    /** @return memory held by the shadow maps of this compiled scene, in bytes, 0 without maps */
+    public long getShadowMapBytes() {
+        long bytes = 0;
+        if (shadowMaps != null) {
+            for (ShadowMap map : shadowMaps) {
+                if (map != null) bytes += map.sizeBytes();
+            }
+        }
+        return bytes;
+    }
 
+    /** @return frame sequence of the scene, or null if it is a still image */
+    public Animation getAnimation() { return animation; }
+    public void setAnimation(Animation animation) { checkMutable(); this.animation = animation; }
+
+    /** @return lights, unmodifiable once compiled */
     public List<AbstractLight> getLights() { return lights; }
+    /** @return shapes in declaration order, unmodifiable once compiled */
     public List<Shape> getShapes() { return shapes; }
 
     /** Adds a light to the scene. */
-    public void addLight(AbstractLight l) { lights.add(l); }
+    public void addLight(AbstractLight l) {
+        checkMutable();
+        lights.add(l);
+        lightTree = null;
+    }
     /** Adds a shape to the scene. */
-    public void addShape(Shape s) { shapes.add(s); }
+    public void addShape(Shape s) {
+        checkMutable();
+        shapes.add(s);
+        accelerator = null;
+    }
+
+    /** @return cost profile recording the queries of this compiled scene, or null */
+    public CostProfile getCostProfile() { return costProfile; }
+
+    /**
+     * Returns the acceleration structure over the current shapes, building it if needed.
+     * Safe to call from several render threads.
+     *
+     * @return acceleration structure
+     */
+    public Accelerator getAccelerator() {
+        Accelerator acc = accelerator;
+        if (acc == null) {
+            synchronized (this) {
+                acc = accelerator;
+                if (acc == null) {
+                    acc = new Accelerator(shapes);
+                    accelerator = acc;
+                }
+            }
+        }
+        return acc;
+    }
+
+    private LightTree getLightTree() {
+        LightTree tree = lightTree;
+        if (tree == null) {
+            synchronized (this) {
+                tree = lightTree;
+                if (tree == null) {
+                    tree = new LightTree(lights);
+                    lightTree = tree;
+                }
+            }
+        }
+        return tree;
+    }
+
+    /**
+     * Installs a prebuilt acceleration structure over the current shapes, used
+     * until a shape is added.
+     *
+     * @param accelerator structure built over {@link #getShapes()}
+     */
+    public synchronized void setAccelerator(Accelerator accelerator) {
+        checkMutable();
+        this.accelerator = accelerator;
+    }
 
     /**
      * Finds the closest intersection of the given ray with any shape.
@@ -54,83 +340,233 @@ public final class Scene {
      * @return optional closest hit, or empty if none
      */
     public Optional<Intersection> findClosestIntersection(Ray ray) {
-        Intersection closest = null;
-
-        for (Shape shape : shapes) {
-            var hitOpt = shape.intersect(ray);
-            if (hitOpt.isPresent()) {
-                Intersection hit = hitOpt.get();
-                if (closest == null || hit.t() < closest.t()) {
-                    closest = hit;
-                }
-            }
-        }
-        return Optional.ofNullable(closest);
+        return getAccelerator().closestHit(ray);
+    }
+
+    /**
+     * Finds the closest intersection of every ray of a packet; read each result with
+     * {@code packet.hit(i).toIntersection(packet.ray(i))}.
+     *
+     * @param packet rays to test, with fresh hit records
+     */
+    public void findClosestIntersections(RayPacket packet) {
+        getAccelerator().closestHits(packet);
     }
 
     /**
      * Computes shaded color at an intersection using ambient + Lambert + Blinn-Phong,
-     * skipping contributions from lights that are shadowed.
+     * skipping contributions from lights that are shadowed or facing away, then adds
+     * the specular reflections of the surface up to the scene's max depth.
+     * <p>
+     * Reflections are followed in a loop: each bounce adds its local shading times
+     * the product of the specular colors met so far, and the path ends as soon as
+     * that product cannot change an 8-bit channel anymore. Lights whose weighted
+     * contribution at a bounce is below the same threshold cast no shadow ray.
      *
      * @param isect   intersection data
      * @param viewRay ray from camera to the hit
      * @return shaded color
      */
     public Color shade(Intersection isect, Ray viewRay) {
+        Color result = shadeLocal(isect, viewRay, 0.0);
+
+        Color weight = isect.specular();
+        Intersection hit = isect;
+        Ray ray = viewRay;
+        for (int depth = 1; depth < maxDepth && maxComponent(weight) >= VISIBLE_CONTRIBUTION; depth++) {
+            Ray reflected = reflect(hit, ray);
+            Optional<Intersection> next = findClosestIntersection(reflected);
+            if (next.isEmpty()) {
+                break;
+            }
+            hit = next.get();
+            ray = reflected;
+            Color local = shadeLocal(hit, ray, VISIBLE_CONTRIBUTION / maxComponent(weight));
+            result = result.add(weight.schur(local));
+            weight = weight.schur(hit.specular());
+        }
+        return result;
+    }
+
+    /**
+     * Ambient + Lambert + Blinn-Phong shading at one intersection, without reflections.
+     *
+     * @param cutoff lights whose unshadowed contribution has no component reaching
+     *               this value are skipped (0 keeps every lit light)
+     */
+    private Color shadeLocal(Intersection isect, Ray viewRay, double cutoff) {
         Color result = ambient;
         Vector eyeDir = viewRay.direction().scale(-1.0).normalized();
+        LightTree tree = lightSamples > 0 ? getLightTree() : null;
+        boolean sampled = tree != null && tree.size() > lightSamples;
 
-        for (AbstractLight light : lights) {
-            if (isInShadow(isect, light)) {
-                continue;
+        if (!sampled) {
+            for (int i = 0; i < lights.size(); i++) {
+                result = addLight(result, isect, lights.get(i), i, eyeDir, cutoff, 1.0);
+            }
+        } else {
+            // only the lights the tree does not sample, so the cost does not grow with point lights
+            for (int k = 0; k < tree.otherCount(); k++) {
+                int i = tree.other(k);
+                result = addLight(result, isect, lights.get(i), i, eyeDir, cutoff, 1.0);
             }
+            // one random offset, then one pick per stratum of [0, 1)
+            double offset = uniform(hashPosition(isect.position()));
+            for (int s = 0; s < lightSamples; s++) {
+                LightTree.Sample sample = tree.sample(isect.position(), isect.normal(), (s + offset) / lightSamples);
+                if (sample != null) {
+                    int i = sample.light();
+                    double weight = 1.0 / (sample.probability() * lightSamples);
+                    result = addLight(result, isect, lights.get(i), i, eyeDir, cutoff, weight);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Adds the Lambert and Blinn-Phong terms of one light, scaled by a weight, unless
+     * the light is shadowed, faces away or stays under the cutoff.
+     *
+     * @return result plus the light's contribution, or result unchanged
+     */
+    private Color addLight(Color result, Intersection isect, AbstractLight light, int lightIndex,
+                           Vector eyeDir, double cutoff, double weight) {
+        Vector lightDir = isect.directionTo(light);
+        if (lightDir == null) {
+            return result;
+        }
+        Color diffuseTerm = isect.lambert(light, lightDir);
+        Color specularTerm = isect.blinnPhong(light, lightDir, eyeDir);
+        // a light behind the surface adds nothing, shadowed or not
+        double contribution = Math.max(maxComponent(diffuseTerm), maxComponent(specularTerm));
+        if (contribution == 0.0 || contribution * weight < cutoff) {
+            return result;
+        }
 
-            Color diffuseTerm = isect.lambert(light);
-            Color specularTerm = isect.blinnPhong(light, eyeDir);
+        boolean shadowed;
+        CostProfile profile = costProfile;
+        if (profile == null) {
+            shadowed = isInShadow(isect, light, lightDir, lightIndex);
+        } else {
+            long start = System.nanoTime();
+            shadowed = isInShadow(isect, light, lightDir, lightIndex);
+            profile.addShadowNanos(System.nanoTime() - start);
+        }
+        if (shadowed) {
+            return result;
+        }
 
-            result = result.add(diffuseTerm).add(specularTerm);
+        if (weight != 1.0) {
+            diffuseTerm = diffuseTerm.scale(weight);
+            specularTerm = specularTerm.scale(weight);
         }
+        return result.add(diffuseTerm).add(specularTerm);
+    }
 
-        return result;
+    /** Mixes the bits of a position into a seed (SplitMix64 finalizer). */
+    private static long hashPosition(Point p) {
+        long h = Double.doubleToLongBits(p.x());
+        h = h * 0x9E3779B97F4A7C15L + Double.doubleToLongBits(p.y());
+        h = h * 0x9E3779B97F4A7C15L + Double.doubleToLongBits(p.z());
+        h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+        return h ^ (h >>> 31);
+    }
+
+    /** @return uniform number in [0, 1) from the top 53 bits of a seed */
+    private static double uniform(long seed) {
+        return (seed >>> 11) * 0x1.0p-53;
+    }
+
+    /**
+     * Builds the mirror reflection of a ray at an intersection, starting slightly
+     * off the surface on the side the ray came from.
+     */
+    private static Ray reflect(Intersection isect, Ray ray) {
+        Vector d = ray.direction();
+        Vector n = isect.normal();
+        double cos = d.dot(n);
+        Vector direction = d.sub(n.scale(2.0 * cos));
+        Vector offset = n.scale(cos > 0.0 ? -SHADOW_EPS : SHADOW_EPS);
+        return new Ray(isect.position().add(offset), direction);
+    }
+
+    private static double maxComponent(Color c) {
+        return Math.max(c.r(), Math.max(c.g(), c.b()));
     }
 
     /**
      * Tests whether the intersection is shadowed with respect to a given light.
-     * Casts a shadow ray slightly offset along the surface normal to avoid self-intersection.
+     * Casts a shadow ray slightly offset along the surface normal to avoid self-intersection,
+     * through the light's shadow map if it has one.
      *
-     * @param isect intersection
-     * @param light light source
+     * @param isect      intersection
+     * @param light      light source
+     * @param lightDir   unit direction towards the light, from {@link Intersection#directionTo}
+     * @param lightIndex index of the light, used as occluder cache slot
      * @return true if a closer occluder exists along the light direction
      */
-    private boolean isInShadow(Intersection isect, AbstractLight light) {
-        Vector lightDir;
+    private boolean isInShadow(Intersection isect, AbstractLight light, Vector lightDir, int lightIndex) {
         double maxT = Double.POSITIVE_INFINITY;
-
-        if (light instanceof DirectionalLight dirLight) {
-            lightDir = dirLight.direction().scale(-1.0).normalized();
-        } else if (light instanceof PointLight pointLight) {
-            Vector toLight = Vector.fromPoints(isect.position(), pointLight.origin());
-            maxT = toLight.length();
-            lightDir = toLight.normalized();
-        } else {
-            return false;
+        if (light instanceof PointLight pointLight) {
+            maxT = Vector.fromPoints(isect.position(), pointLight.origin()).length();
         }
 
-        double eps = 1e-4;
-        Point origin = isect.position().add(isect.normal().scale(eps));
+        Point origin = isect.position().add(isect.normal().scale(SHADOW_EPS));
 
         Ray shadowRay = new Ray(origin, lightDir);
 
-        for (Shape s : shapes) {
-            Optional<Intersection> hitOpt = s.intersect(shadowRay);
-            if (hitOpt.isPresent()) {
-                double t = hitOpt.get().t();
-                if (t > eps && t < maxT - eps) {
-                    return true;
-                }
+        ShadowMap map = shadowMaps == null ? null : shadowMaps[lightIndex];
+        if (map != null) {
+            boolean shadowed = map.occluded(shadowRay, SHADOW_EPS, maxT - SHADOW_EPS);
+            RenderStats.countShadowMapLookup(shadowed);
+            return shadowed;
+        }
+        return occluded(shadowRay, maxT - SHADOW_EPS, lightIndex);
+    }
+
+    /**
+     * Tests whether any shape blocks the ray at a distance strictly inside (SHADOW_EPS, maxT).
+     * Stops at the first blocker and never builds intersection records.
+     *
+     * @param ray  shadow ray
+     * @param maxT upper bound of blocking distances (exclusive)
+     * @return true if the ray is blocked
+     */
+    public boolean occluded(Ray ray, double maxT) {
+        boolean occluded = getAccelerator().findOccluder(ray, SHADOW_EPS, maxT) != null;
+        RenderStats.countShadowRay(occluded);
+        return occluded;
+    }
+
+    /**
+     * Same as {@link #occluded(Ray, double)}, testing first the primitive that last
+     * blocked the given light on the calling thread.
+     */
+    private boolean occluded(Ray ray, double maxT, int lightIndex) {
+        Occluder[] cache = lastOccluders.get();
+        if (cache.length < lights.size()) {
+            cache = new Occluder[lights.size()];
+            lastOccluders.set(cache);
+        }
+
+        Occluder cached = cache[lightIndex];
+        if (cached != null) {
+            RenderStats.countTests(1);
+            if (cached.occludes(ray, SHADOW_EPS, maxT)) {
+                RenderStats.countShadowRay(true);
+                return true;
             }
         }
 
+        Occluder occluder = getAccelerator().findOccluder(ray, SHADOW_EPS, maxT);
+        RenderStats.countShadowRay(occluder != null);
+        if (occluder != null) {
+            cache[lightIndex] = occluder;
+            return true;
+        }
         return false;
     }
 }
@@ -0,0 +1,99 @@
+package raytracer;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import raytracer.image.Framebuffer;
+
+/**
+ * Renders every frame of an {@link Animation animated} scene in one process.
+ * <p>
+ * The scene is parsed and its BVH built once; each frame then only refits the
+ * hierarchy (see {@link Scene#frame}). While frame N+1 renders on the render threads,
+ * frame N is encoded and written on a single background thread. At most one frame
+ * waits for encoding, so memory holds two framebuffers whatever the sequence length.
+ * Frame files are named by {@link Animation#frameOutput}.
+ */
+public final class SequenceRenderer {
+    private final Scene scene;
+    private final int threads;
+    private final int tileSize;
+    private final int packetSize;
+
+    /**
+     * Constructs a sequence renderer.
+     *
+     * @param scene      animated scene; a scene without animation gives one frame
+     * @param threads    render threads
+     * @param tileSize   tile edge length in pixels
+     * @param packetSize primary ray packet edge length
+     */
+    public SequenceRenderer(Scene scene, int threads, int tileSize, int packetSize) {
+        this.scene = scene.compile();
+        this.threads = threads;
+        this.tileSize = tileSize;
+        this.packetSize = packetSize;
+    }
+
+    /** @return number of frames of the sequence */
+    public int frames() {
+        Animation animation = scene.getAnimation();
+        return animation == null ? 1 : animation.frames();
+    }
+
+    /**
+     * Renders and writes every frame.
+     *
+     * @return render time of each frame in nanoseconds, encoding excluded
+     * @throws IOException if a frame cannot be written
+     */
+    public long[] render() throws IOException {
+        int frames = frames();
+        long[] renderNanos = new long[frames];
+        ExecutorService encoder = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "frame-encoder");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            Future<?> pending = null;
+            for (int f = 0; f < frames; f++) {
+                long start = System.nanoTime();
+                Scene frameScene = scene.frame(f);
+                Framebuffer frame = new Renderer(new RayTracer(frameScene), threads, tileSize, packetSize).renderFrame();
+                renderNanos[f] = System.nanoTime() - start;
+
+                await(pending);
+                String output = Animation.frameOutput(scene.getOutput(), f);
+                pending = encoder.submit(() -> {
+                    Renderer.save(frame, output, 1);
+                    return null;
+                });
+            }
+            await(pending);
+        } finally {
+            encoder.shutdownNow();
+        }
+        return renderNanos;
+    }
+
+    /**
+     * Waits for the previous frame to be written, rethrowing its failure.
+     */
+    private static void await(Future<?> pending) throws IOException {
+        if (pending == null) return;
+        try {
+            pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Écriture de la séquence interrompue", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) throw io;
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw new IOException(e.getCause());
+        }
+    }
+}
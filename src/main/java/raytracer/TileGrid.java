@@ -0,0 +1,80 @@
+package raytracer;
+
+import raytracer.image.Framebuffer;
+
+/**
+ * Split of an image into square tiles, numbered row by row from the bottom-left tile
+ * (pixel row 0 is the bottom of the image), as rendered by {@link Renderer}.
+ * A tile's pixels travel as a block of its rows in image order, top row first.
+ */
+public final class TileGrid {
+    private final int width;
+    private final int height;
+    private final int tileSize;
+    private final int tilesX;
+    private final int tilesY;
+
+    /**
+     * Constructs the grid of an image.
+     *
+     * @param width    image width in pixels
+     * @param height   image height in pixels
+     * @param tileSize tile edge length in pixels
+     */
+    public TileGrid(int width, int height, int tileSize) {
+        this.width = width;
+        this.height = height;
+        this.tileSize = tileSize;
+        this.tilesX = (width + tileSize - 1) / tileSize;
+        this.tilesY = (height + tileSize - 1) / tileSize;
+    }
+
+    /** @return number of tiles */
+    public int count() { return tilesX * tilesY; }
+    /** @return number of tiles per row */
+    public int tilesX() { return tilesX; }
+
+    /** @return first pixel column of the tile */
+    public int x0(int tile) { return (tile % tilesX) * tileSize; }
+    /** @return first pixel row of the tile */
+    public int y0(int tile) { return (tile / tilesX) * tileSize; }
+    /** @return pixel column after the tile */
+    public int x1(int tile) { return Math.min(x0(tile) + tileSize, width); }
+    /** @return pixel row after the tile */
+    public int y1(int tile) { return Math.min(y0(tile) + tileSize, height); }
+
+    /** @return number of pixels of the tile */
+    public int pixels(int tile) {
+        return (x1(tile) - x0(tile)) * (y1(tile) - y0(tile));
+    }
+
+    /** @return number of pixels of the tiles [from, to) */
+    public int pixels(int from, int to) {
+        int n = 0;
+        for (int tile = from; tile < to; tile++) {
+            n += pixels(tile);
+        }
+        return n;
+    }
+
+    /**
+     * Copies the blocks of the tiles [from, to), stored one after the other, into a frame.
+     *
+     * @param from   first tile
+     * @param to     tile after the last one
+     * @param blocks tile blocks, as filled by {@link Renderer#renderTiles}
+     * @param frame  frame of the grid's size
+     */
+    public void copy(int from, int to, int[] blocks, Framebuffer frame) {
+        int[] pixels = frame.pixels();
+        int offset = 0;
+        for (int tile = from; tile < to; tile++) {
+            int x0 = x0(tile), w = x1(tile) - x0, rows = y1(tile) - y0(tile);
+            int top = height - y1(tile);
+            for (int r = 0; r < rows; r++) {
+                System.arraycopy(blocks, offset + r * w, pixels, (top + r) * width + x0, w);
+            }
+            offset += w * rows;
+        }
+    }
+}
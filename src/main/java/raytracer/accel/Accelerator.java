@@ -0,0 +1,142 @@
+package raytracer.accel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import raytracer.Intersection;
+import raytracer.Ray;
+import raytracer.shape.Shape;
+import raytracer.stats.RenderStats;
+
+/**
+ * Ray query structure over the shapes of a scene: bounded shapes go into a BVH,
+ * unbounded ones (planes) are kept in a separate list that is always tested.
+ */
+public final class Accelerator {
+    private final BVH bvh;
+    private final Shape[] unbounded;
+    private final int[] unboundedOrder;
+
+    /**
+     * Builds the structure over the given shapes.
+     *
+     * @param shapes scene shapes, in declaration order
+     */
+    public Accelerator(List<Shape> shapes) {
+        List<Shape> bounded = new ArrayList<>();
+        List<Shape> others = new ArrayList<>();
+        int[] boundedOrder = new int[shapes.size()];
+        int[] othersOrder = new int[shapes.size()];
+
+        for (int i = 0; i < shapes.size(); i++) {
+            Shape shape = shapes.get(i);
+            if (shape.bounds().isPresent()) {
+                boundedOrder[bounded.size()] = i;
+                bounded.add(shape);
+            } else {
+                othersOrder[others.size()] = i;
+                others.add(shape);
+            }
+        }
+
+        this.bvh = new BVH(bounded, boundedOrder);
+        this.unbounded = others.toArray(new Shape[0]);
+        this.unboundedOrder = othersOrder;
+    }
+
+    /**
+     * Wraps a prebuilt hierarchy, such as one restored by {@link BVH#read}.
+     *
+     * @param shapes scene shapes, in declaration order
+     * @param bvh    hierarchy over the bounded shapes among them
+     */
+    public Accelerator(List<Shape> shapes, BVH bvh) {
+        List<Shape> others = new ArrayList<>();
+        int[] othersOrder = new int[shapes.size()];
+        for (int i = 0; i < shapes.size(); i++) {
+            if (shapes.get(i).bounds().isEmpty()) {
+                othersOrder[others.size()] = i;
+                others.add(shapes.get(i));
+            }
+        }
+        this.bvh = bvh;
+        this.unbounded = others.toArray(new Shape[0]);
+        this.unboundedOrder = othersOrder;
+    }
+
+    /**
+     * Returns the structure over moved shapes, refitting the hierarchy instead of
+     * rebuilding it (see {@link BVH#refit}).
+     *
+     * @param shapes scene shapes, in declaration order, matching the current ones one to one
+     * @return structure over the given shapes
+     */
+    public Accelerator refit(List<Shape> shapes) {
+        return new Accelerator(shapes, bvh.refit(shapes));
+    }
+
+    /** @return hierarchy over the bounded shapes */
+    public BVH bvh() { return bvh; }
+
+    /** @return shapes without bounding box, tested by every query */
+    Shape[] unbounded() { return unbounded; }
+
+    /**
+     * Finds the closest intersection of the ray.
+     *
+     * @param ray ray to test
+     * @return closest hit, or empty if none
+     */
+    public Optional<Intersection> closestHit(Ray ray) {
+        HitRecord hit = new HitRecord();
+        for (int i = 0; i < unbounded.length; i++) {
+            hit.offer(unbounded[i].intersectDistance(ray), unbounded[i], unboundedOrder[i]);
+        }
+        bvh.closestHit(ray, hit);
+        RenderStats.countRays(1, hit.tests());
+        return hit.toIntersection(ray);
+    }
+
+    /**
+     * Finds the closest hit of every ray of a packet. The hit records of the packet
+     * must be fresh, as left by {@link RayPacket#add}.
+     *
+     * @param packet rays to trace; receives one closest hit per ray
+     */
+    public void closestHits(RayPacket packet) {
+        for (int r = 0; r < packet.size(); r++) {
+            Ray ray = packet.ray(r);
+            HitRecord hit = packet.hit(r);
+            for (int i = 0; i < unbounded.length; i++) {
+                hit.offer(unbounded[i].intersectDistance(ray), unbounded[i], unboundedOrder[i]);
+            }
+        }
+        bvh.closestHits(packet);
+
+        long tests = 0;
+        for (int r = 0; r < packet.size(); r++) {
+            tests += packet.hit(r).tests();
+        }
+        RenderStats.countRays(packet.size(), tests);
+    }
+
+    /**
+     * Finds any primitive hit at a distance strictly inside (tMin, tMax), stopping at the first one.
+     *
+     * @param ray  ray to test
+     * @param tMin lower bound (exclusive)
+     * @param tMax upper bound (exclusive)
+     * @return a blocking primitive, or null if none
+     */
+    public Occluder findOccluder(Ray ray, double tMin, double tMax) {
+        for (int i = 0; i < unbounded.length; i++) {
+            if (unbounded[i].occludes(ray, tMin, tMax)) {
+                RenderStats.countTests(i + 1);
+                return new Occluder(unbounded[i], 0);
+            }
+        }
+        RenderStats.countTests(unbounded.length);
+        return bvh.findOccluder(ray, tMin, tMax);
+    }
+}
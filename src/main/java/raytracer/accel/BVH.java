@@ -0,0 +1,856 @@
+package raytracer.accel;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Optional;
+
+import raytracer.Ray;
+import raytracer.shape.Shape;
+import raytracer.stats.RenderStats;
+
+/**
+ * Bounding-volume hierarchy over the primitives of bounded shapes, built top-down
+ * with a binned surface area heuristic (SAH). Shapes made of several primitives,
+ * such as triangle meshes, get one leaf entry per primitive.
+ * Nodes are flattened in depth-first order: the left child of an interior node
+ * directly follows it, the index of the right child is stored in the node.
+ * When built with an {@link IntersectKernel}, each leaf lists its spheres first,
+ * then its triangles, then other shapes, and the first two runs are tested in
+ * batches over a {@link PrimitiveBatch}.
+ * A built hierarchy can be saved with {@link #write} and restored with
+ * {@link #read} without running the SAH build again, and {@link #refit} follows
+ * moving shapes without rebuilding.
+ */
+public final class BVH {
+    private static final int BINS = 16;
+    private static final int MAX_LEAF_SIZE = 4;
+    private static final double TRAVERSAL_COST = 1.0;
+    private static final double INTERSECTION_COST = 1.0;
+    /** Returned by the slab test when a box is missed. */
+    private static final double MISS = -1.0;
+    /** Traversal buffers of the ray queries run on each thread, reused from ray to ray. */
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    /** Shape of each primitive, in leaf order. */
+    private final Shape[] shapes;
+    /** Scene declaration index of each primitive's shape, for tie-breaks. */
+    private final int[] order;
+    /** Index of each primitive in its shape. */
+    private final int[] primitives;
+    /** Per node: minX, minY, minZ, maxX, maxY, maxZ. */
+    private final double[] bounds;
+    /** Per node: (first shape, count) for leaves, (right child, 0) for interior nodes. */
+    private final int[] nodes;
+    private int nodeCount;
+    private int depth;
+
+    /** Batched leaf intersection, or null to call the shapes directly. */
+    private final IntersectKernel kernel;
+    private final PrimitiveBatch batch;
+    /** Per leaf node: number of spheres, number of triangles (only with a kernel). */
+    private final int[] leafRuns;
+
+    /**
+     * Builds the hierarchy, with the leaf kernel selected by {@link IntersectKernel#configured()}.
+     *
+     * @param shapes bounded shapes ({@link Shape#bounds()} must be present)
+     * @param order  scene declaration index of each shape
+     */
+    public BVH(List<Shape> shapes, int[] order) {
+        this(shapes, order, IntersectKernel.configured());
+    }
+
+    /**
+     * Builds the hierarchy.
+     *
+     * @param shapes bounded shapes ({@link Shape#bounds(int)} must be present for each primitive)
+     * @param order  scene declaration index of each shape
+     * @param kernel leaf kernel, or null to test leaves through {@link Shape#intersectDistance(Ray, int)}
+     */
+    public BVH(List<Shape> shapes, int[] order, IntersectKernel kernel) {
+        int n = 0;
+        for (Shape shape : shapes) {
+            n += shape.primitiveCount();
+        }
+        this.shapes = new Shape[n];
+        this.order = new int[n];
+        this.primitives = new int[n];
+        this.bounds = new double[6 * Math.max(1, 2 * n - 1)];
+        this.nodes = new int[2 * Math.max(1, 2 * n - 1)];
+
+        Shape[] owners = new Shape[n];
+        int[] ownerOrder = new int[n];
+        int[] ownerPrimitive = new int[n];
+        BoundingBox[] boxes = new BoundingBox[n];
+        double[] centroids = new double[3 * n];
+        int[] index = new int[n];
+        int i = 0;
+        for (int s = 0; s < shapes.size(); s++) {
+            Shape shape = shapes.get(s);
+            for (int p = 0; p < shape.primitiveCount(); p++, i++) {
+                Optional<BoundingBox> box = shape.bounds(p);
+                if (box.isEmpty()) {
+                    throw new IllegalArgumentException("Forme non bornée dans le BVH: " + shape);
+                }
+                owners[i] = shape;
+                ownerOrder[i] = order[s];
+                ownerPrimitive[i] = p;
+                boxes[i] = box.get().padded();
+                for (int axis = 0; axis < 3; axis++) {
+                    centroids[3 * i + axis] = boxes[i].centroid(axis);
+                }
+                index[i] = i;
+            }
+        }
+
+        if (n > 0) {
+            build(boxes, centroids, index, 0, n, 1);
+        }
+        for (i = 0; i < n; i++) {
+            this.shapes[i] = owners[index[i]];
+            this.order[i] = ownerOrder[index[i]];
+            this.primitives[i] = ownerPrimitive[index[i]];
+        }
+
+        this.kernel = kernel;
+        if (kernel != null) {
+            this.leafRuns = new int[2 * Math.max(1, nodeCount)];
+            groupLeavesByKind();
+            this.batch = new PrimitiveBatch(this.shapes, this.primitives);
+        } else {
+            this.leafRuns = null;
+            this.batch = null;
+        }
+    }
+
+    /**
+     * Restores a hierarchy saved by {@link #write}.
+     */
+    private BVH(Shape[] shapes, int[] order, int[] primitives, double[] bounds, int[] nodes, int nodeCount,
+                int depth, IntersectKernel kernel) {
+        this.shapes = shapes;
+        this.order = order;
+        this.primitives = primitives;
+        this.bounds = bounds;
+        this.nodes = nodes;
+        this.nodeCount = nodeCount;
+        this.depth = depth;
+
+        this.kernel = kernel;
+        if (kernel != null) {
+            this.leafRuns = new int[2 * Math.max(1, nodeCount)];
+            groupLeavesByKind();
+            this.batch = new PrimitiveBatch(this.shapes, this.primitives);
+        } else {
+            this.leafRuns = null;
+            this.batch = null;
+        }
+    }
+
+    /**
+     * Writes the node arrays and the scene index and primitive of each leaf entry.
+     *
+     * @param out destination
+     * @throws IOException if writing fails
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(nodeCount);
+        out.writeInt(depth);
+        for (int i = 0; i < 6 * nodeCount; i++) {
+            out.writeDouble(bounds[i]);
+        }
+        for (int i = 0; i < 2 * nodeCount; i++) {
+            out.writeInt(nodes[i]);
+        }
+        out.writeInt(shapes.length);
+        for (int i = 0; i < shapes.length; i++) {
+            out.writeInt(order[i]);
+        }
+        for (int i = 0; i < shapes.length; i++) {
+            out.writeInt(primitives[i]);
+        }
+    }
+
+    /**
+     * Reads a hierarchy saved by {@link #write}, with the leaf kernel selected by
+     * {@link IntersectKernel#configured()}. The saved arrays are checked before use, so a
+     * damaged file cannot send a traversal out of its arrays or past its stack.
+     *
+     * @param in          buffer positioned on the saved hierarchy; advanced past it
+     * @param sceneShapes all scene shapes, in declaration order
+     * @return restored hierarchy
+     * @throws IllegalArgumentException if the saved hierarchy is not one {@link #write} produces
+     */
+    public static BVH read(ByteBuffer in, List<Shape> sceneShapes) {
+        int nodeCount = in.getInt();
+        int depth = in.getInt();
+        if (nodeCount < 0 || nodeCount > in.remaining() / (6 * Double.BYTES + 2 * Integer.BYTES)) {
+            throw new IllegalArgumentException("BVH : nombre de nœuds invalide : " + nodeCount);
+        }
+        double[] bounds = new double[6 * Math.max(1, nodeCount)];
+        in.asDoubleBuffer().get(bounds, 0, 6 * nodeCount);
+        in.position(in.position() + 6 * nodeCount * Double.BYTES);
+        int[] nodes = new int[2 * Math.max(1, nodeCount)];
+        in.asIntBuffer().get(nodes, 0, 2 * nodeCount);
+        in.position(in.position() + 2 * nodeCount * Integer.BYTES);
+
+        int n = in.getInt();
+        if (n < 0 || n > in.remaining() / (2 * Integer.BYTES)) {
+            throw new IllegalArgumentException("BVH : nombre de primitives invalide : " + n);
+        }
+        checkTree(nodes, nodeCount, depth, n);
+        int[] order = new int[n];
+        in.asIntBuffer().get(order);
+        in.position(in.position() + n * Integer.BYTES);
+        int[] primitives = new int[n];
+        in.asIntBuffer().get(primitives);
+        in.position(in.position() + n * Integer.BYTES);
+        Shape[] shapes = new Shape[n];
+        for (int i = 0; i < n; i++) {
+            if (order[i] < 0 || order[i] >= sceneShapes.size()) {
+                throw new IllegalArgumentException("BVH : forme inconnue : " + order[i]);
+            }
+            shapes[i] = sceneShapes.get(order[i]);
+            if (primitives[i] < 0 || primitives[i] >= shapes[i].primitiveCount()) {
+                throw new IllegalArgumentException("BVH : primitive " + primitives[i] + " absente de la forme " + order[i]);
+            }
+            if ((i == 0 || shapes[i] != shapes[i - 1]) && shapes[i].bounds().isEmpty()) {
+                throw new IllegalArgumentException("BVH : forme non bornée : " + order[i]);
+            }
+        }
+        return new BVH(shapes, order, primitives, bounds, nodes, nodeCount, depth, IntersectKernel.configured());
+    }
+
+    /**
+     * Checks that saved node arrays form a tree laid out as {@link #build} lays it out:
+     * nodes in depth-first order, leaves of at most {@link #MAX_LEAF_SIZE} primitives
+     * covering all of them in order, and exactly {@code depth} levels, which sizes the
+     * traversal stacks.
+     *
+     * @throws IllegalArgumentException if the arrays do not
+     */
+    private static void checkTree(int[] nodes, int nodeCount, int depth, int n) {
+        if (nodeCount == 0) {
+            if (n != 0 || depth != 0) {
+                throw new IllegalArgumentException("BVH : hiérarchie vide avec " + n + " primitives");
+            }
+            return;
+        }
+        if (depth < 1 || depth > nodeCount) {
+            throw new IllegalArgumentException("BVH : profondeur invalide : " + depth);
+        }
+        // pairs of (right child, level) waiting for their left sibling's subtree
+        int[] pending = new int[2 * depth];
+        int sp = 0;
+        int next = 0, covered = 0, deepest = 0;
+        int node = 0, level = 1;
+        while (true) {
+            if (node != next++ || level > depth) {
+                throw new IllegalArgumentException("BVH : nœud " + node + " mal placé");
+            }
+            deepest = Math.max(deepest, level);
+            int count = nodes[2 * node + 1];
+            if (count == 0) {
+                int right = nodes[2 * node];
+                if (right <= node + 1 || right >= nodeCount) {
+                    throw new IllegalArgumentException("BVH : enfant invalide au nœud " + node);
+                }
+                pending[sp++] = right;
+                pending[sp++] = level + 1;
+                node++;
+                level++;
+                continue;
+            }
+            if (count < 0 || count > MAX_LEAF_SIZE || nodes[2 * node] != covered || count > n - covered) {
+                throw new IllegalArgumentException("BVH : feuille invalide au nœud " + node);
+            }
+            covered += count;
+            if (sp == 0) break;
+            level = pending[--sp];
+            node = pending[--sp];
+        }
+        if (next != nodeCount || covered != n || deepest != depth) {
+            throw new IllegalArgumentException("BVH : arbre incomplet");
+        }
+    }
+
+    /**
+     * Returns the hierarchy over moved shapes, keeping the tree and only recomputing
+     * the node boxes bottom-up. The shapes must have the same kinds and primitive
+     * counts as the ones the hierarchy was built over; the tree stays valid but may
+     * traverse worse than a rebuilt one as shapes drift apart.
+     *
+     * @param sceneShapes all scene shapes, in declaration order, replacing the current ones
+     * @return refitted hierarchy; this one is unchanged
+     * @throws IllegalArgumentException if a shape lost its bounds or primitives
+     */
+    public BVH refit(List<Shape> sceneShapes) {
+        Shape[] moved = new Shape[shapes.length];
+        for (int i = 0; i < shapes.length; i++) {
+            moved[i] = sceneShapes.get(order[i]);
+            if (moved[i].primitiveCount() != shapes[i].primitiveCount()
+                    || PrimitiveBatch.kindOf(moved[i]) != PrimitiveBatch.kindOf(shapes[i])) {
+                throw new IllegalArgumentException("Forme incompatible avec le BVH: " + moved[i]);
+            }
+        }
+        double[] refitted = new double[bounds.length];
+        // children follow their parent, so a reverse scan visits them first
+        for (int node = nodeCount - 1; node >= 0; node--) {
+            int b = 6 * node;
+            int count = nodes[2 * node + 1];
+            if (count == 0) {
+                int left = 6 * (node + 1);
+                int right = 6 * nodes[2 * node];
+                for (int axis = 0; axis < 3; axis++) {
+                    refitted[b + axis] = Math.min(refitted[left + axis], refitted[right + axis]);
+                    refitted[b + 3 + axis] = Math.max(refitted[left + 3 + axis], refitted[right + 3 + axis]);
+                }
+                continue;
+            }
+            int first = nodes[2 * node];
+            BoundingBox box = null;
+            for (int i = first; i < first + count; i++) {
+                BoundingBox primitive = moved[i].bounds(primitives[i])
+                    .orElseThrow(() -> new IllegalArgumentException("Forme non bornée dans le BVH"))
+                    .padded();
+                box = box == null ? primitive : box.union(primitive);
+            }
+            refitted[b] = box.minX(); refitted[b + 1] = box.minY(); refitted[b + 2] = box.minZ();
+            refitted[b + 3] = box.maxX(); refitted[b + 4] = box.maxY(); refitted[b + 5] = box.maxZ();
+        }
+        return new BVH(moved, order.clone(), primitives.clone(), refitted, nodes, nodeCount, depth, kernel);
+    }
+
+    /**
+     * Reorders the primitives of each leaf by kind (spheres, triangles, others) and
+     * records the length of the sphere and triangle runs.
+     */
+    private void groupLeavesByKind() {
+        for (int node = 0; node < nodeCount; node++) {
+            int count = nodes[2 * node + 1];
+            if (count == 0) continue;
+            int first = nodes[2 * node];
+            // stable insertion sort, leaves hold at most MAX_LEAF_SIZE shapes
+            for (int i = first + 1; i < first + count; i++) {
+                Shape shape = shapes[i];
+                int shapeOrder = order[i];
+                int primitive = primitives[i];
+                byte kind = PrimitiveBatch.kindOf(shape);
+                int j = i - 1;
+                while (j >= first && PrimitiveBatch.kindOf(shapes[j]) > kind) {
+                    shapes[j + 1] = shapes[j];
+                    order[j + 1] = order[j];
+                    primitives[j + 1] = primitives[j];
+                    j--;
+                }
+                shapes[j + 1] = shape;
+                order[j + 1] = shapeOrder;
+                primitives[j + 1] = primitive;
+            }
+            for (int i = first; i < first + count; i++) {
+                byte kind = PrimitiveBatch.kindOf(shapes[i]);
+                if (kind == PrimitiveBatch.SPHERE) leafRuns[2 * node]++;
+                else if (kind == PrimitiveBatch.TRIANGLE) leafRuns[2 * node + 1]++;
+            }
+        }
+    }
+
+    /** @return number of primitives in the hierarchy */
+    public int size() { return shapes.length; }
+
+    /** @return shape of a primitive, by index in leaf order, from 0 to {@link #size()} - 1 */
+    Shape shape(int index) { return shapes[index]; }
+
+    /** @return index in its shape of a primitive, by index in leaf order */
+    int primitive(int index) { return primitives[index]; }
+
+    /** @return number of nodes */
+    public int nodeCount() { return nodeCount; }
+
+    /** @return box enclosing every primitive, or empty if the hierarchy is empty */
+    public Optional<BoundingBox> bounds() {
+        if (shapes.length == 0) return Optional.empty();
+        return Optional.of(new BoundingBox(bounds[0], bounds[1], bounds[2], bounds[3], bounds[4], bounds[5]));
+    }
+
+    /**
+     * Finds the closest hit along the ray, updating the record when a closer hit is found.
+     *
+     * @param ray ray to test
+     * @param hit closest-hit accumulator
+     */
+    public void closestHit(Ray ray, HitRecord hit) {
+        if (shapes.length == 0) return;
+        double ox = ray.origin().x(), oy = ray.origin().y(), oz = ray.origin().z();
+        double ix = 1.0 / ray.direction().x(), iy = 1.0 / ray.direction().y(), iz = 1.0 / ray.direction().z();
+
+        if (!reaches(entry(0, ox, oy, oz, ix, iy, iz), hit.t())) return;
+
+        Scratch scratch = SCRATCH.get();
+        double[] distances = scratch.distances;
+        int[] stack = scratch.stack(depth);
+        int sp = 0;
+        int node = 0;
+        while (true) {
+            int count = nodes[2 * node + 1];
+            if (count > 0) {
+                int first = nodes[2 * node];
+                if (kernel == null) {
+                    for (int i = first; i < first + count; i++) {
+                        hit.offer(shapes[i].intersectDistance(ray, primitives[i]), shapes[i], order[i], primitives[i]);
+                    }
+                } else {
+                    closestInLeaf(ray, node, first, count, hit, distances);
+                }
+            } else {
+                int left = node + 1;
+                int right = nodes[2 * node];
+                double tLeft = entry(left, ox, oy, oz, ix, iy, iz);
+                double tRight = entry(right, ox, oy, oz, ix, iy, iz);
+                boolean hitLeft = reaches(tLeft, hit.t());
+                boolean hitRight = reaches(tRight, hit.t());
+                if (hitLeft && hitRight) {
+                    if (tLeft <= tRight) {
+                        stack[sp++] = right;
+                        node = left;
+                    } else {
+                        stack[sp++] = left;
+                        node = right;
+                    }
+                    continue;
+                }
+                if (hitLeft) { node = left; continue; }
+                if (hitRight) { node = right; continue; }
+            }
+            if (sp == 0) return;
+            node = stack[--sp];
+        }
+    }
+
+    /**
+     * Finds the closest hit of every ray of a packet, updating their records.
+     * A coherent packet descends the tree together and keeps the index of its first
+     * ray that reaches the current node: a node is rejected when that ray misses it
+     * and the packet frustum misses it too, or when no later ray reaches it. Rays
+     * before the first active one are skipped in the whole subtree, since child
+     * boxes lie inside their parent. Leaves are tested ray by ray, so every record
+     * ends up as with {@link #closestHit}. Incoherent packets fall back to single rays.
+     *
+     * @param packet rays to trace and their closest-hit accumulators
+     */
+    public void closestHits(RayPacket packet) {
+        int n = packet.size();
+        if (shapes.length == 0 || n == 0) return;
+        if (!packet.coherent()) {
+            for (int i = 0; i < n; i++) {
+                closestHit(packet.ray(i), packet.hit(i));
+            }
+            return;
+        }
+
+        Scratch scratch = SCRATCH.get();
+        double[] distances = scratch.distances;
+        // pairs of (node, first active ray)
+        int[] stack = scratch.stack(2 * depth);
+        int sp = 0;
+        int node = 0;
+        int first = firstActive(0, packet, 0);
+        if (first == n) return;
+        while (true) {
+            int count = nodes[2 * node + 1];
+            if (count > 0) {
+                int start = nodes[2 * node];
+                for (int r = first; r < n; r++) {
+                    HitRecord hit = packet.hit(r);
+                    if (!reaches(entry(node, packet.originX, packet.originY, packet.originZ,
+                            packet.invX[r], packet.invY[r], packet.invZ[r]), hit.t())) {
+                        continue;
+                    }
+                    Ray ray = packet.ray(r);
+                    if (kernel == null) {
+                        for (int i = start; i < start + count; i++) {
+                            hit.offer(shapes[i].intersectDistance(ray, primitives[i]), shapes[i], order[i], primitives[i]);
+                        }
+                    } else {
+                        closestInLeaf(ray, node, start, count, hit, distances);
+                    }
+                }
+            } else {
+                int left = node + 1;
+                int right = nodes[2 * node];
+                int firstLeft = firstActive(left, packet, first);
+                int firstRight = firstActive(right, packet, first);
+                if (firstLeft < n && firstRight < n) {
+                    // near child first, as seen by the first ray reaching either child
+                    int r = Math.min(firstLeft, firstRight);
+                    double tLeft = firstLeft == r ? entryOf(left, packet, r) : Double.POSITIVE_INFINITY;
+                    double tRight = firstRight == r ? entryOf(right, packet, r) : Double.POSITIVE_INFINITY;
+                    if (tLeft <= tRight) {
+                        stack[sp++] = right;
+                        stack[sp++] = firstRight;
+                        node = left;
+                        first = firstLeft;
+                    } else {
+                        stack[sp++] = left;
+                        stack[sp++] = firstLeft;
+                        node = right;
+                        first = firstRight;
+                    }
+                    continue;
+                }
+                if (firstLeft < n) { node = left; first = firstLeft; continue; }
+                if (firstRight < n) { node = right; first = firstRight; continue; }
+            }
+            while (true) {
+                if (sp == 0) return;
+                first = stack[--sp];
+                node = stack[--sp];
+                // hits found since the push may have pushed the first rays past this node
+                first = firstActive(node, packet, first);
+                if (first < n) break;
+            }
+        }
+    }
+
+    /**
+     * Returns the index of the first ray, from the given one on, that must visit a node.
+     * The frustum test is only tried when the starting ray misses, so coherent
+     * packets pay a single slab test per node.
+     *
+     * @return ray index, or the packet size if no ray reaches the node
+     */
+    private int firstActive(int node, RayPacket packet, int from) {
+        int n = packet.size();
+        if (from >= n) return n;
+        if (reaches(entryOf(node, packet, from), packet.hit(from).t())) return from;
+        if (frustumMisses(node, packet)) return n;
+        for (int r = from + 1; r < n; r++) {
+            if (reaches(entryOf(node, packet, r), packet.hit(r).t())) return r;
+        }
+        return n;
+    }
+
+    private double entryOf(int node, RayPacket packet, int r) {
+        return entry(node, packet.originX, packet.originY, packet.originZ, packet.invX[r], packet.invY[r], packet.invZ[r]);
+    }
+
+    /**
+     * Conservative slab test of a node box against the frustum of a coherent packet.
+     * On each axis the slab distances of every ray lie between the products of the
+     * box offsets with the smallest and largest inverse direction, since rounding
+     * preserves the monotonicity of the product.
+     *
+     * @return true if no ray of the packet can enter the box
+     */
+    private boolean frustumMisses(int node, RayPacket packet) {
+        int b = 6 * node;
+        double tEnter = 0.0;
+        double tExit = Double.POSITIVE_INFINITY;
+
+        double lo = bounds[b] - packet.originX, hi = bounds[b + 3] - packet.originX;
+        double a = lo * packet.invMinX, c = lo * packet.invMaxX, d = hi * packet.invMinX, e = hi * packet.invMaxX;
+        tEnter = Math.max(tEnter, Math.min(Math.min(a, c), Math.min(d, e)));
+        tExit = Math.min(tExit, Math.max(Math.max(a, c), Math.max(d, e)));
+
+        lo = bounds[b + 1] - packet.originY; hi = bounds[b + 4] - packet.originY;
+        a = lo * packet.invMinY; c = lo * packet.invMaxY; d = hi * packet.invMinY; e = hi * packet.invMaxY;
+        tEnter = Math.max(tEnter, Math.min(Math.min(a, c), Math.min(d, e)));
+        tExit = Math.min(tExit, Math.max(Math.max(a, c), Math.max(d, e)));
+
+        lo = bounds[b + 2] - packet.originZ; hi = bounds[b + 5] - packet.originZ;
+        a = lo * packet.invMinZ; c = lo * packet.invMaxZ; d = hi * packet.invMinZ; e = hi * packet.invMaxZ;
+        tEnter = Math.max(tEnter, Math.min(Math.min(a, c), Math.min(d, e)));
+        tExit = Math.min(tExit, Math.max(Math.max(a, c), Math.max(d, e)));
+
+        return tEnter > tExit;
+    }
+
+    /**
+     * Finds any primitive hit at a distance strictly inside (tMin, tMax).
+     * Returns on the first such primitive, without building intersection records.
+     *
+     * @param ray  ray to test
+     * @param tMin lower bound (exclusive)
+     * @param tMax upper bound (exclusive)
+     * @return a blocking primitive, or null if none
+     */
+    public Occluder findOccluder(Ray ray, double tMin, double tMax) {
+        if (shapes.length == 0) return null;
+        double ox = ray.origin().x(), oy = ray.origin().y(), oz = ray.origin().z();
+        double ix = 1.0 / ray.direction().x(), iy = 1.0 / ray.direction().y(), iz = 1.0 / ray.direction().z();
+
+        if (!reaches(entry(0, ox, oy, oz, ix, iy, iz), tMax)) return null;
+
+        Scratch scratch = SCRATCH.get();
+        double[] distances = scratch.distances;
+        int[] stack = scratch.stack(depth);
+        int sp = 0;
+        int node = 0;
+        // counted locally, published once per ray
+        int tests = 0;
+        while (true) {
+            int count = nodes[2 * node + 1];
+            if (count > 0) {
+                int first = nodes[2 * node];
+                if (kernel == null) {
+                    for (int i = first; i < first + count; i++) {
+                        tests++;
+                        if (shapes[i].occludes(ray, tMin, tMax, primitives[i])) {
+                            RenderStats.countTests(tests);
+                            return new Occluder(shapes[i], primitives[i]);
+                        }
+                    }
+                } else {
+                    tests += count;
+                    Occluder occluder = occluderInLeaf(ray, node, first, count, tMin, tMax, distances);
+                    if (occluder != null) {
+                        RenderStats.countTests(tests);
+                        return occluder;
+                    }
+                }
+            } else {
+                int left = node + 1;
+                int right = nodes[2 * node];
+                boolean hitLeft = reaches(entry(left, ox, oy, oz, ix, iy, iz), tMax);
+                boolean hitRight = reaches(entry(right, ox, oy, oz, ix, iy, iz), tMax);
+                if (hitLeft && hitRight) {
+                    stack[sp++] = right;
+                    node = left;
+                    continue;
+                }
+                if (hitLeft) { node = left; continue; }
+                if (hitRight) { node = right; continue; }
+            }
+            if (sp == 0) {
+                RenderStats.countTests(tests);
+                return null;
+            }
+            node = stack[--sp];
+        }
+    }
+
+    /**
+     * Tests a leaf through the kernel: sphere run, triangle run, then remaining shapes.
+     */
+    private void closestInLeaf(Ray ray, int node, int first, int count, HitRecord hit, double[] distances) {
+        double ox = ray.origin().x(), oy = ray.origin().y(), oz = ray.origin().z();
+        double dx = ray.direction().x(), dy = ray.direction().y(), dz = ray.direction().z();
+        int spheresEnd = first + leafRuns[2 * node];
+        int trianglesEnd = spheresEnd + leafRuns[2 * node + 1];
+
+        if (spheresEnd > first) {
+            kernel.sphereDistances(batch, first, spheresEnd, ox, oy, oz, dx, dy, dz, distances);
+            for (int i = first; i < spheresEnd; i++) {
+                hit.offer(distances[i - first], shapes[i], order[i], primitives[i]);
+            }
+        }
+        if (trianglesEnd > spheresEnd) {
+            kernel.triangleDistances(batch, spheresEnd, trianglesEnd, ox, oy, oz, dx, dy, dz, distances);
+            for (int i = spheresEnd; i < trianglesEnd; i++) {
+                hit.offer(distances[i - spheresEnd], shapes[i], order[i], primitives[i]);
+            }
+        }
+        for (int i = trianglesEnd; i < first + count; i++) {
+            hit.offer(shapes[i].intersectDistance(ray, primitives[i]), shapes[i], order[i], primitives[i]);
+        }
+    }
+
+    /**
+     * Occlusion counterpart of {@link #closestInLeaf}.
+     *
+     * @return a blocking primitive of the leaf, or null
+     */
+    private Occluder occluderInLeaf(Ray ray, int node, int first, int count, double tMin, double tMax, double[] distances) {
+        double ox = ray.origin().x(), oy = ray.origin().y(), oz = ray.origin().z();
+        double dx = ray.direction().x(), dy = ray.direction().y(), dz = ray.direction().z();
+        int spheresEnd = first + leafRuns[2 * node];
+        int trianglesEnd = spheresEnd + leafRuns[2 * node + 1];
+
+        if (spheresEnd > first) {
+            kernel.sphereDistances(batch, first, spheresEnd, ox, oy, oz, dx, dy, dz, distances);
+            for (int i = first; i < spheresEnd; i++) {
+                double t = distances[i - first];
+                if (t > tMin && t < tMax) return new Occluder(shapes[i], primitives[i]);
+            }
+        }
+        if (trianglesEnd > spheresEnd) {
+            kernel.triangleDistances(batch, spheresEnd, trianglesEnd, ox, oy, oz, dx, dy, dz, distances);
+            for (int i = spheresEnd; i < trianglesEnd; i++) {
+                double t = distances[i - spheresEnd];
+                if (t > tMin && t < tMax) return new Occluder(shapes[i], primitives[i]);
+            }
+        }
+        for (int i = trianglesEnd; i < first + count; i++) {
+            if (shapes[i].occludes(ray, tMin, tMax, primitives[i])) return new Occluder(shapes[i], primitives[i]);
+        }
+        return null;
+    }
+
+    /**
+     * Slab test of a ray against a node box.
+     *
+     * @return entry distance (clamped to 0), or {@link #MISS} if the box is missed or behind the origin
+     */
+    private double entry(int node, double ox, double oy, double oz, double ix, double iy, double iz) {
+        int b = 6 * node;
+        double tEnter = 0.0;
+        double tExit = Double.POSITIVE_INFINITY;
+
+        double t1 = (bounds[b] - ox) * ix, t2 = (bounds[b + 3] - ox) * ix;
+        // comparisons are written so that NaN (0 * ∞) leaves the interval unchanged
+        double lo = t1 < t2 ? t1 : t2, hi = t1 < t2 ? t2 : t1;
+        if (lo > tEnter) tEnter = lo;
+        if (hi < tExit) tExit = hi;
+
+        t1 = (bounds[b + 1] - oy) * iy; t2 = (bounds[b + 4] - oy) * iy;
+        lo = t1 < t2 ? t1 : t2; hi = t1 < t2 ? t2 : t1;
+        if (lo > tEnter) tEnter = lo;
+        if (hi < tExit) tExit = hi;
+
+        t1 = (bounds[b + 2] - oz) * iz; t2 = (bounds[b + 5] - oz) * iz;
+        lo = t1 < t2 ? t1 : t2; hi = t1 < t2 ? t2 : t1;
+        if (lo > tEnter) tEnter = lo;
+        if (hi < tExit) tExit = hi;
+
+        return tEnter <= tExit ? tEnter : MISS;
+    }
+
+    /**
+     * @return true if a box entered at tEnter must be visited for hits up to tLimit
+     */
+    private static boolean reaches(double tEnter, double tLimit) {
+        return tEnter != MISS && tEnter <= tLimit;
+    }
+
+    /**
+     * Recursively builds the subtree over index[start, end).
+     *
+     * @return node index
+     */
+    private int build(BoundingBox[] boxes, double[] centroids, int[] index, int start, int end, int level) {
+        int node = nodeCount++;
+        depth = Math.max(depth, level);
+
+        BoundingBox box = boxes[index[start]];
+        double[] cmin = { centroids[3 * index[start]], centroids[3 * index[start] + 1], centroids[3 * index[start] + 2] };
+        double[] cmax = cmin.clone();
+        for (int i = start + 1; i < end; i++) {
+            box = box.union(boxes[index[i]]);
+            for (int axis = 0; axis < 3; axis++) {
+                double c = centroids[3 * index[i] + axis];
+                if (c < cmin[axis]) cmin[axis] = c;
+                if (c > cmax[axis]) cmax[axis] = c;
+            }
+        }
+        int b = 6 * node;
+        bounds[b] = box.minX(); bounds[b + 1] = box.minY(); bounds[b + 2] = box.minZ();
+        bounds[b + 3] = box.maxX(); bounds[b + 4] = box.maxY(); bounds[b + 5] = box.maxZ();
+
+        int count = end - start;
+        if (count == 1) {
+            makeLeaf(node, start, count);
+            return node;
+        }
+
+        // binned SAH: evaluate BINS - 1 split planes along each axis
+        double parentArea = box.surfaceArea();
+        double bestCost = Double.POSITIVE_INFINITY;
+        int bestAxis = -1;
+        int bestBin = -1;
+        for (int axis = 0; axis < 3; axis++) {
+            double extent = cmax[axis] - cmin[axis];
+            if (extent <= 0.0) continue;
+
+            int[] binCount = new int[BINS];
+            BoundingBox[] binBox = new BoundingBox[BINS];
+            for (int i = start; i < end; i++) {
+                int bin = binOf(centroids[3 * index[i] + axis], cmin[axis], extent);
+                binCount[bin]++;
+                binBox[bin] = binBox[bin] == null ? boxes[index[i]] : binBox[bin].union(boxes[index[i]]);
+            }
+
+            double[] rightArea = new double[BINS];
+            int[] rightCount = new int[BINS];
+            BoundingBox acc = null;
+            int accCount = 0;
+            for (int bin = BINS - 1; bin > 0; bin--) {
+                if (binBox[bin] != null) acc = acc == null ? binBox[bin] : acc.union(binBox[bin]);
+                accCount += binCount[bin];
+                rightArea[bin] = acc == null ? 0.0 : acc.surfaceArea();
+                rightCount[bin] = accCount;
+            }
+
+            acc = null;
+            accCount = 0;
+            for (int bin = 0; bin < BINS - 1; bin++) {
+                if (binBox[bin] != null) acc = acc == null ? binBox[bin] : acc.union(binBox[bin]);
+                accCount += binCount[bin];
+                if (accCount == 0 || rightCount[bin + 1] == 0) continue;
+                double leftArea = acc.surfaceArea();
+                double cost = TRAVERSAL_COST + INTERSECTION_COST
+                    * (leftArea * accCount + rightArea[bin + 1] * rightCount[bin + 1]) / parentArea;
+                if (cost < bestCost) {
+                    bestCost = cost;
+                    bestAxis = axis;
+                    bestBin = bin;
+                }
+            }
+        }
+
+        double leafCost = INTERSECTION_COST * count;
+        if (count <= MAX_LEAF_SIZE && (bestAxis < 0 || leafCost <= bestCost)) {
+            makeLeaf(node, start, count);
+            return node;
+        }
+
+        int mid;
+        if (bestAxis >= 0) {
+            double extent = cmax[bestAxis] - cmin[bestAxis];
+            mid = start;
+            for (int i = start; i < end; i++) {
+                if (binOf(centroids[3 * index[i] + bestAxis], cmin[bestAxis], extent) <= bestBin) {
+                    int tmp = index[i]; index[i] = index[mid]; index[mid] = tmp;
+                    mid++;
+                }
+            }
+        } else {
+            // all centroids coincide: split in the middle
+            mid = (start + end) >>> 1;
+        }
+
+        build(boxes, centroids, index, start, mid, level + 1);
+        int right = build(boxes, centroids, index, mid, end, level + 1);
+        nodes[2 * node] = right;
+        nodes[2 * node + 1] = 0;
+        return node;
+    }
+
+    private void makeLeaf(int node, int start, int count) {
+        nodes[2 * node] = start;
+        nodes[2 * node + 1] = count;
+    }
+
+    /**
+     * Per-thread buffers of the ray queries. Queries never nest, so one set per thread
+     * serves every hierarchy; the stack grows to fit the deepest one traversed.
+     */
+    private static final class Scratch {
+        final double[] distances = new double[MAX_LEAF_SIZE];
+        private int[] stack = new int[0];
+
+        /** @return the stack, grown to at least the given size */
+        int[] stack(int size) {
+            if (stack.length < size) {
+                stack = new int[size];
+            }
+            return stack;
+        }
+    }
+
+    private static int binOf(double centroid, double min, double extent) {
+        int bin = (int) ((centroid - min) * BINS / extent);
+        return Math.min(Math.max(bin, 0), BINS - 1);
+    }
+}
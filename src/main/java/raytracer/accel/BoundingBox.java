@@ -0,0 +1,124 @@
+package raytracer.accel;
+
+import raytracer.math.Point;
+
+/**
+ * Immutable axis-aligned bounding box given by its min and max corners.
+ */
+public final class BoundingBox {
+    /** Relative padding applied by {@link #padded()} to absorb rounding in intersection routines. */
+    private static final double PADDING = 1e-9;
+
+    private final double minX, minY, minZ;
+    private final double maxX, maxY, maxZ;
+
+    /**
+     * Constructs a box from its corner coordinates.
+     *
+     * @param minX min X
+     * @param minY min Y
+     * @param minZ min Z
+     * @param maxX max X
+     * @param maxY max Y
+     * @param maxZ max Z
+     */
+    public BoundingBox(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        this.minX = minX; this.minY = minY; this.minZ = minZ;
+        this.maxX = maxX; this.maxY = maxY; this.maxZ = maxZ;
+    }
+
+    /**
+     * Smallest box enclosing the given points.
+     *
+     * @param points at least one point
+     * @return enclosing box
+     */
+    public static BoundingBox of(Point... points) {
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY, minZ = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY, maxZ = Double.NEGATIVE_INFINITY;
+        for (Point p : points) {
+            minX = Math.min(minX, p.x()); minY = Math.min(minY, p.y()); minZ = Math.min(minZ, p.z());
+            maxX = Math.max(maxX, p.x()); maxY = Math.max(maxY, p.y()); maxZ = Math.max(maxZ, p.z());
+        }
+        return new BoundingBox(minX, minY, minZ, maxX, maxY, maxZ);
+    }
+
+    /** @return min X */
+    public double minX() { return minX; }
+    /** @return min Y */
+    public double minY() { return minY; }
+    /** @return min Z */
+    public double minZ() { return minZ; }
+    /** @return max X */
+    public double maxX() { return maxX; }
+    /** @return max Y */
+    public double maxY() { return maxY; }
+    /** @return max Z */
+    public double maxZ() { return maxZ; }
+
+    /**
+     * Returns the min coordinate along an axis.
+     *
+     * @param axis 0 = X, 1 = Y, 2 = Z
+     * @return min coordinate
+     */
+    public double min(int axis) {
+        return axis == 0 ? minX : axis == 1 ? minY : minZ;
+    }
+
+    /**
+     * Returns the max coordinate along an axis.
+     *
+     * @param axis 0 = X, 1 = Y, 2 = Z
+     * @return max coordinate
+     */
+    public double max(int axis) {
+        return axis == 0 ? maxX : axis == 1 ? maxY : maxZ;
+    }
+
+    /**
+     * Returns the box center along an axis.
+     *
+     * @param axis 0 = X, 1 = Y, 2 = Z
+     * @return centroid coordinate
+     */
+    public double centroid(int axis) {
+        return 0.5 * (min(axis) + max(axis));
+    }
+
+    /**
+     * Smallest box enclosing this box and another.
+     *
+     * @param b other box
+     * @return union box
+     */
+    public BoundingBox union(BoundingBox b) {
+        return new BoundingBox(
+            Math.min(minX, b.minX), Math.min(minY, b.minY), Math.min(minZ, b.minZ),
+            Math.max(maxX, b.maxX), Math.max(maxY, b.maxY), Math.max(maxZ, b.maxZ));
+    }
+
+    /**
+     * Surface area, used by the SAH cost model.
+     *
+     * @return 2 (dx·dy + dy·dz + dz·dx)
+     */
+    public double surfaceArea() {
+        double dx = maxX - minX, dy = maxY - minY, dz = maxZ - minZ;
+        return 2.0 * (dx * dy + dy * dz + dz * dx);
+    }
+
+    /**
+     * Slightly enlarged copy, so that flat boxes keep a thickness and hits found
+     * by a shape's own intersection routine are never culled by the slab test.
+     *
+     * @return padded box
+     */
+    public BoundingBox padded() {
+        double scale = Math.max(1.0, Math.max(
+            Math.max(Math.abs(minX), Math.abs(maxX)),
+            Math.max(Math.max(Math.abs(minY), Math.abs(maxY)), Math.max(Math.abs(minZ), Math.abs(maxZ)))));
+        double pad = PADDING * scale;
+        return new BoundingBox(minX - pad, minY - pad, minZ - pad, maxX + pad, maxY + pad, maxZ + pad);
+    }
+}
@@ -0,0 +1,90 @@
+package raytracer.accel;
+
+import java.util.Optional;
+
+import raytracer.Intersection;
+import raytracer.Ray;
+import raytracer.shape.Shape;
+
+/**
+ * Mutable closest-hit accumulator filled by the acceleration structures.
+ * Only the distance, the shape and its primitive are tracked while searching; the
+ * intersection record is built once, for the winning primitive.
+ * Ties on t are resolved in favor of the shape declared first in the scene, then
+ * of the lowest primitive, which keeps the result identical to a linear scan of
+ * the shape list.
+ */
+public final class HitRecord {
+    private Shape shape;
+    private double t = Double.POSITIVE_INFINITY;
+    private int order = Integer.MAX_VALUE;
+    private int primitive;
+    /** Number of candidates offered, i.e. shape intersection tests made for this ray. */
+    private int tests;
+
+    /**
+     * Keeps the hit if it is closer than the current one, or equally close but
+     * from a shape declared earlier.
+     *
+     * @param t     candidate distance (+∞ for a miss)
+     * @param shape candidate shape
+     * @param order declaration index of the shape in the scene
+     */
+    public void offer(double t, Shape shape, int order) {
+        offer(t, shape, order, 0);
+    }
+
+    /**
+     * Keeps the hit if it is closer than the current one, or equally close but
+     * from a shape declared earlier or a lower primitive of the same shape.
+     *
+     * @param t         candidate distance (+∞ for a miss)
+     * @param shape     candidate shape
+     * @param order     declaration index of the shape in the scene
+     * @param primitive primitive of the shape that was tested
+     */
+    public void offer(double t, Shape shape, int order, int primitive) {
+        tests++;
+        if (t < this.t || (t == this.t && t != Double.POSITIVE_INFINITY
+                && (order < this.order || (order == this.order && primitive < this.primitive)))) {
+            this.shape = shape;
+            this.t = t;
+            this.order = order;
+            this.primitive = primitive;
+        }
+    }
+
+    /** Forgets the current hit so the record can be reused for another ray. */
+    void clear() {
+        shape = null;
+        t = Double.POSITIVE_INFINITY;
+        order = Integer.MAX_VALUE;
+        primitive = 0;
+        tests = 0;
+    }
+
+    /** @return distance of the current closest hit, or +∞ if none */
+    public double t() { return t; }
+
+    /** @return number of shape intersection tests offered to this record */
+    public int tests() { return tests; }
+
+    /** @return shape of the current closest hit, or null if none */
+    public Shape shape() { return shape; }
+
+    /** @return primitive of the current closest hit in its shape */
+    public int primitive() { return primitive; }
+
+    /**
+     * Builds the intersection record of the closest hit.
+     *
+     * @param ray ray that was traced
+     * @return closest intersection, or empty if nothing was hit
+     */
+    public Optional<Intersection> toIntersection(Ray ray) {
+        if (shape == null) {
+            return Optional.empty();
+        }
+        return Optional.of(shape.intersectionAt(ray, t, primitive));
+    }
+}
@@ -0,0 +1,77 @@
+package raytracer.accel;
+
+/**
+ * Batched intersection routines over a {@link PrimitiveBatch}: one ray against a
+ * contiguous range of sphere or triangle slots. Implementations must return the
+ * same distances as {@code Sphere.intersectDistance} and {@code Triangle.intersectDistance}.
+ * <p>
+ * The default render path does not use kernels. Setting the system property
+ * {@value #SIMD_PROPERTY} to true makes the BVH test its leaves through
+ * {@link #best()}: the SIMD kernel when it was compiled in (Maven profile {@code simd})
+ * and the {@code jdk.incubator.vector} module is available, the scalar kernel otherwise.
+ */
+public interface IntersectKernel {
+    /** System property enabling batched leaf intersection. */
+    String SIMD_PROPERTY = "raytracer.simd";
+
+    /**
+     * Computes sphere hit distances for slots [from, to).
+     *
+     * @param batch primitive batch
+     * @param from  first slot (inclusive), all slots in range must be spheres
+     * @param to    last slot (exclusive)
+     * @param ox    ray origin X
+     * @param oy    ray origin Y
+     * @param oz    ray origin Z
+     * @param dx    ray direction X
+     * @param dy    ray direction Y
+     * @param dz    ray direction Z
+     * @param out   receives the distance of slot from + k at index k, +∞ on a miss
+     */
+    void sphereDistances(PrimitiveBatch batch, int from, int to,
+                         double ox, double oy, double oz, double dx, double dy, double dz, double[] out);
+
+    /**
+     * Computes triangle hit distances for slots [from, to).
+     *
+     * @param batch primitive batch
+     * @param from  first slot (inclusive), all slots in range must be triangles
+     * @param to    last slot (exclusive)
+     * @param ox    ray origin X
+     * @param oy    ray origin Y
+     * @param oz    ray origin Z
+     * @param dx    ray direction X
+     * @param dy    ray direction Y
+     * @param dz    ray direction Z
+     * @param out   receives the distance of slot from + k at index k, +∞ on a miss
+     */
+    void triangleDistances(PrimitiveBatch batch, int from, int to,
+                           double ox, double oy, double oz, double dx, double dy, double dz, double[] out);
+
+    /** @return portable scalar kernel */
+    static IntersectKernel scalar() {
+        return new ScalarIntersectKernel();
+    }
+
+    /**
+     * Returns the SIMD kernel if it is on the class path and the incubator module
+     * can be loaded, or the scalar kernel as fallback.
+     *
+     * @return fastest available kernel
+     */
+    static IntersectKernel best() {
+        try {
+            Class<?> simd = Class.forName("raytracer.accel.VectorIntersectKernel");
+            return (IntersectKernel) simd.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return scalar();
+        }
+    }
+
+    /**
+     * @return kernel selected by {@value #SIMD_PROPERTY}, or null when batched leaves are disabled
+     */
+    static IntersectKernel configured() {
+        return Boolean.getBoolean(SIMD_PROPERTY) ? best() : null;
+    }
+}
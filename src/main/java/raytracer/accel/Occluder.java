@@ -0,0 +1,26 @@
+package raytracer.accel;
+
+import raytracer.Ray;
+import raytracer.shape.Shape;
+
+/**
+ * Primitive found blocking a shadow ray, kept so the next shadow ray towards the
+ * same light can test it first.
+ *
+ * @param shape     blocking shape
+ * @param primitive blocking primitive of the shape
+ */
+public record Occluder(Shape shape, int primitive) {
+
+    /**
+     * Tests whether this primitive blocks the ray within (tMin, tMax).
+     *
+     * @param ray  ray to test
+     * @param tMin lower bound (exclusive)
+     * @param tMax upper bound (exclusive)
+     * @return true if the ray is blocked
+     */
+    public boolean occludes(Ray ray, double tMin, double tMax) {
+        return shape.occludes(ray, tMin, tMax, primitive);
+    }
+}
@@ -0,0 +1,104 @@
+package raytracer.accel;
+
+import raytracer.shape.Shape;
+import raytracer.shape.Sphere;
+import raytracer.shape.Triangle;
+import raytracer.shape.TriangleMesh;
+
+/**
+ * Struct-of-arrays copy of sphere and triangle geometry, indexed like the shape
+ * array it was built from (a triangle of a {@link TriangleMesh} counts as a triangle). Spheres store center and radius², triangles store
+ * vertex a and the edges b - a and c - a; slots of other kinds are left at zero.
+ * Read by {@link IntersectKernel} implementations.
+ */
+public final class PrimitiveBatch {
+    /** Kind tag of a sphere slot. */
+    public static final byte SPHERE = 0;
+    /** Kind tag of a triangle slot. */
+    public static final byte TRIANGLE = 1;
+    /** Kind tag of any other shape, tested through {@link Shape#intersectDistance}. */
+    public static final byte OTHER = 2;
+
+    final byte[] kind;
+    final double[] centerX, centerY, centerZ, radiusSquared;
+    final double[] vertexX, vertexY, vertexZ;
+    final double[] edge1X, edge1Y, edge1Z;
+    final double[] edge2X, edge2Y, edge2Z;
+
+    /**
+     * Copies the geometry of the given single-primitive shapes.
+     *
+     * @param shapes shapes, in the slot order used by kernel calls
+     */
+    public PrimitiveBatch(Shape[] shapes) {
+        this(shapes, new int[shapes.length]);
+    }
+
+    /**
+     * Copies the geometry of the given primitives.
+     *
+     * @param shapes     shape of each slot, in the slot order used by kernel calls
+     * @param primitives primitive of each slot in its shape
+     */
+    public PrimitiveBatch(Shape[] shapes, int[] primitives) {
+        int n = shapes.length;
+        kind = new byte[n];
+        centerX = new double[n]; centerY = new double[n]; centerZ = new double[n];
+        radiusSquared = new double[n];
+        vertexX = new double[n]; vertexY = new double[n]; vertexZ = new double[n];
+        edge1X = new double[n]; edge1Y = new double[n]; edge1Z = new double[n];
+        edge2X = new double[n]; edge2Y = new double[n]; edge2Z = new double[n];
+
+        for (int i = 0; i < n; i++) {
+            kind[i] = kindOf(shapes[i]);
+            if (shapes[i] instanceof Sphere s) {
+                centerX[i] = s.center().x();
+                centerY[i] = s.center().y();
+                centerZ[i] = s.center().z();
+                radiusSquared[i] = s.radius() * s.radius();
+            } else if (shapes[i] instanceof Triangle t) {
+                vertexX[i] = t.a().x();
+                vertexY[i] = t.a().y();
+                vertexZ[i] = t.a().z();
+                edge1X[i] = t.b().x() - t.a().x();
+                edge1Y[i] = t.b().y() - t.a().y();
+                edge1Z[i] = t.b().z() - t.a().z();
+                edge2X[i] = t.c().x() - t.a().x();
+                edge2Y[i] = t.c().y() - t.a().y();
+                edge2Z[i] = t.c().z() - t.a().z();
+            } else if (shapes[i] instanceof TriangleMesh mesh) {
+                int a = mesh.vertex(primitives[i], 0), b = mesh.vertex(primitives[i], 1), c = mesh.vertex(primitives[i], 2);
+                vertexX[i] = mesh.x(a);
+                vertexY[i] = mesh.y(a);
+                vertexZ[i] = mesh.z(a);
+                edge1X[i] = mesh.x(b) - mesh.x(a);
+                edge1Y[i] = mesh.y(b) - mesh.y(a);
+                edge1Z[i] = mesh.z(b) - mesh.z(a);
+                edge2X[i] = mesh.x(c) - mesh.x(a);
+                edge2Y[i] = mesh.y(c) - mesh.y(a);
+                edge2Z[i] = mesh.z(c) - mesh.z(a);
+            }
+        }
+    }
+
+    /**
+     * Returns the kind tag of a shape.
+     *
+     * @param shape shape
+     * @return {@link #SPHERE}, {@link #TRIANGLE} or {@link #OTHER}
+     */
+    public static byte kindOf(Shape shape) {
+        if (shape instanceof Sphere) return SPHERE;
+        if (shape instanceof Triangle || shape instanceof TriangleMesh) return TRIANGLE;
+        return OTHER;
+    }
+
+    /** @return number of slots */
+    public int size() { return kind.length; }
+
+    /**
+     * @param slot slot index
+     * @return kind tag of the slot
+     */
+    public byte kind(int slot) { return kind[slot]; }
+}
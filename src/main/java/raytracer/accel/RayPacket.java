@@ -0,0 +1,109 @@
+package raytracer.accel;
+
+import raytracer.Ray;
+
+/**
+ * Group of rays with a common origin (typically the primary rays of a small pixel
+ * block), traced together through the BVH with one closest-hit record per ray.
+ * <p>
+ * When every direction component has the same non-zero sign across the packet,
+ * the packet is coherent: the range of inverse directions on each axis bounds
+ * the packet frustum, and a node whose box lies outside it is rejected for all
+ * rays at once. Incoherent packets are traced ray by ray.
+ */
+public final class RayPacket {
+    private final Ray[] rays;
+    private final HitRecord[] hits;
+    final double[] invX, invY, invZ;
+    private int size;
+
+    private boolean coherent;
+    double originX, originY, originZ;
+    /** Smallest and largest inverse direction component on each axis. */
+    double invMinX, invMaxX, invMinY, invMaxY, invMinZ, invMaxZ;
+
+    /**
+     * Creates an empty packet.
+     *
+     * @param capacity maximum number of rays
+     */
+    public RayPacket(int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("capacity doit être > 0");
+        rays = new Ray[capacity];
+        hits = new HitRecord[capacity];
+        invX = new double[capacity];
+        invY = new double[capacity];
+        invZ = new double[capacity];
+        for (int i = 0; i < capacity; i++) {
+            hits[i] = new HitRecord();
+        }
+    }
+
+    /** Removes all rays from the packet. */
+    public void clear() {
+        size = 0;
+        coherent = true;
+    }
+
+    /**
+     * Appends a ray and resets its hit record.
+     *
+     * @param ray ray to add; its origin must equal the origin of the rays already added
+     * @throws IllegalStateException if the packet is full
+     */
+    public void add(Ray ray) {
+        if (size == rays.length) throw new IllegalStateException("Paquet de rayons plein");
+        double ix = 1.0 / ray.direction().x();
+        double iy = 1.0 / ray.direction().y();
+        double iz = 1.0 / ray.direction().z();
+
+        if (size == 0) {
+            originX = ray.origin().x();
+            originY = ray.origin().y();
+            originZ = ray.origin().z();
+            invMinX = invMaxX = ix;
+            invMinY = invMaxY = iy;
+            invMinZ = invMaxZ = iz;
+            coherent = finiteNonZero(ix) && finiteNonZero(iy) && finiteNonZero(iz);
+        } else if (coherent) {
+            coherent = sameSign(ix, invMinX) && sameSign(iy, invMinY) && sameSign(iz, invMinZ)
+                && ray.origin().x() == originX && ray.origin().y() == originY && ray.origin().z() == originZ;
+            invMinX = Math.min(invMinX, ix); invMaxX = Math.max(invMaxX, ix);
+            invMinY = Math.min(invMinY, iy); invMaxY = Math.max(invMaxY, iy);
+            invMinZ = Math.min(invMinZ, iz); invMaxZ = Math.max(invMaxZ, iz);
+        }
+
+        rays[size] = ray;
+        invX[size] = ix;
+        invY[size] = iy;
+        invZ[size] = iz;
+        hits[size].clear();
+        size++;
+    }
+
+    /** @return number of rays */
+    public int size() { return size; }
+
+    /** @return true if the packet can be traced with frustum culling */
+    public boolean coherent() { return coherent; }
+
+    /**
+     * @param i ray index
+     * @return i-th ray
+     */
+    public Ray ray(int i) { return rays[i]; }
+
+    /**
+     * @param i ray index
+     * @return closest-hit record of the i-th ray
+     */
+    public HitRecord hit(int i) { return hits[i]; }
+
+    private static boolean finiteNonZero(double inverse) {
+        return inverse != 0.0 && !Double.isInfinite(inverse) && !Double.isNaN(inverse);
+    }
+
+    private static boolean sameSign(double inverse, double reference) {
+        return finiteNonZero(inverse) && (inverse > 0.0) == (reference > 0.0);
+    }
+}
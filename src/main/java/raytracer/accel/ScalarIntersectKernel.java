@@ -0,0 +1,90 @@
+package raytracer.accel;
+
+/**
+ * Scalar {@link IntersectKernel}, used when the SIMD kernel is not available.
+ * Follows the operation order of the shape classes so distances are bit-identical.
+ */
+public final class ScalarIntersectKernel implements IntersectKernel {
+    private static final double EPSILON = 1e-6;
+
+    @Override
+    public void sphereDistances(PrimitiveBatch batch, int from, int to,
+                                double ox, double oy, double oz, double dx, double dy, double dz, double[] out) {
+        double quadraticA = dx * dx + dy * dy + dz * dz;
+        double inverseTwoA = 1.0 / (2.0 * quadraticA);
+
+        for (int i = from; i < to; i++) {
+            double ocx = ox - batch.centerX[i];
+            double ocy = oy - batch.centerY[i];
+            double ocz = oz - batch.centerZ[i];
+
+            double quadraticB = 2.0 * (ocx * dx + ocy * dy + ocz * dz);
+            double quadraticC = (ocx * ocx + ocy * ocy + ocz * ocz) - batch.radiusSquared[i];
+
+            double discriminant = quadraticB * quadraticB - 4 * quadraticA * quadraticC;
+            if (discriminant < 0.0) {
+                out[i - from] = Double.POSITIVE_INFINITY;
+                continue;
+            }
+
+            double sqrtDiscriminant = Math.sqrt(discriminant);
+            double t1 = (-quadraticB - sqrtDiscriminant) * inverseTwoA;
+            double t2 = (-quadraticB + sqrtDiscriminant) * inverseTwoA;
+
+            double t;
+            if (t1 > EPSILON && t2 > EPSILON) {
+                t = Math.min(t1, t2);
+            } else if (t1 > EPSILON) {
+                t = t1;
+            } else if (t2 > EPSILON) {
+                t = t2;
+            } else {
+                t = Double.POSITIVE_INFINITY;
+            }
+            out[i - from] = t;
+        }
+    }
+
+    @Override
+    public void triangleDistances(PrimitiveBatch batch, int from, int to,
+                                  double ox, double oy, double oz, double dx, double dy, double dz, double[] out) {
+        for (int i = from; i < to; i++) {
+            out[i - from] = triangleDistance(batch, i, ox, oy, oz, dx, dy, dz);
+        }
+    }
+
+    private static double triangleDistance(PrimitiveBatch batch, int i,
+                                           double ox, double oy, double oz, double dx, double dy, double dz) {
+        double e1x = batch.edge1X[i], e1y = batch.edge1Y[i], e1z = batch.edge1Z[i];
+        double e2x = batch.edge2X[i], e2y = batch.edge2Y[i], e2z = batch.edge2Z[i];
+
+        double px = dy * e2z - dz * e2y;
+        double py = dz * e2x - dx * e2z;
+        double pz = dx * e2y - dy * e2x;
+
+        double determinant = e1x * px + e1y * py + e1z * pz;
+        if (Math.abs(determinant) < EPSILON) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double inverseDeterminant = 1.0 / determinant;
+
+        double tx = ox - batch.vertexX[i], ty = oy - batch.vertexY[i], tz = oz - batch.vertexZ[i];
+
+        double u = (tx * px + ty * py + tz * pz) * inverseDeterminant;
+        if (u < 0.0 || u > 1.0) {
+            return Double.POSITIVE_INFINITY;
+        }
+
+        double qx = ty * e1z - tz * e1y;
+        double qy = tz * e1x - tx * e1z;
+        double qz = tx * e1y - ty * e1x;
+
+        double v = (dx * qx + dy * qy + dz * qz) * inverseDeterminant;
+        if (v < 0.0 || u + v > 1.0) {
+            return Double.POSITIVE_INFINITY;
+        }
+
+        double t = (e2x * qx + e2y * qy + e2z * qz) * inverseDeterminant;
+        return t < EPSILON ? Double.POSITIVE_INFINITY : t;
+    }
+}
@@ -0,0 +1,172 @@
+package raytracer.accel;
+
+import java.util.Optional;
+
+import raytracer.Ray;
+import raytracer.math.Point;
+import raytracer.math.Vector;
+import raytracer.shape.Shape;
+
+/**
+ * Grid of the bounded primitives seen from a directional light, used to answer shadow
+ * queries towards that light without traversing the whole hierarchy.
+ * <p>
+ * All shadow rays towards a directional light are parallel, so the primitives that can
+ * block a point are those whose projection along the light contains the point's. The map
+ * cuts the plane perpendicular to the light into texels and lists in each texel every
+ * bounded primitive whose projected bounding box overlaps it. A query tests exactly the
+ * primitives of the point's texel and the unbounded shapes, so its answer is the one of a
+ * full ray cast: the map never misses an occluder, however small.
+ */
+public final class ShadowMap {
+    /** Relative margin added around projected boxes, above the rounding of the projection. */
+    private static final double MARGIN = 1e-9;
+
+    private final BVH bvh;
+    private final Shape[] unbounded;
+    private final int resolution;
+    /** Map basis: u and v span the map plane, perpendicular to the light. */
+    private final double ux, uy, uz, vx, vy, vz;
+    private final double minU, minV, texelU, texelV;
+    /** Start of each texel's run in {@link #entries}, row-major, plus the end of the last run. */
+    private final int[] starts;
+    /** Leaf-order indices in the hierarchy of the primitives overlapping each texel. */
+    private final int[] entries;
+
+    /**
+     * Lists the bounded primitives of an acceleration structure over a grid seen from a light.
+     *
+     * @param accelerator scene acceleration structure
+     * @param towardLight unit direction towards the light
+     * @param resolution  texels per side of the map
+     * @throws IllegalArgumentException if the map would hold more entries than an array can
+     */
+    public ShadowMap(Accelerator accelerator, Vector towardLight, int resolution) {
+        this.bvh = accelerator.bvh();
+        this.unbounded = accelerator.unbounded();
+        this.resolution = resolution;
+        this.starts = new int[resolution * resolution + 1];
+
+        Vector w = towardLight;
+        Vector helper = Math.abs(w.x()) < 0.9 ? new Vector(1, 0, 0) : new Vector(0, 1, 0);
+        Vector u = helper.cross(w).normalized();
+        Vector v = w.cross(u).normalized();
+        ux = u.x(); uy = u.y(); uz = u.z();
+        vx = v.x(); vy = v.y(); vz = v.z();
+
+        Optional<BoundingBox> box = bvh.bounds();
+        if (box.isEmpty()) {
+            minU = minV = 0.0;
+            texelU = texelV = 1.0;
+            entries = new int[0];
+            return;
+        }
+
+        double[] range = project(box.get());
+        double margin = MARGIN * Math.max(Math.max(range[1] - range[0], range[3] - range[2]), 1.0);
+        minU = range[0] - margin;
+        minV = range[2] - margin;
+        texelU = (range[1] - range[0] + 2 * margin) / resolution;
+        texelV = (range[3] - range[2] + 2 * margin) / resolution;
+
+        // texel rectangle of each primitive: first column, last column, first row, last row
+        int n = bvh.size();
+        int[] rectangles = new int[4 * n];
+        long total = 0;
+        for (int i = 0; i < n; i++) {
+            double[] r = project(bvh.shape(i).bounds(bvh.primitive(i)).orElseThrow());
+            int c0 = column(r[0] - margin), c1 = column(r[1] + margin);
+            int r0 = row(r[2] - margin), r1 = row(r[3] + margin);
+            rectangles[4 * i] = c0; rectangles[4 * i + 1] = c1;
+            rectangles[4 * i + 2] = r0; rectangles[4 * i + 3] = r1;
+            for (int row = r0; row <= r1; row++) {
+                for (int col = c0; col <= c1; col++) {
+                    starts[row * resolution + col + 1]++;
+                }
+            }
+            total += (long) (c1 - c0 + 1) * (r1 - r0 + 1);
+        }
+        if (total > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Carte d'ombre trop grande : " + total + " entrées");
+        }
+        for (int t = 0; t < resolution * resolution; t++) {
+            starts[t + 1] += starts[t];
+        }
+        entries = new int[(int) total];
+        int[] next = new int[resolution * resolution];
+        for (int i = 0; i < n; i++) {
+            for (int row = rectangles[4 * i + 2]; row <= rectangles[4 * i + 3]; row++) {
+                for (int col = rectangles[4 * i]; col <= rectangles[4 * i + 1]; col++) {
+                    int texel = row * resolution + col;
+                    entries[starts[texel] + next[texel]++] = i;
+                }
+            }
+        }
+    }
+
+    /** @return texels per side of the map */
+    public int resolution() { return resolution; }
+
+    /** @return memory held by the texel runs and their entries, in bytes */
+    public long sizeBytes() {
+        return (long) Integer.BYTES * (starts.length + entries.length);
+    }
+
+    /**
+     * Tells whether a shadow ray towards the light is blocked, testing only the primitives
+     * listed in the texel of its origin and the unbounded shapes.
+     *
+     * @param ray  shadow ray, starting at the shaded point and pointing to the light
+     * @param tMin lower bound of blocking distances (exclusive)
+     * @param tMax upper bound of blocking distances (exclusive)
+     * @return true if a shape blocks the ray within the range
+     */
+    public boolean occluded(Ray ray, double tMin, double tMax) {
+        for (Shape shape : unbounded) {
+            if (shape.occludes(ray, tMin, tMax)) {
+                return true;
+            }
+        }
+        Point p = ray.origin();
+        double fu = Math.floor((p.x() * ux + p.y() * uy + p.z() * uz - minU) / texelU);
+        double fv = Math.floor((p.x() * vx + p.y() * vy + p.z() * vz - minV) / texelV);
+        // the light ray through a point outside the map misses every bounded primitive
+        if (!(fu >= 0 && fu < resolution && fv >= 0 && fv < resolution)) {
+            return false;
+        }
+        int texel = (int) fv * resolution + (int) fu;
+        for (int k = starts[texel]; k < starts[texel + 1]; k++) {
+            int i = entries[k];
+            if (bvh.shape(i).occludes(ray, tMin, tMax, bvh.primitive(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** @return map column holding a u coordinate, clamped to the map */
+    private int column(double pu) {
+        return (int) Math.max(0, Math.min(resolution - 1, Math.floor((pu - minU) / texelU)));
+    }
+
+    /** @return map row holding a v coordinate, clamped to the map */
+    private int row(double pv) {
+        return (int) Math.max(0, Math.min(resolution - 1, Math.floor((pv - minV) / texelV)));
+    }
+
+    /** @return {minU, maxU, minV, maxV} of the projection of a box on the map plane */
+    private double[] project(BoundingBox b) {
+        double[] range = { Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+                           Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY };
+        for (int corner = 0; corner < 8; corner++) {
+            double x = (corner & 1) == 0 ? b.minX() : b.maxX();
+            double y = (corner & 2) == 0 ? b.minY() : b.maxY();
+            double z = (corner & 4) == 0 ? b.minZ() : b.maxZ();
+            double pu = x * ux + y * uy + z * uz;
+            double pv = x * vx + y * vy + z * vz;
+            range[0] = Math.min(range[0], pu); range[1] = Math.max(range[1], pu);
+            range[2] = Math.min(range[2], pv); range[3] = Math.max(range[3], pv);
+        }
+        return range;
+    }
+}
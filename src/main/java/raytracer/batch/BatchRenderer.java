@@ -0,0 +1,446 @@
+package raytracer.batch;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import raytracer.Animation;
+import raytracer.RayTracer;
+import raytracer.Renderer;
+import raytracer.Scene;
+import raytracer.image.Framebuffer;
+import raytracer.parsing.SceneFileParser;
+import raytracer.parsing.SceneSnapshot;
+
+/**
+ * Renders many scenes in one process, so class loading and JIT warm-up are paid once.
+ * <p>
+ * Scenes flow through three stages, each run by its own threads: loading (parsing
+ * or snapshot reading, then compiling with the BVH build), rendering, and encoding.
+ * Stages are connected by bounded queues holding as many entries as the next stage
+ * has threads, so a slow stage holds back the others instead of piling up parsed
+ * scenes or framebuffers in memory. Every frame of an animated scene is a separate
+ * render. A scene that fails is reported and the others go on.
+ * <p>
+ * Scenes often share an output name ("output mascene.png"). The first scene in input
+ * order claims its output files; a later scene whose output is already claimed writes
+ * its images under that name followed by its own file name ("mascene_test2.png"),
+ * so no image overwrites another one. Scenes load in parallel but claim in input
+ * order, so the names do not depend on which scene loads first.
+ */
+public final class BatchRenderer {
+    /** Extensions of the scene files picked in a directory. */
+    private static final String[] SCENE_EXTENSIONS = { ".scene", ".test" };
+
+    private final int loaders;
+    private final int renderers;
+    private final int encoders;
+    private final int threads;
+    private final int tileSize;
+    private final int packetSize;
+
+    /**
+     * Timings of one rendered image.
+     *
+     * @param scene       scene file
+     * @param output      image file, or null if the scene could not be loaded
+     * @param loadNanos   parse and compile time, counted on the first frame of a scene
+     * @param renderNanos render time
+     * @param encodeNanos encoding and write time
+     * @param error       failure message, or null if the image was written
+     */
+    public record Result(Path scene, String output, long loadNanos, long renderNanos, long encodeNanos,
+                         String error) {}
+
+    /**
+     * Constructs a batch renderer.
+     *
+     * @param loaders    threads parsing and compiling scenes
+     * @param renderers  scenes rendered at once
+     * @param encoders   threads encoding and writing images
+     * @param threads    render threads of each render
+     * @param tileSize   tile edge length in pixels
+     * @param packetSize primary ray packet edge length
+     * @throws IllegalArgumentException if a count is not positive
+     */
+    public BatchRenderer(int loaders, int renderers, int encoders, int threads, int tileSize, int packetSize) {
+        if (loaders <= 0 || renderers <= 0 || encoders <= 0) {
+            throw new IllegalArgumentException("Chaque étape du lot doit avoir au moins un thread");
+        }
+        this.loaders = loaders;
+        this.renderers = renderers;
+        this.encoders = encoders;
+        this.threads = threads;
+        this.tileSize = tileSize;
+        this.packetSize = packetSize;
+    }
+
+    /**
+     * Lists the scenes of a batch: the .scene and .test files under a directory, or
+     * the files named by a manifest, one per line, relative to the manifest's
+     * directory ('#' starts a comment).
+     *
+     * @param batch directory or manifest file
+     * @return scene files, sorted for a directory, in manifest order otherwise
+     * @throws IOException if the directory or manifest cannot be read
+     */
+    public static List<Path> scenes(Path batch) throws IOException {
+        if (Files.isDirectory(batch)) {
+            try (Stream<Path> files = Files.walk(batch)) {
+                return files.filter(Files::isRegularFile)
+                    .filter(p -> isSceneFile(p.getFileName().toString()))
+                    .sorted()
+                    .toList();
+            }
+        }
+        Path base = batch.toAbsolutePath().getParent();
+        List<Path> scenes = new ArrayList<>();
+        for (String line : Files.readAllLines(batch)) {
+            int comment = line.indexOf('#');
+            String entry = (comment >= 0 ? line.substring(0, comment) : line).trim();
+            if (!entry.isEmpty()) {
+                scenes.add(base.resolve(entry));
+            }
+        }
+        return scenes;
+    }
+
+    private static boolean isSceneFile(String name) {
+        for (String extension : SCENE_EXTENSIONS) {
+            if (name.endsWith(extension)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Renders the scenes and writes their images.
+     *
+     * @param scenes scene files or snapshots
+     * @return one result per image, or per scene that could not be loaded, in input order
+     * @throws InterruptedException if interrupted while waiting for the stages
+     */
+    public List<Result> render(List<Path> scenes) throws InterruptedException {
+        BlockingQueue<Job> loaded = new ArrayBlockingQueue<>(renderers);
+        BlockingQueue<Job> rendered = new ArrayBlockingQueue<>(encoders);
+        ConcurrentLinkedQueue<Job> done = new ConcurrentLinkedQueue<>();
+        Claims claims = new Claims();
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger loading = new AtomicInteger(loaders);
+        AtomicInteger rendering = new AtomicInteger(renderers);
+
+        List<Thread> stages = new ArrayList<>();
+        for (int i = 0; i < loaders; i++) {
+            stages.add(stage("batch-load-" + i, () -> {
+                try {
+                    int s;
+                    while ((s = next.getAndIncrement()) < scenes.size()) {
+                        load(s, scenes.get(s), claims, loaded, done);
+                    }
+                } finally {
+                    if (loading.decrementAndGet() == 0) {
+                        for (int r = 0; r < renderers; r++) loaded.put(Job.END);
+                    }
+                }
+            }));
+        }
+        for (int i = 0; i < renderers; i++) {
+            stages.add(stage("batch-render-" + i, () -> {
+                try {
+                    Job job;
+                    while ((job = loaded.take()) != Job.END) {
+                        render(job, rendered, done);
+                    }
+                } finally {
+                    if (rendering.decrementAndGet() == 0) {
+                        for (int e = 0; e < encoders; e++) rendered.put(Job.END);
+                    }
+                }
+            }));
+        }
+        for (int i = 0; i < encoders; i++) {
+            stages.add(stage("batch-encode-" + i, () -> {
+                Job job;
+                while ((job = rendered.take()) != Job.END) {
+                    encode(job);
+                    done.add(job);
+                }
+            }));
+        }
+        try {
+            for (Thread stage : stages) {
+                stage.join();
+            }
+        } finally {
+            stages.forEach(Thread::interrupt);
+        }
+
+        return done.stream()
+            .sorted(Comparator.comparingInt((Job job) -> job.index).thenComparingInt(job -> job.frame))
+            .map(Job::result)
+            .toList();
+    }
+
+    /**
+     * Loads and compiles a scene, claims its output files, then queues one render per frame.
+     */
+    private void load(int index, Path file, Claims claims, BlockingQueue<Job> loaded,
+                      ConcurrentLinkedQueue<Job> done) throws InterruptedException {
+        long start = System.nanoTime();
+        Scene scene = null;
+        Exception error = null;
+        try {
+            scene = (SceneSnapshot.isSnapshot(file) ? SceneSnapshot.read(file) : new SceneFileParser().parse(file))
+                .compile();
+        } catch (IOException | RuntimeException e) {
+            error = e;
+        } finally {
+            if (scene == null) {
+                // later scenes wait for this one's turn, which must pass even if loading failed
+                claims.pass(index);
+            }
+        }
+        long loadNanos = System.nanoTime() - start;
+        String output = null;
+        if (scene != null) {
+            try {
+                output = claims.claim(index, scene, file);
+            } catch (IllegalArgumentException e) {
+                error = e;
+            }
+        }
+        if (error != null) {
+            Job failed = new Job(index, file, null, 0, null);
+            failed.loadNanos = loadNanos;
+            fail(failed, error, done);
+            return;
+        }
+        Animation animation = scene.getAnimation();
+        if (animation == null) {
+            Job job = new Job(index, file, scene, 0, output);
+            job.loadNanos = loadNanos;
+            loaded.put(job);
+            return;
+        }
+        for (int f = 0; f < animation.frames(); f++) {
+            Job job = new Job(index, file, scene, f, Animation.frameOutput(output, f));
+            job.loadNanos = f == 0 ? loadNanos : 0;
+            loaded.put(job);
+        }
+    }
+
+    /**
+     * Output files claimed by the scenes of a batch. Each scene takes its turn in input
+     * order, whatever order the scenes finish loading in.
+     */
+    private static final class Claims {
+        private final Map<Path, Path> claimed = new HashMap<>();
+        /** Input index of the next scene to claim. */
+        private int turn;
+
+        /**
+         * Waits for the scenes before this one, then claims its output files.
+         *
+         * @return output file name to write the scene's images under
+         * @throws IllegalArgumentException if the renamed files are taken too
+         */
+        synchronized String claim(int index, Scene scene, Path file) throws InterruptedException {
+            awaitTurn(index);
+            try {
+                return claimOutput(scene, file, claimed);
+            } finally {
+                endTurn();
+            }
+        }
+
+        /** Waits for the scenes before one that could not be loaded, then lets the next one claim. */
+        synchronized void pass(int index) throws InterruptedException {
+            awaitTurn(index);
+            endTurn();
+        }
+
+        private void awaitTurn(int index) throws InterruptedException {
+            while (turn < index) {
+                wait();
+            }
+        }
+
+        private void endTurn() {
+            turn++;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Claims the output files of a scene, renaming them after the scene file if another
+     * scene of the batch already claimed one of them.
+     *
+     * @return output file name to write the scene's images under
+     * @throws IllegalArgumentException if the renamed files are taken too
+     */
+    private static String claimOutput(Scene scene, Path file, Map<Path, Path> claimed) {
+        String output = scene.getOutput();
+        if (claim(scene, output, file, claimed)) {
+            return output;
+        }
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String renamed = suffixed(output, "_" + (dot > 0 ? name.substring(0, dot) : name));
+        if (claim(scene, renamed, file, claimed)) {
+            System.err.println("Sortie " + output + " déjà utilisée dans le lot : " + file + " écrit " + renamed);
+            return renamed;
+        }
+        throw new IllegalArgumentException("Sortie " + output + " déjà utilisée par une autre scène du lot");
+    }
+
+    /**
+     * Claims every image file of a scene written under an output name, or none if one is taken.
+     */
+    private static boolean claim(Scene scene, String output, Path file, Map<Path, Path> claimed) {
+        Animation animation = scene.getAnimation();
+        int frames = animation == null ? 1 : animation.frames();
+        List<Path> taken = new ArrayList<>(frames);
+        for (int f = 0; f < frames; f++) {
+            Path image = Path.of(animation == null ? output : Animation.frameOutput(output, f))
+                .toAbsolutePath().normalize();
+            if (claimed.putIfAbsent(image, file) != null) {
+                taken.forEach(claimed::remove);
+                return false;
+            }
+            taken.add(image);
+        }
+        return true;
+    }
+
+    /** Inserts a suffix before the extension of a file name: "out/img.png" becomes "out/img{suffix}.png". */
+    private static String suffixed(String output, String suffix) {
+        int slash = Math.max(output.lastIndexOf('/'), output.lastIndexOf('\\'));
+        int dot = output.lastIndexOf('.');
+        if (dot <= slash) dot = output.length();
+        return output.substring(0, dot) + suffix + output.substring(dot);
+    }
+
+    private void render(Job job, BlockingQueue<Job> rendered, ConcurrentLinkedQueue<Job> done)
+            throws InterruptedException {
+        long start = System.nanoTime();
+        try {
+            Scene frameScene = job.scene.frame(job.frame);
+            job.image = new Renderer(new RayTracer(frameScene), threads, tileSize, packetSize).renderFrame();
+        } catch (RuntimeException e) {
+            job.renderNanos = System.nanoTime() - start;
+            fail(job, e, done);
+            return;
+        }
+        job.renderNanos = System.nanoTime() - start;
+        job.scene = null;
+        rendered.put(job);
+    }
+
+    private static void encode(Job job) {
+        long start = System.nanoTime();
+        try {
+            Renderer.save(job.image, job.output, 1);
+        } catch (IOException | RuntimeException e) {
+            job.error = String.valueOf(e.getMessage());
+            System.err.println("Échec " + job.file + " : " + job.error);
+        }
+        job.encodeNanos = System.nanoTime() - start;
+        job.image = null;
+    }
+
+    private static void fail(Job job, Exception e, ConcurrentLinkedQueue<Job> done) {
+        job.error = String.valueOf(e.getMessage());
+        job.scene = null;
+        System.err.println("Échec " + job.file + " : " + job.error);
+        done.add(job);
+    }
+
+    /**
+     * Formats the timings of a batch as a table, one line per image, followed by totals.
+     *
+     * @param results   results of {@link #render}
+     * @param wallNanos elapsed time of the whole batch
+     * @return printable report
+     */
+    public static String report(List<Result> results, long wallNanos) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "%-40s %10s %10s %10s%n", "Scène", "analyse", "rendu", "encodage"));
+        long load = 0, render = 0, encode = 0;
+        int failed = 0;
+        for (Result r : results) {
+            String name = r.output() == null ? r.scene().getFileName().toString()
+                : r.scene().getFileName() + " → " + Path.of(r.output()).getFileName();
+            sb.append(String.format(Locale.ROOT, "%-40s %7d ms %7d ms %7d ms", name,
+                r.loadNanos() / 1_000_000, r.renderNanos() / 1_000_000, r.encodeNanos() / 1_000_000));
+            if (r.error() != null) {
+                sb.append("  ÉCHEC : ").append(r.error());
+                failed++;
+            }
+            sb.append(System.lineSeparator());
+            load += r.loadNanos();
+            render += r.renderNanos();
+            encode += r.encodeNanos();
+        }
+        sb.append(String.format(Locale.ROOT, "%-40s %7d ms %7d ms %7d ms%n", "Total (somme des étapes)",
+            load / 1_000_000, render / 1_000_000, encode / 1_000_000));
+        sb.append(String.format(Locale.ROOT, "%d images, %d échecs, durée totale du lot : %d ms",
+            results.size() - failed, failed, wallNanos / 1_000_000));
+        return sb.toString();
+    }
+
+    /** Body of a stage thread, which may be interrupted while waiting on a queue. */
+    private interface StageBody {
+        void run() throws InterruptedException;
+    }
+
+    private static Thread stage(String name, StageBody body) {
+        Thread thread = new Thread(() -> {
+            try {
+                body.run();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, name);
+        thread.start();
+        return thread;
+    }
+
+    /** One image going through the stages. */
+    private static final class Job {
+        /** Marks the end of a queue, once per consumer thread. */
+        static final Job END = new Job(-1, null, null, 0, null);
+
+        final int index;
+        final Path file;
+        final int frame;
+        final String output;
+        Scene scene;
+        Framebuffer image;
+        long loadNanos;
+        long renderNanos;
+        long encodeNanos;
+        String error;
+
+        Job(int index, Path file, Scene scene, int frame, String output) {
+            this.index = index;
+            this.file = file;
+            this.scene = scene;
+            this.frame = frame;
+            this.output = output;
+        }
+
+        Result result() {
+            return new Result(file, output, loadNanos, renderNanos, encodeNanos, error);
+        }
+    }
+}
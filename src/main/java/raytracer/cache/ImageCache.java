@@ -0,0 +1,140 @@
+package raytracer.cache;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Directory of rendered images named by the {@link SceneHash} of their scene and
+ * the extension of their format, so an unchanged scene is not rendered again.
+ * <p>
+ * Entries are written to a temporary file and moved into place, so processes
+ * sharing the directory never read a partial image. A hit refreshes the entry's
+ * modification time; when the directory grows past its size limit, the entries
+ * least recently stored or hit are deleted first.
+ */
+public final class ImageCache {
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private final Path directory;
+    private final long maxBytes;
+
+    /**
+     * Opens a cache directory, creating it if needed.
+     *
+     * @param directory cache directory
+     * @param maxBytes  total size of the cached images beyond which the oldest are deleted
+     * @throws IOException if the directory cannot be created
+     */
+    public ImageCache(Path directory, long maxBytes) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Looks up the image of a scene and marks it as recently used.
+     *
+     * @param hash   scene hash
+     * @param output output file name, whose extension selects the format
+     * @return cached image file, or empty on a miss
+     * @throws IOException if the cache cannot be read
+     */
+    public Optional<Path> lookup(String hash, String output) throws IOException {
+        Path entry = entry(hash, output);
+        try {
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+            return Optional.of(entry);
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Copies the image of a cache hit to the output file, creating parent directories if needed.
+     * Another process sharing the directory may have evicted the entry since the lookup, in
+     * which case nothing is copied and the caller renders the scene as on a miss.
+     *
+     * @param cached image returned by {@link #lookup}
+     * @param output destination
+     * @return true if the image was copied, false if the entry no longer exists
+     * @throws IOException if the copy fails
+     */
+    public static boolean copyTo(Path cached, String output) throws IOException {
+        Path target = Path.of(output);
+        if (target.getParent() != null) {
+            Files.createDirectories(target.getParent());
+        }
+        try {
+            Files.copy(cached, target, StandardCopyOption.REPLACE_EXISTING);
+            return true;
+        } catch (NoSuchFileException e) {
+            if (Files.exists(cached)) throw e;
+            return false;
+        }
+    }
+
+    /**
+     * Stores a rendered image, then evicts the least recently used entries beyond the size limit.
+     *
+     * @param hash   scene hash
+     * @param output image file just written for the scene
+     * @throws IOException if the image cannot be copied into the cache
+     */
+    public void store(String hash, String output) throws IOException {
+        Path entry = entry(hash, output);
+        Path temporary = Files.createTempFile(directory, hash, TEMPORARY_SUFFIX);
+        try {
+            Files.copy(Path.of(output), temporary, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(temporary, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+        evict();
+    }
+
+    /** @return cache file of a scene hash, with the extension of the output file */
+    private Path entry(String hash, String output) {
+        String name = Path.of(output).getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String extension = dot >= 0 ? name.substring(dot).toLowerCase(Locale.ROOT) : "";
+        return directory.resolve(hash + extension);
+    }
+
+    /**
+     * Deletes the least recently used entries until the cache fits its limit.
+     * Files removed meanwhile by another process are skipped.
+     */
+    private void evict() throws IOException {
+        record Entry(Path path, long size, FileTime used) {}
+        List<Entry> entries = new ArrayList<>();
+        long total = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                if (file.getFileName().toString().endsWith(TEMPORARY_SUFFIX)) continue;
+                try {
+                    BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                    if (!attributes.isRegularFile()) continue;
+                    entries.add(new Entry(file, attributes.size(), attributes.lastModifiedTime()));
+                    total += attributes.size();
+                } catch (NoSuchFileException e) {
+                    // removed by another process
+                }
+            }
+        }
+        entries.sort(Comparator.comparing(Entry::used));
+        for (int i = 0; total > maxBytes && i < entries.size(); i++) {
+            Files.deleteIfExists(entries.get(i).path());
+            total -= entries.get(i).size();
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package raytracer.cache;
+
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.HexFormat;
+import java.util.Optional;
+
+import raytracer.Camera;
+import raytracer.Scene;
+import raytracer.light.AbstractLight;
+import raytracer.light.DirectionalLight;
+import raytracer.light.PointLight;
+import raytracer.math.AbstractVec3;
+import raytracer.math.Color;
+import raytracer.shape.Plane;
+import raytracer.shape.Shape;
+import raytracer.shape.Sphere;
+import raytracer.shape.Triangle;
+import raytracer.shape.TriangleMesh;
+
+/**
+ * Canonical hash of everything that decides the pixels of a parsed {@link Scene}:
+ * image size, camera, render settings, lights, materials and geometry.
+ * <p>
+ * The hash is computed from the parsed values, not the text, so comments, spacing,
+ * number spelling and source lines do not change it, and a snapshot hashes like the
+ * scene it was compiled from. The output file name is left out: only its format
+ * counts, and is added by {@link ImageCache}. {@link #FORMAT} changes whenever the
+ * renderer would draw the same scene differently, which invalidates older entries.
+ */
+public final class SceneHash {
+    /** Version of the hashed layout and of the renderer output. */
+    private static final int FORMAT = 1;
+
+    private SceneHash() {}
+
+    /**
+     * Hashes a scene.
+     *
+     * @param scene parsed scene
+     * @return 32 hexadecimal digits, or empty if the scene holds a kind of shape or
+     *         light that is not hashed, or an animation
+     */
+    public static Optional<String> of(Scene scene) {
+        if (scene.getAnimation() != null) {
+            return Optional.empty();
+        }
+        Hasher out = new Hasher();
+        if (!write(scene, out)) {
+            return Optional.empty();
+        }
+        return Optional.of(out.finish());
+    }
+
+    private static boolean write(Scene scene, Hasher out) {
+        out.writeInt(FORMAT);
+        out.writeInt(scene.getWidth());
+        out.writeInt(scene.getHeight());
+        Camera camera = scene.getCamera();
+        writeVec(out, camera.getLookFrom());
+        writeVec(out, camera.getLookAt());
+        writeVec(out, camera.getUp());
+        out.writeDouble(camera.getFovDeg());
+        writeColor(out, scene.getAmbient());
+        out.writeInt(scene.getMaxDepth());
+        out.writeInt(scene.getAaSamples());
+        out.writeDouble(scene.getAaThreshold());
+        out.writeInt(scene.getLightSamples());
+        out.writeInt(scene.getShadowMapResolution());
+
+        out.writeInt(scene.getLights().size());
+        for (AbstractLight light : scene.getLights()) {
+            if (light instanceof DirectionalLight directional) {
+                out.writeByte('D');
+                writeVec(out, directional.direction());
+            } else if (light instanceof PointLight point) {
+                out.writeByte('P');
+                writeVec(out, point.origin());
+            } else {
+                return false;
+            }
+            writeColor(out, light.color());
+        }
+
+        out.writeInt(scene.getShapes().size());
+        for (Shape shape : scene.getShapes()) {
+            if (shape instanceof Sphere sphere) {
+                out.writeByte('S');
+                writeVec(out, sphere.center());
+                out.writeDouble(sphere.radius());
+            } else if (shape instanceof Plane plane) {
+                out.writeByte('P');
+                writeVec(out, plane.point());
+                writeVec(out, plane.normal());
+            } else if (shape instanceof Triangle triangle) {
+                out.writeByte('T');
+                writeVec(out, triangle.a());
+                writeVec(out, triangle.b());
+                writeVec(out, triangle.c());
+            } else if (shape instanceof TriangleMesh mesh) {
+                out.writeByte('M');
+                writeMesh(out, mesh);
+                continue;
+            } else {
+                return false;
+            }
+            writeColor(out, shape.getDiffuse());
+            writeColor(out, shape.getSpecular());
+            out.writeDouble(shape.getShininess());
+        }
+        return true;
+    }
+
+    private static void writeMesh(Hasher out, TriangleMesh mesh) {
+        out.writeInt(mesh.vertexCount());
+        out.writeDoubles(mesh.positionBuffer());
+        out.writeInt(mesh.materialCount());
+        for (int m = 0; m < mesh.materialCount(); m++) {
+            writeColor(out, mesh.diffuse(m));
+            writeColor(out, mesh.specular(m));
+            out.writeDouble(mesh.shininess(m));
+        }
+        out.writeInt(mesh.triangleCount());
+        out.writeInts(mesh.indexBuffer());
+        out.writeInts(mesh.materialBuffer());
+    }
+
+    private static void writeVec(Hasher out, AbstractVec3 v) {
+        out.writeDouble(v.x());
+        out.writeDouble(v.y());
+        out.writeDouble(v.z());
+    }
+
+    private static void writeColor(Hasher out, Color c) {
+        out.writeDouble(c.r());
+        out.writeDouble(c.g());
+        out.writeDouble(c.b());
+    }
+
+    /**
+     * 128-bit hash of a sequence of values, in two lanes mixed like MurmurHash3 x64.
+     * Values are folded one by one, without an intermediate byte stream, so the
+     * loops over large meshes are compiled early and hashing stays cheap even at
+     * JVM start. Not cryptographic: it guards against accidental collisions only.
+     */
+    private static final class Hasher {
+        private static final long C1 = 0x87c37b91114253d5L;
+        private static final long C2 = 0x4cf5ad432745937fL;
+
+        private long h1 = 0x9368e53c2f6af274L;
+        private long h2 = 0x586dcd208f7cd3fdL;
+        private long count;
+
+        void writeByte(int value) {
+            writeLong(value & 0xff);
+        }
+
+        void writeInt(int value) {
+            writeLong(value);
+        }
+
+        void writeDouble(double value) {
+            writeLong(Double.doubleToRawLongBits(value));
+        }
+
+        /** Folds the remaining values of a buffer. */
+        void writeDoubles(DoubleBuffer values) {
+            while (values.hasRemaining()) {
+                writeLong(Double.doubleToRawLongBits(values.get()));
+            }
+        }
+
+        /** Folds the remaining values of a buffer. */
+        void writeInts(IntBuffer values) {
+            while (values.hasRemaining()) {
+                writeLong(values.get());
+            }
+        }
+
+        private void writeLong(long value) {
+            long k1 = Long.rotateLeft(value * C1, 31) * C2;
+            h1 ^= k1;
+            h1 = Long.rotateLeft(h1, 27) + h2;
+            h1 = h1 * 5 + 0x52dce729;
+            long k2 = Long.rotateLeft(value * C2, 33) * C1;
+            h2 ^= k2;
+            h2 = Long.rotateLeft(h2, 31) + h1;
+            h2 = h2 * 5 + 0x38495ab5;
+            count++;
+        }
+
+        /** @return 32 hexadecimal digits */
+        String finish() {
+            long a = h1 ^ count, b = h2 ^ count;
+            a += b;
+            b += a;
+            a = fmix(a);
+            b = fmix(b);
+            a += b;
+            b += a;
+            return HexFormat.of().toHexDigits(a) + HexFormat.of().toHexDigits(b);
+        }
+
+        private static long fmix(long k) {
+            k ^= k >>> 33;
+            k *= 0xff51afd7ed558ccdL;
+            k ^= k >>> 33;
+            k *= 0xc4ceb9fe1a85ec53L;
+            k ^= k >>> 33;
+            return k;
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package raytracer.distributed;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import raytracer.Scene;
+import raytracer.TileGrid;
+import raytracer.image.Framebuffer;
+import raytracer.parsing.SceneSnapshot;
+
+/**
+ * Renders a frame on remote {@link Worker} processes.
+ * <p>
+ * The scene is sent once to every worker as a {@link SceneSnapshot}, BVH included, so
+ * workers neither parse it nor rebuild its hierarchy. Work is handed out one row of
+ * tiles at a time: each worker asks for the next row as soon as it has returned the
+ * previous one, so faster workers render more. If a worker dies or its connection
+ * breaks, the row it was rendering goes back to the front of the queue for the
+ * others; the render fails only if every worker is lost. A worker that does not answer
+ * a row within the row timeout, because it hangs or its host vanished without closing
+ * the connection, is treated as lost.
+ */
+public final class Coordinator {
+    private static final int CONNECT_TIMEOUT_MS = 10_000;
+    /** Default time a worker may take to load the scene or to render one row of tiles. */
+    public static final int DEFAULT_ROW_TIMEOUT_MS = 120_000;
+
+    private final Scene scene;
+    private final int tileSize;
+    private final int packetSize;
+    private final int rowTimeoutMillis;
+    private final TileGrid grid;
+
+    /**
+     * Constructs a coordinator for a scene, with the default row timeout.
+     *
+     * @param scene      scene to render
+     * @param tileSize   tile edge length in pixels
+     * @param packetSize primary ray packet edge length used by the workers
+     */
+    public Coordinator(Scene scene, int tileSize, int packetSize) {
+        this(scene, tileSize, packetSize, DEFAULT_ROW_TIMEOUT_MS);
+    }
+
+    /**
+     * Constructs a coordinator for a scene.
+     *
+     * @param scene            scene to render
+     * @param tileSize         tile edge length in pixels
+     * @param packetSize       primary ray packet edge length used by the workers
+     * @param rowTimeoutMillis time a worker may take to load the scene or to render one
+     *                         row of tiles before it is considered lost
+     * @throws IllegalArgumentException if the timeout is not positive
+     */
+    public Coordinator(Scene scene, int tileSize, int packetSize, int rowTimeoutMillis) {
+        if (rowTimeoutMillis <= 0) {
+            throw new IllegalArgumentException("Le délai d'un worker doit être > 0");
+        }
+        this.scene = scene;
+        this.tileSize = tileSize;
+        this.packetSize = packetSize;
+        this.rowTimeoutMillis = rowTimeoutMillis;
+        this.grid = new TileGrid(scene.getWidth(), scene.getHeight(), tileSize);
+    }
+
+    /**
+     * Renders the frame on the given workers.
+     *
+     * @param workers addresses of listening workers
+     * @return rendered frame, identical to a local render
+     * @throws IOException if every worker was lost before the frame was complete
+     */
+    public Framebuffer render(List<InetSocketAddress> workers) throws IOException {
+        ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+        SceneSnapshot.write(scene, snapshot);
+        byte[] sceneBytes = snapshot.toByteArray();
+
+        Framebuffer frame = new Framebuffer(scene.getWidth(), scene.getHeight());
+        Work work = new Work();
+        for (int from = 0; from < grid.count(); from += grid.tilesX()) {
+            work.pending.add(new int[] { from, Math.min(from + grid.tilesX(), grid.count()) });
+        }
+
+        List<Thread> threads = new ArrayList<>();
+        for (InetSocketAddress address : workers) {
+            Thread thread = new Thread(() -> drive(address, sceneBytes, work, frame), "coordinator-" + address);
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Rendu distribué interrompu", e);
+            }
+        }
+
+        int missing = work.remaining();
+        if (missing > 0) {
+            throw new IOException("Plus aucun worker disponible : " + missing + " rangées de tuiles non rendues");
+        }
+        return frame;
+    }
+
+    /**
+     * Runs the session with one worker: sends the scene, then rows of tiles until none
+     * is left. A row lost with the worker is given back to the queue.
+     */
+    private void drive(InetSocketAddress address, byte[] sceneBytes, Work work, Framebuffer frame) {
+        try (Socket socket = new Socket()) {
+            socket.connect(address, CONNECT_TIMEOUT_MS);
+            socket.setTcpNoDelay(true);
+            socket.setKeepAlive(true);
+            socket.setSoTimeout(rowTimeoutMillis);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+
+            out.writeInt(Protocol.HELLO);
+            out.writeInt(Protocol.VERSION);
+            out.writeInt(tileSize);
+            out.writeInt(packetSize);
+            out.writeInt(sceneBytes.length);
+            out.write(sceneBytes);
+            out.flush();
+            int answer = in.readInt();
+            if (answer == Protocol.ERROR) {
+                throw new IOException("scène refusée : " + in.readUTF());
+            } else if (answer != Protocol.READY) {
+                throw new IOException("réponse inattendue " + answer);
+            }
+
+            int[] blocks = new int[0];
+            int[] range;
+            while ((range = work.take()) != null) {
+                try {
+                    int length = grid.pixels(range[0], range[1]);
+                    if (blocks.length < length) {
+                        blocks = new int[length];
+                    }
+                    out.writeInt(Protocol.TILES);
+                    out.writeInt(range[0]);
+                    out.writeInt(range[1]);
+                    out.flush();
+                    if (in.readInt() != Protocol.PIXELS || in.readInt() != range[0] || in.readInt() != range[1]) {
+                        throw new IOException("réponse inattendue pour les tuiles " + range[0] + "-" + range[1]);
+                    }
+                    Protocol.readInts(in, blocks, length);
+                } catch (IOException | RuntimeException e) {
+                    work.giveBack(range);
+                    System.err.printf("Tuiles %d-%d réattribuées%n", range[0], range[1] - 1);
+                    throw e;
+                }
+                grid.copy(range[0], range[1], blocks, frame);
+                work.done();
+            }
+            out.writeInt(Protocol.BYE);
+            out.flush();
+        } catch (IOException | RuntimeException e) {
+            String reason = e instanceof EOFException ? "connexion fermée"
+                : e instanceof SocketTimeoutException ? "aucune réponse depuis " + rowTimeoutMillis + " ms"
+                : e.getMessage();
+            System.err.println("Worker " + address + " perdu : " + reason);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Queue of tile rows shared by the worker sessions. */
+    private static final class Work {
+        private final Deque<int[]> pending = new ArrayDeque<>();
+        private int inFlight;
+
+        /**
+         * Takes the next row, waiting while others are being rendered since a lost
+         * worker may give its row back.
+         *
+         * @return next row, or null once every row is rendered
+         */
+        synchronized int[] take() throws InterruptedException {
+            while (pending.isEmpty() && inFlight > 0) {
+                wait();
+            }
+            if (pending.isEmpty()) {
+                return null;
+            }
+            inFlight++;
+            return pending.poll();
+        }
+
+        synchronized void done() {
+            inFlight--;
+            notifyAll();
+        }
+
+        synchronized void giveBack(int[] range) {
+            inFlight--;
+            pending.addFirst(range);
+            notifyAll();
+        }
+
+        /** @return rows not rendered yet */
+        synchronized int remaining() {
+            return pending.size() + inFlight;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package raytracer.distributed;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Worker JVMs started on this machine for one render, each with its own heap and
+ * garbage collector. They run {@code raytracer.Main --worker 0} with the current
+ * class path, listening on the loopback interface only, and report the port they
+ * listen on; closing destroys them.
+ */
+public final class LocalWorkers implements AutoCloseable {
+    /** Line printed by a worker started with {@code --worker}, followed by its port (ASCII, whatever the console charset). */
+    public static final String LISTENING = "Port du worker : ";
+    private static final InetAddress LOOPBACK = InetAddress.getLoopbackAddress();
+
+    private final List<Process> processes = new ArrayList<>();
+    private final List<InetSocketAddress> addresses = new ArrayList<>();
+
+    private LocalWorkers() {}
+
+    /**
+     * Starts worker processes and waits until they listen.
+     *
+     * @param count   number of processes
+     * @param threads render threads of each process
+     * @return started workers
+     * @throws IOException if a process cannot be started or does not report its port
+     */
+    public static LocalWorkers start(int count, int threads) throws IOException {
+        LocalWorkers workers = new LocalWorkers();
+        try {
+            String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+            for (int i = 0; i < count; i++) {
+                Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                        "raytracer.Main", "--worker", "0", "--bind", LOOPBACK.getHostAddress(),
+                        "--threads", String.valueOf(threads))
+                    .redirectError(ProcessBuilder.Redirect.INHERIT)
+                    .start();
+                workers.processes.add(process);
+            }
+            for (Process process : workers.processes) {
+                workers.addresses.add(new InetSocketAddress(LOOPBACK, readPort(process)));
+            }
+        } catch (IOException | RuntimeException e) {
+            workers.close();
+            throw e;
+        }
+        return workers;
+    }
+
+    private static int readPort(Process process) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.startsWith(LISTENING)) {
+                return Integer.parseInt(line.substring(LISTENING.length()).trim());
+            }
+        }
+        throw new IOException("Le worker s'est arrêté avant d'écouter");
+    }
+
+    /** @return addresses of the started workers */
+    public List<InetSocketAddress> addresses() { return addresses; }
+
+    @Override
+    public void close() {
+        for (Process process : processes) {
+            process.destroy();
+        }
+    }
+}
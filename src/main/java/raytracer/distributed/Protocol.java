@@ -0,0 +1,53 @@
+package raytracer.distributed;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Messages exchanged between a {@link Coordinator} and its {@link Worker}s over TCP.
+ * <p>
+ * The coordinator opens a session with {@code HELLO version tileSize packetSize length
+ * snapshot}, the worker answers {@code READY} once the scene is loaded. Each
+ * {@code TILES from to} is answered by {@code PIXELS from to} followed by the tile
+ * blocks (see {@link raytracer.TileGrid#copy}), and {@code BYE} ends the session.
+ * Integers are big-endian, as written by {@link DataOutputStream}.
+ */
+final class Protocol {
+    static final int HELLO = 0x52545748; // "RTWH"
+    static final int VERSION = 1;
+    static final int READY = 1;
+    static final int TILES = 2;
+    static final int PIXELS = 3;
+    static final int BYE = 4;
+    /** Failure message from a worker, followed by a UTF string. */
+    static final int ERROR = 5;
+
+    /** Pixels copied per chunk when sending or receiving blocks. */
+    private static final int CHUNK = 1 << 14;
+
+    private Protocol() {}
+
+    /** Writes ints in bulk rather than one {@code writeInt} call each. */
+    static void writeInts(DataOutputStream out, int[] values, int length) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate(CHUNK * Integer.BYTES);
+        for (int i = 0; i < length; i += CHUNK) {
+            int n = Math.min(CHUNK, length - i);
+            bytes.clear();
+            bytes.asIntBuffer().put(values, i, n);
+            out.write(bytes.array(), 0, n * Integer.BYTES);
+        }
+    }
+
+    /** Reads ints written by {@link #writeInts}. */
+    static void readInts(DataInputStream in, int[] values, int length) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate(CHUNK * Integer.BYTES);
+        for (int i = 0; i < length; i += CHUNK) {
+            int n = Math.min(CHUNK, length - i);
+            in.readFully(bytes.array(), 0, n * Integer.BYTES);
+            bytes.clear();
+            bytes.asIntBuffer().get(values, i, n);
+        }
+    }
+}
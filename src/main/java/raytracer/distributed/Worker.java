@@ -0,0 +1,156 @@
+package raytracer.distributed;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+
+import raytracer.RayTracer;
+import raytracer.Renderer;
+import raytracer.Scene;
+import raytracer.TileGrid;
+import raytracer.parsing.SceneSnapshot;
+
+/**
+ * Render process serving a {@link Coordinator}: it receives the scene once per session,
+ * then renders the tile ranges it is sent on its own threads and sends their pixels back.
+ * Sessions are served one after the other until the server socket is closed.
+ * <p>
+ * A worker may listen on a network reachable by others than its coordinators: the
+ * scene it accepts is bounded in size, its memory is only taken as the bytes arrive,
+ * and a session whose coordinator stays silent past the idle timeout is dropped so
+ * the next one can be served.
+ */
+public final class Worker {
+    /** Default longest scene snapshot accepted, in bytes. */
+    public static final int DEFAULT_MAX_SNAPSHOT_BYTES = 1 << 30;
+    /** Default time a coordinator may stay silent before its session is dropped. */
+    public static final int DEFAULT_IDLE_TIMEOUT_MS = 600_000;
+
+    private final int threads;
+    private final int maxSnapshotBytes;
+    private final int idleTimeoutMillis;
+
+    /**
+     * Constructs a worker with the default snapshot size limit and idle timeout.
+     *
+     * @param threads render threads of the worker
+     */
+    public Worker(int threads) {
+        this(threads, DEFAULT_MAX_SNAPSHOT_BYTES, DEFAULT_IDLE_TIMEOUT_MS);
+    }
+
+    /**
+     * Constructs a worker.
+     *
+     * @param threads           render threads of the worker
+     * @param maxSnapshotBytes  longest scene snapshot accepted, in bytes
+     * @param idleTimeoutMillis time a coordinator may stay silent before its session is dropped
+     */
+    public Worker(int threads, int maxSnapshotBytes, int idleTimeoutMillis) {
+        this.threads = threads;
+        this.maxSnapshotBytes = maxSnapshotBytes;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    /**
+     * Serves coordinator sessions until the server socket is closed.
+     *
+     * @param server socket accepting coordinator connections
+     * @throws IOException if accepting fails for another reason than the socket being closed
+     */
+    public void serve(ServerSocket server) throws IOException {
+        while (!server.isClosed()) {
+            Socket socket;
+            try {
+                socket = server.accept();
+            } catch (SocketException e) {
+                if (server.isClosed()) return;
+                throw e;
+            }
+            try (socket) {
+                session(socket);
+            } catch (IOException e) {
+                System.err.println("Session interrompue : " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Runs one session: loads the scene, then answers tile requests until BYE.
+     */
+    private void session(Socket socket) throws IOException {
+        socket.setTcpNoDelay(true);
+        socket.setKeepAlive(true);
+        socket.setSoTimeout(idleTimeoutMillis);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+
+        if (in.readInt() != Protocol.HELLO || in.readInt() != Protocol.VERSION) {
+            throw new IOException("Coordinateur incompatible");
+        }
+        int tileSize = in.readInt();
+        int packetSize = in.readInt();
+        int size = in.readInt();
+        if (size < 0 || size > maxSnapshotBytes) {
+            throw new IOException("Scène de " + size + " octets refusée, " + maxSnapshotBytes + " au plus");
+        }
+        // grows with the bytes received rather than trusting the announced size
+        byte[] snapshot = in.readNBytes(size);
+        if (snapshot.length < size) {
+            throw new EOFException("Scène tronquée : " + snapshot.length + " octets sur " + size);
+        }
+
+        Renderer renderer;
+        TileGrid grid;
+        try {
+            Scene scene = SceneSnapshot.read(ByteBuffer.wrap(snapshot));
+            renderer = new Renderer(new RayTracer(scene), threads, tileSize, packetSize);
+            grid = new TileGrid(scene.getWidth(), scene.getHeight(), tileSize);
+        } catch (RuntimeException e) {
+            out.writeInt(Protocol.ERROR);
+            out.writeUTF(String.valueOf(e.getMessage()));
+            out.flush();
+            return;
+        }
+        out.writeInt(Protocol.READY);
+        out.flush();
+
+        int[] blocks = new int[0];
+        while (true) {
+            int command;
+            try {
+                command = in.readInt();
+            } catch (EOFException e) {
+                return;
+            }
+            if (command == Protocol.BYE) {
+                return;
+            }
+            if (command != Protocol.TILES) {
+                throw new IOException("Commande inconnue : " + command);
+            }
+            int from = in.readInt();
+            int to = in.readInt();
+            if (from < 0 || to > grid.count() || from >= to) {
+                throw new IOException("Tuiles invalides : " + from + "-" + to);
+            }
+            int length = grid.pixels(from, to);
+            if (blocks.length < length) {
+                blocks = new int[length];
+            }
+            renderer.renderTiles(from, to, blocks);
+            out.writeInt(Protocol.PIXELS);
+            out.writeInt(from);
+            out.writeInt(to);
+            Protocol.writeInts(out, blocks, length);
+            out.flush();
+        }
+    }
+}
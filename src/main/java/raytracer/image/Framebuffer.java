@@ -0,0 +1,53 @@
+package raytracer.image;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+
+/**
+ * Rendered frame as a plain int array of 0xRRGGBB pixels, rows in image order
+ * (top row first). Filled directly by the renderer and read by the encoders.
+ */
+public final class Framebuffer {
+    private final int width;
+    private final int height;
+    private final int[] pixels;
+
+    /**
+     * Allocates a black frame.
+     *
+     * @param width  width in pixels
+     * @param height height in pixels
+     */
+    public Framebuffer(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Dimensions d'image invalides: " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+        this.pixels = new int[Math.multiplyExact(width, height)];
+    }
+
+    /** @return width in pixels */
+    public int width() { return width; }
+    /** @return height in pixels */
+    public int height() { return height; }
+
+    /** @return backing pixel array, pixel (x, y) at index y * width + x */
+    public int[] pixels() { return pixels; }
+
+    /**
+     * Wraps the pixels in a TYPE_INT_RGB image without copying them.
+     *
+     * @return image sharing this frame's pixel array
+     */
+    public BufferedImage toImage() {
+        DirectColorModel colorModel = new DirectColorModel(24, 0xff0000, 0x00ff00, 0x0000ff);
+        DataBufferInt data = new DataBufferInt(pixels, pixels.length);
+        WritableRaster raster = Raster.createPackedRaster(data, width, height, width,
+            colorModel.getMasks(), null);
+        return new BufferedImage(colorModel, raster, false, null);
+    }
+}
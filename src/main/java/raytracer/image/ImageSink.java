@@ -0,0 +1,51 @@
+package raytracer.image;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+
+/**
+ * Image file encoder. Every format can be written row by row through
+ * {@link #open}; {@link #write} encodes a complete frame and may use several threads.
+ */
+@FunctionalInterface
+public interface ImageSink {
+    /**
+     * Starts an image whose rows are then written from top to bottom.
+     *
+     * @param out    destination, closed with the returned sink
+     * @param width  image width in pixels
+     * @param height image height in pixels
+     * @return row sink encoding to out
+     * @throws IOException if the header cannot be written
+     */
+    RowSink open(OutputStream out, int width, int height) throws IOException;
+
+    /**
+     * Encodes a complete frame and closes the output.
+     *
+     * @param frame rendered frame
+     * @param out   destination
+     * @throws IOException if writing fails
+     */
+    default void write(Framebuffer frame, OutputStream out) throws IOException {
+        try (RowSink rows = open(out, frame.width(), frame.height())) {
+            rows.writeRows(frame.pixels(), frame.height());
+        }
+    }
+
+    /**
+     * Selects the encoder from the file extension: .qoi, .ppm, or PNG for
+     * anything else (.png and unknown extensions, as before).
+     *
+     * @param filename output file name
+     * @param threads  number of threads the PNG encoder may use for whole frames
+     * @return encoder for the file
+     */
+    static ImageSink forFile(String filename, int threads) {
+        String name = filename.toLowerCase(Locale.ROOT);
+        if (name.endsWith(".qoi")) return QoiWriter::new;
+        if (name.endsWith(".ppm")) return PpmWriter::new;
+        return new PngSink(threads);
+    }
+}
@@ -0,0 +1,188 @@
+package raytracer.image;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * PNG building blocks shared by the streaming and the parallel encoders:
+ * chunk framing, header and scanline filtering (8-bit RGB only).
+ */
+final class Png {
+    private static final byte[] SIGNATURE = { (byte) 137, 80, 78, 71, 13, 10, 26, 10 };
+    private static final int FILTERS = 5;
+    /**
+     * Deflate level: on rendered images level 3 is faster than ImageIO and the
+     * default level while still producing smaller files than ImageIO.
+     */
+    static final int COMPRESSION_LEVEL = 3;
+
+    private Png() {}
+
+    /**
+     * Writes the PNG signature and the IHDR chunk.
+     */
+    static void writeHeader(DataOutputStream out, int width, int height) throws IOException {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Dimensions d'image invalides: " + width + "x" + height);
+        }
+        out.write(SIGNATURE);
+        byte[] header = new byte[13];
+        putInt(header, 0, width);
+        putInt(header, 4, height);
+        header[8] = 8;  // bit depth
+        header[9] = 2;  // color type: RGB
+        writeChunk(out, "IHDR", header, header.length);
+    }
+
+    /**
+     * Writes the IEND chunk.
+     */
+    static void writeEnd(DataOutputStream out) throws IOException {
+        writeChunk(out, "IEND", new byte[0], 0);
+    }
+
+    static void writeChunk(DataOutputStream out, String type, byte[] data, int length) throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, 0, length);
+        out.writeInt(length);
+        out.write(typeBytes);
+        out.write(data, 0, length);
+        out.writeInt((int) crc.getValue());
+    }
+
+    /**
+     * Unpacks one row of 0xRRGGBB pixels into RGB bytes.
+     */
+    static void toBytes(int[] pixels, int offset, int width, byte[] out) {
+        for (int x = 0; x < width; x++) {
+            int rgb = pixels[offset + x];
+            out[3 * x] = (byte) (rgb >> 16);
+            out[3 * x + 1] = (byte) (rgb >> 8);
+            out[3 * x + 2] = (byte) rgb;
+        }
+    }
+
+    /**
+     * Per-thread scanline filter. Picks, for each row, the PNG filter with the
+     * smallest sum of absolute byte values (the heuristic recommended by the PNG
+     * specification), then writes only that filter's output.
+     */
+    static final class Filter {
+        /** Filtered row, starting with its filter type byte. */
+        private final byte[] filtered;
+
+        Filter(int width) {
+            filtered = new byte[1 + 3 * width];
+        }
+
+        /**
+         * @param current  raw RGB bytes of the row
+         * @param previous raw RGB bytes of the row above, all zero for the first row
+         * @return filtered row starting with its filter type byte, valid until the next call
+         */
+        byte[] apply(byte[] current, byte[] previous) {
+            int n = current.length;
+            long costNone = 0, costSub = 0, costUp = 0, costAverage = 0, costPaeth = 0;
+            for (int i = 0; i < n; i++) {
+                int raw = current[i] & 0xff;
+                int left = i >= 3 ? current[i - 3] & 0xff : 0;
+                int up = previous[i] & 0xff;
+                int upLeft = i >= 3 ? previous[i - 3] & 0xff : 0;
+                costNone += Math.abs((byte) raw);
+                costSub += Math.abs((byte) (raw - left));
+                costUp += Math.abs((byte) (raw - up));
+                costAverage += Math.abs((byte) (raw - ((left + up) >> 1)));
+                costPaeth += Math.abs((byte) (raw - paethPredictor(left, up, upLeft)));
+            }
+
+            int best = 0;
+            long bestCost = costNone;
+            if (costSub < bestCost) { best = 1; bestCost = costSub; }
+            if (costUp < bestCost) { best = 2; bestCost = costUp; }
+            if (costAverage < bestCost) { best = 3; bestCost = costAverage; }
+            if (costPaeth < bestCost) { best = 4; }
+
+            filtered[0] = (byte) best;
+            for (int i = 0; i < n; i++) {
+                int raw = current[i] & 0xff;
+                int left = i >= 3 ? current[i - 3] & 0xff : 0;
+                int up = previous[i] & 0xff;
+                int predicted = switch (best) {
+                    case 0 -> 0;
+                    case 1 -> left;
+                    case 2 -> up;
+                    case 3 -> (left + up) >> 1;
+                    default -> paethPredictor(left, up, i >= 3 ? previous[i - 3] & 0xff : 0);
+                };
+                filtered[i + 1] = (byte) (raw - predicted);
+            }
+            return filtered;
+        }
+    }
+
+    private static int paethPredictor(int a, int b, int c) {
+        int p = a + b - c;
+        int pa = Math.abs(p - a);
+        int pb = Math.abs(p - b);
+        int pc = Math.abs(p - c);
+        if (pa <= pb && pa <= pc) return a;
+        if (pb <= pc) return b;
+        return c;
+    }
+
+    private static void putInt(byte[] b, int offset, int v) {
+        b[offset] = (byte) (v >>> 24);
+        b[offset + 1] = (byte) (v >>> 16);
+        b[offset + 2] = (byte) (v >>> 8);
+        b[offset + 3] = (byte) v;
+    }
+
+    /**
+     * Output stream packing the compressed image data into IDAT chunks of bounded size.
+     * {@link #close()} writes the last chunk but does not close the underlying stream.
+     */
+    static final class IdatOutputStream extends OutputStream {
+        private static final int CHUNK_SIZE = 1 << 16;
+
+        private final DataOutputStream out;
+        private final byte[] buffer = new byte[CHUNK_SIZE];
+        private int length;
+
+        IdatOutputStream(DataOutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (length == CHUNK_SIZE) emit();
+            buffer[length++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (length == CHUNK_SIZE) emit();
+                int n = Math.min(len, CHUNK_SIZE - length);
+                System.arraycopy(b, off, buffer, length, n);
+                length += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (length > 0) emit();
+        }
+
+        private void emit() throws IOException {
+            writeChunk(out, "IDAT", buffer, length);
+            length = 0;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package raytracer.image;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.Adler32;
+import java.util.zip.Deflater;
+
+/**
+ * PNG {@link ImageSink}. Whole frames are cut into horizontal strips that are
+ * filtered and deflated independently on several threads: every strip but the
+ * last ends with a sync flush, so the raw deflate outputs concatenate into one
+ * valid stream, and the zlib checksum is combined from the per-strip checksums.
+ * Rows are written with {@link PngStreamWriter}.
+ */
+public final class PngSink implements ImageSink {
+    /** Smallest strip, below which the deflate window restarts cost too much ratio. */
+    private static final int MIN_STRIP_ROWS = 16;
+    /** Strips per thread, so that uneven strips still balance. */
+    private static final int STRIPS_PER_THREAD = 4;
+    private static final int ADLER_BASE = 65521;
+
+    private final int threads;
+
+    /**
+     * @param threads number of encoding threads for whole frames (1 encodes on the calling thread)
+     */
+    public PngSink(int threads) {
+        if (threads <= 0) throw new IllegalArgumentException("threads doit être > 0");
+        this.threads = threads;
+    }
+
+    @Override
+    public RowSink open(OutputStream out, int width, int height) throws IOException {
+        return new PngStreamWriter(out, width, height);
+    }
+
+    @Override
+    public void write(Framebuffer frame, OutputStream out) throws IOException {
+        int height = frame.height();
+        int strips = Math.max(1, Math.min(threads * STRIPS_PER_THREAD, height / MIN_STRIP_ROWS));
+        int rowsPerStrip = (height + strips - 1) / strips;
+        strips = (height + rowsPerStrip - 1) / rowsPerStrip;
+
+        List<Strip> encoded = new ArrayList<>(strips);
+        if (threads == 1 || strips == 1) {
+            for (int s = 0; s < strips; s++) {
+                encoded.add(encodeStrip(frame, s * rowsPerStrip, Math.min(height, (s + 1) * rowsPerStrip)));
+            }
+        } else {
+            List<Callable<Strip>> tasks = new ArrayList<>(strips);
+            for (int s = 0; s < strips; s++) {
+                int from = s * rowsPerStrip;
+                int to = Math.min(height, from + rowsPerStrip);
+                tasks.add(() -> encodeStrip(frame, from, to));
+            }
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                for (Future<Strip> future : pool.invokeAll(tasks)) {
+                    encoded.add(future.get());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Encodage PNG interrompu", e);
+            } catch (ExecutionException e) {
+                throw new IOException("Erreur d'encodage PNG", e.getCause());
+            } finally {
+                pool.shutdown();
+            }
+        }
+
+        try (DataOutputStream data = new DataOutputStream(out)) {
+            Png.writeHeader(data, frame.width(), height);
+            Png.IdatOutputStream idat = new Png.IdatOutputStream(data);
+            // zlib header: deflate, 32K window, "fast" compression level hint
+            idat.write(0x78);
+            idat.write(0x5e);
+            long adler = 1;
+            for (Strip strip : encoded) {
+                idat.write(strip.compressed);
+                adler = combineAdler32(adler, strip.adler, strip.rawLength);
+            }
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                idat.write((int) (adler >>> shift));
+            }
+            idat.close();
+            Png.writeEnd(data);
+        }
+    }
+
+    /**
+     * Filters and deflates rows [from, to). The last strip of the image finishes
+     * the deflate stream, the others end with a sync flush on a byte boundary.
+     */
+    private static Strip encodeStrip(Framebuffer frame, int from, int to) {
+        int width = frame.width();
+        int[] pixels = frame.pixels();
+        byte[] previous = new byte[3 * width];
+        byte[] current = new byte[3 * width];
+        if (from > 0) {
+            Png.toBytes(pixels, (from - 1) * width, width, previous);
+        }
+        Png.Filter filter = new Png.Filter(width);
+        Deflater deflater = new Deflater(Png.COMPRESSION_LEVEL, true);
+        Adler32 adler = new Adler32();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1 << 16];
+        try {
+            for (int y = from; y < to; y++) {
+                Png.toBytes(pixels, y * width, width, current);
+                byte[] row = filter.apply(current, previous);
+                adler.update(row, 0, row.length);
+                deflater.setInput(row, 0, row.length);
+                while (!deflater.needsInput()) {
+                    compressed.write(buffer, 0, deflater.deflate(buffer));
+                }
+                byte[] swap = previous;
+                previous = current;
+                current = swap;
+            }
+            if (to == frame.height()) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    compressed.write(buffer, 0, deflater.deflate(buffer));
+                }
+            } else {
+                int n;
+                do {
+                    n = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                    compressed.write(buffer, 0, n);
+                } while (n == buffer.length);
+            }
+        } finally {
+            deflater.end();
+        }
+        long rawLength = (long) (to - from) * (1 + 3L * width);
+        return new Strip(compressed.toByteArray(), adler.getValue(), rawLength);
+    }
+
+    /**
+     * Adler-32 of the concatenation of two byte sequences, from their checksums
+     * and the length of the second one (same algorithm as zlib's adler32_combine).
+     */
+    static long combineAdler32(long adler1, long adler2, long length2) {
+        long rem = length2 % ADLER_BASE;
+        long sum1 = adler1 & 0xffff;
+        long sum2 = (rem * sum1) % ADLER_BASE;
+        sum1 += (adler2 & 0xffff) + ADLER_BASE - 1;
+        sum2 += ((adler1 >>> 16) & 0xffff) + ((adler2 >>> 16) & 0xffff) + ADLER_BASE - rem;
+        if (sum1 >= ADLER_BASE) sum1 -= ADLER_BASE;
+        if (sum1 >= ADLER_BASE) sum1 -= ADLER_BASE;
+        if (sum2 >= 2L * ADLER_BASE) sum2 -= 2L * ADLER_BASE;
+        if (sum2 >= ADLER_BASE) sum2 -= ADLER_BASE;
+        return (sum2 << 16) | sum1;
+    }
+
+    /** Compressed strip and the checksum of its uncompressed bytes. */
+    private static final class Strip {
+        final byte[] compressed;
+        final long adler;
+        final long rawLength;
+
+        Strip(byte[] compressed, long adler, long rawLength) {
+            this.compressed = compressed;
+            this.adler = adler;
+            this.rawLength = rawLength;
+        }
+    }
+}
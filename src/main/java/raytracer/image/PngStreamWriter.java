@@ -0,0 +1,92 @@
+package raytracer.image;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+
+/**
+ * Incremental PNG encoder (8-bit RGB, non-interlaced).
+ * Rows are filtered and compressed as they arrive and written out as a sequence
+ * of IDAT chunks, so memory use depends on the image width only, not on its height.
+ */
+public final class PngStreamWriter implements RowSink {
+    private final DataOutputStream out;
+    private final int width;
+    private final int height;
+    private final Deflater deflater = new Deflater(Png.COMPRESSION_LEVEL);
+    private final Png.IdatOutputStream idat;
+    private final Png.Filter filter;
+    private final byte[] compressed = new byte[1 << 16];
+
+    /** Raw bytes of the previous and current row (no filter byte). */
+    private byte[] previous;
+    private byte[] current;
+    private int rowsWritten;
+    private boolean closed;
+
+    /**
+     * Writes the PNG signature and header.
+     *
+     * @param out    destination, closed by {@link #close()}
+     * @param width  image width in pixels
+     * @param height image height in pixels
+     * @throws IOException if the header cannot be written
+     */
+    public PngStreamWriter(OutputStream out, int width, int height) throws IOException {
+        this.out = new DataOutputStream(out);
+        Png.writeHeader(this.out, width, height);
+        this.width = width;
+        this.height = height;
+        this.previous = new byte[3 * width];
+        this.current = new byte[3 * width];
+        this.filter = new Png.Filter(width);
+        this.idat = new Png.IdatOutputStream(this.out);
+    }
+
+    @Override
+    public void writeRows(int[] pixels, int rows) throws IOException {
+        if (rowsWritten + rows > height) {
+            throw new IllegalStateException("Trop de lignes pour une image de hauteur " + height);
+        }
+        for (int r = 0; r < rows; r++) {
+            Png.toBytes(pixels, r * width, width, current);
+            byte[] row = filter.apply(current, previous);
+            deflater.setInput(row, 0, row.length);
+            while (!deflater.needsInput()) {
+                idat.write(compressed, 0, deflater.deflate(compressed));
+            }
+
+            byte[] swap = previous;
+            previous = current;
+            current = swap;
+            rowsWritten++;
+        }
+    }
+
+    /**
+     * Finishes the compressed stream, writes the trailing chunks and closes the output.
+     *
+     * @throws IOException if writing fails
+     * @throws IllegalStateException if fewer rows than the image height were written
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            if (rowsWritten != height) {
+                throw new IllegalStateException("Image incomplète: " + rowsWritten + "/" + height + " lignes");
+            }
+            deflater.finish();
+            while (!deflater.finished()) {
+                idat.write(compressed, 0, deflater.deflate(compressed));
+            }
+            idat.close();
+            Png.writeEnd(out);
+        } finally {
+            deflater.end();
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package raytracer.image;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binary PPM (P6) encoder: a short text header followed by raw RGB bytes.
+ */
+public final class PpmWriter implements RowSink {
+    private final OutputStream out;
+    private final int width;
+    private final int height;
+    private final byte[] row;
+    private int rowsWritten;
+    private boolean closed;
+
+    /**
+     * Writes the PPM header.
+     *
+     * @param out    destination, closed by {@link #close()}
+     * @param width  image width in pixels
+     * @param height image height in pixels
+     * @throws IOException if the header cannot be written
+     */
+    public PpmWriter(OutputStream out, int width, int height) throws IOException {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Dimensions d'image invalides: " + width + "x" + height);
+        }
+        this.out = out;
+        this.width = width;
+        this.height = height;
+        this.row = new byte[3 * width];
+        out.write(("P6\n" + width + " " + height + "\n255\n").getBytes(StandardCharsets.US_ASCII));
+    }
+
+    @Override
+    public void writeRows(int[] pixels, int rows) throws IOException {
+        if (rowsWritten + rows > height) {
+            throw new IllegalStateException("Trop de lignes pour une image de hauteur " + height);
+        }
+        for (int r = 0; r < rows; r++) {
+            Png.toBytes(pixels, r * width, width, row);
+            out.write(row);
+        }
+        rowsWritten += rows;
+    }
+
+    /**
+     * Closes the output.
+     *
+     * @throws IllegalStateException if fewer rows than the image height were written
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            if (rowsWritten != height) {
+                throw new IllegalStateException("Image incomplète: " + rowsWritten + "/" + height + " lignes");
+            }
+        } finally {
+            out.close();
+        }
+    }
+}
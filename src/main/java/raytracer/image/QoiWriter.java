@@ -0,0 +1,148 @@
+package raytracer.image;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * QOI ("Quite OK Image") encoder, RGB channels. Each pixel is encoded as a run
+ * of the previous pixel, a reference into a 64-entry table of recently seen
+ * pixels, a small difference to the previous pixel, or a literal, which makes
+ * encoding a single cheap pass over the image.
+ */
+public final class QoiWriter implements RowSink {
+    private static final int OP_INDEX = 0x00;
+    private static final int OP_DIFF = 0x40;
+    private static final int OP_LUMA = 0x80;
+    private static final int OP_RUN = 0xc0;
+    private static final int OP_RGB = 0xfe;
+    private static final int MAX_RUN = 62;
+    private static final int OPAQUE = 0xff000000;
+
+    private final OutputStream out;
+    private final int width;
+    private final long pixelCount;
+    private final int[] seen = new int[64];
+    private final byte[] buffer = new byte[1 << 16];
+    private int length;
+    private int previous = OPAQUE;
+    private int run;
+    private long written;
+    private boolean closed;
+
+    /**
+     * Writes the QOI header.
+     *
+     * @param out    destination, closed by {@link #close()}
+     * @param width  image width in pixels
+     * @param height image height in pixels
+     * @throws IOException if the header cannot be written
+     */
+    public QoiWriter(OutputStream out, int width, int height) throws IOException {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Dimensions d'image invalides: " + width + "x" + height);
+        }
+        this.out = out;
+        this.width = width;
+        this.pixelCount = (long) width * height;
+        put('q'); put('o'); put('i'); put('f');
+        putInt(width);
+        putInt(height);
+        put(3);  // channels: RGB
+        put(0);  // sRGB with linear alpha
+    }
+
+    @Override
+    public void writeRows(int[] pixels, int rows) throws IOException {
+        if (written + (long) rows * width > pixelCount) {
+            throw new IllegalStateException("Trop de lignes pour l'image");
+        }
+        int n = rows * width;
+        for (int i = 0; i < n; i++) {
+            if (length > buffer.length - 8) flush();
+            encode(OPAQUE | pixels[i]);
+        }
+        written += n;
+    }
+
+    private void encode(int pixel) {
+        if (pixel == previous) {
+            run++;
+            if (run == MAX_RUN) {
+                put(OP_RUN | (run - 1));
+                run = 0;
+            }
+            return;
+        }
+        if (run > 0) {
+            put(OP_RUN | (run - 1));
+            run = 0;
+        }
+
+        int r = (pixel >> 16) & 0xff, g = (pixel >> 8) & 0xff, b = pixel & 0xff;
+        int hash = (r * 3 + g * 5 + b * 7 + 255 * 11) & 63;
+        if (seen[hash] == pixel) {
+            put(OP_INDEX | hash);
+        } else {
+            seen[hash] = pixel;
+            int dr = (byte) (r - ((previous >> 16) & 0xff));
+            int dg = (byte) (g - ((previous >> 8) & 0xff));
+            int db = (byte) (b - (previous & 0xff));
+            int drg = dr - dg;
+            int dbg = db - dg;
+            if (dr >= -2 && dr <= 1 && dg >= -2 && dg <= 1 && db >= -2 && db <= 1) {
+                put(OP_DIFF | (dr + 2) << 4 | (dg + 2) << 2 | (db + 2));
+            } else if (dg >= -32 && dg <= 31 && drg >= -8 && drg <= 7 && dbg >= -8 && dbg <= 7) {
+                put(OP_LUMA | (dg + 32));
+                put((drg + 8) << 4 | (dbg + 8));
+            } else {
+                put(OP_RGB);
+                put(r);
+                put(g);
+                put(b);
+            }
+        }
+        previous = pixel;
+    }
+
+    /**
+     * Flushes the pending run, writes the end marker and closes the output.
+     *
+     * @throws IllegalStateException if fewer pixels than the image size were written
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            if (written != pixelCount) {
+                throw new IllegalStateException("Image incomplète: " + written + "/" + pixelCount + " pixels");
+            }
+            // the last pixels may have left less room than the run and end marker need
+            flush();
+            if (run > 0) {
+                put(OP_RUN | (run - 1));
+            }
+            for (int i = 0; i < 7; i++) put(0);
+            put(1);
+            flush();
+        } finally {
+            out.close();
+        }
+    }
+
+    private void put(int b) {
+        buffer[length++] = (byte) b;
+    }
+
+    private void putInt(int v) {
+        put(v >>> 24);
+        put(v >>> 16);
+        put(v >>> 8);
+        put(v);
+    }
+
+    private void flush() throws IOException {
+        out.write(buffer, 0, length);
+        length = 0;
+    }
+}
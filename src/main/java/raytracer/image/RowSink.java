@@ -0,0 +1,19 @@
+package raytracer.image;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Destination of an image produced row by row, from the top of the image to the bottom.
+ * Pixels are packed as 0xRRGGBB ints, like {@code Color.toRGB()}.
+ */
+public interface RowSink extends Closeable {
+    /**
+     * Consumes the next rows of the image.
+     *
+     * @param pixels rows in image order, {@code width} pixels each, starting at index 0
+     * @param rows   number of rows to consume
+     * @throws IOException if the rows cannot be written
+     */
+    void writeRows(int[] pixels, int rows) throws IOException;
+}
@@ -8,6 +8,8 @@ import raytracer.math.Vector;
  */
 public final class DirectionalLight extends AbstractLight {
     private final Vector direction;
+    /** Unit vector opposite to the direction, used by shading for every hit. */
+    private final Vector towardLight;
 
     /**
      * Constructs a directional light.
@@ -18,6 +20,7 @@ public final class DirectionalLight extends AbstractLight {
     public DirectionalLight(Vector direction, Color color) {
         super(color);
         this.direction = direction;
+        this.towardLight = direction.scale(-1.0).normalized();
     }
 
     /**
@@ -26,4 +29,11 @@ public final class DirectionalLight extends AbstractLight {
      * @return direction vector
      */
     public Vector direction() { return direction; }
+
+    /**
+     * Returns the unit direction from any point towards the light.
+     *
+     * @return normalized opposite of the light direction
+     */
+    public Vector towardLight() { return towardLight; }
 }
@@ -0,0 +1,214 @@
+package raytracer.light;
+
+import java.util.Arrays;
+import java.util.List;
+
+import raytracer.math.Color;
+import raytracer.math.Point;
+import raytracer.math.Vector;
+
+/**
+ * Binary hierarchy over the point lights of a scene, used to pick lights in proportion
+ * to an upper bound of their contribution at a shading point.
+ * <p>
+ * Each node stores the bounding sphere of its lights and their total power (sum of the
+ * largest color component). Lights have no distance falloff in this renderer, so the
+ * importance of a node is its power times the largest cosine between the surface normal
+ * and a direction into its sphere; it is zero only when every light of the node is
+ * behind the surface, where none of them can contribute. Picking a light walks down
+ * from the root and costs O(log n).
+ * <p>
+ * Nodes are stored flattened in arrays; a node is a leaf when it holds one light.
+ */
+public final class LightTree {
+    /** Scene light index of each leaf light, in tree order. */
+    private final int[] lightIndex;
+    /** Scene light index of the lights left out of the hierarchy, in scene order. */
+    private final int[] others;
+    private final PointLight[] lights;
+
+    private final double[] centerX, centerY, centerZ, radius, power;
+    /** Left child of inner nodes (the right child follows its whole subtree), -1 for leaves. */
+    private final int[] left, right;
+    /** First light of the node in tree order. */
+    private final int[] first;
+    private int nodeCount;
+
+    /**
+     * Chosen light and the probability with which it was chosen.
+     *
+     * @param light       index of the light in the scene light list
+     * @param probability probability of that choice, &gt; 0
+     */
+    public record Sample(int light, double probability) {}
+
+    /**
+     * Builds the hierarchy over the point lights of a list.
+     *
+     * @param sceneLights scene lights; directional lights are ignored
+     */
+    public LightTree(List<AbstractLight> sceneLights) {
+        int n = 0;
+        for (AbstractLight light : sceneLights) {
+            if (light instanceof PointLight) n++;
+        }
+        lightIndex = new int[n];
+        lights = new PointLight[n];
+        others = new int[sceneLights.size() - n];
+        int k = 0, o = 0;
+        for (int i = 0; i < sceneLights.size(); i++) {
+            if (sceneLights.get(i) instanceof PointLight p) {
+                lightIndex[k] = i;
+                lights[k++] = p;
+            } else {
+                others[o++] = i;
+            }
+        }
+
+        int nodes = Math.max(1, 2 * n - 1);
+        centerX = new double[nodes]; centerY = new double[nodes]; centerZ = new double[nodes];
+        radius = new double[nodes]; power = new double[nodes];
+        left = new int[nodes]; right = new int[nodes]; first = new int[nodes];
+        if (n > 0) {
+            build(0, n);
+        }
+    }
+
+    /** @return number of point lights in the hierarchy */
+    public int size() { return lights.length; }
+
+    /** @return number of scene lights left out of the hierarchy, such as directional lights */
+    public int otherCount() { return others.length; }
+
+    /**
+     * @param k rank among the lights left out of the hierarchy, from 0 to {@link #otherCount()} - 1
+     * @return index of that light in the scene light list
+     */
+    public int other(int k) { return others[k]; }
+
+    /**
+     * Builds the subtree over lights [from, to), splitting at the median of the axis
+     * along which their positions spread the most.
+     *
+     * @return index of the subtree root
+     */
+    private int build(int from, int to) {
+        int node = nodeCount++;
+        double minX = Double.POSITIVE_INFINITY, minY = minX, minZ = minX;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = maxX, maxZ = maxX;
+        double sum = 0.0;
+        for (int i = from; i < to; i++) {
+            Point p = lights[i].origin();
+            minX = Math.min(minX, p.x()); maxX = Math.max(maxX, p.x());
+            minY = Math.min(minY, p.y()); maxY = Math.max(maxY, p.y());
+            minZ = Math.min(minZ, p.z()); maxZ = Math.max(maxZ, p.z());
+            sum += maxComponent(lights[i].color());
+        }
+        double ex = maxX - minX, ey = maxY - minY, ez = maxZ - minZ;
+        centerX[node] = (minX + maxX) * 0.5;
+        centerY[node] = (minY + maxY) * 0.5;
+        centerZ[node] = (minZ + maxZ) * 0.5;
+        radius[node] = 0.5 * Math.sqrt(ex * ex + ey * ey + ez * ez);
+        power[node] = sum;
+        first[node] = from;
+
+        if (to - from == 1) {
+            left[node] = -1;
+            right[node] = -1;
+            return node;
+        }
+
+        int axis = ex >= ey && ex >= ez ? 0 : ey >= ez ? 1 : 2;
+        int mid = (from + to) >>> 1;
+        sortByAxis(from, to, axis);
+        left[node] = build(from, mid);
+        right[node] = build(mid, to);
+        return node;
+    }
+
+    private void sortByAxis(int from, int to, int axis) {
+        Integer[] perm = new Integer[to - from];
+        for (int i = 0; i < perm.length; i++) perm[i] = from + i;
+        Arrays.sort(perm, (a, b) -> Double.compare(coordinate(lights[a], axis), coordinate(lights[b], axis)));
+        PointLight[] sortedLights = new PointLight[perm.length];
+        int[] sortedIndex = new int[perm.length];
+        for (int i = 0; i < perm.length; i++) {
+            sortedLights[i] = lights[perm[i]];
+            sortedIndex[i] = lightIndex[perm[i]];
+        }
+        System.arraycopy(sortedLights, 0, lights, from, perm.length);
+        System.arraycopy(sortedIndex, 0, lightIndex, from, perm.length);
+    }
+
+    private static double coordinate(PointLight light, int axis) {
+        Point p = light.origin();
+        return axis == 0 ? p.x() : axis == 1 ? p.y() : p.z();
+    }
+
+    private static double maxComponent(Color c) {
+        return Math.max(c.r(), Math.max(c.g(), c.b()));
+    }
+
+    /**
+     * Upper bound of the contribution of a node's lights at a point: node power times
+     * the largest cosine between the normal and a direction into the node's sphere.
+     */
+    private double importance(int node, Point position, Vector normal) {
+        double dx = centerX[node] - position.x();
+        double dy = centerY[node] - position.y();
+        double dz = centerZ[node] - position.z();
+        double dist = Math.sqrt(dx * dx + dy * dy + dz * dz);
+        double r = radius[node];
+        if (dist <= r) {
+            return power[node];
+        }
+        // cos(θ - θs), θ angle to the center, θs half-angle of the sphere, without trigonometry
+        double cos = Math.max(-1.0, Math.min(1.0, (dx * normal.x() + dy * normal.y() + dz * normal.z()) / dist));
+        double sinS = r / dist;
+        double cosS = Math.sqrt(1.0 - sinS * sinS);
+        if (cos >= cosS) {
+            return power[node];
+        }
+        double bound = cos * cosS + Math.sqrt(1.0 - cos * cos) * sinS;
+        return bound <= 0.0 ? 0.0 : power[node] * bound;
+    }
+
+    /**
+     * Picks one point light with probability proportional, at each level, to the
+     * importance of the two subtrees at the shading point.
+     *
+     * @param position shading point
+     * @param normal   unit surface normal at that point
+     * @param u        uniform number in [0, 1)
+     * @return chosen light, or null if no point light can light the point (every
+     *         point light it could have returned then contributes nothing)
+     */
+    public Sample sample(Point position, Vector normal, double u) {
+        if (lights.length == 0 || importance(0, position, normal) == 0.0) {
+            return null;
+        }
+        int node = 0;
+        double probability = 1.0;
+        while (left[node] >= 0) {
+            double il = importance(left[node], position, normal);
+            double ir = importance(right[node], position, normal);
+            if (il + ir == 0.0) {
+                // the parent sphere reached above the surface, no child does
+                return null;
+            }
+            double pl = il / (il + ir);
+            if (u < pl) {
+                node = left[node];
+                probability *= pl;
+                u /= pl;
+            } else {
+                node = right[node];
+                probability *= 1.0 - pl;
+                u = (u - pl) / (1.0 - pl);
+            }
+            // guard against rounding pushing u out of [0, 1)
+            u = Math.min(u, Math.nextDown(1.0));
+        }
+        return new Sample(lightIndex[first[node]], probability);
+    }
+}
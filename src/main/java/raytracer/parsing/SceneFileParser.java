@@ -1,31 +1,65 @@
 package raytracer.parsing;
 
-import java.io.*;
-import java.nio.charset.StandardCharsets;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
+import java.util.TreeMap;
 
 import raytracer.math.Point;
 import raytracer.math.Vector;
 import raytracer.math.Color;
+import raytracer.Animation;
 import raytracer.Camera;
 import raytracer.Scene;
 import raytracer.light.DirectionalLight;
 import raytracer.light.PointLight;
 import raytracer.shape.Plane;
 import raytracer.shape.Sphere;
-import raytracer.shape.Triangle;
+import raytracer.shape.TriangleMesh;
+import raytracer.stats.SceneParseEvent;
 
 /**
  * Parser for the custom scene description format.
  * Supported keywords: size, output, camera, ambient, diffuse, specular, shininess,
- * directional, point, sphere, plane, maxverts, vertex, tri.
+ * directional, point, sphere, plane, maxverts, vertex, tri, maxdepth, aasamples, aathreshold,
+ * lightsamples, shadowmap, frames, motion.
+ * A camera line may end with a frame number, making it a key of the camera path of
+ * an {@link Animation}; motion gives the offset per frame of the shapes that follow.
  * Performs validations (e.g., positive sizes/radii, ambient+diffuse ≤ 1, lights sum ≤ 1).
  * Throws SceneParseException on invalid input.
+ * Large files are memory-mapped and tokenized in place by a {@link SceneTokenizer},
+ * so big meshes are read without building a String per line or per number.
  */
 public final class SceneFileParser {
+    /** Upper bound of the aasamples keyword. */
+    private static final int MAX_AA_SAMPLES = 256;
+    /** Upper bound of the lightsamples keyword. */
+    private static final int MAX_LIGHT_SAMPLES = 1024;
+    /** Bounds of the shadowmap keyword. */
+    private static final int MIN_SHADOW_MAP = 16, MAX_SHADOW_MAP = 8192;
+    /** Length of the shortest vertex line, "vertex 0 0 0" and its line end. */
+    private static final int MIN_VERTEX_LINE = 13;
+    /** Upper bound of the frames keyword. */
+    private static final int MAX_FRAMES = 100_000;
+    /**
+     * Files from this size on are memory-mapped; smaller ones are read into the heap,
+     * which is cheaper and does not keep the file mapped (and locked on Windows)
+     * until the buffer is collected.
+     */
+    private static final long MAP_THRESHOLD = 1 << 20;
+    /** Known keywords, in lower case. */
+    private static final String[] KEYWORDS = {
+        "vertex", "tri", "sphere", "plane", "diffuse", "specular", "shininess", "size", "output",
+        "camera", "ambient", "directional", "point", "maxverts", "maxdepth", "aasamples", "aathreshold",
+        "lightsamples", "shadowmap", "frames", "motion"
+    };
 
     /**
      * Parses a scene file from disk.
@@ -35,8 +69,17 @@ public final class SceneFileParser {
      * @throws SceneParseException if IO error or invalid content
      */
     public Scene parse(Path file) {
-        try (InputStream in = Files.newInputStream(file)) {
-            return parse(in, file.toString());
+        try {
+            long size = Files.size(file);
+            if (size < MAP_THRESHOLD) {
+                return parse(ByteBuffer.wrap(Files.readAllBytes(file)), file.toString());
+            }
+            if (size > Integer.MAX_VALUE) {
+                throw new SceneParseException("Fichier de scène trop volumineux (plus de 2 Go) : " + file);
+            }
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                return parse(channel.map(FileChannel.MapMode.READ_ONLY, 0, size), file.toString());
+            }
         } catch (IOException e) {
             throw new SceneParseException("Erreur lecture " + file + " : " + e.getMessage(), e);
         }
@@ -52,6 +95,31 @@ public final class SceneFileParser {
      * @throws SceneParseException on invalid syntax or semantic errors
      */
     public Scene parse(InputStream in, String sourceName) {
+        byte[] bytes;
+        try {
+            bytes = in.readAllBytes();
+        } catch (IOException e) {
+            throw new SceneParseException("Erreur lecture " + sourceName + " : " + e.getMessage(), e);
+        }
+        return parse(ByteBuffer.wrap(bytes), sourceName);
+    }
+
+    /**
+     * Parses a scene from UTF-8 text held in a buffer.
+     */
+    private Scene parse(ByteBuffer text, String sourceName) {
+        SceneParseEvent event = new SceneParseEvent(sourceName);
+        event.begin();
+        Scene scene = parseScene(new SceneTokenizer(text));
+        event.setSceneSize(scene.getShapes().size(), scene.getLights().size());
+        event.commit();
+        return scene;
+    }
+
+    /**
+     * Parses a scene line by line; see {@link #parse(InputStream, String)}.
+     */
+    private Scene parseScene(SceneTokenizer t) {
         Locale.setDefault(Locale.ROOT);
         Scene scene = new Scene();
 
@@ -59,173 +127,253 @@ public final class SceneFileParser {
         Color currentSpecular = new Color(0,0,0);
         double currentShininess = 0.0;
         int maxverts = -1;
-        var vertices = new ArrayList<Point>();
+        // every vertex and tri of the file goes into one mesh, added to the scene at its first tri
+        var mesh = new TriangleMesh();
         double sumLr = 0, sumLg = 0, sumLb = 0;
         boolean sizeSeen = false, cameraSeen = false;
+        int frames = 1;
+        TreeMap<Integer, Camera> cameraKeys = new TreeMap<>();
+        Vector currentMotion = new Vector();
+        // the mesh moves as a whole, with the motion of its first tri
+        Vector meshMotion = null;
+        List<Integer> movingShapes = new ArrayList<>();
+        List<Vector> velocities = new ArrayList<>();
 
-        try (BufferedReader br = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
-            String line;
-            int lineNo = 0;
-            while ((line = br.readLine()) != null) {
-                lineNo++;
-                line = line.trim();
-                if (line.isEmpty() || line.startsWith("#")) continue;
-
-                String[] t = line.split("\\s+");
-                String key = t[0].toLowerCase(Locale.ROOT);
-
-                try {
-                    switch (key) {
-                        case "size" -> {
-                            requireArgs(t, 3, lineNo);
-                            int w = Integer.parseInt(t[1]);
-                            int h = Integer.parseInt(t[2]);
-                            if (w <= 0 || h <= 0) throw err(lineNo, "size doit être > 0");
-                            scene.setWidth(w);
-                            scene.setHeight(h);
-                            sizeSeen = true;
-                        }
-                        case "output" -> {
-                            requireArgs(t, 2, lineNo);
-                            scene.setOutput(t[1]);
-                        }
-                        case "camera" -> {
-                            requireArgs(t, 11, lineNo);
-                            double x = d(t[1]), y = d(t[2]), z = d(t[3]);
-                            double u = d(t[4]), v = d(t[5]), wv = d(t[6]);
-                            double m = d(t[7]), n = d(t[8]), o = d(t[9]);
-                            double fov = d(t[10]);
-                            var lookFrom = new Point(x,y,z);
-                            var lookAt   = new Point(u,v,wv);
-                            var up       = new Vector(m,n,o);
-                            scene.setCamera(new Camera(lookFrom, lookAt, up, fov));
-                            cameraSeen = true;
-                        }
-                        case "ambient" -> {
-                            requireArgs(t, 4, lineNo);
-                            Color amb = new Color(d(t[1]), d(t[2]), d(t[3]));
-                            scene.setAmbient(amb);
-                            if (!leq1PerComponent(amb, currentDiffuse)) {
-                                throw err(lineNo, "(ambient + diffuse) dépasse 1 sur au moins une composante");
-                            }
-                        }
-                        case "diffuse" -> {
-                            requireArgs(t, 4, lineNo);
-                            currentDiffuse = new Color(d(t[1]), d(t[2]), d(t[3]));
-                            if (!leq1PerComponent(scene.getAmbient(), currentDiffuse)) {
-                                throw err(lineNo, "(ambient + diffuse) dépasse 1 sur au moins une composante");
-                            }
+        while (t.nextLine()) {
+            int lineNo = t.lineNumber();
+            if (t.isBlankOrComment()) continue;
+
+            try {
+                String key = t.keyword(KEYWORDS);
+                if (key == null) {
+                    throw err(lineNo, "Mot-clé inconnu: " + t.string(0).toLowerCase(Locale.ROOT));
+                }
+
+                switch (key) {
+                    case "size" -> {
+                        requireArgs(t, 3, lineNo);
+                        int w = t.parseInt(1);
+                        int h = t.parseInt(2);
+                        if (w <= 0 || h <= 0) throw err(lineNo, "size doit être > 0");
+                        scene.setWidth(w);
+                        scene.setHeight(h);
+                        sizeSeen = true;
+                    }
+                    case "output" -> {
+                        requireArgs(t, 2, lineNo);
+                        scene.setOutput(t.string(1));
+                    }
+                    case "camera" -> {
+                        requireArgs(t, 11, lineNo);
+                        double x = t.parseDouble(1), y = t.parseDouble(2), z = t.parseDouble(3);
+                        double u = t.parseDouble(4), v = t.parseDouble(5), wv = t.parseDouble(6);
+                        double m = t.parseDouble(7), n = t.parseDouble(8), o = t.parseDouble(9);
+                        double fov = t.parseDouble(10);
+                        var lookFrom = new Point(x,y,z);
+                        var lookAt   = new Point(u,v,wv);
+                        var up       = new Vector(m,n,o);
+                        int frame = 0;
+                        if (t.size() > 11) {
+                            frame = t.parseInt(11);
+                            if (frame < 0) throw err(lineNo, "image clé de camera doit être ≥ 0");
                         }
-                        case "specular" -> {
-                            requireArgs(t, 4, lineNo);
-                            currentSpecular = new Color(d(t[1]), d(t[2]), d(t[3]));
+                        cameraKeys.put(frame, new Camera(lookFrom, lookAt, up, fov));
+                        cameraSeen = true;
+                    }
+                    case "frames" -> {
+                        requireArgs(t, 2, lineNo);
+                        frames = t.parseInt(1);
+                        if (frames < 1 || frames > MAX_FRAMES) {
+                            throw err(lineNo, "frames doit être entre 1 et " + MAX_FRAMES);
                         }
-                        case "shininess" -> {
-                            requireArgs(t, 2, lineNo);
-                            currentShininess = d(t[1]);
+                    }
+                    case "motion" -> {
+                        requireArgs(t, 4, lineNo);
+                        currentMotion = new Vector(t.parseDouble(1), t.parseDouble(2), t.parseDouble(3));
+                    }
+                    case "maxdepth" -> {
+                        requireArgs(t, 2, lineNo);
+                        int depth = t.parseInt(1);
+                        if (depth < 1) throw err(lineNo, "maxdepth doit être ≥ 1");
+                        scene.setMaxDepth(depth);
+                    }
+                    case "aasamples" -> {
+                        requireArgs(t, 2, lineNo);
+                        int samples = t.parseInt(1);
+                        if (samples < 1 || samples > MAX_AA_SAMPLES) {
+                            throw err(lineNo, "aasamples doit être entre 1 et " + MAX_AA_SAMPLES);
                         }
-                        case "directional" -> {
-                            requireArgs(t, 7, lineNo);
-                            var dir = new Vector(d(t[1]), d(t[2]), d(t[3]));
-                            var col = new Color(d(t[4]), d(t[5]), d(t[6]));
-                            // accumulate and check
-                            sumLr += col.r(); sumLg += col.g(); sumLb += col.b();
-                            if (sumLr > 1.0 || sumLg > 1.0 || sumLb > 1.0) {
-                                throw err(lineNo, "Somme des couleurs des lumières > 1 sur au moins une composante");
-                            }
-                            scene.addLight(new DirectionalLight(dir, col));
+                        scene.setAaSamples(samples);
+                    }
+                    case "aathreshold" -> {
+                        requireArgs(t, 2, lineNo);
+                        double threshold = t.parseDouble(1);
+                        if (!(threshold >= 0)) throw err(lineNo, "aathreshold doit être ≥ 0");
+                        scene.setAaThreshold(threshold);
+                    }
+                    case "lightsamples" -> {
+                        requireArgs(t, 2, lineNo);
+                        int samples = t.parseInt(1);
+                        if (samples < 1 || samples > MAX_LIGHT_SAMPLES) {
+                            throw err(lineNo, "lightsamples doit être entre 1 et " + MAX_LIGHT_SAMPLES);
                         }
-                        case "point" -> {
-                            requireArgs(t, 7, lineNo);
-                            var p = new Point(d(t[1]), d(t[2]), d(t[3]));
-                            var col = new Color(d(t[4]), d(t[5]), d(t[6]));
-                            sumLr += col.r(); sumLg += col.g(); sumLb += col.b();
-                            if (sumLr > 1.0 || sumLg > 1.0 || sumLb > 1.0) {
-                                throw err(lineNo, "Somme des couleurs des lumières > 1 sur au moins une composante");
-                            }
-                            scene.addLight(new PointLight(p, col));
+                        scene.setLightSamples(samples);
+                    }
+                    case "shadowmap" -> {
+                        requireArgs(t, 2, lineNo);
+                        int resolution = t.parseInt(1);
+                        if (resolution < MIN_SHADOW_MAP || resolution > MAX_SHADOW_MAP) {
+                            throw err(lineNo, "shadowmap doit être entre " + MIN_SHADOW_MAP + " et " + MAX_SHADOW_MAP);
                         }
-                        case "sphere" -> {
-                            requireArgs(t, 5, lineNo);
-                            var c = new Point(d(t[1]), d(t[2]), d(t[3]));
-                            double r = d(t[4]);
-                            if (r <= 0) throw err(lineNo, "rayon de sphere doit être > 0");
-                            var s = new Sphere(c, r);
-                            // appliquer les dernières couleurs
-                            s.setDiffuse(currentDiffuse);
-                            s.setSpecular(currentSpecular);
-                            s.setShininess(currentShininess);
-                            scene.addShape(s);
+                        scene.setShadowMapResolution(resolution);
+                    }
+                    case "ambient" -> {
+                        requireArgs(t, 4, lineNo);
+                        Color amb = new Color(t.parseDouble(1), t.parseDouble(2), t.parseDouble(3));
+                        scene.setAmbient(amb);
+                        if (!leq1PerComponent(amb, currentDiffuse)) {
+                            throw err(lineNo, "(ambient + diffuse) dépasse 1 sur au moins une composante");
                         }
-                        case "plane" -> {
-                            requireArgs(t, 7, lineNo);
-                            var p = new Point(d(t[1]), d(t[2]), d(t[3]));
-                            var n = new Vector(d(t[4]), d(t[5]), d(t[6]));
-                            var s = new Plane(p, n);
-                            s.setDiffuse(currentDiffuse);
-                            s.setSpecular(currentSpecular);
-                            s.setShininess(currentShininess);
-                            scene.addShape(s);
+                    }
+                    case "diffuse" -> {
+                        requireArgs(t, 4, lineNo);
+                        currentDiffuse = new Color(t.parseDouble(1), t.parseDouble(2), t.parseDouble(3));
+                        if (!leq1PerComponent(scene.getAmbient(), currentDiffuse)) {
+                            throw err(lineNo, "(ambient + diffuse) dépasse 1 sur au moins une composante");
                         }
-                        case "maxverts" -> {
-                            requireArgs(t, 2, lineNo);
-                            maxverts = Integer.parseInt(t[1]);
-                            if (maxverts < 0) throw err(lineNo, "maxverts doit être ≥ 0");
-                            vertices.ensureCapacity(maxverts);
+                    }
+                    case "specular" -> {
+                        requireArgs(t, 4, lineNo);
+                        currentSpecular = new Color(t.parseDouble(1), t.parseDouble(2), t.parseDouble(3));
+                    }
+                    case "shininess" -> {
+                        requireArgs(t, 2, lineNo);
+                        currentShininess = t.parseDouble(1);
+                    }
+                    case "directional" -> {
+                        requireArgs(t, 7, lineNo);
+                        var dir = new Vector(t.parseDouble(1), t.parseDouble(2), t.parseDouble(3));
+                        var col = new Color(t.parseDouble(4), t.parseDouble(5), t.parseDouble(6));
+                        // accumulate and check
+                        sumLr += col.r(); sumLg += col.g(); sumLb += col.b();
+                        if (sumLr > 1.0 || sumLg > 1.0 || sumLb > 1.0) {
+                            throw err(lineNo, "Somme des couleurs des lumières > 1 sur au moins une composante");
                         }
-                        case "vertex" -> {
-                            requireArgs(t, 4, lineNo);
-                            if (maxverts < 0) throw err(lineNo, "Déclarer maxverts avant vertex");
-                            if (vertices.size() >= maxverts) throw err(lineNo, "Trop de vertex (au-delà de maxverts)");
-                            vertices.add(new Point(d(t[1]), d(t[2]), d(t[3])));
+                        scene.addLight(new DirectionalLight(dir, col));
+                    }
+                    case "point" -> {
+                        requireArgs(t, 7, lineNo);
+                        var p = new Point(t.parseDouble(1), t.parseDouble(2), t.parseDouble(3));
+                        var col = new Color(t.parseDouble(4), t.parseDouble(5), t.parseDouble(6));
+                        sumLr += col.r(); sumLg += col.g(); sumLb += col.b();
+                        if (sumLr > 1.0 || sumLg > 1.0 || sumLb > 1.0) {
+                            throw err(lineNo, "Somme des couleurs des lumières > 1 sur au moins une composante");
                         }
-                        case "tri" -> {
-                            requireArgs(t, 4, lineNo);
-                            int a = Integer.parseInt(t[1]);
-                            int b = Integer.parseInt(t[2]);
-                            int c = Integer.parseInt(t[3]);
-                            if (maxverts < 0) throw err(lineNo, "Déclarer maxverts/vertex avant tri");
-                            if (a < 0 || b < 0 || c < 0) throw err(lineNo, "Indices tri doivent être ≥ 0");
-                            if (a >= vertices.size() || b >= vertices.size() || c >= vertices.size())
-                                throw err(lineNo, "Indices tri hors bornes (< maxverts et < nb vertex lus)");
-                            var tri = new Triangle(vertices.get(a), vertices.get(b), vertices.get(c));
-                            tri.setDiffuse(currentDiffuse);
-                            tri.setSpecular(currentSpecular);
-                            tri.setShininess(currentShininess);
-                            scene.addShape(tri);
+                        scene.addLight(new PointLight(p, col));
+                    }
+                    case "sphere" -> {
+                        requireArgs(t, 5, lineNo);
+                        var c = new Point(t.parseDouble(1), t.parseDouble(2), t.parseDouble(3));
+                        double r = t.parseDouble(4);
+                        if (r <= 0) throw err(lineNo, "rayon de sphere doit être > 0");
+                        var s = new Sphere(c, r);
+                        // appliquer les dernières couleurs
+                        s.setDiffuse(currentDiffuse);
+                        s.setSpecular(currentSpecular);
+                        s.setShininess(currentShininess);
+                        s.setSourceLine(lineNo);
+                        addMoving(scene, currentMotion, movingShapes, velocities);
+                        scene.addShape(s);
+                    }
+                    case "plane" -> {
+                        requireArgs(t, 7, lineNo);
+                        var p = new Point(t.parseDouble(1), t.parseDouble(2), t.parseDouble(3));
+                        var n = new Vector(t.parseDouble(4), t.parseDouble(5), t.parseDouble(6));
+                        var s = new Plane(p, n);
+                        s.setDiffuse(currentDiffuse);
+                        s.setSpecular(currentSpecular);
+                        s.setShininess(currentShininess);
+                        s.setSourceLine(lineNo);
+                        addMoving(scene, currentMotion, movingShapes, velocities);
+                        scene.addShape(s);
+                    }
+                    case "maxverts" -> {
+                        requireArgs(t, 2, lineNo);
+                        maxverts = t.parseInt(1);
+                        if (maxverts < 0) throw err(lineNo, "maxverts doit être ≥ 0");
+                        // only a hint: no more vertices than the rest of the text can declare
+                        mesh.ensureVertexCapacity((int) Math.min(maxverts, t.remaining() / MIN_VERTEX_LINE));
+                    }
+                    case "vertex" -> {
+                        requireArgs(t, 4, lineNo);
+                        if (maxverts < 0) throw err(lineNo, "Déclarer maxverts avant vertex");
+                        if (mesh.vertexCount() >= maxverts) throw err(lineNo, "Trop de vertex (au-delà de maxverts)");
+                        mesh.addVertex(t.parseDouble(1), t.parseDouble(2), t.parseDouble(3));
+                    }
+                    case "tri" -> {
+                        requireArgs(t, 4, lineNo);
+                        int a = t.parseInt(1);
+                        int b = t.parseInt(2);
+                        int c = t.parseInt(3);
+                        if (maxverts < 0) throw err(lineNo, "Déclarer maxverts/vertex avant tri");
+                        if (a < 0 || b < 0 || c < 0) throw err(lineNo, "Indices tri doivent être ≥ 0");
+                        if (a >= mesh.vertexCount() || b >= mesh.vertexCount() || c >= mesh.vertexCount())
+                            throw err(lineNo, "Indices tri hors bornes (< maxverts et < nb vertex lus)");
+                        if (mesh.triangleCount() == 0) {
+                            meshMotion = currentMotion;
+                            addMoving(scene, currentMotion, movingShapes, velocities);
+                            scene.addShape(mesh);
+                        } else if (!currentMotion.equals(meshMotion)) {
+                            throw err(lineNo, "Tous les tri forment un seul maillage : motion doit être la même pour chacun");
                         }
-                        default -> throw err(lineNo, "Mot-clé inconnu: " + key);
+                        mesh.addTriangle(a, b, c, currentDiffuse, currentSpecular, currentShininess, lineNo);
                     }
-                } catch (NumberFormatException nfe) {
-                    throw err(lineNo, "Nombre invalide: " + nfe.getMessage(), nfe);
+                    default -> throw err(lineNo, "Mot-clé inconnu: " + key);
                 }
+            } catch (NumberFormatException nfe) {
+                throw err(lineNo, "Nombre invalide: " + nfe.getMessage(), nfe);
             }
-        } catch (IOException e) {
-            throw new SceneParseException("Erreur lecture " + sourceName + " : " + e.getMessage(), e);
         }
 
         if (!sizeSeen)   throw new SceneParseException("size manquant (obligatoire)");
         if (!cameraSeen) throw new SceneParseException("camera manquante (obligatoire)");
+        mesh.trimToSize();
+        Animation animation = new Animation(frames,
+            cameraKeys.keySet().stream().mapToInt(Integer::intValue).toArray(),
+            cameraKeys.values().toArray(new Camera[0]),
+            movingShapes.stream().mapToInt(Integer::intValue).toArray(),
+            velocities.toArray(new Vector[0]));
+        scene.setCamera(animation.cameraAt(0));
+        if (frames > 1) {
+            scene.setAnimation(animation);
+        }
         return scene;
     }
 
+    /**
+     * Records the shape about to be added to the scene as moving if the motion is not zero.
+     */
+    private static void addMoving(Scene scene, Vector motion, List<Integer> movingShapes, List<Vector> velocities) {
+        if (motion.x() != 0 || motion.y() != 0 || motion.z() != 0) {
+            movingShapes.add(scene.getShapes().size());
+            velocities.add(motion);
+        }
+    }
+
     /**
      * Ensures the token array has the expected length.
      *
-     * @param t        tokens
+     * @param t        tokenizer positioned on the current line
      * @param expected expected token count
      * @param lineNo   current line number for error messages
      * @throws SceneParseException if insufficient arguments
      */
-    private static void requireArgs(String[] t, int expected, int lineNo) {
-        if (t.length < expected) {
+    private static void requireArgs(SceneTokenizer t, int expected, int lineNo) {
+        if (t.size() < expected) {
             throw err(lineNo, "Arguments insuffisants (attendu " + (expected - 1) + " après le mot-clé)");
         }
     }
 
-    /** Parses a double value from a token. */
-    private static double d(String s) { return Double.parseDouble(s); }
-
     /**
      * Checks per-component that a + b ≤ 1 (with small tolerance).
      */
@@ -0,0 +1,522 @@
+package raytracer.parsing;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import raytracer.Animation;
+import raytracer.Camera;
+import raytracer.Scene;
+import raytracer.accel.Accelerator;
+import raytracer.accel.BVH;
+import raytracer.light.AbstractLight;
+import raytracer.light.DirectionalLight;
+import raytracer.light.PointLight;
+import raytracer.math.Color;
+import raytracer.math.Point;
+import raytracer.math.Vector;
+import raytracer.shape.Plane;
+import raytracer.shape.Shape;
+import raytracer.shape.Sphere;
+import raytracer.shape.Triangle;
+import raytracer.shape.TriangleMesh;
+import raytracer.stats.SceneParseEvent;
+
+/**
+ * Compiled binary form of a {@link Scene}, reloaded without parsing text or
+ * rebuilding the BVH.
+ * <p>
+ * After a header and the scene settings (image, camera, animation, lights), the file holds
+ * flat arrays: a material table, one kind, material and source line per shape,
+ * sphere and plane parameters, a shared vertex table and three vertex indices
+ * per triangle, the arrays of each {@link TriangleMesh}, then optionally the acceleration hierarchy saved by
+ * {@link BVH#write}. Reading maps the file and copies each array in bulk; the
+ * shapes are rebuilt from the same values, so renders are identical to those of
+ * the text scene.
+ * <p>
+ * Snapshots are recognized by their first bytes, so a file of any name can be
+ * given wherever a scene file is expected.
+ */
+public final class SceneSnapshot {
+    /** First bytes of every snapshot: "RTSC". */
+    private static final int MAGIC = 0x52545343;
+    private static final int VERSION = 5;
+
+    private static final byte SPHERE = 0;
+    private static final byte PLANE = 1;
+    private static final byte TRIANGLE = 2;
+    private static final byte MESH = 3;
+
+    private static final byte DIRECTIONAL = 0;
+    private static final byte POINT = 1;
+
+    private SceneSnapshot() {}
+
+    /**
+     * Tells whether a file starts like a snapshot.
+     *
+     * @param file file to probe
+     * @return true if the file is a snapshot
+     * @throws IOException if the file cannot be read
+     */
+    public static boolean isSnapshot(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] head = in.readNBytes(Integer.BYTES);
+            return head.length == Integer.BYTES && ByteBuffer.wrap(head).getInt() == MAGIC;
+        }
+    }
+
+    /**
+     * Writes a snapshot of the scene, including its acceleration structure.
+     *
+     * @param scene scene to save; only spheres, planes, triangles and meshes are supported
+     * @param file  destination
+     * @throws IOException if writing fails
+     * @throws IllegalArgumentException if the scene holds another kind of shape or light
+     */
+    public static void write(Scene scene, Path file) throws IOException {
+        try (OutputStream out = Files.newOutputStream(file)) {
+            write(scene, out);
+        }
+    }
+
+    /**
+     * Writes a snapshot of the scene to a stream, which is flushed but not closed.
+     *
+     * @param scene  scene to save; only spheres, planes, triangles and meshes are supported
+     * @param stream destination
+     * @throws IOException if writing fails
+     * @throws IllegalArgumentException if the scene holds another kind of shape or light
+     */
+    public static void write(Scene scene, OutputStream stream) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+
+        out.writeInt(scene.getWidth());
+        out.writeInt(scene.getHeight());
+        byte[] output = scene.getOutput().getBytes(StandardCharsets.UTF_8);
+        out.writeInt(output.length);
+        out.write(output);
+        writeColor(out, scene.getAmbient());
+        out.writeInt(scene.getMaxDepth());
+        out.writeInt(scene.getAaSamples());
+        out.writeDouble(scene.getAaThreshold());
+        out.writeInt(scene.getLightSamples());
+        out.writeInt(scene.getShadowMapResolution());
+
+        Camera camera = scene.getCamera();
+        writePoint(out, camera.getLookFrom());
+        writePoint(out, camera.getLookAt());
+        writeVector(out, camera.getUp());
+        out.writeDouble(camera.getFovDeg());
+        writeAnimation(out, scene.getAnimation());
+
+        out.writeInt(scene.getLights().size());
+        for (AbstractLight light : scene.getLights()) {
+            if (light instanceof DirectionalLight directional) {
+                out.writeByte(DIRECTIONAL);
+                writeVector(out, directional.direction());
+            } else if (light instanceof PointLight point) {
+                out.writeByte(POINT);
+                writePoint(out, point.origin());
+            } else {
+                throw new IllegalArgumentException("Lumière non supportée: " + light.getClass().getSimpleName());
+            }
+            writeColor(out, light.color());
+        }
+
+        writeShapes(out, scene.getShapes());
+
+        Accelerator accelerator = scene.getAccelerator();
+        out.writeBoolean(true);
+        accelerator.bvh().write(out);
+        out.flush();
+    }
+
+    private static void writeAnimation(DataOutputStream out, Animation animation) throws IOException {
+        if (animation == null) {
+            out.writeInt(0);
+            return;
+        }
+        out.writeInt(animation.frames());
+        out.writeInt(animation.keyCount());
+        for (int k = 0; k < animation.keyCount(); k++) {
+            Camera key = animation.key(k);
+            out.writeInt(animation.keyFrame(k));
+            writePoint(out, key.getLookFrom());
+            writePoint(out, key.getLookAt());
+            writeVector(out, key.getUp());
+            out.writeDouble(key.getFovDeg());
+        }
+        out.writeInt(animation.movingCount());
+        for (int m = 0; m < animation.movingCount(); m++) {
+            out.writeInt(animation.movingShape(m));
+            writeVector(out, animation.velocity(m));
+        }
+    }
+
+    private static void writeShapes(DataOutputStream out, List<Shape> shapes) throws IOException {
+        int n = shapes.size();
+        byte[] kinds = new byte[n];
+        int[] materials = new int[n];
+        List<Shape> materialShapes = new ArrayList<>();
+        Map<List<Double>, Integer> materialIndex = new HashMap<>();
+        List<Point> vertices = new ArrayList<>();
+        Map<Point, Integer> vertexIndex = new IdentityHashMap<>();
+        int spheres = 0, planes = 0, triangles = 0;
+        List<TriangleMesh> meshes = new ArrayList<>();
+
+        for (int i = 0; i < n; i++) {
+            Shape shape = shapes.get(i);
+            if (shape instanceof Sphere) {
+                kinds[i] = SPHERE;
+                spheres++;
+            } else if (shape instanceof Plane) {
+                kinds[i] = PLANE;
+                planes++;
+            } else if (shape instanceof TriangleMesh mesh) {
+                kinds[i] = MESH;
+                meshes.add(mesh);
+            } else if (shape instanceof Triangle t) {
+                kinds[i] = TRIANGLE;
+                triangles++;
+                for (Point p : new Point[] {t.a(), t.b(), t.c()}) {
+                    if (vertexIndex.putIfAbsent(p, vertices.size()) == null) {
+                        vertices.add(p);
+                    }
+                }
+            } else {
+                throw new IllegalArgumentException("Forme non supportée: " + shape.getClass().getSimpleName());
+            }
+            List<Double> key = List.of(shape.getDiffuse().r(), shape.getDiffuse().g(), shape.getDiffuse().b(),
+                shape.getSpecular().r(), shape.getSpecular().g(), shape.getSpecular().b(), shape.getShininess());
+            Integer material = materialIndex.get(key);
+            if (material == null) {
+                material = materialShapes.size();
+                materialIndex.put(key, material);
+                materialShapes.add(shape);
+            }
+            materials[i] = material;
+        }
+
+        out.writeInt(materialShapes.size());
+        for (Shape shape : materialShapes) {
+            writeColor(out, shape.getDiffuse());
+            writeColor(out, shape.getSpecular());
+            out.writeDouble(shape.getShininess());
+        }
+
+        out.writeInt(n);
+        out.write(kinds);
+        for (int i = 0; i < n; i++) {
+            out.writeInt(materials[i]);
+        }
+        for (int i = 0; i < n; i++) {
+            out.writeInt(shapes.get(i).getSourceLine());
+        }
+
+        out.writeInt(spheres);
+        for (Shape shape : shapes) {
+            if (shape instanceof Sphere s) {
+                writePoint(out, s.center());
+                out.writeDouble(s.radius());
+            }
+        }
+        out.writeInt(planes);
+        for (Shape shape : shapes) {
+            if (shape instanceof Plane p) {
+                writePoint(out, p.point());
+                writeVector(out, p.normal());
+            }
+        }
+        out.writeInt(vertices.size());
+        for (Point p : vertices) {
+            writePoint(out, p);
+        }
+        out.writeInt(triangles);
+        for (Shape shape : shapes) {
+            if (shape instanceof Triangle t) {
+                out.writeInt(vertexIndex.get(t.a()));
+                out.writeInt(vertexIndex.get(t.b()));
+                out.writeInt(vertexIndex.get(t.c()));
+            }
+        }
+        out.writeInt(meshes.size());
+        for (TriangleMesh mesh : meshes) {
+            writeMesh(out, mesh);
+        }
+    }
+
+    private static void writeMesh(DataOutputStream out, TriangleMesh mesh) throws IOException {
+        out.writeInt(mesh.vertexCount());
+        for (int v = 0; v < mesh.vertexCount(); v++) {
+            out.writeDouble(mesh.x(v));
+            out.writeDouble(mesh.y(v));
+            out.writeDouble(mesh.z(v));
+        }
+        out.writeInt(mesh.materialCount());
+        for (int m = 0; m < mesh.materialCount(); m++) {
+            writeColor(out, mesh.diffuse(m));
+            writeColor(out, mesh.specular(m));
+            out.writeDouble(mesh.shininess(m));
+        }
+        int n = mesh.triangleCount();
+        out.writeInt(n);
+        for (int t = 0; t < n; t++) {
+            out.writeInt(mesh.vertex(t, 0));
+            out.writeInt(mesh.vertex(t, 1));
+            out.writeInt(mesh.vertex(t, 2));
+        }
+        for (int t = 0; t < n; t++) {
+            out.writeInt(mesh.material(t));
+        }
+        for (int t = 0; t < n; t++) {
+            out.writeInt(mesh.sourceLine(t));
+        }
+    }
+
+    /**
+     * Loads a snapshot written by {@link #write}.
+     *
+     * @param file snapshot file
+     * @return scene with its prebuilt acceleration structure installed
+     * @throws SceneParseException if the file cannot be read or is not a valid snapshot
+     */
+    public static Scene read(Path file) {
+        SceneParseEvent event = new SceneParseEvent(file.toString());
+        event.begin();
+        Scene scene;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            scene = readScene(in);
+        } catch (IOException e) {
+            throw new SceneParseException("Erreur lecture " + file + " : " + e.getMessage(), e);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException
+                 | IllegalArgumentException e) {
+            throw new SceneParseException("Instantané de scène corrompu : " + file, e);
+        }
+        event.setSceneSize(scene.getShapes().size(), scene.getLights().size());
+        event.commit();
+        return scene;
+    }
+
+    /**
+     * Loads a snapshot held in memory, such as one received from another process.
+     *
+     * @param in buffer positioned at the start of the snapshot
+     * @return scene with its prebuilt acceleration structure installed
+     * @throws SceneParseException if the buffer is not a valid snapshot
+     */
+    public static Scene read(ByteBuffer in) {
+        try {
+            return readScene(in);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException
+                 | IllegalArgumentException e) {
+            throw new SceneParseException("Instantané de scène corrompu", e);
+        }
+    }
+
+    private static Scene readScene(ByteBuffer in) {
+        if (in.getInt() != MAGIC) {
+            throw new SceneParseException("Ce fichier n'est pas un instantané de scène");
+        }
+        int version = in.getInt();
+        if (version != VERSION) {
+            throw new SceneParseException("Version d'instantané non supportée : " + version);
+        }
+
+        Scene scene = new Scene();
+        scene.setWidth(in.getInt());
+        scene.setHeight(in.getInt());
+        byte[] output = new byte[in.getInt()];
+        in.get(output);
+        scene.setOutput(new String(output, StandardCharsets.UTF_8));
+        scene.setAmbient(readColor(in));
+        scene.setMaxDepth(in.getInt());
+        scene.setAaSamples(in.getInt());
+        scene.setAaThreshold(in.getDouble());
+        scene.setLightSamples(in.getInt());
+        scene.setShadowMapResolution(in.getInt());
+        scene.setCamera(new Camera(readPoint(in), readPoint(in), readVector(in), in.getDouble()));
+        int frames = in.getInt();
+        if (frames > 0) {
+            int[] keyFrames = new int[in.getInt()];
+            Camera[] keys = new Camera[keyFrames.length];
+            for (int k = 0; k < keys.length; k++) {
+                keyFrames[k] = in.getInt();
+                keys[k] = new Camera(readPoint(in), readPoint(in), readVector(in), in.getDouble());
+            }
+            int[] movingShapes = new int[in.getInt()];
+            Vector[] velocities = new Vector[movingShapes.length];
+            for (int m = 0; m < movingShapes.length; m++) {
+                movingShapes[m] = in.getInt();
+                velocities[m] = readVector(in);
+            }
+            scene.setAnimation(new Animation(frames, keyFrames, keys, movingShapes, velocities));
+        }
+
+        int lights = in.getInt();
+        for (int i = 0; i < lights; i++) {
+            byte type = in.get();
+            if (type == DIRECTIONAL) {
+                Vector direction = readVector(in);
+                scene.addLight(new DirectionalLight(direction, readColor(in)));
+            } else if (type == POINT) {
+                Point origin = readPoint(in);
+                scene.addLight(new PointLight(origin, readColor(in)));
+            } else {
+                throw new IllegalArgumentException("Type de lumière inconnu: " + type);
+            }
+        }
+
+        readShapes(in, scene);
+
+        if (in.get() != 0) {
+            BVH bvh;
+            try {
+                bvh = BVH.read(in, scene.getShapes());
+            } catch (IllegalArgumentException e) {
+                throw new SceneParseException("Instantané de scène corrompu : " + e.getMessage(), e);
+            }
+            scene.setAccelerator(new Accelerator(scene.getShapes(), bvh));
+        }
+        return scene;
+    }
+
+    private static void readShapes(ByteBuffer in, Scene scene) {
+        int materialCount = in.getInt();
+        double[] materials = doubles(in, 7 * materialCount);
+        Color[] diffuse = new Color[materialCount];
+        Color[] specular = new Color[materialCount];
+        for (int m = 0; m < materialCount; m++) {
+            diffuse[m] = new Color(materials[7 * m], materials[7 * m + 1], materials[7 * m + 2]);
+            specular[m] = new Color(materials[7 * m + 3], materials[7 * m + 4], materials[7 * m + 5]);
+        }
+
+        int n = in.getInt();
+        byte[] kinds = new byte[n];
+        in.get(kinds);
+        int[] shapeMaterials = ints(in, n);
+        int[] lines = ints(in, n);
+        double[] spheres = doubles(in, 4 * in.getInt());
+        double[] planes = doubles(in, 6 * in.getInt());
+        int vertexCount = in.getInt();
+        double[] coordinates = doubles(in, 3 * vertexCount);
+        int[] triangles = ints(in, 3 * in.getInt());
+        TriangleMesh[] meshes = new TriangleMesh[in.getInt()];
+        for (int k = 0; k < meshes.length; k++) {
+            meshes[k] = readMesh(in);
+        }
+
+        Point[] vertices = new Point[vertexCount];
+        for (int v = 0; v < vertexCount; v++) {
+            vertices[v] = new Point(coordinates[3 * v], coordinates[3 * v + 1], coordinates[3 * v + 2]);
+        }
+
+        int sphere = 0, plane = 0, triangle = 0, mesh = 0;
+        for (int i = 0; i < n; i++) {
+            Shape shape;
+            switch (kinds[i]) {
+                case SPHERE -> {
+                    int s = 4 * sphere++;
+                    shape = new Sphere(new Point(spheres[s], spheres[s + 1], spheres[s + 2]), spheres[s + 3]);
+                }
+                case PLANE -> {
+                    int p = 6 * plane++;
+                    shape = new Plane(new Point(planes[p], planes[p + 1], planes[p + 2]),
+                        new Vector(planes[p + 3], planes[p + 4], planes[p + 5]));
+                }
+                case TRIANGLE -> {
+                    int t = 3 * triangle++;
+                    shape = new Triangle(vertices[triangles[t]], vertices[triangles[t + 1]], vertices[triangles[t + 2]]);
+                }
+                case MESH -> shape = meshes[mesh++];
+                default -> throw new IllegalArgumentException("Type de forme inconnu: " + kinds[i]);
+            }
+            int m = shapeMaterials[i];
+            shape.setDiffuse(diffuse[m]);
+            shape.setSpecular(specular[m]);
+            shape.setShininess(materials[7 * m + 6]);
+            shape.setSourceLine(lines[i]);
+            scene.addShape(shape);
+        }
+    }
+
+    private static TriangleMesh readMesh(ByteBuffer in) {
+        double[] positions = doubles(in, 3 * in.getInt());
+        int materialCount = in.getInt();
+        double[] materials = doubles(in, 7 * materialCount);
+        Color[] diffuse = new Color[materialCount];
+        Color[] specular = new Color[materialCount];
+        double[] shininess = new double[materialCount];
+        for (int m = 0; m < materialCount; m++) {
+            diffuse[m] = new Color(materials[7 * m], materials[7 * m + 1], materials[7 * m + 2]);
+            specular[m] = new Color(materials[7 * m + 3], materials[7 * m + 4], materials[7 * m + 5]);
+            shininess[m] = materials[7 * m + 6];
+        }
+        int n = in.getInt();
+        int[] indices = ints(in, 3 * n);
+        int[] triangleMaterials = ints(in, n);
+        int[] lines = ints(in, n);
+        return new TriangleMesh(positions, indices, triangleMaterials, lines, diffuse, specular, shininess);
+    }
+
+    private static double[] doubles(ByteBuffer in, int count) {
+        double[] values = new double[count];
+        in.asDoubleBuffer().get(values);
+        in.position(in.position() + count * Double.BYTES);
+        return values;
+    }
+
+    private static int[] ints(ByteBuffer in, int count) {
+        int[] values = new int[count];
+        in.asIntBuffer().get(values);
+        in.position(in.position() + count * Integer.BYTES);
+        return values;
+    }
+
+    private static void writeColor(DataOutputStream out, Color c) throws IOException {
+        out.writeDouble(c.r());
+        out.writeDouble(c.g());
+        out.writeDouble(c.b());
+    }
+
+    private static void writePoint(DataOutputStream out, Point p) throws IOException {
+        out.writeDouble(p.x());
+        out.writeDouble(p.y());
+        out.writeDouble(p.z());
+    }
+
+    private static void writeVector(DataOutputStream out, Vector v) throws IOException {
+        out.writeDouble(v.x());
+        out.writeDouble(v.y());
+        out.writeDouble(v.z());
+    }
+
+    private static Color readColor(ByteBuffer in) {
+        return new Color(in.getDouble(), in.getDouble(), in.getDouble());
+    }
+
+    private static Point readPoint(ByteBuffer in) {
+        return new Point(in.getDouble(), in.getDouble(), in.getDouble());
+    }
+
+    private static Vector readVector(ByteBuffer in) {
+        return new Vector(in.getDouble(), in.getDouble(), in.getDouble());
+    }
+}
@@ -0,0 +1,223 @@
+package raytracer.parsing;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Line tokenizer working in place on the bytes of a scene file (typically a
+ * memory-mapped file), without decoding lines to strings.
+ * <p>
+ * Lines end at "\n", "\r" or "\r\n", as for {@link java.io.BufferedReader#readLine()},
+ * so line numbers match those of a reader. Tokens are runs of bytes above the
+ * space character. Keywords are matched against a table of constants and
+ * numbers are parsed straight from the bytes; strings are only built for
+ * file names, error messages and numbers outside of the fast path, which
+ * yield exactly the value or exception of {@link Double#parseDouble} and
+ * {@link Integer#parseInt}.
+ */
+final class SceneTokenizer {
+    /** Largest mantissa converted exactly to a double. */
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    /** Powers of ten exactly representable as doubles. */
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final ByteBuffer bytes;
+    private final int limit;
+    private int position;
+    private int lineNumber;
+
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private int count;
+
+    /**
+     * @param bytes UTF-8 scene text, read from its position to its limit
+     */
+    SceneTokenizer(ByteBuffer bytes) {
+        this.bytes = bytes;
+        this.position = bytes.position();
+        this.limit = bytes.limit();
+    }
+
+    /**
+     * Moves to the next line and splits it into tokens.
+     *
+     * @return false at the end of the input
+     */
+    boolean nextLine() {
+        if (position >= limit) {
+            return false;
+        }
+        lineNumber++;
+        count = 0;
+        int p = position;
+        while (p < limit) {
+            byte b = bytes.get(p);
+            if (b == '\n' || b == '\r') {
+                break;
+            }
+            if ((b & 0xff) <= ' ') {
+                p++;
+                continue;
+            }
+            int start = p;
+            while (p < limit && (bytes.get(p) & 0xff) > ' ') {
+                p++;
+            }
+            addToken(start, p);
+        }
+        if (p < limit && bytes.get(p) == '\r' && p + 1 < limit && bytes.get(p + 1) == '\n') {
+            p++;
+        }
+        position = p + 1;
+        return true;
+    }
+
+    private void addToken(int start, int end) {
+        if (count == starts.length) {
+            starts = Arrays.copyOf(starts, count * 2);
+            ends = Arrays.copyOf(ends, count * 2);
+        }
+        starts[count] = start;
+        ends[count] = end;
+        count++;
+    }
+
+    /** @return number of bytes after the current line */
+    int remaining() { return limit - position; }
+
+    /** @return number of the current line, from 1 */
+    int lineNumber() { return lineNumber; }
+
+    /** @return number of tokens on the current line */
+    int size() { return count; }
+
+    /** @return true if the current line has no token or starts with '#' */
+    boolean isBlankOrComment() {
+        return count == 0 || bytes.get(starts[0]) == '#';
+    }
+
+    /**
+     * Looks up the first token of the line, ignoring ASCII case.
+     *
+     * @param keywords lower-case keywords
+     * @return the matching keyword constant, or null if there is none
+     */
+    String keyword(String[] keywords) {
+        int start = starts[0];
+        int length = ends[0] - start;
+        for (String keyword : keywords) {
+            if (keyword.length() == length && matchesIgnoreCase(keyword, start)) {
+                return keyword;
+            }
+        }
+        return null;
+    }
+
+    private boolean matchesIgnoreCase(String keyword, int start) {
+        for (int i = 0; i < keyword.length(); i++) {
+            int b = bytes.get(start + i);
+            if (b >= 'A' && b <= 'Z') {
+                b += 'a' - 'A';
+            }
+            if (b != keyword.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param i token index
+     * @return token decoded as UTF-8
+     */
+    String string(int i) {
+        byte[] token = new byte[ends[i] - starts[i]];
+        bytes.get(starts[i], token);
+        return new String(token, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Parses a token as {@link Double#parseDouble} would. Plain decimals whose
+     * digits fit in 53 bits, with at most 22 fraction digits, are computed with a
+     * single correctly rounded division, which gives the same double; anything
+     * else (exponents, long mantissas, invalid input) goes through Double.parseDouble.
+     *
+     * @param i token index
+     * @return parsed value
+     * @throws NumberFormatException if the token is not a number
+     */
+    double parseDouble(int i) {
+        int p = starts[i];
+        int end = ends[i];
+        boolean negative = false;
+        byte b = bytes.get(p);
+        if (b == '-' || b == '+') {
+            negative = b == '-';
+            p++;
+        }
+
+        long mantissa = 0;
+        int exponent = 0;
+        boolean digits = false;
+        boolean point = false;
+        for (; p < end; p++) {
+            b = bytes.get(p);
+            if (b >= '0' && b <= '9') {
+                mantissa = mantissa * 10 + (b - '0');
+                if (mantissa >= MAX_EXACT_MANTISSA) {
+                    return Double.parseDouble(string(i));
+                }
+                digits = true;
+                if (point) {
+                    exponent--;
+                }
+            } else if (b == '.' && !point) {
+                point = true;
+            } else {
+                return Double.parseDouble(string(i));
+            }
+        }
+        if (!digits || exponent < -22) {
+            return Double.parseDouble(string(i));
+        }
+
+        double value = exponent == 0 ? mantissa : mantissa / POWERS_OF_TEN[-exponent];
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parses a token as {@link Integer#parseInt} would.
+     *
+     * @param i token index
+     * @return parsed value
+     * @throws NumberFormatException if the token is not an int
+     */
+    int parseInt(int i) {
+        int p = starts[i];
+        int end = ends[i];
+        boolean negative = false;
+        byte b = bytes.get(p);
+        if (b == '-' || b == '+') {
+            negative = b == '-';
+            p++;
+        }
+        // up to 9 digits cannot overflow
+        if (p == end || end - p > 9) {
+            return Integer.parseInt(string(i));
+        }
+        int value = 0;
+        for (; p < end; p++) {
+            b = bytes.get(p);
+            if (b < '0' || b > '9') {
+                return Integer.parseInt(string(i));
+            }
+            value = value * 10 + (b - '0');
+        }
+        return negative ? -value : value;
+    }
+}
@@ -0,0 +1,276 @@
+package raytracer.server;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import raytracer.RayTracer;
+import raytracer.Renderer;
+import raytracer.Scene;
+import raytracer.image.Framebuffer;
+import raytracer.image.ImageSink;
+import raytracer.parsing.SceneFileParser;
+import raytracer.parsing.SceneParseException;
+
+/**
+ * HTTP render service: {@code POST /render} with a scene text as body answers with
+ * the rendered PNG image.
+ * <p>
+ * Requests are accepted on virtual threads when the JVM has them (Java 21 and later),
+ * on a cached pool of platform threads otherwise; they only wait, since parsing,
+ * building and tracing run in a fixed pool of render threads with a bounded queue.
+ * When the queue is full, requests are refused with 503 before their body is read,
+ * rather than piling up. Scene texts longer than the body limit are refused with 413, as
+ * are parsed scenes whose hierarchy and shadow maps are estimated to need more memory
+ * than the build limit: the check runs before anything is built.
+ * <p>
+ * Compiled scenes are kept in a {@link SceneCache} keyed by the hash of their
+ * geometry, so a scene already seen through another camera, image size or sampling
+ * is neither parsed again nor rebuilt: only its view lines are parsed. The
+ * {@code X-Scene-Cache} response header tells whether the geometry was cached
+ * ({@code hit}) or not ({@code miss}).
+ * <p>
+ * Errors are answered in plain text: 400 for invalid scenes, 405 for other methods
+ * than POST, 413 for too long or too large scenes, 503 when saturated, 500 otherwise.
+ */
+public final class RenderServer implements AutoCloseable {
+    /** Queued renders allowed per render thread before requests are refused. */
+    private static final int QUEUE_PER_RENDERER = 8;
+    /** Default longest scene text accepted, in bytes. */
+    public static final int DEFAULT_MAX_SCENE_BYTES = 64 << 20;
+    /** Default largest estimated memory a scene may take to compile, in bytes. */
+    public static final long DEFAULT_MAX_BUILD_BYTES = 1L << 30;
+
+    private final HttpServer server;
+    private final ExecutorService requestThreads;
+    private final ThreadPoolExecutor renderPool;
+    private final SceneCache cache;
+    private final int threads;
+    private final int tileSize;
+    private final int packetSize;
+    private final int maxSceneBytes;
+    private final long maxBuildBytes;
+
+    /**
+     * Starts the service, accepting scenes up to the default length.
+     *
+     * @param port       TCP port, 0 for any free port
+     * @param renderers  renders run at once
+     * @param threads    render threads of each render
+     * @param tileSize   tile edge length in pixels
+     * @param packetSize primary ray packet edge length
+     * @param cacheBytes estimated memory the scene cache may hold
+     * @throws IOException if the port cannot be bound
+     */
+    public RenderServer(int port, int renderers, int threads, int tileSize, int packetSize, long cacheBytes)
+            throws IOException {
+        this(port, renderers, threads, tileSize, packetSize, cacheBytes, DEFAULT_MAX_SCENE_BYTES,
+            DEFAULT_MAX_BUILD_BYTES);
+    }
+
+    /**
+     * Starts the service.
+     *
+     * @param port          TCP port, 0 for any free port
+     * @param renderers     renders run at once
+     * @param threads       render threads of each render
+     * @param tileSize      tile edge length in pixels
+     * @param packetSize    primary ray packet edge length
+     * @param cacheBytes    estimated memory the scene cache may hold
+     * @param maxSceneBytes longest scene text accepted, in bytes
+     * @param maxBuildBytes largest estimated memory a scene may take to compile, in bytes
+     * @throws IOException if the port cannot be bound
+     */
+    public RenderServer(int port, int renderers, int threads, int tileSize, int packetSize, long cacheBytes,
+                        int maxSceneBytes, long maxBuildBytes) throws IOException {
+        if (maxSceneBytes <= 0 || maxSceneBytes == Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Taille de scène maximale invalide : " + maxSceneBytes);
+        }
+        if (maxBuildBytes <= 0) {
+            throw new IllegalArgumentException("Mémoire de compilation maximale invalide : " + maxBuildBytes);
+        }
+        this.maxSceneBytes = maxSceneBytes;
+        this.maxBuildBytes = maxBuildBytes;
+        this.threads = threads;
+        this.tileSize = tileSize;
+        this.packetSize = packetSize;
+        this.cache = new SceneCache(cacheBytes);
+        AtomicInteger renderThreadCount = new AtomicInteger();
+        this.renderPool = new ThreadPoolExecutor(renderers, renderers, 0, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(QUEUE_PER_RENDERER * renderers),
+            runnable -> new Thread(runnable, "render-" + renderThreadCount.getAndIncrement()));
+        this.requestThreads = requestExecutor();
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext("/render", this::handle);
+        server.setExecutor(requestThreads);
+        server.start();
+    }
+
+    /**
+     * Returns an executor starting a virtual thread per task if the JVM supports
+     * them, a cached platform thread pool otherwise.
+     */
+    private static ExecutorService requestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "http-request");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /** @return port the service listens on */
+    public int port() { return server.getAddress().getPort(); }
+
+    /** @return one-line summary of the scene cache use */
+    public String cacheSummary() { return cache.summary(); }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", "POST");
+                sendText(exchange, 405, "Méthode non autorisée : envoyer la scène en POST");
+                return;
+            }
+            // refuse before reading a body that could not be rendered anyway
+            if (renderPool.getQueue().remainingCapacity() == 0) {
+                sendText(exchange, 503, "Serveur saturé, réessayer plus tard");
+                return;
+            }
+            String declared = exchange.getRequestHeaders().getFirst("Content-Length");
+            if (declared != null && parseLength(declared) > maxSceneBytes) {
+                sendTooLarge(exchange);
+                return;
+            }
+            byte[] body;
+            try (InputStream in = exchange.getRequestBody()) {
+                body = in.readNBytes(maxSceneBytes + 1);
+            }
+            if (body.length > maxSceneBytes) {
+                sendTooLarge(exchange);
+                return;
+            }
+            Future<Response> render;
+            try {
+                render = renderPool.submit(() -> render(body));
+            } catch (RejectedExecutionException e) {
+                sendText(exchange, 503, "Serveur saturé, réessayer plus tard");
+                return;
+            }
+            Response response;
+            try {
+                response = render.get();
+            } catch (InterruptedException e) {
+                render.cancel(true);
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof TooLargeException) {
+                    sendText(exchange, 413, cause.getMessage());
+                    return;
+                }
+                boolean invalid = cause instanceof SceneParseException || cause instanceof IllegalArgumentException;
+                sendText(exchange, invalid ? 400 : 500, String.valueOf(cause.getMessage()));
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", "image/png");
+            exchange.getResponseHeaders().set("X-Scene-Cache", response.cached() ? "hit" : "miss");
+            exchange.sendResponseHeaders(200, response.png().length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response.png());
+            }
+        }
+    }
+
+    private record Response(byte[] png, boolean cached) {}
+
+    /** Thrown on a render thread for a scene too large to compile. */
+    private static final class TooLargeException extends RuntimeException {
+        TooLargeException(String message) { super(message); }
+    }
+
+    /** @return declared body length, or -1 if the header is not a number */
+    private static long parseLength(String header) {
+        try {
+            return Long.parseLong(header.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private void sendTooLarge(HttpExchange exchange) throws IOException {
+        sendText(exchange, 413, "Scène trop longue : " + maxSceneBytes + " octets au plus");
+    }
+
+    /**
+     * Compiles or reuses the scene, renders it and encodes the image; runs on a render thread.
+     */
+    private Response render(byte[] body) throws IOException {
+        String text = new String(body, StandardCharsets.UTF_8);
+        SceneText split = SceneText.split(text);
+        Scene geometry = cache.get(split.geometryKey());
+        boolean cached = geometry != null;
+        Scene scene;
+        if (cached) {
+            Scene view = parse(split.view().getBytes(StandardCharsets.UTF_8));
+            scene = geometry.withView(view);
+        } else {
+            Scene parsed = parse(body);
+            long estimate = SceneCache.estimateBuildBytes(parsed);
+            if (estimate > maxBuildBytes) {
+                throw new TooLargeException("Scène trop lourde à compiler : environ " + (estimate >> 20)
+                    + " Mo, " + (maxBuildBytes >> 20) + " Mo au plus");
+            }
+            scene = parsed.compile();
+            cache.put(split.geometryKey(), scene);
+        }
+        if (scene.getAnimation() != null) {
+            throw new IllegalArgumentException("Les séquences animées (frames) ne sont pas rendues par le serveur");
+        }
+        Framebuffer frame = new Renderer(new RayTracer(scene), threads, tileSize, packetSize).renderFrame();
+        ByteArrayOutputStream png = new ByteArrayOutputStream(frame.width() * frame.height());
+        ImageSink.forFile("image.png", threads).write(frame, png);
+        return new Response(png.toByteArray(), cached);
+    }
+
+    private static Scene parse(byte[] text) {
+        return new SceneFileParser().parse(new ByteArrayInputStream(text), "requête");
+    }
+
+    private static void sendText(HttpExchange exchange, int status, String message) throws IOException {
+        byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /** Stops accepting requests and releases the threads, letting running renders finish. */
+    @Override
+    public void close() {
+        server.stop(0);
+        renderPool.shutdown();
+        requestThreads.shutdown();
+    }
+}
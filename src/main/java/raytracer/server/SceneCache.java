@@ -0,0 +1,149 @@
+package raytracer.server;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import raytracer.Scene;
+import raytracer.accel.BVH;
+import raytracer.light.AbstractLight;
+import raytracer.light.DirectionalLight;
+import raytracer.light.PointLight;
+import raytracer.shape.Shape;
+import raytracer.shape.TriangleMesh;
+
+/**
+ * Least-recently-used cache of compiled scenes, keyed by the hash of their geometry
+ * text (see {@link SceneText}), with a cap on the estimated memory held.
+ * <p>
+ * The footprint of a scene is estimated from its mesh arrays, hierarchy size, light
+ * tree and shadow maps; it does not need to be exact, only to keep the cache from growing without bound.
+ * The entry just added is kept even if it alone exceeds the cap. Two requests
+ * missing the same key at once both parse the scene; the last one wins.
+ */
+final class SceneCache {
+    /** Rough size of a shape object that is not a mesh. */
+    private static final long SHAPE_BYTES = 96;
+    /** Rough size per BVH node: bounds, node ints. */
+    private static final long NODE_BYTES = 6 * Double.BYTES + 2 * Integer.BYTES;
+    /** Rough size per BVH primitive: shape reference, order, index and batched coordinates. */
+    private static final long PRIMITIVE_BYTES = 8 + 2 * Integer.BYTES + 10 * Double.BYTES;
+    /** Rough size of a light object. */
+    private static final long LIGHT_BYTES = 64;
+    /** Rough size per light tree node: bounds, power, children and first light. */
+    private static final long LIGHT_NODE_BYTES = 5 * Double.BYTES + 3 * Integer.BYTES;
+    /** Least size per shadow map texel while it is built: run start, build counter and one entry. */
+    private static final long MAP_TEXEL_BYTES = 3 * Integer.BYTES;
+
+    private final long capacityBytes;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long usedBytes;
+    private long hits;
+    private long misses;
+
+    private record Entry(Scene scene, long bytes) {}
+
+    /**
+     * Creates an empty cache.
+     *
+     * @param capacityBytes estimated memory the cached scenes may hold
+     */
+    SceneCache(long capacityBytes) {
+        this.capacityBytes = capacityBytes;
+    }
+
+    /**
+     * Looks up a scene, marking it as recently used.
+     *
+     * @param key geometry hash
+     * @return compiled scene, or null if absent
+     */
+    synchronized Scene get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.scene();
+    }
+
+    /**
+     * Adds a compiled scene, evicting the least recently used ones beyond the cap.
+     *
+     * @param key   geometry hash
+     * @param scene compiled scene
+     */
+    synchronized void put(String key, Scene scene) {
+        long bytes = estimateBytes(scene);
+        Entry previous = entries.put(key, new Entry(scene, bytes));
+        if (previous != null) {
+            usedBytes -= previous.bytes();
+        }
+        usedBytes += bytes;
+        Iterator<Map.Entry<String, Entry>> oldest = entries.entrySet().iterator();
+        while (usedBytes > capacityBytes && entries.size() > 1) {
+            Entry evicted = oldest.next().getValue();
+            oldest.remove();
+            usedBytes -= evicted.bytes();
+        }
+    }
+
+    /** @return number of cached scenes */
+    synchronized int size() { return entries.size(); }
+
+    /** @return estimated memory held by the cached scenes */
+    synchronized long usedBytes() { return usedBytes; }
+
+    /** @return one-line summary of the cache use */
+    synchronized String summary() {
+        return String.format("%d scènes, %d Mo, %d succès, %d échecs", entries.size(), usedBytes >> 20, hits, misses);
+    }
+
+    /**
+     * Estimates the memory held by a compiled scene: its shapes, mesh arrays,
+     * bounding-volume hierarchy, lights with their tree, and shadow maps.
+     */
+    static long estimateBytes(Scene scene) {
+        BVH bvh = scene.getAccelerator().bvh();
+        return sceneBytes(scene) + NODE_BYTES * bvh.nodeCount() + PRIMITIVE_BYTES * bvh.size()
+            + scene.getShadowMapBytes();
+    }
+
+    /**
+     * Estimates the memory compiling a parsed scene will take, before building anything:
+     * the hierarchy is counted at its largest, and each shadow map at its run starts,
+     * build counters and one entry per texel.
+     */
+    static long estimateBuildBytes(Scene scene) {
+        long primitives = 0;
+        for (Shape shape : scene.getShapes()) {
+            primitives += shape.primitiveCount();
+        }
+        long directionalLights = scene.getLights().stream().filter(l -> l instanceof DirectionalLight).count();
+        long resolution = scene.getShadowMapResolution();
+        return sceneBytes(scene) + NODE_BYTES * Math.max(1, 2 * primitives - 1) + PRIMITIVE_BYTES * primitives
+            + MAP_TEXEL_BYTES * resolution * resolution * directionalLights;
+    }
+
+    /** Estimates the memory held by the shapes, mesh arrays, lights and light tree of a scene. */
+    private static long sceneBytes(Scene scene) {
+        long bytes = 0;
+        long pointLights = 0;
+        for (AbstractLight light : scene.getLights()) {
+            bytes += LIGHT_BYTES;
+            if (light instanceof PointLight) pointLights++;
+        }
+        if (scene.getLightSamples() > 0) {
+            bytes += LIGHT_NODE_BYTES * Math.max(1, 2 * pointLights - 1) + (8 + Integer.BYTES) * pointLights;
+        }
+        for (Shape shape : scene.getShapes()) {
+            if (shape instanceof TriangleMesh mesh) {
+                bytes += 3L * Double.BYTES * mesh.vertexCount() + 5L * Integer.BYTES * mesh.triangleCount();
+            } else {
+                bytes += SHAPE_BYTES;
+            }
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,78 @@
+package raytracer.server;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Scene text split into its view lines (image size, camera, output, reflection
+ * depth, anti-aliasing) and everything else, which determines the geometry and
+ * lighting and therefore the acceleration structure.
+ * <p>
+ * Lines and tokens are cut as the parser's tokenizer cuts them. The view part keeps
+ * one line per line of the original text, the other lines left empty, so its parse
+ * errors report the original line numbers. The geometry key
+ * hashes the remaining lines with comments and blank lines dropped and spaces
+ * collapsed, so two scenes differing only by their view, comments or spacing share
+ * their key.
+ */
+final class SceneText {
+    /** Line ends and token separators of the scene tokenizer. */
+    private static final Pattern LINE_END = Pattern.compile("\r\n|\r|\n");
+    private static final Pattern SEPARATORS = Pattern.compile("[\\x00-\\x20]+");
+
+    /** Keywords that do not change the compiled geometry, in lower case. */
+    private static final Set<String> VIEW_KEYWORDS =
+        Set.of("size", "camera", "output", "maxdepth", "aasamples", "aathreshold");
+
+    private final String view;
+    private final String geometryKey;
+
+    private SceneText(String view, String geometryKey) {
+        this.view = view;
+        this.geometryKey = geometryKey;
+    }
+
+    /**
+     * Splits a scene text.
+     *
+     * @param text scene text
+     * @return split text
+     */
+    static SceneText split(String text) {
+        StringBuilder view = new StringBuilder(256);
+        StringBuilder geometry = new StringBuilder(text.length());
+        for (String line : LINE_END.split(text, -1)) {
+            String[] tokens = SEPARATORS.split(line.trim());
+            String keyword = tokens[0].toLowerCase(Locale.ROOT);
+            if (keyword.isEmpty() || keyword.startsWith("#")) {
+                // blank or comment: part of neither
+            } else if (VIEW_KEYWORDS.contains(keyword)) {
+                view.append(line);
+            } else {
+                geometry.append(String.join(" ", tokens)).append('\n');
+            }
+            view.append('\n');
+        }
+        return new SceneText(view.toString(), sha256(geometry.toString()));
+    }
+
+    /** @return text holding only the view lines, at their original line numbers */
+    String view() { return view; }
+
+    /** @return hexadecimal SHA-256 of the normalized geometry lines */
+    String geometryKey() { return geometryKey; }
+
+    private static String sha256(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponible", e);
+        }
+    }
+}
@@ -1,7 +1,5 @@
 package raytracer.shape;
 
-import java.util.Optional;
-
 import raytracer.Intersection;
 import raytracer.Ray;
 import raytracer.math.Point;
@@ -9,10 +7,12 @@ import raytracer.math.Vector;
 
 /**
  * Infinite plane defined by a point and a (possibly non-unit) normal vector.
+ * The unit normal given to hit records is computed once, at construction.
  */
 public final class Plane extends Shape {
     private final Point point;
     private final Vector normal;
+    private final Vector unitNormal;
 
     /**
      * Constructs a plane.
@@ -23,6 +23,7 @@ public final class Plane extends Shape {
     public Plane(Point point, Vector normal) {
         this.point = point;
         this.normal = normal;
+        this.unitNormal = normal.normalized();
     }
 
     /** @return point on the plane */
@@ -30,40 +31,58 @@ public final class Plane extends Shape {
     /** @return plane normal vector */
     public Vector normal() { return normal; }
 
+    @Override
+    public Plane translated(Vector offset) {
+        return withAttributesOf(new Plane(point.add(offset), normal));
+    }
+
     /**
-     * Intersects the plane with a ray.
-     * Returns empty if parallel to the plane or the hit is behind the origin.
+     * Builds the hit record at distance t: position along the ray and unit normal.
+     *
+     * @param ray                  ray that hit the plane
+     * @param distanceIntersection hit distance returned by {@link #intersectDistance(Ray)}
+     * @return intersection record
+     */
+    @Override
+    public Intersection intersectionAt(Ray ray, double distanceIntersection) {
+        Point origin = ray.origin();
+        Vector direction = ray.direction();
+
+        Point intersectionPoint = new Point(
+            origin.x() + direction.x() * distanceIntersection,
+            origin.y() + direction.y() * distanceIntersection,
+            origin.z() + direction.z() * distanceIntersection
+        );
+
+        return new Intersection(distanceIntersection, intersectionPoint, unitNormal, this);
+    }
+
+    /**
+     * Computes the ray parameter of the plane hit on primitive components (no allocation).
      *
      * @param ray ray to test
-     * @return closest valid intersection, if any
+     * @return hit distance, or +∞ if parallel or behind the origin
      */
     @Override
-    public Optional<Intersection> intersect(Ray ray) {
+    public double intersectDistance(Ray ray) {
         Point origin = ray.origin();
         Vector direction = ray.direction();
+        double nx = normal.x(), ny = normal.y(), nz = normal.z();
 
         double epsilon = 1e-6;
 
-        double dirDotNormal = direction.dot(normal);
+        double dirDotNormal = direction.x() * nx + direction.y() * ny + direction.z() * nz;
         if (Math.abs(dirDotNormal) < epsilon) {
-            return Optional.empty();
+            return Double.POSITIVE_INFINITY;
         }
 
-        Vector vectorOriginToPlane = point.sub(origin);
-        double distanceIntersection = vectorOriginToPlane.dot(normal) / dirDotNormal;
+        double distanceIntersection = ((point.x() - origin.x()) * nx
+                                     + (point.y() - origin.y()) * ny
+                                     + (point.z() - origin.z()) * nz) / dirDotNormal;
 
         if (distanceIntersection < epsilon) {
-            return Optional.empty();
+            return Double.POSITIVE_INFINITY;
         }
-
-        Point intersectionPoint = new Point(
-            origin.x() + direction.x() * distanceIntersection,
-            origin.y() + direction.y() * distanceIntersection,
-            origin.z() + direction.z() * distanceIntersection
-        );
-
-        Vector normalVector = normal.normalized();
-
-        return Optional.of(new Intersection(distanceIntersection, intersectionPoint, normalVector, this));
+        return distanceIntersection;
     }
 }
@@ -4,16 +4,25 @@ import java.util.Optional;
 
 import raytracer.Intersection;
 import raytracer.Ray;
+import raytracer.accel.BoundingBox;
 import raytracer.math.Color;
+import raytracer.math.Vector;
 
 /**
  * Base class for renderable shapes.
- * Holds material properties (diffuse, specular, shininess) and defines the intersection contract.
+ * Holds material properties (diffuse, specular, shininess) and defines the intersection contract:
+ * subclasses compute only the hit distance, and the full intersection record is built
+ * on demand, once the closest shape along a ray is known.
+ * <p>
+ * A shape is made of one or more primitives that the acceleration structure indexes
+ * separately. Simple shapes are a single primitive and the per-primitive methods
+ * delegate to the whole-shape ones; a {@link TriangleMesh} has one per triangle.
  */
 public abstract class Shape {
     protected Color diffuse = new Color();
     protected Color specular = new Color();
     protected double shininess = 0.0;
+    private int sourceLine;
 
     /** @return diffuse color component */
     public Color getDiffuse() { return diffuse; }
@@ -30,11 +39,133 @@ public abstract class Shape {
     /** Sets specular exponent (shininess). */
     public void setShininess(double shininess) { this.shininess = shininess; }
 
+    /** @return line of the scene file declaring this shape, or 0 if unknown */
+    public int getSourceLine() { return sourceLine; }
+    /** Sets the line of the scene file declaring this shape. */
+    public void setSourceLine(int sourceLine) { this.sourceLine = sourceLine; }
+
+    /**
+     * Returns a copy of this shape moved by an offset, with the same material and
+     * source line. Used to animate scenes; shapes themselves never move.
+     *
+     * @param offset translation
+     * @return moved copy
+     */
+    public abstract Shape translated(Vector offset);
+
+    /** Copies the material and source line of this shape to a copy of it. */
+    protected final <S extends Shape> S withAttributesOf(S copy) {
+        copy.setDiffuse(diffuse);
+        copy.setSpecular(specular);
+        copy.setShininess(shininess);
+        copy.setSourceLine(sourceLine);
+        return copy;
+    }
+
+    /**
+     * Computes the distance to the closest valid hit of the ray, without allocating.
+     *
+     * @param ray input ray in world space
+     * @return ray parameter t of the closest hit, or {@link Double#POSITIVE_INFINITY} if no hit
+     */
+    public abstract double intersectDistance(Ray ray);
+
+    /**
+     * Builds the intersection record (position, normal) for a hit found by
+     * {@link #intersectDistance(Ray)}.
+     *
+     * @param ray input ray in world space
+     * @param t   finite distance returned by intersectDistance for this ray
+     * @return intersection record
+     */
+    public abstract Intersection intersectionAt(Ray ray, double t);
+
     /**
      * Computes intersection of this shape with the given ray.
      *
      * @param ray input ray in world space
      * @return Optional containing the closest valid intersection, or empty if no hit
      */
-    public abstract Optional<Intersection> intersect(Ray ray);
+    public Optional<Intersection> intersect(Ray ray) {
+        double t = intersectDistance(ray);
+        if (t == Double.POSITIVE_INFINITY) {
+            return Optional.empty();
+        }
+        return Optional.of(intersectionAt(ray, t));
+    }
+
+    /**
+     * Tests whether the closest valid hit of the ray lies strictly inside (tMin, tMax),
+     * without building an intersection record. Used by shadow queries.
+     *
+     * @param ray  input ray in world space
+     * @param tMin lower bound (exclusive)
+     * @param tMax upper bound (exclusive)
+     * @return true if this shape blocks the ray within the range
+     */
+    public boolean occludes(Ray ray, double tMin, double tMax) {
+        double t = intersectDistance(ray);
+        return t > tMin && t < tMax;
+    }
+
+    /**
+     * Returns the axis-aligned bounding box of this shape, used by the acceleration structure.
+     * Unbounded shapes (e.g. planes) return empty and are always tested.
+     *
+     * @return bounding box, or empty if the shape is unbounded
+     */
+    public Optional<BoundingBox> bounds() {
+        return Optional.empty();
+    }
+
+    /** @return number of primitives indexed separately by the acceleration structure */
+    public int primitiveCount() {
+        return 1;
+    }
+
+    /**
+     * Returns the bounding box of one primitive.
+     *
+     * @param primitive primitive index, in [0, {@link #primitiveCount()})
+     * @return bounding box, or empty if the primitive is unbounded
+     */
+    public Optional<BoundingBox> bounds(int primitive) {
+        return bounds();
+    }
+
+    /**
+     * Same as {@link #intersectDistance(Ray)}, restricted to one primitive.
+     *
+     * @param ray       input ray in world space
+     * @param primitive primitive index
+     * @return ray parameter t of the closest hit, or {@link Double#POSITIVE_INFINITY} if no hit
+     */
+    public double intersectDistance(Ray ray, int primitive) {
+        return intersectDistance(ray);
+    }
+
+    /**
+     * Same as {@link #intersectionAt(Ray, double)} for a hit of one primitive.
+     *
+     * @param ray       input ray in world space
+     * @param t         finite distance returned by intersectDistance for this ray and primitive
+     * @param primitive primitive index
+     * @return intersection record
+     */
+    public Intersection intersectionAt(Ray ray, double t, int primitive) {
+        return intersectionAt(ray, t);
+    }
+
+    /**
+     * Same as {@link #occludes(Ray, double, double)}, restricted to one primitive.
+     *
+     * @param ray       input ray in world space
+     * @param tMin      lower bound (exclusive)
+     * @param tMax      upper bound (exclusive)
+     * @param primitive primitive index
+     * @return true if the primitive blocks the ray within the range
+     */
+    public boolean occludes(Ray ray, double tMin, double tMax, int primitive) {
+        return occludes(ray, tMin, tMax);
+    }
 }
@@ -4,6 +4,7 @@ import java.util.Optional;
 
 import raytracer.Intersection;
 import raytracer.Ray;
+import raytracer.accel.BoundingBox;
 import raytracer.math.Point;
 import raytracer.math.Vector;
 
@@ -14,6 +15,7 @@ import raytracer.math.Vector;
 public final class Sphere extends Shape {
     private final Point center;
     private final double radius;
+    private final double radiusSquared;
 
     /**
      * Constructs a sphere.
@@ -24,6 +26,7 @@ public final class Sphere extends Shape {
     public Sphere(Point center, double radius) {
         this.center = center;
         this.radius = radius;
+        this.radiusSquared = radius * radius;
     }
 
     /** @return sphere center */
@@ -31,27 +34,67 @@ public final class Sphere extends Shape {
     /** @return sphere radius */
     public double radius() { return radius; }
 
+    @Override
+    public Sphere translated(Vector offset) {
+        return withAttributesOf(new Sphere(center.add(offset), radius));
+    }
+
+    /**
+     * @return box spanning center ± radius on each axis
+     */
+    @Override
+    public Optional<BoundingBox> bounds() {
+        return Optional.of(new BoundingBox(
+            center.x() - radius, center.y() - radius, center.z() - radius,
+            center.x() + radius, center.y() + radius, center.z() + radius));
+    }
+
+    /**
+     * Builds the hit record at distance t: position along the ray and unit normal.
+     *
+     * @param ray                  ray that hit the sphere
+     * @param distanceIntersection hit distance returned by {@link #intersectDistance(Ray)}
+     * @return intersection record
+     */
+    @Override
+    public Intersection intersectionAt(Ray ray, double distanceIntersection) {
+        Point origin = ray.origin();
+        Vector direction = ray.direction();
+
+        Point intersectionPoint = new Point(
+            origin.x() + direction.x() * distanceIntersection,
+            origin.y() + direction.y() * distanceIntersection,
+            origin.z() + direction.z() * distanceIntersection
+        );
+
+        Vector normalVector = intersectionPoint.sub(center).normalized();
+
+        return new Intersection(distanceIntersection, intersectionPoint, normalVector, this);
+    }
+
     /**
-     * Intersects the sphere with a ray.
-     * Returns empty if no real positive solution or intersections behind the origin.
+     * Solves the ray/sphere quadratic on primitive components (no allocation).
      *
      * @param ray ray to test
-     * @return closest valid intersection, if any
+     * @return distance of the closest positive hit, or +∞ if none
      */
     @Override
-    public Optional<Intersection> intersect(Ray ray) {
+    public double intersectDistance(Ray ray) {
         Point origin = ray.origin();
         Vector direction = ray.direction();
+        double dx = direction.x(), dy = direction.y(), dz = direction.z();
 
-        Vector originToCenterVector = origin.sub(center);
+        double ocx = origin.x() - center.x();
+        double ocy = origin.y() - center.y();
+        double ocz = origin.z() - center.z();
 
-        double quadraticA = direction.dot(direction);
-        double quadraticB = 2.0 * originToCenterVector.dot(direction);
-        double quadraticC = originToCenterVector.dot(originToCenterVector) - radius * radius;
+        double quadraticA = dx * dx + dy * dy + dz * dz;
+        double quadraticB = 2.0 * (ocx * dx + ocy * dy + ocz * dz);
+        double quadraticC = (ocx * ocx + ocy * ocy + ocz * ocz) - radiusSquared;
 
         double discriminant = quadraticB * quadraticB - 4 * quadraticA * quadraticC;
         if (discriminant < 0.0) {
-            return Optional.empty();
+            return Double.POSITIVE_INFINITY;
         }
 
         double sqrtDiscriminant = Math.sqrt(discriminant);
@@ -61,25 +104,13 @@ public final class Sphere extends Shape {
         double t2 = (-quadraticB + sqrtDiscriminant) * inverseTwoA;
 
         double epsilon = 1e-6;
-        double distanceIntersection;
         if (t1 > epsilon && t2 > epsilon) {
-            distanceIntersection = Math.min(t1, t2);
+            return Math.min(t1, t2);
         } else if (t1 > epsilon) {
-            distanceIntersection = t1;
+            return t1;
         } else if (t2 > epsilon) {
-            distanceIntersection = t2;
-        } else {
-            return Optional.empty();
+            return t2;
         }
-
-        Point intersectionPoint = new Point(
-            origin.x() + direction.x() * distanceIntersection,
-            origin.y() + direction.y() * distanceIntersection,
-            origin.z() + direction.z() * distanceIntersection
-        );
-
-        Vector normalVector = intersectionPoint.sub(center).normalized();
-
-        return Optional.of(new Intersection(distanceIntersection, intersectionPoint, normalVector, this));
+        return Double.POSITIVE_INFINITY;
     }
 }
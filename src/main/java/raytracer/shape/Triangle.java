@@ -4,15 +4,20 @@ import java.util.Optional;
 
 import raytracer.Intersection;
 import raytracer.Ray;
+import raytracer.accel.BoundingBox;
 import raytracer.math.Point;
 import raytracer.math.Vector;
 
 /**
  * Triangle defined by three vertices a, b, c.
  * Intersection uses the Möller–Trumbore algorithm and returns the closest valid hit.
+ * The edges from a and the unit normal are computed once, at construction.
  */
 public final class Triangle extends Shape {
     private final Point a, b, c;
+    /** Edges b - a and c - a. */
+    private final double e1x, e1y, e1z, e2x, e2y, e2z;
+    private final Vector normal;
 
     /**
      * Constructs a triangle from three vertices.
@@ -23,6 +28,11 @@ public final class Triangle extends Shape {
      */
     public Triangle(Point a, Point b, Point c) {
         this.a = a; this.b = b; this.c = c;
+        Vector edge1 = b.sub(a);
+        Vector edge2 = c.sub(a);
+        e1x = edge1.x(); e1y = edge1.y(); e1z = edge1.z();
+        e2x = edge2.x(); e2y = edge2.y(); e2z = edge2.z();
+        normal = edge1.cross(edge2).normalized();
     }
 
     /** @return vertex a */
@@ -32,59 +42,87 @@ public final class Triangle extends Shape {
     /** @return vertex c */
     public Point c() { return c; }
 
+    @Override
+    public Triangle translated(Vector offset) {
+        return withAttributesOf(new Triangle(a.add(offset), b.add(offset), c.add(offset)));
+    }
+
+    /**
+     * @return box enclosing the three vertices
+     */
+    @Override
+    public Optional<BoundingBox> bounds() {
+        return Optional.of(BoundingBox.of(a, b, c));
+    }
+
+    /**
+     * Builds the hit record at distance t: position along the ray and unit normal.
+     *
+     * @param ray                  ray that hit the triangle
+     * @param distanceIntersection hit distance returned by {@link #intersectDistance(Ray)}
+     * @return intersection record
+     */
+    @Override
+    public Intersection intersectionAt(Ray ray, double distanceIntersection) {
+        Point origin = ray.origin();
+        Vector direction = ray.direction();
+
+        Point intersectionPoint = new Point(
+            origin.x() + direction.x() * distanceIntersection,
+            origin.y() + direction.y() * distanceIntersection,
+            origin.z() + direction.z() * distanceIntersection
+        );
+
+        return new Intersection(distanceIntersection, intersectionPoint, normal, this);
+    }
+
     /**
-     * Intersects the triangle with a ray (Möller–Trumbore).
-     * Returns empty if outside barycentric bounds or behind the origin.
+     * Möller–Trumbore on primitive components (no allocation).
      *
      * @param ray ray to test
-     * @return closest valid intersection, if any
+     * @return hit distance, or +∞ if outside the triangle or behind the origin
      */
     @Override
-    public Optional<Intersection> intersect(Ray ray) {
+    public double intersectDistance(Ray ray) {
         Point origin = ray.origin();
         Vector direction = ray.direction();
+        double dx = direction.x(), dy = direction.y(), dz = direction.z();
 
         double epsilon = 1e-6;
 
-        Vector edge1 = b.sub(a);
-        Vector edge2 = c.sub(a);
-
-        Vector directionCrossEdge2 = direction.cross(edge2);
+        // direction × edge2
+        double px = dy * e2z - dz * e2y;
+        double py = dz * e2x - dx * e2z;
+        double pz = dx * e2y - dy * e2x;
 
-        double determinant = edge1.dot(directionCrossEdge2);
+        double determinant = e1x * px + e1y * py + e1z * pz;
         if (Math.abs(determinant) < epsilon) {
-            return Optional.empty();
+            return Double.POSITIVE_INFINITY;
         }
 
         double inverseDeterminant = 1.0 / determinant;
 
-        Vector originToVertex = origin.sub(a);
+        double tx = origin.x() - a.x(), ty = origin.y() - a.y(), tz = origin.z() - a.z();
 
-        double u = originToVertex.dot(directionCrossEdge2) * inverseDeterminant;
+        double u = (tx * px + ty * py + tz * pz) * inverseDeterminant;
         if (u < 0.0 || u > 1.0) {
-            return Optional.empty();
+            return Double.POSITIVE_INFINITY;
         }
 
-        Vector originToVertexCrossEdge1 = originToVertex.cross(edge1);
+        // (origin - a) × edge1
+        double qx = ty * e1z - tz * e1y;
+        double qy = tz * e1x - tx * e1z;
+        double qz = tx * e1y - ty * e1x;
 
-        double v = direction.dot(originToVertexCrossEdge1) * inverseDeterminant;
+        double v = (dx * qx + dy * qy + dz * qz) * inverseDeterminant;
         if (v < 0.0 || u + v > 1.0) {
-            return Optional.empty();
+            return Double.POSITIVE_INFINITY;
         }
 
-        double distanceIntersection = edge2.dot(originToVertexCrossEdge1) * inverseDeterminant;
+        double distanceIntersection = (e2x * qx + e2y * qy + e2z * qz) * inverseDeterminant;
         if (distanceIntersection < epsilon) {
-            return Optional.empty();
+            return Double.POSITIVE_INFINITY;
         }
-
-        Point intersectionPoint = new Point(
-            origin.x() + direction.x() * distanceIntersection,
-            origin.y() + direction.y() * distanceIntersection,
-            origin.z() + direction.z() * distanceIntersection
-        );
-
-        Vector normalVector = edge1.cross(edge2).normalized();
-
-        return Optional.of(new Intersection(distanceIntersection, intersectionPoint, normalVector, this));
+        return distanceIntersection;
     }
 }
@@ -0,0 +1,414 @@
+package raytracer.shape;
+
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.Optional;
+
+import raytracer.Intersection;
+import raytracer.Ray;
+import raytracer.accel.BoundingBox;
+import raytracer.math.Color;
+import raytracer.math.Point;
+import raytracer.math.Vector;
+
+/**
+ * Indexed triangle mesh stored in primitive arrays: vertex coordinates, three
+ * vertex indices per triangle, and a material index and source line per triangle.
+ * Each triangle is a primitive of the shape, so the acceleration structure indexes
+ * triangles separately while the mesh holds no object per triangle or vertex.
+ * <p>
+ * Intersections follow {@link Triangle} operation by operation, so a triangle of a
+ * mesh gives the same distances and normals as the equivalent Triangle. The
+ * material set on the shape itself is unused: each triangle has its own.
+ * <p>
+ * Vertices and triangles are appended while the scene is loaded; the mesh must
+ * not change once rendering has started.
+ */
+public final class TriangleMesh extends Shape {
+    private static final double EPSILON = 1e-6;
+
+    /** x, y, z of each vertex. */
+    private double[] positions = new double[3 * 16];
+    private int vertexCount;
+
+    /** Vertex indices a, b, c of each triangle. */
+    private int[] indices = new int[3 * 16];
+    private int[] materials = new int[16];
+    private int[] sourceLines = new int[16];
+    private int triangleCount;
+
+    private Color[] diffuse = new Color[1];
+    private Color[] specular = new Color[1];
+    private double[] shininess = new double[1];
+    private int materialCount;
+
+    /** Creates an empty mesh, filled with {@link #addVertex} and {@link #addTriangle}. */
+    public TriangleMesh() {
+    }
+
+    /**
+     * Creates a mesh over existing arrays, which are used without copy.
+     *
+     * @param positions   x, y, z of each vertex
+     * @param indices     vertex indices a, b, c of each triangle
+     * @param materials   material index of each triangle
+     * @param sourceLines scene file line of each triangle (0 if unknown)
+     * @param diffuse     diffuse color of each material
+     * @param specular    specular color of each material
+     * @param shininess   specular exponent of each material
+     * @throws IllegalArgumentException if the arrays are inconsistent or an index is out of range
+     */
+    public TriangleMesh(double[] positions, int[] indices, int[] materials, int[] sourceLines,
+                        Color[] diffuse, Color[] specular, double[] shininess) {
+        int triangles = materials.length;
+        if (positions.length % 3 != 0 || indices.length != 3 * triangles || sourceLines.length != triangles
+                || specular.length != diffuse.length || shininess.length != diffuse.length) {
+            throw new IllegalArgumentException("Tableaux de maillage incohérents");
+        }
+        for (int index : indices) {
+            if (index < 0 || 3L * index >= positions.length) {
+                throw new IllegalArgumentException("Sommet inexistant: " + index);
+            }
+        }
+        for (int material : materials) {
+            if (material < 0 || material >= diffuse.length) {
+                throw new IllegalArgumentException("Matériau inexistant: " + material);
+            }
+        }
+        this.positions = positions;
+        this.vertexCount = positions.length / 3;
+        this.indices = indices;
+        this.materials = materials;
+        this.sourceLines = sourceLines;
+        this.triangleCount = triangles;
+        this.diffuse = diffuse;
+        this.specular = specular;
+        this.shininess = shininess;
+        this.materialCount = diffuse.length;
+        if (triangles > 0) {
+            setSourceLine(sourceLines[0]);
+        }
+    }
+
+    /**
+     * Makes room for the given total number of vertices.
+     *
+     * @param vertices expected vertex count
+     */
+    public void ensureVertexCapacity(int vertices) {
+        if (3L * vertices > positions.length) {
+            positions = Arrays.copyOf(positions, Math.multiplyExact(3, vertices));
+        }
+    }
+
+    /**
+     * Appends a vertex.
+     *
+     * @param x X coordinate
+     * @param y Y coordinate
+     * @param z Z coordinate
+     * @return index of the vertex
+     */
+    public int addVertex(double x, double y, double z) {
+        if (3 * vertexCount == positions.length) {
+            positions = Arrays.copyOf(positions, Math.max(3 * 16, 2 * positions.length));
+        }
+        positions[3 * vertexCount] = x;
+        positions[3 * vertexCount + 1] = y;
+        positions[3 * vertexCount + 2] = z;
+        return vertexCount++;
+    }
+
+    /**
+     * Appends a triangle over existing vertices. Consecutive triangles with the same
+     * material objects share one material entry.
+     *
+     * @param a          index of vertex a
+     * @param b          index of vertex b
+     * @param c          index of vertex c
+     * @param diffuse    diffuse color
+     * @param specular   specular color
+     * @param shininess  specular exponent
+     * @param sourceLine line of the scene file declaring the triangle, or 0
+     * @return index of the triangle
+     * @throws IndexOutOfBoundsException if a vertex index is not below {@link #vertexCount()}
+     */
+    public int addTriangle(int a, int b, int c, Color diffuse, Color specular, double shininess, int sourceLine) {
+        if (a < 0 || b < 0 || c < 0 || a >= vertexCount || b >= vertexCount || c >= vertexCount) {
+            throw new IndexOutOfBoundsException("Sommet inexistant: " + a + " " + b + " " + c);
+        }
+        if (triangleCount == materials.length) {
+            int capacity = Math.max(16, 2 * triangleCount);
+            indices = Arrays.copyOf(indices, 3 * capacity);
+            materials = Arrays.copyOf(materials, capacity);
+            sourceLines = Arrays.copyOf(sourceLines, capacity);
+        }
+        int last = materialCount - 1;
+        if (last < 0 || this.diffuse[last] != diffuse || this.specular[last] != specular
+                || this.shininess[last] != shininess) {
+            if (materialCount == this.diffuse.length) {
+                int capacity = Math.max(1, 2 * materialCount);
+                this.diffuse = Arrays.copyOf(this.diffuse, capacity);
+                this.specular = Arrays.copyOf(this.specular, capacity);
+                this.shininess = Arrays.copyOf(this.shininess, capacity);
+            }
+            this.diffuse[materialCount] = diffuse;
+            this.specular[materialCount] = specular;
+            this.shininess[materialCount] = shininess;
+            materialCount++;
+        }
+        if (triangleCount == 0) {
+            setSourceLine(sourceLine);
+        }
+        indices[3 * triangleCount] = a;
+        indices[3 * triangleCount + 1] = b;
+        indices[3 * triangleCount + 2] = c;
+        materials[triangleCount] = materialCount - 1;
+        sourceLines[triangleCount] = sourceLine;
+        return triangleCount++;
+    }
+
+    /** Releases the spare capacity left by the appends; does nothing if there is none. */
+    public void trimToSize() {
+        if (positions.length == 3 * vertexCount && indices.length == 3 * triangleCount
+                && materials.length == triangleCount && diffuse.length == materialCount) {
+            return;
+        }
+        positions = Arrays.copyOf(positions, 3 * vertexCount);
+        indices = Arrays.copyOf(indices, 3 * triangleCount);
+        materials = Arrays.copyOf(materials, triangleCount);
+        sourceLines = Arrays.copyOf(sourceLines, triangleCount);
+        diffuse = Arrays.copyOf(diffuse, materialCount);
+        specular = Arrays.copyOf(specular, materialCount);
+        shininess = Arrays.copyOf(shininess, materialCount);
+    }
+
+    /**
+     * Returns the mesh moved by an offset. Only the vertex coordinates are copied; the
+     * triangle and material arrays are shared, so both meshes must stay unchanged.
+     */
+    @Override
+    public TriangleMesh translated(Vector offset) {
+        double dx = offset.x(), dy = offset.y(), dz = offset.z();
+        double[] moved = new double[3 * vertexCount];
+        for (int v = 0; v < vertexCount; v++) {
+            moved[3 * v] = positions[3 * v] + dx;
+            moved[3 * v + 1] = positions[3 * v + 1] + dy;
+            moved[3 * v + 2] = positions[3 * v + 2] + dz;
+        }
+        trimToSize();
+        return new TriangleMesh(moved, indices, materials, sourceLines, diffuse, specular, shininess);
+    }
+
+    /** @return number of vertices */
+    public int vertexCount() { return vertexCount; }
+
+    /** @return number of triangles */
+    public int triangleCount() { return triangleCount; }
+
+    /** @return number of distinct consecutive materials */
+    public int materialCount() { return materialCount; }
+
+    /** @return X coordinate of a vertex */
+    public double x(int vertex) { return positions[3 * vertex]; }
+    /** @return Y coordinate of a vertex */
+    public double y(int vertex) { return positions[3 * vertex + 1]; }
+    /** @return Z coordinate of a vertex */
+    public double z(int vertex) { return positions[3 * vertex + 2]; }
+
+    /**
+     * @param triangle triangle index
+     * @param corner   0, 1 or 2 for vertex a, b or c
+     * @return vertex index
+     */
+    public int vertex(int triangle, int corner) { return indices[3 * triangle + corner]; }
+
+    /** @return material index of a triangle */
+    public int material(int triangle) { return materials[triangle]; }
+
+    /** @return read-only view of x, y, z of every vertex, for bulk copies */
+    public DoubleBuffer positionBuffer() {
+        return DoubleBuffer.wrap(positions, 0, 3 * vertexCount).asReadOnlyBuffer();
+    }
+
+    /** @return read-only view of the vertex indices a, b, c of every triangle, for bulk copies */
+    public IntBuffer indexBuffer() {
+        return IntBuffer.wrap(indices, 0, 3 * triangleCount).asReadOnlyBuffer();
+    }
+
+    /** @return read-only view of the material index of every triangle, for bulk copies */
+    public IntBuffer materialBuffer() {
+        return IntBuffer.wrap(materials, 0, triangleCount).asReadOnlyBuffer();
+    }
+
+    /** @return line of the scene file declaring a triangle, or 0 if unknown */
+    public int sourceLine(int triangle) { return sourceLines[triangle]; }
+
+    /** @return diffuse color of a material */
+    public Color diffuse(int material) { return diffuse[material]; }
+    /** @return specular color of a material */
+    public Color specular(int material) { return specular[material]; }
+    /** @return specular exponent of a material */
+    public double shininess(int material) { return shininess[material]; }
+
+    @Override
+    public int primitiveCount() {
+        return triangleCount;
+    }
+
+    /**
+     * @return box enclosing every triangle, or empty for a mesh without triangles
+     */
+    @Override
+    public Optional<BoundingBox> bounds() {
+        if (triangleCount == 0) {
+            return Optional.empty();
+        }
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY, minZ = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY, maxZ = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < 3 * triangleCount; i++) {
+            int v = 3 * indices[i];
+            minX = Math.min(minX, positions[v]); minY = Math.min(minY, positions[v + 1]); minZ = Math.min(minZ, positions[v + 2]);
+            maxX = Math.max(maxX, positions[v]); maxY = Math.max(maxY, positions[v + 1]); maxZ = Math.max(maxZ, positions[v + 2]);
+        }
+        return Optional.of(new BoundingBox(minX, minY, minZ, maxX, maxY, maxZ));
+    }
+
+    @Override
+    public Optional<BoundingBox> bounds(int triangle) {
+        int a = 3 * indices[3 * triangle], b = 3 * indices[3 * triangle + 1], c = 3 * indices[3 * triangle + 2];
+        return Optional.of(new BoundingBox(
+            Math.min(Math.min(positions[a], positions[b]), positions[c]),
+            Math.min(Math.min(positions[a + 1], positions[b + 1]), positions[c + 1]),
+            Math.min(Math.min(positions[a + 2], positions[b + 2]), positions[c + 2]),
+            Math.max(Math.max(positions[a], positions[b]), positions[c]),
+            Math.max(Math.max(positions[a + 1], positions[b + 1]), positions[c + 1]),
+            Math.max(Math.max(positions[a + 2], positions[b + 2]), positions[c + 2])));
+    }
+
+    /**
+     * Tests every triangle; the acceleration structure calls
+     * {@link #intersectDistance(Ray, int)} on the triangles it reaches instead.
+     */
+    @Override
+    public double intersectDistance(Ray ray) {
+        return intersectDistance(ray, closestTriangle(ray));
+    }
+
+    /**
+     * Builds the record of a hit found by {@link #intersectDistance(Ray)}.
+     */
+    @Override
+    public Intersection intersectionAt(Ray ray, double t) {
+        return intersectionAt(ray, t, closestTriangle(ray));
+    }
+
+    @Override
+    public boolean occludes(Ray ray, double tMin, double tMax) {
+        for (int i = 0; i < triangleCount; i++) {
+            if (occludes(ray, tMin, tMax, i)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** @return first triangle hit at the smallest distance, or 0 if none is hit */
+    private int closestTriangle(Ray ray) {
+        int closest = 0;
+        double closestT = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < triangleCount; i++) {
+            double t = intersectDistance(ray, i);
+            if (t < closestT) {
+                closestT = t;
+                closest = i;
+            }
+        }
+        return closest;
+    }
+
+    /**
+     * Möller–Trumbore on one triangle, as {@link Triangle#intersectDistance(Ray)}.
+     */
+    @Override
+    public double intersectDistance(Ray ray, int triangle) {
+        if (triangle >= triangleCount) {
+            return Double.POSITIVE_INFINITY;
+        }
+        Point origin = ray.origin();
+        Vector direction = ray.direction();
+        double dx = direction.x(), dy = direction.y(), dz = direction.z();
+
+        int a = 3 * indices[3 * triangle], b = 3 * indices[3 * triangle + 1], c = 3 * indices[3 * triangle + 2];
+        double ax = positions[a], ay = positions[a + 1], az = positions[a + 2];
+
+        double e1x = positions[b] - ax, e1y = positions[b + 1] - ay, e1z = positions[b + 2] - az;
+        double e2x = positions[c] - ax, e2y = positions[c + 1] - ay, e2z = positions[c + 2] - az;
+
+        // direction × edge2
+        double px = dy * e2z - dz * e2y;
+        double py = dz * e2x - dx * e2z;
+        double pz = dx * e2y - dy * e2x;
+
+        double determinant = e1x * px + e1y * py + e1z * pz;
+        if (Math.abs(determinant) < EPSILON) {
+            return Double.POSITIVE_INFINITY;
+        }
+
+        double inverseDeterminant = 1.0 / determinant;
+
+        double tx = origin.x() - ax, ty = origin.y() - ay, tz = origin.z() - az;
+
+        double u = (tx * px + ty * py + tz * pz) * inverseDeterminant;
+        if (u < 0.0 || u > 1.0) {
+            return Double.POSITIVE_INFINITY;
+        }
+
+        // (origin - a) × edge1
+        double qx = ty * e1z - tz * e1y;
+        double qy = tz * e1x - tx * e1z;
+        double qz = tx * e1y - ty * e1x;
+
+        double v = (dx * qx + dy * qy + dz * qz) * inverseDeterminant;
+        if (v < 0.0 || u + v > 1.0) {
+            return Double.POSITIVE_INFINITY;
+        }
+
+        double distanceIntersection = (e2x * qx + e2y * qy + e2z * qz) * inverseDeterminant;
+        if (distanceIntersection < EPSILON) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return distanceIntersection;
+    }
+
+    /**
+     * Builds the hit record of one triangle, with its material and geometric normal.
+     */
+    @Override
+    public Intersection intersectionAt(Ray ray, double t, int triangle) {
+        Point origin = ray.origin();
+        Vector direction = ray.direction();
+
+        int a = 3 * indices[3 * triangle], b = 3 * indices[3 * triangle + 1], c = 3 * indices[3 * triangle + 2];
+        Vector edge1 = new Vector(positions[b] - positions[a], positions[b + 1] - positions[a + 1], positions[b + 2] - positions[a + 2]);
+        Vector edge2 = new Vector(positions[c] - positions[a], positions[c + 1] - positions[a + 1], positions[c + 2] - positions[a + 2]);
+
+        Point intersectionPoint = new Point(
+            origin.x() + direction.x() * t,
+            origin.y() + direction.y() * t,
+            origin.z() + direction.z() * t
+        );
+
+        Vector normalVector = edge1.cross(edge2).normalized();
+
+        int m = materials[triangle];
+        return new Intersection(t, intersectionPoint, normalVector, this, triangle, diffuse[m], specular[m], shininess[m]);
+    }
+
+    @Override
+    public boolean occludes(Ray ray, double tMin, double tMax, int triangle) {
+        double t = intersectDistance(ray, triangle);
+        return t > tMin && t < tMax;
+    }
+}
@@ -0,0 +1,278 @@
+package raytracer.stats;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import raytracer.image.Framebuffer;
+import raytracer.shape.Shape;
+
+/**
+ * Per-pixel and per-shape cost of a diagnostic render: intersection tests and
+ * nanoseconds spent finding the closest hit, casting shadow rays and shading.
+ * <p>
+ * The scene traces through {@link #instrumentedShapes()}, which count every test
+ * made against each shape; the ray tracer brackets each pixel with
+ * {@link #beginPixel()} and {@link #endPixel}, and the scene reports shadow ray
+ * time with {@link #addShadowNanos}. Anti-aliasing samples beyond the pixel
+ * center are added to their pixel with {@link #addSample}. Instrumented shapes take the generic
+ * intersection path of the BVH (no batched kernels), and timings include
+ * {@link System#nanoTime()} overhead, so costs are meant to be compared with
+ * each other rather than with a normal render.
+ */
+public final class CostProfile {
+    /** Number of shapes listed by default in {@link #report(int)}. */
+    public static final int DEFAULT_TOP_SHAPES = 10;
+    /** Heatmap colour stops, from the cheapest to the most expensive pixels. */
+    private static final int[] RAMP = { 0x000000, 0x0000ff, 0xff0000, 0xffff00, 0xffffff };
+
+    private final int width;
+    private final int height;
+    private final List<Shape> shapes;
+    private final List<Shape> instrumented;
+    private final Map<Shape, Integer> indices = new IdentityHashMap<>();
+
+    private final int[] tests;
+    private final long[] intersectNanos;
+    private final long[] shadowNanos;
+    private final long[] shadeNanos;
+
+    private final LongAdder[] shapeTests;
+    private final LongAdder[] shapeHits;
+    private final LongAdder[] shapeNanos;
+
+    /** Costs of the pixel being traced by the current thread. */
+    private final ThreadLocal<Sample> samples = ThreadLocal.withInitial(Sample::new);
+
+    private static final class Sample {
+        int tests;
+        long shadowNanos;
+    }
+
+    /**
+     * Creates an empty profile.
+     *
+     * @param width  image width in pixels
+     * @param height image height in pixels
+     * @param shapes scene shapes, in declaration order
+     */
+    public CostProfile(int width, int height, List<Shape> shapes) {
+        this.width = width;
+        this.height = height;
+        this.shapes = List.copyOf(shapes);
+
+        int pixels = Math.multiplyExact(width, height);
+        tests = new int[pixels];
+        intersectNanos = new long[pixels];
+        shadowNanos = new long[pixels];
+        shadeNanos = new long[pixels];
+
+        List<Shape> wrapped = new ArrayList<>(shapes.size());
+        shapeTests = new LongAdder[shapes.size()];
+        shapeHits = new LongAdder[shapes.size()];
+        shapeNanos = new LongAdder[shapes.size()];
+        for (int i = 0; i < shapes.size(); i++) {
+            wrapped.add(new ProfiledShape(shapes.get(i), i, this));
+            indices.put(shapes.get(i), i);
+            shapeTests[i] = new LongAdder();
+            shapeHits[i] = new LongAdder();
+            shapeNanos[i] = new LongAdder();
+        }
+        instrumented = Collections.unmodifiableList(wrapped);
+    }
+
+    /** @return the scene shapes wrapped to count their intersection tests, in the same order */
+    public List<Shape> instrumentedShapes() { return instrumented; }
+
+    /** Starts measuring a pixel on the calling thread. */
+    public void beginPixel() {
+        Sample sample = samples.get();
+        sample.tests = 0;
+        sample.shadowNanos = 0;
+    }
+
+    /** Records one intersection test against the shape at the given index. */
+    void countTest(int shapeIndex) {
+        shapeTests[shapeIndex].increment();
+        samples.get().tests++;
+    }
+
+    /**
+     * Adds time spent casting a shadow ray for the current pixel.
+     *
+     * @param nanos elapsed nanoseconds
+     */
+    public void addShadowNanos(long nanos) {
+        samples.get().shadowNanos += nanos;
+    }
+
+    /**
+     * Stores the costs of the pixel started by {@link #beginPixel()}.
+     *
+     * @param pixelX       pixel column
+     * @param pixelY       pixel row (scene coordinates, Y up)
+     * @param intersectNanos time spent finding the closest hit
+     * @param shadeNanos   time spent shading the hit, shadow rays included
+     * @param hit          shape hit by the primary ray, or null
+     */
+    public void endPixel(int pixelX, int pixelY, long intersectNanos, long shadeNanos, Shape hit) {
+        Sample sample = samples.get();
+        int i = (height - 1 - pixelY) * width + pixelX;
+        this.tests[i] = sample.tests;
+        this.intersectNanos[i] = intersectNanos;
+        this.shadowNanos[i] = sample.shadowNanos;
+        this.shadeNanos[i] = shadeNanos - sample.shadowNanos;
+
+        Integer shape = hit == null ? null : indices.get(hit);
+        if (shape != null) {
+            shapeHits[shape].increment();
+            shapeNanos[shape].add(shadeNanos);
+        }
+    }
+
+    /**
+     * Adds the costs of an extra sample, started by {@link #beginPixel()}, to a
+     * pixel already stored by {@link #endPixel}. The sample's shading time is
+     * credited to the shape it hit, which does not count it as one more pixel.
+     *
+     * @param pixelX       pixel column
+     * @param pixelY       pixel row (scene coordinates, Y up)
+     * @param intersectNanos time spent finding the closest hit of the sample
+     * @param shadeNanos   time spent shading the sample, shadow rays included
+     * @param hit          shape hit by the sample ray, or null
+     */
+    public void addSample(int pixelX, int pixelY, long intersectNanos, long shadeNanos, Shape hit) {
+        Sample sample = samples.get();
+        int i = (height - 1 - pixelY) * width + pixelX;
+        this.tests[i] += sample.tests;
+        this.intersectNanos[i] += intersectNanos;
+        this.shadowNanos[i] += sample.shadowNanos;
+        this.shadeNanos[i] += shadeNanos - sample.shadowNanos;
+
+        Integer shape = hit == null ? null : indices.get(hit);
+        if (shape != null) {
+            shapeNanos[shape].add(shadeNanos);
+        }
+    }
+
+    /**
+     * @param x pixel column
+     * @param y pixel row, top row first
+     * @return intersection tests made for the pixel, shadow rays included
+     */
+    public int tests(int x, int y) { return tests[y * width + x]; }
+
+    /**
+     * @param x pixel column
+     * @param y pixel row, top row first
+     * @return nanoseconds spent on the pixel (closest hit, shadows and shading)
+     */
+    public long nanos(int x, int y) {
+        int i = y * width + x;
+        return intersectNanos[i] + shadowNanos[i] + shadeNanos[i];
+    }
+
+    /** @return false-colour map of the time spent per pixel */
+    public Framebuffer timeHeatmap() {
+        long[] values = new long[tests.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = intersectNanos[i] + shadowNanos[i] + shadeNanos[i];
+        }
+        return heatmap(values);
+    }
+
+    /** @return false-colour map of the intersection tests per pixel */
+    public Framebuffer testsHeatmap() {
+        long[] values = new long[tests.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = tests[i];
+        }
+        return heatmap(values);
+    }
+
+    /**
+     * Maps values to colours from black (zero) through blue, red and yellow to
+     * white. The scale tops out at the 99th percentile so that a few outliers
+     * (JIT compilation, GC pauses) do not flatten the rest of the map.
+     */
+    private Framebuffer heatmap(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        double scale = Math.max(1, sorted[(int) ((sorted.length - 1) * 0.99)]);
+
+        Framebuffer frame = new Framebuffer(width, height);
+        int[] pixels = frame.pixels();
+        for (int i = 0; i < values.length; i++) {
+            pixels[i] = falseColour(Math.min(1.0, values[i] / scale));
+        }
+        return frame;
+    }
+
+    private static int falseColour(double v) {
+        double position = v * (RAMP.length - 1);
+        int stop = Math.min((int) position, RAMP.length - 2);
+        double f = position - stop;
+        int a = RAMP[stop], b = RAMP[stop + 1];
+        int r = (int) Math.round(((a >> 16) & 0xff) * (1 - f) + ((b >> 16) & 0xff) * f);
+        int g = (int) Math.round(((a >> 8) & 0xff) * (1 - f) + ((b >> 8) & 0xff) * f);
+        int bl = (int) Math.round((a & 0xff) * (1 - f) + (b & 0xff) * f);
+        return (r << 16) | (g << 8) | bl;
+    }
+
+    /**
+     * Returns the indices of the shapes with the most intersection tests.
+     *
+     * @param n maximum number of shapes
+     * @return shape indices in declaration order, most tested first
+     */
+    public int[] mostTestedShapes(int n) {
+        Integer[] order = new Integer[shapes.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(shapeTests[b].sum(), shapeTests[a].sum()));
+        int count = Math.min(n, order.length);
+        int[] top = new int[count];
+        for (int i = 0; i < count; i++) {
+            top[i] = order[i];
+        }
+        return top;
+    }
+
+    /**
+     * Formats the time per phase and the most tested shapes, identified by
+     * their line in the scene file.
+     *
+     * @param topShapes number of shapes to list
+     * @return multi-line console report
+     */
+    public String report(int topShapes) {
+        long intersect = 0, shadow = 0, shade = 0, totalTests = 0;
+        for (int i = 0; i < tests.length; i++) {
+            intersect += intersectNanos[i];
+            shadow += shadowNanos[i];
+            shade += shadeNanos[i];
+            totalTests += tests[i];
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT,
+            "Coût cumulé : intersection %.1f ms, ombres %.1f ms, shading %.1f ms, %d tests d'intersection%n",
+            intersect / 1e6, shadow / 1e6, shade / 1e6, totalTests));
+        sb.append("Formes les plus testées :");
+        for (int i : mostTestedShapes(topShapes)) {
+            Shape shape = shapes.get(i);
+            String where = shape.getSourceLine() > 0 ? "ligne " + shape.getSourceLine() : "forme #" + i;
+            sb.append(String.format(Locale.ROOT,
+                "%n  %s (%s) : %d tests, %d pixels, %.1f ms de shading",
+                where, shape.getClass().getSimpleName(), shapeTests[i].sum(),
+                shapeHits[i].sum(), shapeNanos[i].sum() / 1e6));
+        }
+        return sb.toString();
+    }
+}
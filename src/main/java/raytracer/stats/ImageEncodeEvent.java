@@ -0,0 +1,34 @@
+package raytracer.stats;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event spanning the encoding and writing of an output image.
+ */
+@Name("raytracer.ImageEncode")
+@Label("Image Encode")
+@Category("Raytracer")
+@Description("Encoding of the rendered image to a file")
+public final class ImageEncodeEvent extends Event {
+    @Label("File")
+    private final String file;
+    @Label("Width")
+    private final int width;
+    @Label("Height")
+    private final int height;
+
+    /**
+     * @param file   output file
+     * @param width  image width in pixels
+     * @param height image height in pixels
+     */
+    public ImageEncodeEvent(String file, int width, int height) {
+        this.file = file;
+        this.width = width;
+        this.height = height;
+    }
+}
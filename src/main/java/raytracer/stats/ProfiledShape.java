@@ -0,0 +1,81 @@
+package raytracer.stats;
+
+import java.util.Optional;
+
+import raytracer.Intersection;
+import raytracer.Ray;
+import raytracer.accel.BoundingBox;
+import raytracer.math.Vector;
+import raytracer.shape.Shape;
+
+/**
+ * Shape decorator counting the intersection tests made against the wrapped shape,
+ * for the shape ranking and the per-pixel test counts of a {@link CostProfile}.
+ * Intersection records are built by the wrapped shape, so shading sees its material.
+ */
+final class ProfiledShape extends Shape {
+    private final Shape shape;
+    private final int index;
+    private final CostProfile profile;
+
+    ProfiledShape(Shape shape, int index, CostProfile profile) {
+        this.shape = shape;
+        this.index = index;
+        this.profile = profile;
+    }
+
+    @Override
+    public double intersectDistance(Ray ray) {
+        profile.countTest(index);
+        return shape.intersectDistance(ray);
+    }
+
+    @Override
+    public Intersection intersectionAt(Ray ray, double t) {
+        return shape.intersectionAt(ray, t);
+    }
+
+    @Override
+    public boolean occludes(Ray ray, double tMin, double tMax) {
+        profile.countTest(index);
+        return shape.occludes(ray, tMin, tMax);
+    }
+
+    /** Moves the wrapped shape; the copy keeps counting its tests under the same index. */
+    @Override
+    public ProfiledShape translated(Vector offset) {
+        return new ProfiledShape(shape.translated(offset), index, profile);
+    }
+
+    @Override
+    public Optional<BoundingBox> bounds() {
+        return shape.bounds();
+    }
+
+    @Override
+    public int primitiveCount() {
+        return shape.primitiveCount();
+    }
+
+    @Override
+    public Optional<BoundingBox> bounds(int primitive) {
+        return shape.bounds(primitive);
+    }
+
+    @Override
+    public double intersectDistance(Ray ray, int primitive) {
+        profile.countTest(index);
+        return shape.intersectDistance(ray, primitive);
+    }
+
+    @Override
+    public Intersection intersectionAt(Ray ray, double t, int primitive) {
+        return shape.intersectionAt(ray, t, primitive);
+    }
+
+    @Override
+    public boolean occludes(Ray ray, double tMin, double tMax, int primitive) {
+        profile.countTest(index);
+        return shape.occludes(ray, tMin, tMax, primitive);
+    }
+}
@@ -0,0 +1,115 @@
+package raytracer.stats;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide render counters: rays cast, intersection tests, shadow rays and
+ * shadow rays that hit an occluder. Shadow queries answered by a shadow map are
+ * lookups, not cast rays, and have their own pair of counters.
+ * Counters are {@link LongAdder}s, striped across threads, and the ray queries
+ * count their tests locally and publish them once per ray, so counting stays
+ * off the contended path of parallel renders.
+ */
+public final class RenderStats {
+    private static final LongAdder RAYS = new LongAdder();
+    private static final LongAdder TESTS = new LongAdder();
+    private static final LongAdder SHADOW_RAYS = new LongAdder();
+    private static final LongAdder OCCLUDED = new LongAdder();
+    private static final LongAdder MAP_LOOKUPS = new LongAdder();
+    private static final LongAdder MAP_OCCLUDED = new LongAdder();
+
+    private RenderStats() {}
+
+    /**
+     * Records closest-hit rays.
+     *
+     * @param rays  number of rays traced
+     * @param tests shape intersection tests they needed
+     */
+    public static void countRays(long rays, long tests) {
+        RAYS.add(rays);
+        TESTS.add(tests);
+    }
+
+    /**
+     * Records shape intersection tests made outside of a closest-hit query.
+     *
+     * @param tests number of tests
+     */
+    public static void countTests(long tests) {
+        TESTS.add(tests);
+    }
+
+    /**
+     * Records one shadow ray.
+     *
+     * @param occluded true if an occluder was found
+     */
+    public static void countShadowRay(boolean occluded) {
+        SHADOW_RAYS.increment();
+        if (occluded) {
+            OCCLUDED.increment();
+        }
+    }
+
+    /**
+     * Records one shadow query answered by a shadow map.
+     *
+     * @param occluded true if the map found an occluder
+     */
+    public static void countShadowMapLookup(boolean occluded) {
+        MAP_LOOKUPS.increment();
+        if (occluded) {
+            MAP_OCCLUDED.increment();
+        }
+    }
+
+    /** Resets all counters to zero. */
+    public static void reset() {
+        RAYS.reset();
+        TESTS.reset();
+        SHADOW_RAYS.reset();
+        OCCLUDED.reset();
+        MAP_LOOKUPS.reset();
+        MAP_OCCLUDED.reset();
+    }
+
+    /** @return closest-hit rays cast (camera rays, reflections and other closest-hit queries) */
+    public static long rays() { return RAYS.sum(); }
+    /** @return shape intersection tests, for all kinds of rays */
+    public static long intersectionTests() { return TESTS.sum(); }
+    /** @return shadow rays cast */
+    public static long shadowRays() { return SHADOW_RAYS.sum(); }
+    /** @return shadow rays that hit an occluder */
+    public static long occludedShadowRays() { return OCCLUDED.sum(); }
+    /** @return shadow queries answered by a shadow map */
+    public static long shadowMapLookups() { return MAP_LOOKUPS.sum(); }
+    /** @return shadow map lookups that found an occluder */
+    public static long occludedShadowMapLookups() { return MAP_OCCLUDED.sum(); }
+
+    /**
+     * Formats the counters as a two-line console summary. Shadow map lookups are listed
+     * after the shadow rays when there are any, and are not counted as rays.
+     *
+     * @param renderNanos wall-clock render time the counters were accumulated over
+     * @return summary text
+     */
+    public static String summary(long renderNanos) {
+        long rays = rays();
+        long shadowRays = shadowRays();
+        long total = rays + shadowRays;
+        double seconds = renderNanos / 1e9;
+        double occludedPercent = shadowRays == 0 ? 0.0 : 100.0 * occludedShadowRays() / shadowRays;
+        double raysPerSecond = seconds > 0 ? total / seconds : 0.0;
+        double testsPerRay = total == 0 ? 0.0 : (double) intersectionTests() / total;
+        long lookups = shadowMapLookups();
+        String mapped = lookups == 0 ? "" : String.format(Locale.ROOT,
+            ", %.2f M lectures de carte d'ombre (%.1f %% occultées)",
+            lookups / 1e6, 100.0 * occludedShadowMapLookups() / lookups);
+        return String.format(Locale.ROOT,
+            "Rayons : %.2f M primaires et réfléchis, %.2f M d'ombre (%.1f %% occultés)%s%n"
+                + "Débit : %.2f Mrayons/s, %.1f tests d'intersection par rayon",
+            rays / 1e6, shadowRays / 1e6, occludedPercent, mapped, raysPerSecond / 1e6, testsPerRay);
+    }
+}
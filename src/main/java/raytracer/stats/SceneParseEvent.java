@@ -0,0 +1,41 @@
+package raytracer.stats;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event spanning the parsing of a scene file.
+ */
+@Name("raytracer.SceneParse")
+@Label("Scene Parse")
+@Category("Raytracer")
+@Description("Parsing of a scene description")
+public final class SceneParseEvent extends Event {
+    @Label("Source")
+    private final String source;
+    @Label("Shapes")
+    private int shapes;
+    @Label("Lights")
+    private int lights;
+
+    /**
+     * @param source scene file name or resource
+     */
+    public SceneParseEvent(String source) {
+        this.source = source;
+    }
+
+    /**
+     * Records the size of the parsed scene.
+     *
+     * @param shapes number of shapes
+     * @param lights number of lights
+     */
+    public void setSceneSize(int shapes, int lights) {
+        this.shapes = shapes;
+        this.lights = lights;
+    }
+}
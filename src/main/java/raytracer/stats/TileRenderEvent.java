@@ -0,0 +1,38 @@
+package raytracer.stats;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event spanning the rendering of one tile.
+ */
+@Name("raytracer.TileRender")
+@Label("Tile Render")
+@Category("Raytracer")
+@Description("Rendering of one image tile")
+public final class TileRenderEvent extends Event {
+    @Label("X")
+    private final int x;
+    @Label("Y")
+    private final int y;
+    @Label("Width")
+    private final int width;
+    @Label("Height")
+    private final int height;
+
+    /**
+     * @param x      first pixel column
+     * @param y      first pixel row (scene coordinates, Y up)
+     * @param width  tile width in pixels
+     * @param height tile height in pixels
+     */
+    public TileRenderEvent(int x, int y, int width, int height) {
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+    }
+}
@@ -0,0 +1,98 @@
+package raytracer.accel;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link IntersectKernel} testing one ray against {@code SPECIES.length()} primitives
+ * per instruction with the JDK Vector API (jdk.incubator.vector).
+ * Only compiled by the Maven profile {@code simd}; loaded reflectively by
+ * {@link IntersectKernel#best()}. Every lane follows the scalar operation order
+ * (no fused multiply-add), so distances are bit-identical to the shape classes.
+ */
+public final class VectorIntersectKernel implements IntersectKernel {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    private static final double EPSILON = 1e-6;
+
+    @Override
+    public void sphereDistances(PrimitiveBatch batch, int from, int to,
+                                double ox, double oy, double oz, double dx, double dy, double dz, double[] out) {
+        double quadraticA = dx * dx + dy * dy + dz * dz;
+        double fourA = 4 * quadraticA;
+        double inverseTwoA = 1.0 / (2.0 * quadraticA);
+
+        for (int i = from; i < to; i += SPECIES.length()) {
+            VectorMask<Double> lanes = SPECIES.indexInRange(i, to);
+
+            DoubleVector ocx = DoubleVector.broadcast(SPECIES, ox).sub(DoubleVector.fromArray(SPECIES, batch.centerX, i, lanes));
+            DoubleVector ocy = DoubleVector.broadcast(SPECIES, oy).sub(DoubleVector.fromArray(SPECIES, batch.centerY, i, lanes));
+            DoubleVector ocz = DoubleVector.broadcast(SPECIES, oz).sub(DoubleVector.fromArray(SPECIES, batch.centerZ, i, lanes));
+            DoubleVector radiusSquared = DoubleVector.fromArray(SPECIES, batch.radiusSquared, i, lanes);
+
+            DoubleVector quadraticB = ocx.mul(dx).add(ocy.mul(dy)).add(ocz.mul(dz)).mul(2.0);
+            DoubleVector quadraticC = ocx.mul(ocx).add(ocy.mul(ocy)).add(ocz.mul(ocz)).sub(radiusSquared);
+            DoubleVector discriminant = quadraticB.mul(quadraticB).sub(quadraticC.mul(fourA));
+
+            DoubleVector sqrtDiscriminant = discriminant.lanewise(VectorOperators.SQRT);
+            DoubleVector minusB = quadraticB.neg();
+            DoubleVector t1 = minusB.sub(sqrtDiscriminant).mul(inverseTwoA);
+            DoubleVector t2 = minusB.add(sqrtDiscriminant).mul(inverseTwoA);
+
+            // NaN roots (negative discriminant) fail both comparisons and stay at +∞
+            VectorMask<Double> valid1 = t1.compare(VectorOperators.GT, EPSILON);
+            VectorMask<Double> valid2 = t2.compare(VectorOperators.GT, EPSILON);
+
+            DoubleVector t = DoubleVector.broadcast(SPECIES, Double.POSITIVE_INFINITY)
+                .blend(t2, valid2)
+                .blend(t1, valid1)
+                .blend(t1.min(t2), valid1.and(valid2));
+            t.intoArray(out, i - from, lanes);
+        }
+    }
+
+    @Override
+    public void triangleDistances(PrimitiveBatch batch, int from, int to,
+                                  double ox, double oy, double oz, double dx, double dy, double dz, double[] out) {
+        for (int i = from; i < to; i += SPECIES.length()) {
+            VectorMask<Double> lanes = SPECIES.indexInRange(i, to);
+
+            DoubleVector e1x = DoubleVector.fromArray(SPECIES, batch.edge1X, i, lanes);
+            DoubleVector e1y = DoubleVector.fromArray(SPECIES, batch.edge1Y, i, lanes);
+            DoubleVector e1z = DoubleVector.fromArray(SPECIES, batch.edge1Z, i, lanes);
+            DoubleVector e2x = DoubleVector.fromArray(SPECIES, batch.edge2X, i, lanes);
+            DoubleVector e2y = DoubleVector.fromArray(SPECIES, batch.edge2Y, i, lanes);
+            DoubleVector e2z = DoubleVector.fromArray(SPECIES, batch.edge2Z, i, lanes);
+
+            // direction × edge2
+            DoubleVector px = e2z.mul(dy).sub(e2y.mul(dz));
+            DoubleVector py = e2x.mul(dz).sub(e2z.mul(dx));
+            DoubleVector pz = e2y.mul(dx).sub(e2x.mul(dy));
+
+            DoubleVector determinant = e1x.mul(px).add(e1y.mul(py)).add(e1z.mul(pz));
+            VectorMask<Double> miss = determinant.abs().compare(VectorOperators.LT, EPSILON);
+            DoubleVector inverseDeterminant = DoubleVector.broadcast(SPECIES, 1.0).div(determinant);
+
+            DoubleVector tx = DoubleVector.broadcast(SPECIES, ox).sub(DoubleVector.fromArray(SPECIES, batch.vertexX, i, lanes));
+            DoubleVector ty = DoubleVector.broadcast(SPECIES, oy).sub(DoubleVector.fromArray(SPECIES, batch.vertexY, i, lanes));
+            DoubleVector tz = DoubleVector.broadcast(SPECIES, oz).sub(DoubleVector.fromArray(SPECIES, batch.vertexZ, i, lanes));
+
+            DoubleVector u = tx.mul(px).add(ty.mul(py)).add(tz.mul(pz)).mul(inverseDeterminant);
+            miss = miss.or(u.compare(VectorOperators.LT, 0.0)).or(u.compare(VectorOperators.GT, 1.0));
+
+            // (origin - a) × edge1
+            DoubleVector qx = ty.mul(e1z).sub(tz.mul(e1y));
+            DoubleVector qy = tz.mul(e1x).sub(tx.mul(e1z));
+            DoubleVector qz = tx.mul(e1y).sub(ty.mul(e1x));
+
+            DoubleVector v = qx.mul(dx).add(qy.mul(dy)).add(qz.mul(dz)).mul(inverseDeterminant);
+            miss = miss.or(v.compare(VectorOperators.LT, 0.0)).or(u.add(v).compare(VectorOperators.GT, 1.0));
+
+            DoubleVector t = e2x.mul(qx).add(e2y.mul(qy)).add(e2z.mul(qz)).mul(inverseDeterminant);
+            miss = miss.or(t.compare(VectorOperators.LT, EPSILON));
+
+            t.blend(Double.POSITIVE_INFINITY, miss).intoArray(out, i - from, lanes);
+        }
+    }
+}
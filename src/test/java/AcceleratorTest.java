@@ -0,0 +1,110 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import raytracer.Intersection;
+import raytracer.Ray;
+import raytracer.accel.Accelerator;
+import raytracer.accel.RayPacket;
+import raytracer.math.Point;
+import raytracer.math.Vector;
+import raytracer.shape.Plane;
+import raytracer.shape.Shape;
+import raytracer.shape.Sphere;
+import raytracer.shape.Triangle;
+
+public class AcceleratorTest {
+
+    private static List<Shape> randomShapes(Random rnd) {
+        List<Shape> shapes = new ArrayList<>();
+        shapes.add(new Plane(new Point(0, -3, 0), new Vector(0, 1, 0)));
+        for (int i = 0; i < 200; i++) {
+            Point c = new Point(rnd.nextDouble() * 10 - 5, rnd.nextDouble() * 6 - 3, rnd.nextDouble() * 10 - 12);
+            if (i % 2 == 0) {
+                shapes.add(new Sphere(c, 0.1 + rnd.nextDouble() * 0.5));
+            } else {
+                shapes.add(new Triangle(c,
+                    c.add(new Vector(rnd.nextDouble(), rnd.nextDouble(), rnd.nextDouble())),
+                    c.add(new Vector(-rnd.nextDouble(), rnd.nextDouble(), -rnd.nextDouble()))));
+            }
+        }
+        return shapes;
+    }
+
+    private static Optional<Intersection> linearClosest(List<Shape> shapes, Ray ray) {
+        Intersection closest = null;
+        for (Shape shape : shapes) {
+            var hit = shape.intersect(ray);
+            if (hit.isPresent() && (closest == null || hit.get().t() < closest.t())) {
+                closest = hit.get();
+            }
+        }
+        return Optional.ofNullable(closest);
+    }
+
+    @Test
+    void closestHitMatchesLinearScan() {
+        Random rnd = new Random(42);
+        List<Shape> shapes = randomShapes(rnd);
+        Accelerator acc = new Accelerator(shapes);
+
+        int hits = 0;
+        for (int i = 0; i < 2000; i++) {
+            Ray ray = new Ray(new Point(0, 0, 0),
+                new Vector(rnd.nextDouble() * 2 - 1, rnd.nextDouble() * 2 - 1, -1).normalized());
+            Optional<Intersection> expected = linearClosest(shapes, ray);
+            Optional<Intersection> actual = acc.closestHit(ray);
+            assertEquals(expected.isPresent(), actual.isPresent());
+            if (expected.isPresent()) {
+                hits++;
+                assertSame(expected.get().shape(), actual.get().shape());
+                assertEquals(expected.get().t(), actual.get().t());
+            }
+        }
+        assertTrue(hits > 0);
+    }
+
+    @Test
+    void packetHitsMatchSingleRays() {
+        Random rnd = new Random(7);
+        List<Shape> shapes = randomShapes(rnd);
+        Accelerator acc = new Accelerator(shapes);
+        RayPacket packet = new RayPacket(16);
+
+        for (int p = 0; p < 200; p++) {
+            // 4x4 block of nearby directions; some blocks straddle an axis and are traced ray by ray
+            double bx = rnd.nextDouble() * 2 - 1, by = rnd.nextDouble() * 2 - 1;
+            packet.clear();
+            for (int i = 0; i < 16; i++) {
+                packet.add(new Ray(new Point(0, 0, 0),
+                    new Vector(bx + (i % 4) * 0.02, by + (i / 4) * 0.02, -1).normalized()));
+            }
+            acc.closestHits(packet);
+            for (int i = 0; i < 16; i++) {
+                Optional<Intersection> expected = acc.closestHit(packet.ray(i));
+                assertEquals(expected.isPresent(), packet.hit(i).shape() != null);
+                if (expected.isPresent()) {
+                    assertSame(expected.get().shape(), packet.hit(i).shape());
+                    assertEquals(expected.get().t(), packet.hit(i).t());
+                }
+            }
+        }
+    }
+
+    @Test
+    void findOccluderRespectsDistanceRange() {
+        List<Shape> shapes = List.of(new Sphere(new Point(0, 0, -5), 1.0));
+        Accelerator acc = new Accelerator(shapes);
+        Ray ray = new Ray(new Point(0, 0, 0), new Vector(0, 0, -1));
+
+        assertSame(shapes.get(0), acc.findOccluder(ray, 1e-4, 10.0).shape());
+        assertNull(acc.findOccluder(ray, 1e-4, 3.0));
+    }
+}
@@ -0,0 +1,86 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import raytracer.batch.BatchRenderer;
+
+public class BatchRendererTest {
+
+    private static void writeScene(Path file, Path output, String extra) throws Exception {
+        Files.writeString(file, String.join("\n",
+            "size 24 16",
+            "output " + output.toString().replace('\\', '/'),
+            "camera 0 0 5 0 0 0 0 1 0 45",
+            "ambient 0.1 0.1 0.1",
+            "point 2 2 2 0.8 0.8 0.8",
+            "diffuse 0.5 0.5 0.5",
+            "sphere 0 0 0 1",
+            extra,
+            ""));
+    }
+
+    @Test
+    void manifestScenesAreRenderedInOrderAndFailuresReported(@TempDir Path dir) throws Exception {
+        writeScene(dir.resolve("a.scene"), dir.resolve("a.png"), "");
+        writeScene(dir.resolve("b.scene"), dir.resolve("b.ppm"), "frames 3\nmotion 0.1 0 0\nsphere 1 1 0 0.3");
+        writeScene(dir.resolve("broken.scene"), dir.resolve("broken.png"), "sphere 0 0 0 -1");
+        Path manifest = dir.resolve("batch.txt");
+        Files.writeString(manifest, "# lot de test\nbroken.scene\na.scene\n\nb.scene  # animée\n");
+
+        List<Path> scenes = BatchRenderer.scenes(manifest);
+        assertEquals(3, scenes.size());
+        List<BatchRenderer.Result> results = new BatchRenderer(2, 2, 2, 1, 8, 4).render(scenes);
+
+        assertEquals(5, results.size());
+        assertNotNull(results.get(0).error());
+        assertEquals(dir.resolve("b.scene"), results.get(4).scene());
+        for (BatchRenderer.Result result : results.subList(1, 5)) {
+            assertNull(result.error());
+            assertTrue(Files.size(Path.of(result.output())) > 0);
+        }
+        assertTrue(Files.exists(dir.resolve("b_0002.ppm")));
+        assertEquals(scenes.subList(1, 3), BatchRenderer.scenes(dir).subList(0, 2));
+    }
+
+    @Test
+    void scenesSharingAnOutputDoNotOverwriteEachOther(@TempDir Path dir) throws Exception {
+        writeScene(dir.resolve("one.scene"), dir.resolve("same.png"), "");
+        writeScene(dir.resolve("two.scene"), dir.resolve("same.png"), "sphere 1 1 0 0.5");
+
+        List<BatchRenderer.Result> results = new BatchRenderer(1, 1, 2, 1, 8, 4).render(
+            List.of(dir.resolve("one.scene"), dir.resolve("two.scene")));
+
+        assertEquals(2, results.size());
+        assertNull(results.get(0).error());
+        assertNull(results.get(1).error());
+        assertEquals(dir.resolve("same.png").toString().replace('\\', '/'), results.get(0).output());
+        assertEquals(dir.resolve("same_two.png").toString().replace('\\', '/'), results.get(1).output());
+        assertTrue(Files.size(dir.resolve("same.png")) > 0);
+        assertTrue(Files.size(dir.resolve("same_two.png")) > 0);
+    }
+
+    @Test
+    void outputsAreClaimedInInputOrderWhateverSceneLoadsFirst(@TempDir Path dir) throws Exception {
+        StringBuilder spheres = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            spheres.append("sphere ").append(i % 100).append(" -50 ").append(i / 100).append(" 0.1\n");
+        }
+        writeScene(dir.resolve("one.scene"), dir.resolve("same.png"), spheres.toString());
+        writeScene(dir.resolve("two.scene"), dir.resolve("same.png"), "");
+        writeScene(dir.resolve("three.scene"), dir.resolve("same.png"), "");
+
+        List<BatchRenderer.Result> results = new BatchRenderer(3, 1, 1, 1, 8, 4).render(
+            List.of(dir.resolve("one.scene"), dir.resolve("two.scene"), dir.resolve("three.scene")));
+
+        assertEquals(dir.resolve("same.png").toString().replace('\\', '/'), results.get(0).output());
+        assertEquals(dir.resolve("same_two.png").toString().replace('\\', '/'), results.get(1).output());
+        assertEquals(dir.resolve("same_three.png").toString().replace('\\', '/'), results.get(2).output());
+    }
+}
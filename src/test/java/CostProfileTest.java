@@ -0,0 +1,96 @@
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import raytracer.Ray;
+import raytracer.RayTracer;
+import raytracer.Renderer;
+import raytracer.Scene;
+import raytracer.image.Framebuffer;
+import raytracer.math.Point;
+import raytracer.math.Vector;
+import raytracer.parsing.SceneFileParser;
+import raytracer.shape.Shape;
+import raytracer.stats.CostProfile;
+
+public class CostProfileTest {
+
+    private static Scene scene() {
+        String src = "size 24 16\n" +
+                     "camera 0 0 0 0 0 -1 0 1 0 60\n" +
+                     "ambient 0.1 0.1 0.1\n" +
+                     "diffuse 0.5 0.5 0.5\n" +
+                     "point 2 2 0 0.8 0.8 0.8\n" +
+                     "plane 0 -1 0 0 1 0\n" +
+                     "sphere 0 0 -4 1.5\n";
+        return new SceneFileParser().parse(new ByteArrayInputStream(src.getBytes(StandardCharsets.UTF_8)), "test");
+    }
+
+    @Test
+    void profiledRenderMatchesNormalRenderAndRanksShapes() {
+        Scene scene = scene();
+        Renderer renderer = new Renderer(new RayTracer(scene), 2, 8, 4);
+        Framebuffer expected = renderer.renderFrame();
+
+        CostProfile profile = new CostProfile(scene.getWidth(), scene.getHeight(), scene.getShapes());
+        Framebuffer frame = renderer.renderFrame(profile);
+
+        assertArrayEquals(expected.pixels(), frame.pixels());
+        assertNull(scene.getCostProfile());
+
+        // the plane and the sphere are tested by every primary ray
+        for (int y = 0; y < scene.getHeight(); y++) {
+            for (int x = 0; x < scene.getWidth(); x++) {
+                assertTrue(profile.tests(x, y) >= 2, "pixel " + x + "," + y);
+                assertTrue(profile.nanos(x, y) > 0);
+            }
+        }
+
+        assertEquals(2, profile.mostTestedShapes(5).length);
+        String report = profile.report(CostProfile.DEFAULT_TOP_SHAPES);
+        assertTrue(report.contains("ligne 6 (Plane)"), report);
+        assertTrue(report.contains("ligne 7 (Sphere)"), report);
+
+        Framebuffer heatmap = profile.testsHeatmap();
+        assertEquals(scene.getWidth(), heatmap.width());
+        assertEquals(scene.getHeight(), heatmap.height());
+    }
+
+    @Test
+    void profiledRenderKeepsAntiAliasing() {
+        Scene scene = scene();
+        scene.setAaSamples(8);
+        Renderer renderer = new Renderer(new RayTracer(scene), 2, 8, 4);
+        Framebuffer expected = renderer.renderFrame();
+
+        CostProfile profile = new CostProfile(scene.getWidth(), scene.getHeight(), scene.getShapes());
+        assertArrayEquals(expected.pixels(), renderer.renderFrame(profile).pixels());
+
+        // supersampled edge pixels add the tests of their extra samples
+        int maxTests = 0;
+        for (int y = 0; y < scene.getHeight(); y++) {
+            for (int x = 0; x < scene.getWidth(); x++) {
+                assertTrue(profile.tests(x, y) >= 2, "pixel " + x + "," + y);
+                maxTests = Math.max(maxTests, profile.tests(x, y));
+            }
+        }
+        assertTrue(maxTests >= 2 * 8, "tests max " + maxTests);
+    }
+
+    @Test
+    void movedInstrumentedShapesKeepCountingTheirTests() {
+        Scene scene = scene();
+        CostProfile profile = new CostProfile(scene.getWidth(), scene.getHeight(), scene.getShapes());
+        Shape moved = profile.instrumentedShapes().get(1).translated(new Vector(0, 3, 0));
+
+        assertEquals(1.5, moved.bounds().orElseThrow().minY(), 1e-6);
+        Ray ray = new Ray(new Point(0, 3, 0), new Vector(0, 0, -1));
+        assertEquals(2.5, moved.intersectDistance(ray), 1e-9);
+        assertEquals(1, profile.mostTestedShapes(1)[0]);
+    }
+}
@@ -0,0 +1,166 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import raytracer.Camera;
+import raytracer.RayTracer;
+import raytracer.Renderer;
+import raytracer.Scene;
+import raytracer.distributed.Coordinator;
+import raytracer.distributed.Worker;
+import raytracer.image.Framebuffer;
+import raytracer.light.PointLight;
+import raytracer.math.Color;
+import raytracer.math.Point;
+import raytracer.math.Vector;
+import raytracer.shape.Plane;
+import raytracer.shape.Sphere;
+
+public class DistributedRenderTest {
+
+    private static Scene scene() {
+        Scene scene = new Scene();
+        scene.setWidth(61);
+        scene.setHeight(45);
+        scene.setCamera(new Camera(new Point(0, 1, 4), new Point(0, 0, 0), new Vector(0, 1, 0), 60.0));
+        scene.setAmbient(new Color(0.1, 0.1, 0.1));
+        scene.addLight(new PointLight(new Point(2, 4, 2), new Color(0.8, 0.8, 0.8)));
+        Sphere sphere = new Sphere(new Point(0, 0.5, 0), 1);
+        sphere.setDiffuse(new Color(0.6, 0.2, 0.2));
+        scene.addShape(sphere);
+        Plane floor = new Plane(new Point(0, -0.5, 0), new Vector(0, 1, 0));
+        floor.setDiffuse(new Color(0.5, 0.5, 0.5));
+        scene.addShape(floor);
+        return scene;
+    }
+
+    private static ServerSocket startWorker() throws IOException {
+        return startWorker(new Worker(2));
+    }
+
+    private static ServerSocket startWorker(Worker worker) throws IOException {
+        ServerSocket server = new ServerSocket(0);
+        Thread thread = new Thread(() -> {
+            try {
+                worker.serve(server);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return server;
+    }
+
+    /** Worker that loads the scene, then drops the connection at its first tile request. */
+    private static ServerSocket startFailingWorker() throws IOException {
+        return startFailingWorker(false);
+    }
+
+    /**
+     * Worker that loads the scene, then at its first tile request drops the connection
+     * or, if it hangs, never answers.
+     */
+    private static ServerSocket startFailingWorker(boolean hang) throws IOException {
+        ServerSocket server = new ServerSocket(0);
+        Thread thread = new Thread(() -> {
+            try (Socket socket = server.accept()) {
+                DataInputStream in = new DataInputStream(socket.getInputStream());
+                DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                in.readInt(); in.readInt(); in.readInt(); in.readInt();
+                in.readFully(new byte[in.readInt()]);
+                out.writeInt(1);
+                out.flush();
+                in.readInt();
+                if (hang) {
+                    in.readAllBytes();
+                }
+            } catch (IOException ignored) {
+                // the test only checks that the coordinator recovers
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return server;
+    }
+
+    private static InetSocketAddress address(ServerSocket server) {
+        return new InetSocketAddress("localhost", server.getLocalPort());
+    }
+
+    @Test
+    void distributedFrameMatchesLocalRender() throws IOException {
+        Scene scene = scene();
+        Framebuffer expected = new Renderer(new RayTracer(scene), 1, 16, 4).renderFrame();
+        try (ServerSocket a = startWorker(); ServerSocket b = startWorker()) {
+            Framebuffer actual = new Coordinator(scene, 16, 4).render(List.of(address(a), address(b)));
+            assertArrayEquals(expected.pixels(), actual.pixels());
+        }
+    }
+
+    @Test
+    void tilesOfALostWorkerAreRenderedByTheOthers() throws IOException {
+        Scene scene = scene();
+        Framebuffer expected = new Renderer(new RayTracer(scene), 1, 16, 4).renderFrame();
+        try (ServerSocket failing = startFailingWorker(); ServerSocket good = startWorker()) {
+            Framebuffer actual = new Coordinator(scene, 16, 4).render(List.of(address(failing), address(good)));
+            assertArrayEquals(expected.pixels(), actual.pixels());
+        }
+    }
+
+    @Test
+    @Timeout(30)
+    void rowOfAHangingWorkerIsReassignedAfterTheTimeout() throws IOException {
+        Scene scene = scene();
+        Framebuffer expected = new Renderer(new RayTracer(scene), 1, 16, 4).renderFrame();
+        try (ServerSocket hanging = startFailingWorker(true)) {
+            assertThrows(IOException.class, () -> new Coordinator(scene, 16, 4, 300).render(List.of(address(hanging))));
+        }
+        try (ServerSocket hanging = startFailingWorker(true); ServerSocket good = startWorker()) {
+            Framebuffer actual = new Coordinator(scene, 16, 4, 300).render(List.of(address(hanging), address(good)));
+            assertArrayEquals(expected.pixels(), actual.pixels());
+        }
+    }
+
+    @Test
+    @Timeout(30)
+    void workerDropsOversizedScenesAndSilentCoordinators() throws IOException {
+        Scene scene = scene();
+        Framebuffer expected = new Renderer(new RayTracer(scene), 1, 16, 4).renderFrame();
+        try (ServerSocket worker = startWorker(new Worker(2, 1 << 20, 300))) {
+            try (Socket oversized = new Socket("localhost", worker.getLocalPort())) {
+                DataOutputStream out = new DataOutputStream(oversized.getOutputStream());
+                // HELLO, version, tile size, packet size, then a 2 GB length and no scene
+                out.writeInt(0x52545748);
+                out.writeInt(1);
+                out.writeInt(16);
+                out.writeInt(4);
+                out.writeInt(Integer.MAX_VALUE);
+                out.flush();
+                assertEquals(-1, oversized.getInputStream().read());
+            }
+            try (Socket silent = new Socket("localhost", worker.getLocalPort())) {
+                // the worker gives up on the silent session, then serves the coordinator
+                Framebuffer actual = new Coordinator(scene, 16, 4).render(List.of(address(worker)));
+                assertArrayEquals(expected.pixels(), actual.pixels());
+            }
+        }
+    }
+
+    @Test
+    void renderFailsWhenEveryWorkerIsLost() throws IOException {
+        try (ServerSocket failing = startFailingWorker()) {
+            assertThrows(IOException.class, () -> new Coordinator(scene(), 16, 4).render(List.of(address(failing))));
+        }
+    }
+}
@@ -0,0 +1,96 @@
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import raytracer.Options;
+import raytracer.Scene;
+import raytracer.cache.ImageCache;
+import raytracer.cache.SceneHash;
+import raytracer.parsing.SceneFileParser;
+
+public class ImageCacheTest {
+
+    private static final String SCENE = String.join("\n",
+        "size 32 24",
+        "output a.png",
+        "camera 0 1 6 0 0 0 0 1 0 45",
+        "ambient 0.1 0.1 0.1",
+        "point 2 3 4 0.8 0.8 0.8",
+        "diffuse 0.5 0.4 0.3",
+        "sphere 0 0 0 1",
+        "maxverts 3",
+        "vertex 0 0 0",
+        "vertex 1 0 0",
+        "vertex 0 1 0",
+        "tri 0 1 2",
+        "");
+
+    private static String hash(String text) {
+        Scene scene = new SceneFileParser().parse(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), "t");
+        return SceneHash.of(scene).orElseThrow();
+    }
+
+    @Test
+    void hashIgnoresFormattingButNotContent() {
+        String reformatted = "# même scène\n" + SCENE.replace("sphere 0 0 0 1", "sphere   0.0 0 0   1.0  ")
+            .replace("output a.png", "output autre/b.png");
+        assertEquals(hash(SCENE), hash(reformatted));
+        assertNotEquals(hash(SCENE), hash(SCENE.replace("camera 0 1 6", "camera 0 1 7")));
+        assertNotEquals(hash(SCENE), hash(SCENE.replace("vertex 0 1 0", "vertex 0 1 0.5")));
+        assertNotEquals(hash(SCENE), hash(SCENE.replace("diffuse 0.5 0.4 0.3", "diffuse 0.5 0.4 0.2")));
+    }
+
+    @Test
+    void leastRecentlyUsedImagesAreEvicted(@TempDir Path dir) throws Exception {
+        ImageCache cache = new ImageCache(dir.resolve("cache"), 2500);
+        Path image = dir.resolve("image.png");
+        Files.write(image, new byte[1000]);
+        cache.store("a", image.toString());
+        cache.store("b", image.toString());
+        Files.setLastModifiedTime(dir.resolve("cache/a.png"), FileTime.fromMillis(System.currentTimeMillis() - 20_000));
+        Files.setLastModifiedTime(dir.resolve("cache/b.png"), FileTime.fromMillis(System.currentTimeMillis() - 10_000));
+
+        assertTrue(cache.lookup("a", "x/other.png").isPresent());
+        assertFalse(cache.lookup("a", "image.ppm").isPresent());
+        cache.store("c", image.toString());
+
+        assertTrue(cache.lookup("a", "image.png").isPresent());
+        assertFalse(cache.lookup("b", "image.png").isPresent());
+        assertTrue(cache.lookup("c", "image.png").isPresent());
+
+        Path copy = dir.resolve("out/copy.png");
+        assertTrue(ImageCache.copyTo(cache.lookup("c", "image.png").orElseThrow(), copy.toString()));
+        assertEquals(1000, Files.size(copy));
+    }
+
+    @Test
+    void entryEvictedAfterLookupIsAMiss(@TempDir Path dir) throws Exception {
+        ImageCache cache = new ImageCache(dir.resolve("cache"), 1 << 20);
+        Path image = dir.resolve("image.png");
+        Files.write(image, new byte[100]);
+        cache.store("a", image.toString());
+        Path cached = cache.lookup("a", "image.png").orElseThrow();
+
+        // another process evicts the entry between the lookup and the copy
+        Files.delete(cached);
+        Path copy = dir.resolve("out/copy.png");
+        assertFalse(ImageCache.copyTo(cached, copy.toString()));
+        assertFalse(Files.exists(copy));
+    }
+
+    @Test
+    void heatmapIsNotCombinedWithTheCache() {
+        assertThrows(IllegalArgumentException.class,
+            () -> Options.parse(new String[] {"--image-cache", "cache", "--heatmap", "a.scene"}));
+    }
+}
@@ -0,0 +1,143 @@
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.Test;
+
+import raytracer.image.Framebuffer;
+import raytracer.image.ImageSink;
+import raytracer.image.PngSink;
+import raytracer.image.RowSink;
+
+public class ImageSinkTest {
+
+    private static Framebuffer sampleFrame(int width, int height) {
+        Framebuffer frame = new Framebuffer(width, height);
+        Random rnd = new Random(9);
+        int[] pixels = frame.pixels();
+        for (int i = 0; i < pixels.length; i++) {
+            int x = i % width, y = i / width;
+            // flat areas, gradients and noise exercise runs, diffs and literals
+            if (x < width / 3) pixels[i] = 0x203040;
+            else if (x < 2 * width / 3) pixels[i] = (x * 3) << 16 | (y * 2) << 8 | (x + y);
+            else pixels[i] = rnd.nextInt(0x1000000);
+        }
+        return frame;
+    }
+
+    private static byte[] encode(ImageSink sink, Framebuffer frame) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        sink.write(frame, out);
+        return out.toByteArray();
+    }
+
+    @Test
+    void parallelPngDecodesToFramePixels() throws IOException {
+        Framebuffer frame = sampleFrame(97, 203);
+        for (int threads : new int[] {1, 3}) {
+            BufferedImage image = ImageIO.read(new ByteArrayInputStream(encode(new PngSink(threads), frame)));
+            for (int y = 0; y < frame.height(); y++) {
+                for (int x = 0; x < frame.width(); x++) {
+                    assertEquals(frame.pixels()[y * frame.width() + x], image.getRGB(x, y) & 0xffffff,
+                        "threads " + threads + ", pixel " + x + "," + y);
+                }
+            }
+        }
+    }
+
+    @Test
+    void ppmHasHeaderAndRawRgb() throws IOException {
+        Framebuffer frame = sampleFrame(5, 3);
+        byte[] ppm = encode(ImageSink.forFile("out.ppm", 1), frame);
+        byte[] header = "P6\n5 3\n255\n".getBytes(StandardCharsets.US_ASCII);
+        assertEquals(header.length + 3 * 15, ppm.length);
+        for (int i = 0; i < 15; i++) {
+            int rgb = (ppm[header.length + 3 * i] & 0xff) << 16 | (ppm[header.length + 3 * i + 1] & 0xff) << 8
+                | (ppm[header.length + 3 * i + 2] & 0xff);
+            assertEquals(frame.pixels()[i], rgb);
+        }
+    }
+
+    @Test
+    void qoiDecodesToFramePixels() throws IOException {
+        Framebuffer frame = sampleFrame(64, 40);
+        byte[] qoi = encode(ImageSink.forFile("out.QOI", 1), frame);
+        assertArrayEquals(frame.pixels(), decodeQoi(qoi, 64 * 40));
+    }
+
+    @Test
+    void qoiEndMarkerFitsAfterFullBuffer() throws IOException {
+        // 16379 literals fill the 64 KiB buffer to within 8 bytes of its end
+        Framebuffer frame = new Framebuffer(16379, 1);
+        int[] pixels = frame.pixels();
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = (i & 0xff) << 16 | ((i & 1) == 0 ? 0x80 : 0) << 8 | (i >> 8);
+        }
+        byte[] qoi = encode(ImageSink.forFile("out.qoi", 1), frame);
+        assertEquals(14 + 4 * pixels.length + 8, qoi.length);
+        assertArrayEquals(pixels, decodeQoi(qoi, pixels.length));
+    }
+
+    @Test
+    void ppmRejectsMissingOrExtraRows() throws IOException {
+        RowSink tooMany = ImageSink.forFile("out.ppm", 1).open(new ByteArrayOutputStream(), 2, 1);
+        assertThrows(IllegalStateException.class, () -> tooMany.writeRows(new int[4], 2));
+        RowSink truncated = ImageSink.forFile("out.ppm", 1).open(new ByteArrayOutputStream(), 2, 2);
+        truncated.writeRows(new int[2], 1);
+        assertThrows(IllegalStateException.class, truncated::close);
+    }
+
+    @Test
+    void unknownExtensionFallsBackToPng() {
+        assertInstanceOf(PngSink.class, ImageSink.forFile("out.png", 2));
+        assertInstanceOf(PngSink.class, ImageSink.forFile("out.img", 2));
+    }
+
+    /** Minimal QOI decoder (RGB), following the format specification. */
+    private static int[] decodeQoi(byte[] data, int pixelCount) {
+        assertEquals("qoif", new String(data, 0, 4, StandardCharsets.US_ASCII));
+        int[] seen = new int[64];
+        int[] out = new int[pixelCount];
+        int r = 0, g = 0, b = 0;
+        int p = 14;
+        int run = 0;
+        for (int i = 0; i < pixelCount; i++) {
+            if (run > 0) {
+                run--;
+            } else {
+                int op = data[p++] & 0xff;
+                if (op == 0xfe) {
+                    r = data[p++] & 0xff; g = data[p++] & 0xff; b = data[p++] & 0xff;
+                } else if ((op & 0xc0) == 0x00) {
+                    int px = seen[op];
+                    r = px >> 16 & 0xff; g = px >> 8 & 0xff; b = px & 0xff;
+                } else if ((op & 0xc0) == 0x40) {
+                    r = (r + ((op >> 4) & 3) - 2) & 0xff;
+                    g = (g + ((op >> 2) & 3) - 2) & 0xff;
+                    b = (b + (op & 3) - 2) & 0xff;
+                } else if ((op & 0xc0) == 0x80) {
+                    int dg = (op & 0x3f) - 32;
+                    int next = data[p++] & 0xff;
+                    r = (r + dg + ((next >> 4) & 0xf) - 8) & 0xff;
+                    g = (g + dg) & 0xff;
+                    b = (b + dg + (next & 0xf) - 8) & 0xff;
+                } else {
+                    run = op & 0x3f;
+                }
+                seen[(r * 3 + g * 5 + b * 7 + 255 * 11) & 63] = r << 16 | g << 8 | b;
+            }
+            out[i] = r << 16 | g << 8 | b;
+        }
+        assertEquals(data.length - 8, p);
+        return out;
+    }
+}
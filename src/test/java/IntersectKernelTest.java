@@ -0,0 +1,69 @@
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.Test;
+
+import raytracer.Ray;
+import raytracer.accel.IntersectKernel;
+import raytracer.accel.PrimitiveBatch;
+import raytracer.math.Point;
+import raytracer.math.Vector;
+import raytracer.shape.Shape;
+import raytracer.shape.Sphere;
+import raytracer.shape.Triangle;
+
+public class IntersectKernelTest {
+
+    private static void assertKernelMatchesShapes(IntersectKernel kernel, Shape[] shapes, boolean spheres) {
+        PrimitiveBatch batch = new PrimitiveBatch(shapes);
+        Random rnd = new Random(3);
+        double[] out = new double[shapes.length];
+        for (int r = 0; r < 500; r++) {
+            Ray ray = new Ray(new Point(rnd.nextDouble() - 0.5, rnd.nextDouble() - 0.5, 0),
+                new Vector(rnd.nextDouble() - 0.5, rnd.nextDouble() - 0.5, -1).normalized());
+            double ox = ray.origin().x(), oy = ray.origin().y(), oz = ray.origin().z();
+            double dx = ray.direction().x(), dy = ray.direction().y(), dz = ray.direction().z();
+            // odd sub-range to exercise the masked tail
+            if (spheres) {
+                kernel.sphereDistances(batch, 1, shapes.length, ox, oy, oz, dx, dy, dz, out);
+            } else {
+                kernel.triangleDistances(batch, 1, shapes.length, ox, oy, oz, dx, dy, dz, out);
+            }
+            for (int i = 1; i < shapes.length; i++) {
+                assertEquals(shapes[i].intersectDistance(ray), out[i - 1], "shape " + i);
+            }
+        }
+    }
+
+    private static Shape[] spheres() {
+        Random rnd = new Random(1);
+        Shape[] shapes = new Shape[11];
+        for (int i = 0; i < shapes.length; i++) {
+            shapes[i] = new Sphere(new Point(rnd.nextDouble() * 2 - 1, rnd.nextDouble() * 2 - 1, -3 - rnd.nextDouble()),
+                0.2 + rnd.nextDouble() * 0.5);
+        }
+        return shapes;
+    }
+
+    private static Shape[] triangles() {
+        Random rnd = new Random(2);
+        Shape[] shapes = new Shape[11];
+        for (int i = 0; i < shapes.length; i++) {
+            Point a = new Point(rnd.nextDouble() * 2 - 1, rnd.nextDouble() * 2 - 1, -3 - rnd.nextDouble());
+            shapes[i] = new Triangle(a, a.add(new Vector(0.8, 0.1, 0.2)), a.add(new Vector(0.1, 0.9, -0.3)));
+        }
+        return shapes;
+    }
+
+    @Test
+    void scalarKernelMatchesShapes() {
+        assertKernelMatchesShapes(IntersectKernel.scalar(), spheres(), true);
+        assertKernelMatchesShapes(IntersectKernel.scalar(), triangles(), false);
+    }
+
+    @Test
+    void bestKernelMatchesShapes() {
+        assertKernelMatchesShapes(IntersectKernel.best(), spheres(), true);
+        assertKernelMatchesShapes(IntersectKernel.best(), triangles(), false);
+    }
+}
@@ -0,0 +1,127 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import raytracer.Camera;
+import raytracer.Intersection;
+import raytracer.Ray;
+import raytracer.Scene;
+import raytracer.light.AbstractLight;
+import raytracer.light.DirectionalLight;
+import raytracer.light.LightTree;
+import raytracer.light.PointLight;
+import raytracer.math.Color;
+import raytracer.math.Point;
+import raytracer.math.Vector;
+import raytracer.shape.Plane;
+
+public class LightTreeTest {
+
+    /** 200 dim point lights scattered on both sides of the plane y = 0. */
+    private static List<AbstractLight> scatteredLights() {
+        List<AbstractLight> lights = new ArrayList<>();
+        lights.add(new DirectionalLight(new Vector(0, -1, 0), new Color(0.001, 0.001, 0.001)));
+        for (int i = 0; i < 200; i++) {
+            double x = Math.sin(i * 1.7) * 10, y = Math.cos(i * 2.3) * 5, z = Math.sin(i * 0.9) * 10;
+            double c = 0.001 + 0.003 * ((i * 7) % 5) / 4.0;
+            lights.add(new PointLight(new Point(x, y, z), new Color(c, c, c)));
+        }
+        return lights;
+    }
+
+    @Test
+    void stratifiedSamplesEstimateTheSumOfCosines() {
+        List<AbstractLight> lights = scatteredLights();
+        LightTree tree = new LightTree(lights);
+        assertEquals(200, tree.size());
+        assertEquals(1, tree.otherCount());
+        assertEquals(0, tree.other(0));
+
+        Point p = new Point(0.5, 0, -0.3);
+        Vector n = new Vector(0, 1, 0);
+        double exact = 0.0;
+        for (AbstractLight light : lights) {
+            if (light instanceof PointLight pl) {
+                Vector l = Vector.fromPoints(p, pl.origin()).normalized();
+                exact += pl.color().r() * Math.max(0.0, l.dot(n));
+            }
+        }
+
+        int samples = 20000;
+        double estimate = 0.0;
+        for (int s = 0; s < samples; s++) {
+            LightTree.Sample sample = tree.sample(p, n, (s + 0.5) / samples);
+            if (sample != null) {
+                PointLight pl = (PointLight) lights.get(sample.light());
+                Vector l = Vector.fromPoints(p, pl.origin()).normalized();
+                estimate += pl.color().r() * Math.max(0.0, l.dot(n)) / sample.probability();
+            }
+        }
+        estimate /= samples;
+        assertEquals(exact, estimate, exact * 0.02);
+    }
+
+    @Test
+    void lightsBehindTheSurfaceAreNeverPicked() {
+        List<AbstractLight> lights = scatteredLights();
+        LightTree tree = new LightTree(lights);
+        Point p = new Point(0, 0, 0);
+        Vector n = new Vector(0, 1, 0);
+        for (int s = 0; s < 1000; s++) {
+            LightTree.Sample sample = tree.sample(p, n, s / 1000.0);
+            if (sample != null) {
+                assertTrue(sample.light() > 0);
+                assertTrue(((PointLight) lights.get(sample.light())).origin().y() > -1e-9);
+            }
+        }
+
+        // all lights far below the surface
+        LightTree below = new LightTree(List.of(
+            new PointLight(new Point(1, -5, 0), new Color(0.1, 0.1, 0.1)),
+            new PointLight(new Point(-1, -6, 2), new Color(0.1, 0.1, 0.1))));
+        assertNull(below.sample(p, n, 0.3));
+    }
+
+    @Test
+    void sampledShadingIsCloseToExactShading() {
+        Scene exact = new Scene();
+        exact.setWidth(4);
+        exact.setHeight(4);
+        exact.setCamera(new Camera(new Point(0, 5, 5), new Point(0, 0, 0), new Vector(0, 1, 0), 60.0));
+        Plane floor = new Plane(new Point(0, 0, 0), new Vector(0, 1, 0));
+        floor.setDiffuse(new Color(0.8, 0.8, 0.8));
+        exact.addShape(floor);
+        for (AbstractLight light : scatteredLights()) {
+            exact.addLight(light);
+        }
+        Scene sampled = new Scene();
+        sampled.setWidth(4);
+        sampled.setHeight(4);
+        sampled.setCamera(exact.getCamera());
+        sampled.addShape(floor);
+        for (AbstractLight light : exact.getLights()) {
+            sampled.addLight(light);
+        }
+        sampled.setLightSamples(64);
+        Scene exactCompiled = exact.compile(), sampledCompiled = sampled.compile();
+
+        double error = 0.0, total = 0.0;
+        for (int i = 0; i < 100; i++) {
+            Ray ray = new Ray(new Point(0, 5, 5), new Vector(Math.sin(i) * 0.6, -1, -0.8 + Math.cos(i * 1.3) * 0.3));
+            Optional<Intersection> hit = exactCompiled.findClosestIntersection(ray);
+            assertNotNull(hit.orElse(null));
+            double e = exactCompiled.shade(hit.get(), ray).r();
+            double s = sampledCompiled.shade(hit.get(), ray).r();
+            assertEquals(s, sampledCompiled.shade(hit.get(), ray).r(), "sampling is deterministic");
+            error += Math.abs(s - e);
+            total += e;
+        }
+        assertTrue(error / total < 0.05, "relative error " + error / total);
+    }
+}
@@ -0,0 +1,53 @@
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.Test;
+
+import raytracer.image.PngStreamWriter;
+
+public class PngStreamWriterTest {
+
+    @Test
+    void rowsWrittenInBandsDecodeToSamePixels() throws IOException {
+        int width = 53, height = 41;
+        Random rnd = new Random(5);
+        int[] pixels = new int[width * height];
+        for (int i = 0; i < pixels.length; i++) {
+            // mix of smooth gradients and noise so that every filter gets picked
+            pixels[i] = (i % 3 == 0) ? rnd.nextInt(0x1000000) : ((i % width) * 4) << 8 | (i / width) * 5;
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (PngStreamWriter png = new PngStreamWriter(bytes, width, height)) {
+            int[] band = new int[width * 16];
+            for (int y = 0; y < height; y += 16) {
+                int rows = Math.min(16, height - y);
+                System.arraycopy(pixels, y * width, band, 0, rows * width);
+                png.writeRows(band, rows);
+            }
+        }
+
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(bytes.toByteArray()));
+        assertEquals(width, image.getWidth());
+        assertEquals(height, image.getHeight());
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                assertEquals(pixels[y * width + x], image.getRGB(x, y) & 0xffffff, "pixel " + x + "," + y);
+            }
+        }
+    }
+
+    @Test
+    void closingAnIncompleteImageFails() throws IOException {
+        PngStreamWriter png = new PngStreamWriter(new ByteArrayOutputStream(), 4, 4);
+        png.writeRows(new int[8], 2);
+        assertThrows(IllegalStateException.class, png::close);
+    }
+}
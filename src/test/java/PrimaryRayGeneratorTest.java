@@ -0,0 +1,40 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.Test;
+
+import raytracer.Camera;
+import raytracer.Orthonormal;
+import raytracer.PrimaryRayGenerator;
+import raytracer.Ray;
+import raytracer.Scene;
+import raytracer.math.Point;
+import raytracer.math.Vector;
+
+public class PrimaryRayGeneratorTest {
+
+    @Test
+    void directionsMatchVectorFormula() {
+        Scene scene = new Scene();
+        scene.setWidth(7);
+        scene.setHeight(5);
+        Camera camera = new Camera(new Point(1,2,3), new Point(-1,0.5,-2), new Vector(0,1,0.2), 50.0);
+        scene.setCamera(camera);
+
+        PrimaryRayGenerator gen = new PrimaryRayGenerator(scene);
+        Orthonormal basis = new Orthonormal(camera);
+        double pixelHeight = 2.0 * Math.tan(Math.toRadians(50.0) / 2.0) / 5;
+        double pixelWidth = pixelHeight * 5 / 7;
+
+        for (int y = 0; y < 5; y++) {
+            for (int x = 0; x < 7; x++) {
+                double sx = pixelWidth * (x - 7 / 2.0 + 0.5);
+                double sy = pixelHeight * (y - 5 / 2.0 + 0.5);
+                Vector expected = basis.u().scale(sx).add(basis.v().scale(sy)).sub(basis.w()).normalized();
+
+                Ray ray = gen.ray(x, y);
+                assertEquals(expected.x(), ray.direction().x());
+                assertEquals(expected.y(), ray.direction().y());
+                assertEquals(expected.z(), ray.direction().z());
+            }
+        }
+    }
+}
@@ -0,0 +1,145 @@
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+
+import javax.imageio.ImageIO;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import raytracer.RayTracer;
+import raytracer.Renderer;
+import raytracer.parsing.SceneFileParser;
+import raytracer.server.RenderServer;
+
+public class RenderServerTest {
+
+    private static final String GEOMETRY = String.join("\n",
+        "ambient 0.1 0.1 0.1",
+        "point 2 3 4 0.8 0.8 0.8",
+        "diffuse 0.5 0.4 0.3",
+        "sphere 0 0 0 1",
+        "plane 0 -1 0 0 1 0",
+        "");
+
+    private static HttpResponse<byte[]> post(HttpClient client, int port, String scene) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/render"))
+            .POST(HttpRequest.BodyPublishers.ofString(scene, StandardCharsets.UTF_8))
+            .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    @Test
+    void sameGeometryFromAnotherCameraIsServedFromCache() throws Exception {
+        HttpClient client = HttpClient.newHttpClient();
+        try (RenderServer server = new RenderServer(0, 1, 1, 16, 4, 64L << 20)) {
+            HttpResponse<byte[]> first = post(client, server.port(),
+                "size 32 24\ncamera 0 1 6 0 0 0 0 1 0 45\n" + GEOMETRY);
+            assertEquals(200, first.statusCode());
+            assertEquals("miss", first.headers().firstValue("X-Scene-Cache").orElse(""));
+
+            String moved = "# autre vue\nsize 40 20\n" + GEOMETRY.replace("sphere", "  sphere ")
+                + "camera 3 2 5 0 0 0 0 1 0 50\n";
+            HttpResponse<byte[]> second = post(client, server.port(), moved);
+            assertEquals(200, second.statusCode());
+            assertEquals("hit", second.headers().firstValue("X-Scene-Cache").orElse(""));
+
+            BufferedImage served = ImageIO.read(new ByteArrayInputStream(second.body()));
+            BufferedImage direct = new Renderer(new RayTracer(new SceneFileParser().parse(
+                new ByteArrayInputStream(moved.getBytes(StandardCharsets.UTF_8)), "direct"))).render();
+            assertEquals(40, served.getWidth());
+            for (int y = 0; y < 20; y++) {
+                for (int x = 0; x < 40; x++) {
+                    assertEquals(direct.getRGB(x, y), served.getRGB(x, y), "pixel " + x + "," + y);
+                }
+            }
+        }
+    }
+
+    @Test
+    void invalidScenesAndMethodsAreRefused() throws Exception {
+        HttpClient client = HttpClient.newHttpClient();
+        try (RenderServer server = new RenderServer(0, 1, 1, 16, 4, 1)) {
+            HttpResponse<byte[]> invalid = post(client, server.port(), "size 8 8\ncamera 0 0 5 0 0 0 0 1 0 45\nsphere 0 0 0 -1\n");
+            assertEquals(400, invalid.statusCode());
+            assertTrue(new String(invalid.body(), StandardCharsets.UTF_8).startsWith("Ligne 3"));
+
+            HttpResponse<byte[]> get = client.send(
+                HttpRequest.newBuilder(URI.create("http://localhost:" + server.port() + "/render")).GET().build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+            assertEquals(405, get.statusCode());
+
+            // a one-byte cache keeps only the last scene
+            String view = "size 8 8\ncamera 0 1 6 0 0 0 0 1 0 45\n";
+            post(client, server.port(), view + GEOMETRY);
+            post(client, server.port(), view + GEOMETRY.replace("sphere 0 0 0 1", "sphere 0 0 0 2"));
+            assertEquals("miss", post(client, server.port(), view + GEOMETRY)
+                .headers().firstValue("X-Scene-Cache").orElse(""));
+        }
+    }
+
+    @Test
+    void carriageReturnsEndLinesInTheGeometryKey() throws Exception {
+        HttpClient client = HttpClient.newHttpClient();
+        try (RenderServer server = new RenderServer(0, 1, 1, 16, 4, 64L << 20)) {
+            String scene = ("size 8 8\ncamera 0 1 6 0 0 0 0 1 0 45\n" + GEOMETRY).replace('\n', '\r');
+            HttpResponse<byte[]> first = post(client, server.port(), scene);
+            assertEquals(200, first.statusCode());
+            HttpResponse<byte[]> smaller = post(client, server.port(), scene.replace("sphere 0 0 0 1", "sphere 0 0 0 0.2"));
+            assertEquals(200, smaller.statusCode());
+            assertEquals("miss", smaller.headers().firstValue("X-Scene-Cache").orElse(""));
+
+            // a shape after a lone CR that ends a view line is part of the key too
+            String mixed = "size 8 8\ncamera 0 1 6 0 0 0 0 1 0 45\rsphere 1 1 0 0.3\n" + GEOMETRY;
+            post(client, server.port(), mixed);
+            assertEquals("miss", post(client, server.port(), mixed.replace("sphere 1 1 0 0.3", "sphere 1 1 0 0.5"))
+                .headers().firstValue("X-Scene-Cache").orElse(""));
+            assertEquals("hit", post(client, server.port(), mixed.replace('\r', '\n'))
+                .headers().firstValue("X-Scene-Cache").orElse(""));
+        }
+    }
+
+    @Test
+    void tooLongScenesAreRefused() throws Exception {
+        HttpClient client = HttpClient.newHttpClient();
+        try (RenderServer server = new RenderServer(0, 1, 1, 16, 4, 64L << 20, 256, 1L << 30)) {
+            String view = "size 8 8\ncamera 0 1 6 0 0 0 0 1 0 45\n";
+            assertEquals(200, post(client, server.port(), view + GEOMETRY).statusCode());
+            String padded = view + "#".repeat(300) + "\n" + GEOMETRY;
+            assertEquals(413, post(client, server.port(), padded).statusCode());
+        }
+    }
+
+    @Test
+    void scenesTooLargeToCompileAreRefusedBeforeBuilding() throws Exception {
+        HttpClient client = HttpClient.newHttpClient();
+        try (RenderServer server = new RenderServer(0, 1, 1, 16, 4, 64L << 20, 1 << 20, 64L << 20)) {
+            String view = "size 8 8\ncamera 0 1 6 0 0 0 0 1 0 45\n";
+            // a 8192 x 8192 map would take about 800 Mo to build
+            String huge = view + "directional -1 -1 -1 0.2 0.2 0.2\nshadowmap 8192\n" + GEOMETRY;
+            HttpResponse<byte[]> refused = post(client, server.port(), huge);
+            assertEquals(413, refused.statusCode());
+            assertTrue(new String(refused.body(), StandardCharsets.UTF_8).startsWith("Scène trop lourde"));
+            assertEquals("0 scènes", server.cacheSummary().substring(0, 8));
+
+            // a large vertex count alone reserves nothing beyond what the text declares
+            assertEquals(200, post(client, server.port(), view + "maxverts 400000000\n" + GEOMETRY).statusCode());
+        }
+    }
+
+    @Test
+    void shadowMapsCountInTheCacheSize() throws Exception {
+        HttpClient client = HttpClient.newHttpClient();
+        try (RenderServer server = new RenderServer(0, 1, 1, 16, 4, 64L << 20)) {
+            String scene = "size 8 8\ncamera 0 1 6 0 0 0 0 1 0 45\ndirectional -1 -1 -1 0.2 0.2 0.2\nshadowmap 1024\n";
+            assertEquals(200, post(client, server.port(), scene + GEOMETRY).statusCode());
+            // one 1024 x 1024 map: a run start per texel, and the sphere listed in every texel
+            assertTrue(server.cacheSummary().startsWith("1 scènes, 8 Mo"), server.cacheSummary());
+        }
+    }
+}
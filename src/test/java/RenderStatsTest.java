@@ -0,0 +1,69 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import raytracer.Camera;
+import raytracer.RayTracer;
+import raytracer.Renderer;
+import raytracer.Scene;
+import raytracer.light.DirectionalLight;
+import raytracer.light.PointLight;
+import raytracer.math.Color;
+import raytracer.math.Point;
+import raytracer.math.Vector;
+import raytracer.shape.Plane;
+import raytracer.shape.Sphere;
+import raytracer.stats.RenderStats;
+
+public class RenderStatsTest {
+
+    @Test
+    void renderCountsOneRayPerPixelAndAtMostOneShadowRayPerHitAndLight() {
+        Scene scene = new Scene();
+        scene.setWidth(20);
+        scene.setHeight(10);
+        scene.setCamera(new Camera(new Point(0,0,0), new Point(0,0,-1), new Vector(0,1,0), 60.0));
+        scene.setAmbient(new Color(0.1, 0.1, 0.1));
+        scene.addLight(new PointLight(new Point(2,2,0), new Color(0.4, 0.4, 0.4)));
+        scene.addLight(new PointLight(new Point(-2,2,0), new Color(0.4, 0.4, 0.4)));
+        Sphere sphere = new Sphere(new Point(0,0,-4), 1.5);
+        sphere.setDiffuse(new Color(0.6, 0.2, 0.2));
+        scene.addShape(sphere);
+
+        RenderStats.reset();
+        new Renderer(new RayTracer(scene), 2, 8, 4).render();
+
+        assertEquals(200, RenderStats.rays());
+        long shadowRays = RenderStats.shadowRays();
+        // lights behind the surface cast no shadow ray
+        assertTrue(shadowRays > 0 && shadowRays < 400);
+        assertTrue(RenderStats.occludedShadowRays() <= shadowRays);
+        assertTrue(RenderStats.intersectionTests() >= 200);
+    }
+
+    @Test
+    void shadowMapLookupsAreNotCountedAsShadowRays() {
+        Scene scene = new Scene();
+        scene.setWidth(20);
+        scene.setHeight(10);
+        scene.setCamera(new Camera(new Point(0,3,4), new Point(0,0,-2), new Vector(0,1,0), 60.0));
+        scene.setAmbient(new Color(0.1, 0.1, 0.1));
+        scene.addLight(new DirectionalLight(new Vector(1,-2,1), new Color(0.8, 0.8, 0.8)));
+        Plane floor = new Plane(new Point(0,0,0), new Vector(0,1,0));
+        floor.setDiffuse(new Color(0.7, 0.7, 0.7));
+        scene.addShape(floor);
+        Sphere sphere = new Sphere(new Point(0,1,-2), 1);
+        sphere.setDiffuse(new Color(0.6, 0.2, 0.2));
+        scene.addShape(sphere);
+        scene.setShadowMapResolution(64);
+
+        RenderStats.reset();
+        new Renderer(new RayTracer(scene.compile()), 2, 8, 4).render();
+
+        assertEquals(0, RenderStats.shadowRays());
+        long lookups = RenderStats.shadowMapLookups();
+        assertTrue(lookups > 0 && lookups <= 200);
+        assertTrue(RenderStats.occludedShadowMapLookups() > 0);
+        assertTrue(RenderStats.occludedShadowMapLookups() < lookups);
+    }
+}
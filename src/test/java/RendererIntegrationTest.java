@@ -1,6 +1,9 @@
 import java.awt.image.BufferedImage;
+import java.io.IOException;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.Test;
 
@@ -8,9 +11,13 @@ import raytracer.Camera;
 import raytracer.RayTracer;
 import raytracer.Renderer;
 import raytracer.Scene;
+import raytracer.image.RowSink;
+import raytracer.light.PointLight;
 import raytracer.math.Color;
 import raytracer.math.Point;
 import raytracer.math.Vector;
+import raytracer.shape.Plane;
+import raytracer.shape.Sphere;
 
 public class RendererIntegrationTest {
 
@@ -40,4 +47,176 @@ public class RendererIntegrationTest {
             }
         }
     }
+
+    @Test
+    void parallelTilesMatchSingleThreadedRender() {
+        Scene scene = new Scene();
+        scene.setWidth(37);
+        scene.setHeight(23);
+        scene.setCamera(new Camera(new Point(0,0,0), new Point(0,0,-1), new Vector(0,1,0), 60.0));
+        scene.setAmbient(new Color(0.1, 0.1, 0.1));
+        scene.addLight(new PointLight(new Point(2,2,0), new Color(0.8, 0.8, 0.8)));
+        Sphere s = new Sphere(new Point(0,0,-4), 1.5);
+        s.setDiffuse(new Color(0.6, 0.2, 0.2));
+        scene.addShape(s);
+
+        RayTracer rt = new RayTracer(scene);
+        BufferedImage expected = new Renderer(rt).render();
+        BufferedImage actual = new Renderer(rt, 4, 5).render();
+        // ray packets, with partial packets along tile edges
+        BufferedImage packets = new Renderer(rt, 2, 7, 4).render();
+
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                assertEquals(expected.getRGB(x, y), actual.getRGB(x, y), "pixel " + x + "," + y);
+                assertEquals(expected.getRGB(x, y), packets.getRGB(x, y), "pixel " + x + "," + y);
+            }
+        }
+    }
+
+    @Test
+    void streamedBandsMatchRenderedImage() throws IOException {
+        Scene scene = new Scene();
+        scene.setWidth(19);
+        scene.setHeight(27);
+        scene.setCamera(new Camera(new Point(0,0,0), new Point(0,0,-1), new Vector(0,1,0), 60.0));
+        scene.setAmbient(new Color(0.1, 0.1, 0.1));
+        scene.addLight(new PointLight(new Point(2,2,0), new Color(0.8, 0.8, 0.8)));
+        Sphere s = new Sphere(new Point(0.5,0.8,-4), 1.5);
+        s.setDiffuse(new Color(0.6, 0.2, 0.2));
+        scene.addShape(s);
+
+        RayTracer rt = new RayTracer(scene);
+        BufferedImage expected = new Renderer(rt).render();
+
+        int[] streamed = new int[19 * 27];
+        int[] rowsSeen = {0};
+        new Renderer(rt, 2, 8, 2).render(new RowSink() {
+            @Override
+            public void writeRows(int[] pixels, int rows) {
+                System.arraycopy(pixels, 0, streamed, rowsSeen[0] * 19, rows * 19);
+                rowsSeen[0] += rows;
+            }
+
+            @Override
+            public void close() {}
+        });
+
+        assertEquals(27, rowsSeen[0]);
+        for (int y = 0; y < 27; y++) {
+            for (int x = 0; x < 19; x++) {
+                assertEquals(expected.getRGB(x, y) & 0xffffff, streamed[y * 19 + x], "pixel " + x + "," + y);
+            }
+        }
+    }
+
+    @Test
+    void adaptiveSamplingOnlyChangesEdgePixels() {
+        Scene scene = new Scene();
+        scene.setWidth(31);
+        scene.setHeight(21);
+        scene.setCamera(new Camera(new Point(0,0,0), new Point(0,0,-1), new Vector(0,1,0), 60.0));
+        scene.setAmbient(new Color(0.1, 0.1, 0.1));
+        scene.addLight(new PointLight(new Point(2,2,0), new Color(0.8, 0.8, 0.8)));
+        Sphere s = new Sphere(new Point(0.3,0.2,-4), 1.5);
+        s.setDiffuse(new Color(0.6, 0.2, 0.2));
+        scene.addShape(s);
+
+        BufferedImage aliased = new Renderer(new RayTracer(scene)).render();
+        scene.setAaSamples(9);
+        // only shape changes trigger supersampling, not the shading terminator
+        scene.setAaThreshold(1.0);
+        // ray tracers render from a compiled copy, so changes need a new one
+        RayTracer rt = new RayTracer(scene);
+        BufferedImage smooth = new Renderer(rt).render();
+        // the apron makes the result independent of the tile layout
+        BufferedImage tiled = new Renderer(rt, 3, 5).render();
+
+        int changed = 0;
+        for (int y = 0; y < 21; y++) {
+            for (int x = 0; x < 31; x++) {
+                assertEquals(smooth.getRGB(x, y), tiled.getRGB(x, y), "pixel " + x + "," + y);
+                if (smooth.getRGB(x, y) != aliased.getRGB(x, y)) {
+                    changed++;
+                    assertTrue(nearEdge(aliased, x, y), "pixel " + x + "," + y);
+                }
+            }
+        }
+        assertTrue(changed > 0);
+    }
+
+    @Test
+    void reflectionsFollowSpecularSurfacesOnly() {
+        Scene scene = new Scene();
+        scene.setWidth(24);
+        scene.setHeight(16);
+        scene.setCamera(new Camera(new Point(0,1,4), new Point(0,0,0), new Vector(0,1,0), 60.0));
+        scene.setAmbient(new Color(0.1, 0.1, 0.1));
+        scene.addLight(new PointLight(new Point(2,3,2), new Color(0.8, 0.8, 0.8)));
+        Plane floor = new Plane(new Point(0,-1,0), new Vector(0,1,0));
+        floor.setDiffuse(new Color(0.3, 0.3, 0.3));
+        scene.addShape(floor);
+        Sphere ball = new Sphere(new Point(0,0,0), 1);
+        ball.setDiffuse(new Color(0.8, 0.1, 0.1));
+        scene.addShape(ball);
+
+        BufferedImage direct = new Renderer(new RayTracer(scene)).render();
+        // without specular colors, extra depth changes nothing
+        scene.setMaxDepth(5);
+        BufferedImage matte = new Renderer(new RayTracer(scene)).render();
+
+        floor.setSpecular(new Color(0.5, 0.5, 0.5));
+        scene.setMaxDepth(1);
+        BufferedImage flatMirror = new Renderer(new RayTracer(scene)).render();
+        scene.setMaxDepth(5);
+        BufferedImage mirror = new Renderer(new RayTracer(scene)).render();
+
+        int reflected = 0;
+        for (int y = 0; y < 16; y++) {
+            for (int x = 0; x < 24; x++) {
+                assertEquals(direct.getRGB(x, y), matte.getRGB(x, y), "pixel " + x + "," + y);
+                assertEquals(direct.getRGB(x, y), flatMirror.getRGB(x, y), "pixel " + x + "," + y);
+                if (mirror.getRGB(x, y) != direct.getRGB(x, y)) {
+                    reflected++;
+                }
+            }
+        }
+        assertTrue(reflected > 0);
+    }
+
+    @Test
+    void rayTracerRendersFromFrozenCompiledScene() {
+        Scene scene = new Scene();
+        scene.setWidth(8);
+        scene.setHeight(6);
+        scene.setCamera(new Camera(new Point(0,0,0), new Point(0,0,-1), new Vector(0,1,0), 60.0));
+        scene.addShape(new Sphere(new Point(0,0,-4), 1.5));
+
+        RayTracer rt = new RayTracer(scene);
+        Scene compiled = rt.getScene();
+        assertTrue(compiled.isCompiled());
+        assertSame(compiled, compiled.compile());
+        assertThrows(IllegalStateException.class, () -> compiled.setWidth(16));
+        assertThrows(UnsupportedOperationException.class, () -> compiled.getShapes().add(new Sphere(new Point(0,0,-8), 1)));
+
+        // later changes to the source scene do not reach the ray tracer
+        scene.setWidth(16);
+        scene.addShape(new Sphere(new Point(0,0,-8), 1));
+        assertEquals(8, compiled.getWidth());
+        assertEquals(1, compiled.getShapes().size());
+        assertEquals(8, new Renderer(rt).render().getWidth());
+    }
+
+    /** True if a neighbour of (x, y) is background while (x, y) is not, or the reverse. */
+    private static boolean nearEdge(BufferedImage img, int x, int y) {
+        boolean background = (img.getRGB(x, y) & 0xffffff) == 0;
+        int[][] neighbours = {{x - 1, y}, {x + 1, y}, {x, y - 1}, {x, y + 1}};
+        for (int[] n : neighbours) {
+            if (n[0] >= 0 && n[0] < img.getWidth() && n[1] >= 0 && n[1] < img.getHeight()
+                    && ((img.getRGB(n[0], n[1]) & 0xffffff) == 0) != background) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
@@ -1,14 +1,19 @@
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import raytracer.Scene;
 import raytracer.parsing.SceneFileParser;
 import raytracer.parsing.SceneParseException;
+import raytracer.shape.Sphere;
 
 public class SceneFileParserTest {
 
@@ -41,4 +46,47 @@ public class SceneFileParserTest {
         SceneFileParser p = new SceneFileParser();
         assertThrows(SceneParseException.class, () -> p.parse(new ByteArrayInputStream(src.getBytes(StandardCharsets.UTF_8)), "test"));
     }
+
+    @Test
+    void parseRenderQualityKeywords() {
+        String src = "size 2 2\n" +
+                     "camera 0 0 0 0 0 -1 0 1 0 60\n" +
+                     "maxdepth 5\n" +
+                     "aasamples 16\n" +
+                     "aathreshold 0.05\n";
+        Scene s = new SceneFileParser().parse(new ByteArrayInputStream(src.getBytes(StandardCharsets.UTF_8)), "test");
+        assertEquals(5, s.getMaxDepth());
+        assertEquals(16, s.getAaSamples());
+        assertEquals(0.05, s.getAaThreshold());
+
+        String invalid = "size 2 2\n" +
+                         "camera 0 0 0 0 0 -1 0 1 0 60\n" +
+                         "aasamples 0\n";
+        assertThrows(SceneParseException.class,
+            () -> new SceneFileParser().parse(new ByteArrayInputStream(invalid.getBytes(StandardCharsets.UTF_8)), "test"));
+    }
+
+    @Test
+    void numbersMatchDoubleParseDouble() {
+        String[] numbers = {"0.1", ".5", "5.", "-0", "+2.25", "1e-3", "0.30000000000000004",
+                            "9007199254740993", "3.141592653589793", "1.0000000000000000000000001"};
+        StringBuilder src = new StringBuilder("size 2 2\ncamera 0 0 0 0 0 -1 0 1 0 60\n");
+        for (String n : numbers) {
+            src.append("sphere ").append(n).append(" 0 0 1\n");
+        }
+        Scene s = new SceneFileParser().parse(new ByteArrayInputStream(src.toString().getBytes(StandardCharsets.UTF_8)), "test");
+        for (int i = 0; i < numbers.length; i++) {
+            Sphere sphere = (Sphere) s.getShapes().get(i);
+            assertEquals(Double.parseDouble(numbers[i]), sphere.center().x(), numbers[i]);
+            assertEquals(i + 3, sphere.getSourceLine());
+        }
+    }
+
+    @Test
+    void errorLinesCountCarriageReturns(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("crlf.scene");
+        Files.writeString(file, "size 2 2\r\n\rcamera 0 0 0 0 0 -1 0 1 0 60\r\n# x\rsphere 0 0 -5 abc\r\n");
+        SceneParseException e = assertThrows(SceneParseException.class, () -> new SceneFileParser().parse(file));
+        assertEquals("Ligne 5 : Nombre invalide: For input string: \"abc\"", e.getMessage());
+    }
 }
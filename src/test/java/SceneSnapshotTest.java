@@ -0,0 +1,112 @@
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import raytracer.RayTracer;
+import raytracer.Renderer;
+import raytracer.Scene;
+import raytracer.parsing.SceneFileParser;
+import raytracer.parsing.SceneParseException;
+import raytracer.parsing.SceneSnapshot;
+
+public class SceneSnapshotTest {
+
+    private static final String SCENE =
+        "size 31 23\n" +
+        "output snapshot.png\n" +
+        "camera 0 1 4 0 0 0 0 1 0 50\n" +
+        "maxdepth 3\n" +
+        "ambient 0.1 0.1 0.1\n" +
+        "directional 1 1 1 0.4 0.4 0.4\n" +
+        "point 2 3 2 0.6 0.6 0.6\n" +
+        "diffuse 0.2 0.2 0.7\n" +
+        "specular 0.3 0.3 0.3\n" +
+        "shininess 20\n" +
+        "plane 0 -1 0 0 1 0\n" +
+        "diffuse 0.8 0.2 0.2\n" +
+        "sphere -0.6 0 0 0.5\n" +
+        "sphere 0.6 0 0 0.4\n" +
+        "maxverts 4\n" +
+        "vertex -1 0.6 -1\n" +
+        "vertex 1 0.6 -1\n" +
+        "vertex 1 1.6 -1\n" +
+        "vertex -1 1.6 -1\n" +
+        "diffuse 0.1 0.7 0.1\n" +
+        "tri 0 1 2\n" +
+        "tri 0 2 3\n";
+
+    @Test
+    void snapshotRendersLikeTextScene(@TempDir Path dir) throws IOException {
+        Scene parsed = new SceneFileParser().parse(new ByteArrayInputStream(SCENE.getBytes(StandardCharsets.UTF_8)), "test");
+        Path file = dir.resolve("scene.bin");
+        SceneSnapshot.write(parsed, file);
+
+        assertTrue(SceneSnapshot.isSnapshot(file));
+        Scene loaded = SceneSnapshot.read(file);
+        assertEquals(parsed.getShapes().size(), loaded.getShapes().size());
+        assertEquals(parsed.getOutput(), loaded.getOutput());
+        assertEquals(parsed.getMaxDepth(), loaded.getMaxDepth());
+        for (int i = 0; i < parsed.getShapes().size(); i++) {
+            assertEquals(parsed.getShapes().get(i).getSourceLine(), loaded.getShapes().get(i).getSourceLine());
+        }
+
+        BufferedImage expected = new Renderer(new RayTracer(parsed)).render();
+        BufferedImage actual = new Renderer(new RayTracer(loaded)).render();
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                assertEquals(expected.getRGB(x, y), actual.getRGB(x, y), "pixel " + x + "," + y);
+            }
+        }
+    }
+
+    @Test
+    void textSceneIsNotASnapshot(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("scene.scene");
+        Files.writeString(file, SCENE);
+        assertFalse(SceneSnapshot.isSnapshot(file));
+        assertThrows(SceneParseException.class, () -> SceneSnapshot.read(file));
+
+        Path truncated = dir.resolve("truncated.bin");
+        SceneSnapshot.write(new SceneFileParser().parse(file), truncated);
+        byte[] bytes = Files.readAllBytes(truncated);
+        Files.write(truncated, java.util.Arrays.copyOf(bytes, bytes.length / 2));
+        assertThrows(SceneParseException.class, () -> SceneSnapshot.read(truncated));
+    }
+
+    @Test
+    void damagedHierarchyIsRejected(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("scene.scene");
+        Files.writeString(file, SCENE);
+        Path snapshot = dir.resolve("scene.bin");
+        SceneSnapshot.write(new SceneFileParser().parse(file).compile(), snapshot);
+        byte[] bytes = Files.readAllBytes(snapshot);
+        // the file ends with the hierarchy's 2 ints per node, then the 4 bounded primitives:
+        // their count, scene indices and primitive indices
+        int primitives = bytes.length - 4 * Integer.BYTES;
+        int lastNode = bytes.length - (1 + 2 * 4 + 2) * Integer.BYTES;
+
+        assertRejected(dir, bytes, primitives + 3 * Integer.BYTES, 99);
+        assertRejected(dir, bytes, primitives - Integer.BYTES, 1000);
+        assertRejected(dir, bytes, lastNode + Integer.BYTES, 7);
+        assertRejected(dir, bytes, lastNode + Integer.BYTES, 0);
+        assertRejected(dir, bytes, lastNode, -1);
+    }
+
+    private static void assertRejected(Path dir, byte[] bytes, int offset, int value) throws IOException {
+        byte[] damaged = bytes.clone();
+        java.nio.ByteBuffer.wrap(damaged).putInt(offset, value);
+        Path file = dir.resolve("damaged.bin");
+        Files.write(file, damaged);
+        assertThrows(SceneParseException.class, () -> SceneSnapshot.read(file), "offset " + offset);
+    }
+}
@@ -0,0 +1,139 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import raytracer.Camera;
+import raytracer.Intersection;
+import raytracer.Ray;
+import raytracer.Scene;
+import raytracer.accel.Accelerator;
+import raytracer.accel.ShadowMap;
+import raytracer.light.DirectionalLight;
+import raytracer.math.Color;
+import raytracer.math.Point;
+import raytracer.math.Vector;
+import raytracer.shape.Plane;
+import raytracer.shape.Shape;
+import raytracer.shape.Sphere;
+import raytracer.shape.Triangle;
+
+public class ShadowMapTest {
+
+    private static final Vector TOWARD_SUN = new Vector(0.3, 1, 0.2).normalized();
+
+    @Test
+    void lookupFindsOccluderAndOpenGround() {
+        Triangle ground = new Triangle(new Point(-10, 0, -10), new Point(10, 0, -10), new Point(0, 0, 10));
+        Sphere ball = new Sphere(new Point(0, 2, 0), 1);
+        ShadowMap map = new ShadowMap(new Accelerator(List.<Shape>of(ground, ball)), TOWARD_SUN, 256);
+
+        // point under the ball, along the light direction
+        Point below = new Point(0, 2, 0).add(TOWARD_SUN.scale(-2.0 / TOWARD_SUN.y()));
+        Ray shadowed = new Ray(below.add(new Vector(0, 1e-4, 0)), TOWARD_SUN);
+        assertTrue(map.occluded(shadowed, 1e-4, Double.POSITIVE_INFINITY));
+
+        Ray open = new Ray(new Point(5, 1e-4, -5), TOWARD_SUN);
+        assertFalse(map.occluded(open, 1e-4, Double.POSITIVE_INFINITY));
+    }
+
+    @Test
+    void tessellatedOccluderMatchesRayCasts() {
+        // 1x1 quad split into 64x64 cells, each far smaller than a texel of the map
+        List<Shape> shapes = new ArrayList<>();
+        shapes.add(new Triangle(new Point(-10, 0, -10), new Point(10, 0, -10), new Point(0, 0, 10)));
+        int cells = 64;
+        for (int i = 0; i < cells; i++) {
+            for (int j = 0; j < cells; j++) {
+                double x0 = -0.5 + (double) i / cells, x1 = -0.5 + (double) (i + 1) / cells;
+                double z0 = -0.5 + (double) j / cells, z1 = -0.5 + (double) (j + 1) / cells;
+                shapes.add(new Triangle(new Point(x0, 2, z0), new Point(x1, 2, z0), new Point(x1, 2, z1)));
+                shapes.add(new Triangle(new Point(x0, 2, z0), new Point(x1, 2, z1), new Point(x0, 2, z1)));
+            }
+        }
+        Accelerator accelerator = new Accelerator(shapes);
+        ShadowMap map = new ShadowMap(accelerator, TOWARD_SUN, 64);
+
+        // floor points around the quad's shadow, whose center is 2 / y along the light
+        Point center = new Point(0, 0, 0).add(TOWARD_SUN.scale(-2.0 / TOWARD_SUN.y()));
+        assertTrue(countMatchingCasts(accelerator, map, center, 1.0) > 50);
+    }
+
+    @Test
+    void occludersSmallerThanATexelCastTheirShadow() {
+        // spheres a tenth of a texel wide over one ground triangle covering the whole map
+        Triangle ground = new Triangle(new Point(-10, 0, -10), new Point(10, 0, -10), new Point(0, 0, 10));
+        List<Shape> shapes = new ArrayList<>(List.of(ground));
+        Point[] centers = { new Point(-2, 1, 0), new Point(1.3, 0.7, 2.1), new Point(0.4, 1.5, -3) };
+        for (Point c : centers) {
+            shapes.add(new Sphere(c, 0.03));
+        }
+        Accelerator accelerator = new Accelerator(shapes);
+        ShadowMap map = new ShadowMap(accelerator, TOWARD_SUN, 64);
+
+        for (Point c : centers) {
+            Point shadow = c.add(TOWARD_SUN.scale(-c.y() / TOWARD_SUN.y()));
+            assertTrue(countMatchingCasts(accelerator, map, new Point(shadow.x(), 0, shadow.z()), 0.05) > 0,
+                "ombre de " + c);
+        }
+    }
+
+    /**
+     * Checks the map against ray casts on a 20 x 20 grid of floor points around a center.
+     *
+     * @return number of grid points in shadow
+     */
+    private static int countMatchingCasts(Accelerator accelerator, ShadowMap map, Point center, double halfSide) {
+        int occludedPoints = 0;
+        for (int i = 0; i < 400; i++) {
+            Point p = new Point(center.x() - halfSide + (i % 20) * halfSide / 10, 1e-4,
+                center.z() - halfSide + (i / 20) * halfSide / 10);
+            Ray ray = new Ray(p, TOWARD_SUN);
+            boolean occluded = accelerator.findOccluder(ray, 1e-4, Double.POSITIVE_INFINITY) != null;
+            assertEquals(occluded, map.occluded(ray, 1e-4, Double.POSITIVE_INFINITY), "point " + i);
+            if (occluded) occludedPoints++;
+        }
+        return occludedPoints;
+    }
+
+    @Test
+    void shadowMappedShadingMatchesRayCastShading() {
+        Scene exact = new Scene();
+        exact.setWidth(4);
+        exact.setHeight(4);
+        exact.setCamera(new Camera(new Point(0, 6, 8), new Point(0, 0, 0), new Vector(0, 1, 0), 60.0));
+        exact.setAmbient(new Color(0.1, 0.1, 0.1));
+        exact.addLight(new DirectionalLight(TOWARD_SUN.scale(-1.0), new Color(0.8, 0.8, 0.8)));
+        Plane floor = new Plane(new Point(0, 0, 0), new Vector(0, 1, 0));
+        floor.setDiffuse(new Color(0.7, 0.7, 0.7));
+        exact.addShape(floor);
+        for (int i = 0; i < 12; i++) {
+            Sphere s = new Sphere(new Point(Math.sin(i * 2.1) * 3, 0.8 + (i % 3) * 0.7, Math.cos(i * 1.3) * 3), 0.5);
+            s.setDiffuse(new Color(0.5, 0.3, 0.2));
+            exact.addShape(s);
+        }
+        Scene mapped = new Scene();
+        mapped.setWidth(4);
+        mapped.setHeight(4);
+        mapped.setCamera(exact.getCamera());
+        mapped.setAmbient(exact.getAmbient());
+        exact.getLights().forEach(mapped::addLight);
+        exact.getShapes().forEach(mapped::addShape);
+        mapped.setShadowMapResolution(512);
+        Scene exactCompiled = exact.compile(), mappedCompiled = mapped.compile();
+
+        for (int i = 0; i < 400; i++) {
+            Vector direction = new Vector(-0.6 + (i % 20) * 0.06, -1, -1.2 + (i / 20) * 0.06);
+            Ray ray = new Ray(new Point(0, 6, 8), direction);
+            Optional<Intersection> hit = mappedCompiled.findClosestIntersection(ray);
+            if (hit.isPresent()) {
+                Color e = exactCompiled.shade(hit.get(), ray), m = mappedCompiled.shade(hit.get(), ray);
+                assertEquals(e.r(), m.r(), "ray " + i);
+            }
+        }
+    }
+}
@@ -38,4 +38,14 @@ public class SphereTest {
 
         assertTrue(s.intersect(r).isEmpty());
     }
+
+    @Test
+    void intersectDistanceMatchesIntersect() {
+        Sphere s = new Sphere(new Point(0,0,-5), 1.0);
+        Ray hitRay = new Ray(new Point(0,0,0), new Vector(0.1,0,-1).normalized());
+        Ray missRay = new Ray(new Point(0,0,0), new Vector(0,1,0));
+
+        assertEquals(s.intersect(hitRay).get().t(), s.intersectDistance(hitRay));
+        assertEquals(Double.POSITIVE_INFINITY, s.intersectDistance(missRay));
+    }
 }
@@ -0,0 +1,78 @@
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.Test;
+
+import raytracer.Intersection;
+import raytracer.Ray;
+import raytracer.Scene;
+import raytracer.math.Color;
+import raytracer.math.Point;
+import raytracer.math.Vector;
+import raytracer.parsing.SceneFileParser;
+import raytracer.shape.Triangle;
+import raytracer.shape.TriangleMesh;
+
+public class TriangleMeshTest {
+
+    @Test
+    void trianglesMatchStandaloneTriangles() {
+        TriangleMesh mesh = new TriangleMesh();
+        mesh.addVertex(-1, -1, -5);
+        mesh.addVertex(1, -1, -5);
+        mesh.addVertex(0.3, 1, -4.7);
+        mesh.addVertex(-0.8, 0.9, -5.2);
+        Color red = new Color(0.8, 0, 0), blue = new Color(0, 0, 0.8), spec = new Color(0.1, 0.1, 0.1);
+        mesh.addTriangle(0, 1, 2, red, spec, 10, 7);
+        mesh.addTriangle(0, 2, 3, blue, spec, 10, 8);
+
+        Triangle first = new Triangle(new Point(-1, -1, -5), new Point(1, -1, -5), new Point(0.3, 1, -4.7));
+        Triangle second = new Triangle(new Point(-1, -1, -5), new Point(0.3, 1, -4.7), new Point(-0.8, 0.9, -5.2));
+        for (int i = 0; i < 50; i++) {
+            Ray ray = new Ray(new Point(0, 0, 0), new Vector(-0.3 + i * 0.013, 0.2 - i * 0.009, -1));
+            assertEquals(first.intersectDistance(ray), mesh.intersectDistance(ray, 0));
+            assertEquals(second.intersectDistance(ray), mesh.intersectDistance(ray, 1));
+        }
+
+        Ray ray = new Ray(new Point(-0.3, 0.3, 0), new Vector(0, 0, -1));
+        double t = mesh.intersectDistance(ray, 1);
+        Intersection isect = mesh.intersectionAt(ray, t, 1);
+        assertEquals(second.intersectionAt(ray, t).normal(), isect.normal());
+        assertEquals(1, isect.primitive());
+        assertSame(blue, isect.diffuse());
+        assertEquals(2, mesh.materialCount());
+        assertEquals(8, mesh.sourceLine(1));
+
+        assertThrows(IndexOutOfBoundsException.class, () -> mesh.addTriangle(0, 1, 4, red, spec, 10, 9));
+    }
+
+    @Test
+    void parserLoadsTrianglesIntoOneMesh() {
+        String src = "size 2 2\n" +
+                     "camera 0 0 0 0 0 -1 0 1 0 60\n" +
+                     "maxverts 4\n" +
+                     "vertex -1 -1 -5\n" +
+                     "vertex 1 -1 -5\n" +
+                     "vertex 1 1 -5\n" +
+                     "vertex -1 1 -5\n" +
+                     "tri 0 1 2\n" +
+                     "sphere 0 0 -9 1\n" +
+                     "diffuse 0.5 0.5 0.5\n" +
+                     "tri 0 2 3\n";
+        Scene s = new SceneFileParser().parse(new ByteArrayInputStream(src.getBytes(StandardCharsets.UTF_8)), "test");
+
+        assertEquals(2, s.getShapes().size());
+        TriangleMesh mesh = assertInstanceOf(TriangleMesh.class, s.getShapes().get(0));
+        assertEquals(2, mesh.triangleCount());
+        assertEquals(8, mesh.getSourceLine());
+        assertEquals(new Color(0.5, 0.5, 0.5), mesh.diffuse(mesh.material(1)));
+
+        Intersection hit = s.findClosestIntersection(new Ray(new Point(0, 0, 0), new Vector(-0.1, 0.1, -1))).orElseThrow();
+        assertSame(mesh, hit.shape());
+        assertEquals(1, hit.primitive());
+    }
+}